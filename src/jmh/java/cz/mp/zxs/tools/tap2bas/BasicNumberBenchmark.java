@@ -0,0 +1,104 @@
+/*
+ * BasicNumberBenchmark.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Převod 5B čísel ve vnitřní reprezentaci Basicu; jedna operace = 
+ * {@linkplain #COUNT} čísel.
+ *
+ * @author Martin Pokorný
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BasicNumberBenchmark {
+
+    static final int COUNT = 1024;
+
+    /** 
+     * {@code mixed} -- polovina celých čísel, zbytek s plovoucí čárkou
+     *      (exponent blízko 0),
+     * {@code float} -- jen čísla s plovoucí čárkou, celá mantisa náhodná
+     */
+    @Param({"mixed", "float"})
+    public String numbers;
+
+    private TapByteArrayData data;
+    private int length;
+    private AsciiOutput out;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        for (int i=0; i<COUNT; i++) {
+            if (numbers.equals("mixed") && random.nextBoolean()) {
+                TapGenerator.writeIntegerNumber(bout, random.nextInt(65536));
+            }
+            else if (numbers.equals("mixed")) {
+                bout.write(128 - 20 + random.nextInt(40));
+                for (int j=0; j<4; j++) {
+                    bout.write(random.nextInt(256));
+                }
+            }
+            else {
+                bout.write(1 + random.nextInt(254));
+                for (int j=0; j<4; j++) {
+                    bout.write(random.nextInt(256));
+                }
+            }
+        }
+        byte[] raw = bout.toByteArray();
+        length = raw.length;
+        data = new TapByteArrayData(raw);
+        out = new AsciiOutput();
+        out.setTarget(new NullOutputStream(), false);
+    }
+
+    @Benchmark
+    public void parseBasicNumber(ThroughputCounter counter, Blackhole bh) {
+        data.begin();
+        for (int i=0; i<COUNT; i++) {
+            BigDecimal number = data.readBlockAndParseBasicNumber();
+            bh.consume(number.toPlainString());
+        }
+        counter.add(length);
+    }
+
+    @Benchmark
+    public void writeBasicNumber(ThroughputCounter counter) throws IOException {
+        data.begin();
+        for (int i=0; i<COUNT; i++) {
+            data.readBlockAndWriteBasicNumber(out);
+        }
+        out.flush();
+        counter.add(length);
+    }
+
+}   // BasicNumberBenchmark.java
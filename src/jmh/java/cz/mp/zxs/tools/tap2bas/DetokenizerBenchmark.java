@@ -0,0 +1,187 @@
+/*
+ * DetokenizerBenchmark.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Porovnání převodu BASIC řádek na text: tabulka v
+ * {@linkplain TapByteArrayData#readBlockAndReturnAsEscapedString(int)}
+ * proti původnímu řetězci podmínek ({@linkplain #branchChain(TapByteArrayData, int)}).
+ *
+ * @author Martin Pokorný
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DetokenizerBenchmark {
+
+    /** velikost převáděného bloku v bytech */
+    @Param({"256", "65536"})
+    public int length;
+
+    private TapByteArrayData data;
+
+    @Setup
+    public void setup() {
+        data = new TapByteArrayData(createTokenizedBasic(length, 42));
+    }
+
+    /**
+     * Pseudonáhodný obsah BASIC řádek: text, klíčová slova, čísla (0x0E + 5B),
+     * řídící znaky s parametry, mozaiková grafika a UDG.
+     *
+     * @param length
+     * @param seed
+     * @return
+     */
+    static byte[] createTokenizedBasic(int length, long seed) {
+        Random random = new Random(seed);
+        byte[] result = new byte[length];
+        int i = 0;
+        while (i < length) {
+            int kind = random.nextInt(100);
+            int remaining = length - i;
+            if (kind < 20 && remaining >= 1 + TapByteArrayData.NUMBER_REPRESENTATION_LEN) {
+                result[i++] = 0x0E;
+                for (int j=0; j<TapByteArrayData.NUMBER_REPRESENTATION_LEN; j++) {
+                    result[i++] = (byte) random.nextInt(256);
+                }
+            }
+            else if (kind < 25 && remaining >= 3) {
+                result[i++] = 0x16;     // AT y,x
+                result[i++] = (byte) random.nextInt(22);
+                result[i++] = (byte) random.nextInt(32);
+            }
+            else if (kind < 45) {
+                result[i++] = (byte) (0xA5 + random.nextInt(0xFF - 0xA5 + 1));
+            }
+            else if (kind < 50) {
+                result[i++] = (byte) (0x80 + random.nextInt(0xA5 - 0x80));
+            }
+            else {
+                result[i++] = (byte) (0x20 + random.nextInt(0x80 - 0x20));
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public String tableDriven(ThroughputCounter counter) throws InvalidTapException {
+        data.begin();
+        counter.add(length);
+        return data.readBlockAndReturnAsEscapedString(length);
+    }
+
+    @Benchmark
+    public String branchChain(ThroughputCounter counter) throws InvalidTapException {
+        data.begin();
+        counter.add(length);
+        return branchChain(data, length);
+    }
+
+    /**
+     * Původní implementace {@code readBlockAndReturnAsEscapedString}
+     * (řetězec podmínek, texty z {@code TreeMap}), pro srovnání.
+     *
+     * @param data
+     * @param length
+     * @return
+     * @throws InvalidTapException
+     */
+    static String branchChain(TapByteArrayData data, int length)
+            throws InvalidTapException {
+        StringBuilder sb = new StringBuilder(length * 2);
+        int i=0;
+        while (i < length) {
+            int dataItem = data.read();
+            i++;
+            if (TapByteArrayData.isBeginOfNumberRepresentation(dataItem)) {
+                data.skip(TapByteArrayData.NUMBER_REPRESENTATION_LEN);
+                i += TapByteArrayData.NUMBER_REPRESENTATION_LEN;
+            }
+            else if (TapByteArrayData.isPoundChar(dataItem)) {
+                sb.append("{pound}");
+            }
+            else if (TapByteArrayData.isCopyrightChar(dataItem)) {
+                sb.append("{(C)}");
+            }
+            else if (TapByteArrayData.isPrintableChar(dataItem)
+                    || TapByteArrayData.isEolChar(dataItem)) {
+                sb.append((char)dataItem);
+            }
+            else if (TapByteArrayData.isControlCharToSetTextAttribute(dataItem)) {
+                String charName = TapByteArrayData.getControlAsCharText(dataItem);
+                if (charName == null) {
+                    throw new InvalidTapException("charName = null");
+                }
+                int value = data.read();
+                i++;
+                sb.append("{").append(charName).append(" ")
+                        .append(String.valueOf(value));
+                if (dataItem == 0x16) {
+                    int value2 = data.read();
+                    i++;
+                    sb.append(" ");
+                    sb.append(String.valueOf(value2));
+                }
+                sb.append("}");
+            }
+            else if (TapByteArrayData.isControlChar(dataItem)) {
+            }
+            else if (TapByteArrayData.isKeyword(dataItem)) {
+                String keyword = TapByteArrayData.getKeyword(dataItem);
+                if (keyword == null) {
+                    throw new InvalidTapException("keyword = null");
+                }
+                sb.append(keyword);
+            }
+            else if (TapByteArrayData.isMosaicGraphicChar(dataItem)) {
+                if (dataItem == 0x80) {
+                    sb.append("{-8}");
+                }
+                else if (dataItem == 0x8F) {
+                    sb.append("{+8}");
+                }
+                else if (dataItem >= 0x81 && dataItem <= 0x87) {
+                    sb.append("{-");
+                    sb.append((char)('1'+dataItem-0x81));
+                    sb.append("}");
+                }
+                else if (dataItem >= 0x88 && dataItem <= 0x8E) {
+                    sb.append("{+");
+                    sb.append((char)(0x8E-dataItem+'1'));
+                    sb.append("}");
+                }
+            }
+            else if (TapByteArrayData.isUdgChar(dataItem)) {
+                sb.append("{").append((char)('A'+dataItem-0x90)).append("}");
+            }
+            else {
+                throw new InvalidTapException("unknown data " + dataItem);
+            }
+        }
+        return sb.toString();
+    }
+
+}   // DetokenizerBenchmark.java
@@ -0,0 +1,70 @@
+/*
+ * DumpBenchmark.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Výpis bloku jako "hexDump" a "decadicDump".
+ *
+ * @author Martin Pokorný
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DumpBenchmark {
+
+    /** velikost bloku v bytech */
+    @Param({"256", "49152"})
+    public int length;
+
+    private TapByteArrayData data;
+    private AsciiOutput out;
+
+    @Setup
+    public void setup() {
+        byte[] block = new byte[length];
+        new Random(42).nextBytes(block);
+        data = new TapByteArrayData(block);
+        out = new AsciiOutput();
+        out.setTarget(new NullOutputStream(), false);
+    }
+
+    @Benchmark
+    public void hexDump(ThroughputCounter counter) throws IOException {
+        data.begin();
+        data.writeBlockAsHexDump(length, out);
+        out.flush();
+        counter.add(length);
+    }
+
+    @Benchmark
+    public void decadicDump(ThroughputCounter counter) throws IOException {
+        data.begin();
+        data.writeBlockAsDecadicDump(length, out);
+        out.flush();
+        counter.add(length);
+    }
+
+}   // DumpBenchmark.java
@@ -0,0 +1,27 @@
+/*
+ * NullOutputStream.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.OutputStream;
+
+/**
+ * Zahazuje výstup; benchmarky tak neměří zápis na disk.
+ *
+ * @author Martin Pokorný
+ */
+final class NullOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+
+}   // NullOutputStream.java
@@ -0,0 +1,87 @@
+/*
+ * ProcessTapBenchmark.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Celý převod TAP ({@code processTap}) ve všech třech režimech, 
+ * nad syntetickým TAP (BASIC + VARS, kód, SCREEN$).
+ *
+ * @author Martin Pokorný
+ * @see TapGenerator
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessTapBenchmark {
+
+    /** {@code onlyBasic}, {@code withoutVars}, {@code all} */
+    @Param({"onlyBasic", "withoutVars", "all"})
+    public String mode;
+
+    /** délka programu v BASICu v bytech (a také délka bloku kódu) */
+    @Param({"4096", "32768"})
+    public int programLength;
+
+    /** počet prvků číselného pole ve VARS */
+    @Param({"1000"})
+    public int arrayItems;
+
+    private byte[] tap;
+    private Tap2bas tap2bas;
+    private final NullOutputStream nullOut = new NullOutputStream();
+
+    @Setup
+    public void setup() {
+        TapGenerator generator = new TapGenerator(42);
+        generator.setProgramLength(programLength);
+        generator.setNumericArrays(1, arrayItems);
+        generator.setStringArrays(1, 32);
+        generator.setForLoops(1);
+        generator.setCodeLength(programLength);
+        generator.setScreens(1);
+        tap = generator.generate();
+        tap2bas = new Tap2bas();
+    }
+
+    @Benchmark
+    public void processTap(ThroughputCounter counter) 
+            throws IOException, InvalidTapException {
+        tap2bas.setTapContent(tap);
+        tap2bas.setOutStream(nullOut);
+        switch (mode) {
+            case "onlyBasic":
+                tap2bas.analyzeAndExtractOnlyBasic();
+                break;
+            case "withoutVars":
+                tap2bas.analyzeWithoutVars();
+                break;
+            default:
+                tap2bas.analyzeAll();
+                break;
+        }
+        counter.add(tap.length);
+    }
+
+}   // ProcessTapBenchmark.java
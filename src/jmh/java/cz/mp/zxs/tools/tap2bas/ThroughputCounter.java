@@ -0,0 +1,39 @@
+/*
+ * ThroughputCounter.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Počítadlo zpracovaných vstupních dat; JMH ho vypíše jako 
+ * {@code megabytes} za jednotku času (s {@code @OutputTimeUnit(SECONDS)} 
+ * tedy MB/s).
+ *
+ * @author Martin Pokorný
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ThroughputCounter {
+
+    /** MB (10^6 B) vstupních dat */
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        megabytes = 0;
+    }
+
+    void add(int bytes) {
+        megabytes += bytes / 1e6;
+    }
+
+}   // ThroughputCounter.java
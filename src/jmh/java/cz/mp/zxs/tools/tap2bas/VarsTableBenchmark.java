@@ -0,0 +1,65 @@
+/*
+ * VarsTableBenchmark.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Analýza tabulky proměnných ({@code analyzeVarsTable}); TAP obsahuje
+ * krátký program a velké číselné pole ve VARS.
+ *
+ * @author Martin Pokorný
+ * @see TapGenerator
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VarsTableBenchmark {
+
+    /** počet prvků číselného pole */
+    @Param({"100", "9000"})
+    public int arrayItems;
+
+    private byte[] tap;
+    private Tap2bas tap2bas;
+    private final NullOutputStream nullOut = new NullOutputStream();
+
+    @Setup
+    public void setup() {
+        TapGenerator generator = new TapGenerator(42);
+        generator.setProgramLength(64);
+        generator.setNumericArrays(1, arrayItems);
+        tap = generator.generate();
+        tap2bas = new Tap2bas();
+    }
+
+    @Benchmark
+    public void analyzeAll(ThroughputCounter counter) 
+            throws IOException, InvalidTapException {
+        tap2bas.setTapContent(tap);
+        tap2bas.setOutStream(nullOut);
+        tap2bas.analyzeAll();
+        counter.add(tap.length);
+    }
+
+}   // VarsTableBenchmark.java
@@ -0,0 +1,470 @@
+/*
+ * AsciiOutput.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+
+/**
+ * Výstup textu v kódování {@code US-ASCII} přes vlastní buffer.
+ * <p>
+ * Znaky se kódují přímo do pole bytů (bez {@code OutputStreamWriter});
+ * znaky mimo ASCII se nahradí za {@code '?'}, stejně jako to dělá
+ * {@code US-ASCII} {@code Charset}. Kdy se obsah bufferu odešle do cíle
+ * ({@code OutputStream} nebo {@code Writer}) určuje {@linkplain FlushPolicy}.
+ * <p>
+ * Jedna instance se může použít pro více výstupů za sebou, viz
+ * {@linkplain #setTarget(java.io.OutputStream, boolean)}; buffer se
+ * přitom nealokuje znovu.
+ *
+ * @author Martin Pokorný
+ * @see FlushPolicy
+ * @see Tap2bas#setFlushPolicy(cz.mp.zxs.tools.tap2bas.FlushPolicy)
+ */
+public class AsciiOutput implements Flushable, Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_FLUSH_SIZE = DEFAULT_BUFFER_SIZE;
+
+    private static final byte REPLACEMENT = '?';
+
+    private final byte[] buffer;
+    private int pos = 0;
+    /** (jen pro {@code Writer} jako cíl) */
+    private char[] charBuffer;
+
+    private OutputStream out;
+    private Writer writer;
+    private boolean closeTarget;
+
+    private FlushPolicy flushPolicy = FlushPolicy.FILE;
+    private int flushSize = DEFAULT_FLUSH_SIZE;
+
+    /** {@code null} = bez statistiky */
+    private TapStats stats;
+
+    /** */
+    public AsciiOutput() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     *
+     * @param bufferSize
+     */
+    public AsciiOutput(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize <= 0");
+        }
+        buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Nastaví nový cíl. Předchozí cíl je třeba nejdříve uzavřít
+     * ({@linkplain #close()}).
+     *
+     * @param out
+     * @param closeTarget  zda {@linkplain #close()} má uzavřít i {@code out}
+     *      (např. {@code System.out} se uzavírat nemá)
+     */
+    public void setTarget(OutputStream out, boolean closeTarget) {
+        if (out == null) {
+            throw new IllegalArgumentException("out=null");
+        }
+        this.out = out;
+        this.writer = null;
+        this.closeTarget = closeTarget;
+        this.pos = 0;
+    }
+
+    /**
+     *
+     * @param writer
+     * @param closeTarget
+     * @see #setTarget(java.io.OutputStream, boolean)
+     */
+    public void setTarget(Writer writer, boolean closeTarget) {
+        if (writer == null) {
+            throw new IllegalArgumentException("writer=null");
+        }
+        this.out = null;
+        this.writer = writer;
+        this.closeTarget = closeTarget;
+        this.pos = 0;
+    }
+
+    public boolean hasTarget() {
+        return out != null || writer != null;
+    }
+
+    public FlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    public void setFlushPolicy(FlushPolicy flushPolicy) {
+        if (flushPolicy == null) {
+            throw new IllegalArgumentException("flushPolicy=null");
+        }
+        this.flushPolicy = flushPolicy;
+    }
+
+    /**
+     *
+     * @param stats  zápis do cíle se započítá do
+     *      {@linkplain TapStats.Phase#OUTPUT}; může být {@code null}
+     */
+    public void setStats(TapStats stats) {
+        this.stats = stats;
+    }
+
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    /**
+     *
+     * @param flushSize  pro {@linkplain FlushPolicy#SIZE}
+     */
+    public void setFlushSize(int flushSize) {
+        if (flushSize <= 0) {
+            throw new IllegalArgumentException("flushSize <= 0");
+        }
+        this.flushSize = flushSize;
+    }
+
+    /**
+     *
+     * @param ch
+     * @throws IOException
+     */
+    public void write(char ch) throws IOException {
+        if (pos == buffer.length) {
+            drain();
+        }
+        buffer[pos++] = ch < 0x80 ? (byte) ch : REPLACEMENT;
+        if (flushPolicy == FlushPolicy.SIZE && pos >= flushSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Jeden byte, který je už v ASCII.
+     *
+     * @param b
+     * @throws IOException
+     */
+    public void writeByte(int b) throws IOException {
+        if (pos == buffer.length) {
+            drain();
+        }
+        buffer[pos++] = (byte) b;
+        if (flushPolicy == FlushPolicy.SIZE && pos >= flushSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Byty, které jsou už v ASCII (např. připravený řádek výpisu).
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @throws IOException
+     */
+    public void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (pos == buffer.length) {
+                drain();
+            }
+            int n = Math.min(length, buffer.length - pos);
+            System.arraycopy(bytes, offset, buffer, pos, n);
+            pos += n;
+            offset += n;
+            length -= n;
+        }
+        if (flushPolicy == FlushPolicy.SIZE && pos >= flushSize) {
+            flush();
+        }
+    }
+
+    /**
+     *
+     * @param text
+     * @throws IOException
+     */
+    public void write(CharSequence text) throws IOException {
+        int len = text.length();
+        for (int i=0; i<len; i++) {
+            char ch = text.charAt(i);
+            if (pos == buffer.length) {
+                drain();
+            }
+            if (ch < 0x80) {
+                buffer[pos++] = (byte) ch;
+            }
+            else {
+                buffer[pos++] = REPLACEMENT;
+                // (dvojice "surrogate" je jeden znak, tj. jen jeden '?')
+                if (Character.isHighSurrogate(ch) && i + 1 < len
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    i++;
+                }
+            }
+        }
+        if (flushPolicy == FlushPolicy.SIZE && pos >= flushSize) {
+            flush();
+        }
+    }
+
+    /**
+     *
+     * @param chars
+     * @throws IOException
+     */
+    public void write(char[] chars) throws IOException {
+        write(chars, 0, chars.length);
+    }
+
+    /**
+     *
+     * @param chars
+     * @param offset
+     * @param length
+     * @throws IOException
+     */
+    public void write(char[] chars, int offset, int length) throws IOException {
+        int end = offset + length;
+        for (int i=offset; i<end; i++) {
+            char ch = chars[i];
+            if (pos == buffer.length) {
+                drain();
+            }
+            buffer[pos++] = ch < 0x80 ? (byte) ch : REPLACEMENT;
+        }
+        if (flushPolicy == FlushPolicy.SIZE && pos >= flushSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Zapíše číslo v desítkové soustavě (bez vytváření {@code String}).
+     *
+     * @param value
+     * @throws IOException
+     */
+    public void writeInt(int value) throws IOException {
+        if (value < 0) {
+            if (value == Integer.MIN_VALUE) {
+                write(String.valueOf(value));
+                return;
+            }
+            writeByte('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        if (buffer.length - pos < digits) {
+            drain();
+            if (buffer.length < digits) {
+                write(String.valueOf(value));
+                return;
+            }
+        }
+        int end = pos + digits;
+        for (int i = end - 1; i >= pos; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        pos = end;
+        if (flushPolicy == FlushPolicy.SIZE && pos >= flushSize) {
+            flush();
+        }
+    }
+
+    /** (pro {@linkplain #writeDecimal(long, int)}) */
+    private final byte[] digits = new byte[20];
+
+    /**
+     * Zapíše desetinné číslo {@code unscaled * 10^-scale} stejně jako
+     * {@code BigDecimal.valueOf(unscaled, scale).toPlainString()}, 
+     * ale bez vytváření objektů.
+     *
+     * @param unscaled
+     * @param scale
+     * @throws IOException
+     */
+    public void writeDecimal(long unscaled, int scale) throws IOException {
+        if (unscaled == Long.MIN_VALUE) {
+            write(BigDecimal.valueOf(unscaled, scale).toPlainString());
+            return;
+        }
+        if (scale < 0 && unscaled == 0) {
+            writeByte('0');
+            return;
+        }
+        if (unscaled < 0) {
+            writeByte('-');
+            unscaled = -unscaled;
+        }
+        int len = 0;
+        do {
+            digits[digits.length - 1 - len] = (byte) ('0' + unscaled % 10);
+            unscaled /= 10;
+            len++;
+        } while (unscaled != 0);
+        writeDecimalDigits(digits, digits.length - len, len, scale);
+    }
+
+    /**
+     * Zapíše desetinné číslo ze zadaných číslic stejně jako
+     * {@code BigDecimal.toPlainString()} (bez znaménka), pro čísla, která
+     * se nevejdou do {@code long}.
+     *
+     * @param digits  číslice "unscaled value" jako znaky {@code '0'} až
+     *      {@code '9'}, bez úvodních nul
+     * @param start
+     * @param len  počet číslic; alespoň 1
+     * @param scale
+     * @throws IOException
+     * @see #writeDecimal(long, int)
+     */
+    public void writeDecimalDigits(byte[] digits, int start, int len, int scale)
+            throws IOException {
+        if (scale <= 0) {
+            writeBytes(digits, start, len);
+            for (int i=0; i<-scale; i++) {
+                writeByte('0');
+            }
+        }
+        else if (len > scale) {
+            writeBytes(digits, start, len - scale);
+            writeByte('.');
+            writeBytes(digits, start + len - scale, scale);
+        }
+        else {
+            writeByte('0');
+            writeByte('.');
+            for (int i=len; i<scale; i++) {
+                writeByte('0');
+            }
+            writeBytes(digits, start, len);
+        }
+    }
+
+    /**
+     * Konec bloku TAP. Pro {@linkplain FlushPolicy#BLOCK} odešle výstup.
+     *
+     * @throws IOException
+     */
+    public void endOfBlock() throws IOException {
+        if (flushPolicy == FlushPolicy.BLOCK) {
+            flush();
+        }
+    }
+
+    /**
+     * Zapíše obsah bufferu do cíle, ale cíl nevyprazdňuje ({@code flush}).
+     *
+     * @throws IOException
+     */
+    private void drain() throws IOException {
+        if (pos == 0) {
+            return;
+        }
+        if (stats == null) {
+            drainToTarget();
+            return;
+        }
+        stats.addOutputBytes(pos);
+        TapStats.Phase previous = stats.enter(TapStats.Phase.OUTPUT);
+        try {
+            drainToTarget();
+        }
+        finally {
+            stats.exit(previous);
+        }
+    }
+
+    private void drainToTarget() throws IOException {
+        if (out != null) {
+            out.write(buffer, 0, pos);
+        }
+        else if (writer != null) {
+            if (charBuffer == null) {
+                charBuffer = new char[buffer.length];
+            }
+            for (int i=0; i<pos; i++) {
+                charBuffer[i] = (char) (buffer[i] & 0xFF);
+            }
+            writer.write(charBuffer, 0, pos);
+        }
+        else {
+            throw new IllegalStateException("no target");
+        }
+        pos = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        TapStats.Phase previous = stats != null ? stats.enter(TapStats.Phase.OUTPUT) : null;
+        try {
+            drain();
+            if (out != null) {
+                out.flush();
+            }
+            else if (writer != null) {
+                writer.flush();
+            }
+        }
+        finally {
+            if (previous != null) {
+                stats.exit(previous);
+            }
+        }
+    }
+
+    /**
+     * Odešle zbytek výstupu a uzavře cíl (pokud se má uzavírat).
+     * Poté je nutné nastavit nový cíl.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (!hasTarget()) {
+            return;
+        }
+        try {
+            flush();
+        }
+        finally {
+            try {
+                if (closeTarget) {
+                    if (out != null) {
+                        out.close();
+                    }
+                    else {
+                        writer.close();
+                    }
+                }
+            }
+            finally {
+                out = null;
+                writer = null;
+                pos = 0;
+            }
+        }
+    }
+
+}   // AsciiOutput.java
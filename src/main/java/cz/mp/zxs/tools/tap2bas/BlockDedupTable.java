@@ -0,0 +1,780 @@
+/*
+ * BlockDedupTable.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tabulka již zpracovaných bloků dat pro deduplikaci v rámci celé
+ * sbírky TAP souborů, viz {@linkplain Tap2bas#setDedup(BlockDedupTable, String)}.
+ * <p>
+ * Klíčem je hash obsahu bloku ({@linkplain TapBlockIndex#hash64(java.nio.ByteBuffer)}),
+ * jeho délka, typ z hlavičky a režim analýzy; hodnotou je první výskyt
+ * bloku (jméno TAP a pozice bloku). Jménem TAP je kanonická cesta
+ * ({@linkplain #getSourceName(File)}), takže se stejný soubor pozná
+ * i při jinak zapsané cestě (jiný pracovní adresář, relativní cesta).
+ * Blok, který už v tabulce je, se znovu nedekóduje; do výstupu se místo
+ * výpisu zapíše jen odkaz na první výskyt. Bloky kratší než
+ * {@value #MIN_BLOCK_LENGTH} B se neporovnávají (odkaz by nebyl kratší
+ * než výpis).
+ * <p>
+ * Před odkazem se obsah bloku porovná s prvním výskytem bajt po bajtu
+ * (při shodě jen hashe se blok dekóduje). Blok z jiného TAP platí jako
+ * první výskyt, až když je výstup jeho převodu zapsaný
+ * ({@linkplain Session#confirm()}); jinak by odkaz vedl na výpis,
+ * který nevznikl.
+ * <p>
+ * Tabulku mohou sdílet pracovní vlákna dávky. Aby výstup nezávisel na
+ * pořadí, v jakém vlákna na bloky narazí, dávka první výskyty určí předem,
+ * v pořadí souborů ({@linkplain #findBlocks(ByteBuffer, boolean, boolean)},
+ * {@linkplain #addAll(List, String)}), a pak nové bloky už nepřidává
+ * ({@linkplain #setFixedOwners(boolean)}). Lze ji uložit a příště
+ * načíst, takže odkazy vedou i na TAP zpracované v dřívějších bězích.
+ * Záznam z uložené tabulky, jehož TAP už neexistuje nebo se změnil
+ * (jiná délka nebo čas změny), neplatí: blok se dekóduje znovu a záznam
+ * se nahradí.
+ *
+ * @author Martin Pokorný
+ * @see Tap2basBatch#setDedup(cz.mp.zxs.tools.tap2bas.BlockDedupTable)
+ */
+public class BlockDedupTable {
+    private static final Logger log = LoggerFactory.getLogger(BlockDedupTable.class);
+
+    /** Min. délka bloku dat (včetně flagu a parity) pro deduplikaci. */
+    public static final int MIN_BLOCK_LENGTH = 128;
+
+    private static final int MAGIC = 0x54324244;    // "T2BD"
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int LEN_SIZE = 2;
+
+    /**
+     * Klíč bloku.
+     */
+    public static final class Key {
+        private final long hash;
+        private final int length;
+        private final int typeNum;
+        /** 0 = jen BASIC, 1 = bez VARS, 2 = vše */
+        private final int mode;
+
+        /**
+         *
+         * @param block  blok dat včetně flagu a parity (od {@code position}
+         *      do {@code limit}; pozice se nemění)
+         * @param type  typ z hlavičky
+         * @param onlyBasic
+         * @param analyzeVars
+         */
+        public Key(ByteBuffer block, TapBlockType type, boolean onlyBasic,
+                boolean analyzeVars) {
+            this(TapBlockIndex.hash64(block), block.remaining(), type.getNum(),
+                    onlyBasic ? 0 : (analyzeVars ? 2 : 1));
+        }
+
+        private Key(long hash, int length, int typeNum, int mode) {
+            this.hash = hash;
+            this.length = length;
+            this.typeNum = typeNum;
+            this.mode = mode;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && length == other.length
+                    && typeNum == other.typeNum && mode == other.mode;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+
+    /**
+     * První výskyt bloku.
+     */
+    public static final class Entry {
+        private final String source;
+        private final int offset;
+        /** záznam je z uložené tabulky, viz {@linkplain BlockDedupTable#isStale(Entry)} */
+        private final boolean loaded;
+        private final long sourceLength;
+        private final long sourceModified;
+        /** výpis bloku je zapsaný, viz {@linkplain Session#confirm()} */
+        private volatile boolean confirmed;
+
+        Entry(String source, int offset) {
+            this(source, offset, false, -1, -1);
+        }
+
+        private Entry(String source, int offset, boolean loaded,
+                long sourceLength, long sourceModified) {
+            this.source = source;
+            this.offset = offset;
+            this.loaded = loaded;
+            this.sourceLength = sourceLength;
+            this.sourceModified = sourceModified;
+            this.confirmed = loaded;
+        }
+
+        /**
+         *
+         * @return  jméno (cesta) TAP
+         */
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         *
+         * @return  pozice bloku dat v TAP (začátek jeho 2B délky)
+         */
+        public int getOffset() {
+            return offset;
+        }
+    }
+
+    /**
+     * Blok dat v TAP, viz {@linkplain #findBlocks(ByteBuffer, boolean, boolean)}.
+     */
+    static final class Block {
+        private final Key key;
+        private final int offset;
+
+        Block(Key key, int offset) {
+            this.key = key;
+            this.offset = offset;
+        }
+
+        Key getKey() {
+            return key;
+        }
+
+        int getOffset() {
+            return offset;
+        }
+    }
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    /** výsledek {@linkplain #isStale(Entry)} pro každý zdroj */
+    private final ConcurrentMap<String, Boolean> staleSources = new ConcurrentHashMap<>();
+    /** viz {@linkplain #setFixedOwners(boolean)} */
+    private volatile boolean fixedOwners = false;
+
+    private final AtomicLong blocks = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong duplicateBlocks = new AtomicLong();
+    private final AtomicLong duplicateBytes = new AtomicLong();
+
+
+    /** */
+    public BlockDedupTable() {
+    }
+
+    /**
+     * Deduplikace v jednom převodu TAP. Převod porovnává bloky s tabulkou
+     * ({@linkplain #find(Key, ByteBuffer, int, ByteBuffer)}) a dekódované
+     * bloky přidává ({@linkplain #add(Key, int)}); jako první výskyty ale
+     * platí, až když je výstup převodu zapsaný ({@linkplain #confirm()}).
+     * Instanci používá jen jedno vlákno.
+     *
+     * @see BlockDedupTable#newSession(String)
+     */
+    public final class Session {
+        private final String source;
+        /** bloky dekódované v tomto převodu (a jejich pozice) */
+        private final Map<Key, Integer> decoded = new HashMap<>();
+        /** první výskyty v jiných TAP, na které vedou odkazy */
+        private final Map<Key, Entry> references = new HashMap<>();
+        private long sessionBlocks = 0;
+        private long sessionBytes = 0;
+        private long sessionDuplicateBlocks = 0;
+        private long sessionDuplicateBytes = 0;
+        private boolean confirmed = false;
+
+        private Session(String source) {
+            this.source = source;
+        }
+
+        /**
+         *
+         * @return  jméno TAP, viz {@linkplain #getSourceName(File)}
+         */
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * Najde první výskyt bloku. Vrátí ho, jen pokud jeho obsah
+         * opravdu odpovídá bloku (ne jen hash) a pokud na něj lze odkázat:
+         * v tomto TAP musí být už dekódovaný, v jiném TAP potvrzený
+         * ({@linkplain #confirm()}), nebo určený předem
+         * ({@linkplain BlockDedupTable#setFixedOwners(boolean)}).
+         *
+         * @param key
+         * @param block  blok dat včetně flagu a parity (od {@code position}
+         *      do {@code limit}; pozice se nemění)
+         * @param offset  pozice hledaného bloku dat v TAP
+         * @param tap  celý obsah tohoto TAP (od pozice {@code 0}), pro
+         *      porovnání s dřívějším blokem bez čtení souboru; nebo {@code null}
+         * @return  první výskyt, nebo {@code null}, pokud se má blok
+         *      dekódovat (pak ho po zpracování přidat, viz
+         *      {@linkplain #add(Key, int)})
+         */
+        public Entry find(Key key, ByteBuffer block, int offset, ByteBuffer tap) {
+            sessionBlocks++;
+            sessionBytes += key.length;
+            Entry entry = entries.get(key);
+            if (entry == null || (entry.offset == offset && entry.source.equals(source))) {
+                return null;
+            }
+            boolean sameSource = entry.source.equals(source);
+            if (sameSource) {
+                // (dřívější blok tohoto TAP, který se nedekódoval, nemá výpis)
+                Integer decodedOffset = decoded.get(key);
+                if (decodedOffset == null || decodedOffset != entry.offset) {
+                    return null;
+                }
+            }
+            else if (!entry.confirmed && !fixedOwners) {
+                return null;
+            }
+            if (isStale(entry) || !isSameBlock(entry, block, sameSource ? tap : null)) {
+                return null;
+            }
+            if (!sameSource) {
+                references.put(key, entry);
+            }
+            sessionDuplicateBlocks++;
+            sessionDuplicateBytes += key.length;
+            return entry;
+        }
+
+        /**
+         * Přidá dekódovaný blok. Jako první výskyt se přidá, jen pokud
+         * pro blok v tabulce ještě není platný záznam a pokud první
+         * výskyty nejsou dané předem.
+         *
+         * @param key
+         * @param offset  pozice bloku dat v TAP
+         */
+        public void add(Key key, int offset) {
+            if (!decoded.containsKey(key)) {
+                decoded.put(key, offset);
+            }
+            if (!fixedOwners) {
+                putIfAbsentOrStale(key, new Entry(source, offset), true);
+            }
+        }
+
+        /**
+         * Potvrdí, že výstup převodu je zapsaný: bloky dekódované v tomto
+         * převodu platí jako první výskyty pro ostatní TAP (a uloží se,
+         * viz {@linkplain BlockDedupTable#save(File)}). Přičte převod do
+         * statistiky tabulky.
+         */
+        public void confirm() {
+            if (confirmed) {
+                return;
+            }
+            for (Map.Entry<Key, Integer> e : decoded.entrySet()) {
+                Entry entry = entries.get(e.getKey());
+                if (entry != null && entry.offset == e.getValue()
+                        && entry.source.equals(source)) {
+                    entry.confirmed = true;
+                }
+            }
+            blocks.addAndGet(sessionBlocks);
+            bytes.addAndGet(sessionBytes);
+            duplicateBlocks.addAndGet(sessionDuplicateBlocks);
+            duplicateBytes.addAndGet(sessionDuplicateBytes);
+            confirmed = true;
+        }
+
+        /**
+         * Zruší potvrzení před novým převodem stejného TAP: odečte převod
+         * ze statistiky a první výskyty v tomto TAP přestanou platit,
+         * dokud je nový převod znovu nepotvrdí.
+         */
+        void revoke() {
+            if (!confirmed) {
+                return;
+            }
+            for (Map.Entry<Key, Integer> e : decoded.entrySet()) {
+                Entry entry = entries.get(e.getKey());
+                if (entry != null && entry.offset == e.getValue()
+                        && entry.source.equals(source)) {
+                    entry.confirmed = false;
+                }
+            }
+            blocks.addAndGet(-sessionBlocks);
+            bytes.addAndGet(-sessionBytes);
+            duplicateBlocks.addAndGet(-sessionDuplicateBlocks);
+            duplicateBytes.addAndGet(-sessionDuplicateBytes);
+            confirmed = false;
+        }
+
+        /**
+         *
+         * @return  {@code true}, pokud všechny odkazy do jiných TAP vedou
+         *      na potvrzené první výskyty, tj. na bloky, jejichž výpis
+         *      opravdu vznikl
+         */
+        boolean hasValidReferences() {
+            for (Map.Entry<Key, Entry> e : references.entrySet()) {
+                Entry entry = e.getValue();
+                if (entries.get(e.getKey()) != entry || !entry.confirmed) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     *
+     * @param source  jméno TAP, viz {@linkplain #getSourceName(File)}
+     * @return  deduplikace pro jeden převod TAP {@code source}
+     */
+    public Session newSession(String source) {
+        if (source == null) {
+            throw new IllegalArgumentException("source=null");
+        }
+        return new Session(source);
+    }
+
+    /**
+     * Přidá bloky jednoho TAP jako první výskyty (bloky, které už v
+     * tabulce jsou, zůstanou). Volá se postupně pro soubory v pořadí,
+     * tj. prvním výskytem je vždy blok z prvního souboru (a s nejmenší
+     * pozicí), bez ohledu na {@linkplain #setFixedOwners(boolean)}.
+     *
+     * @param blocks  viz {@linkplain #findBlocks(ByteBuffer, boolean, boolean)}
+     * @param source  jméno (cesta) TAP
+     */
+    void addAll(List<Block> blocks, String source) {
+        for (Block block : blocks) {
+            putIfAbsentOrStale(block.key, new Entry(source, block.offset), false);
+        }
+    }
+
+    /**
+     * Přidá záznam, pokud tam pro klíč ještě není, nebo nahradí
+     * neplatný záznam z uložené tabulky.
+     *
+     * @param key
+     * @param entry
+     * @param replaceUnconfirmed  {@code true} = nahradit i nepotvrzený
+     *      záznam z jiného TAP (jeho převod ještě neskončil, nebo skončil chybou)
+     */
+    private void putIfAbsentOrStale(Key key, Entry entry, boolean replaceUnconfirmed) {
+        Entry old = entries.putIfAbsent(key, entry);
+        while (old != null
+                && (isStale(old) || (replaceUnconfirmed && !old.confirmed
+                        && !old.source.equals(entry.source)))
+                && !entries.replace(key, old, entry)) {
+            old = entries.putIfAbsent(key, entry);
+        }
+    }
+
+    /**
+     * Odebere první výskyty, které nikdo nepotvrdil
+     * ({@linkplain Session#confirm()}), např. bloky určené předem v TAP,
+     * jehož převod skončil chybou.
+     *
+     * @return  počet odebraných záznamů
+     */
+    int removeUnconfirmed() {
+        int count = 0;
+        for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+            if (!e.getValue().confirmed && entries.remove(e.getKey(), e.getValue())) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            log.info("unconfirmed dedup entries removed: " + count);
+        }
+        return count;
+    }
+
+    /**
+     *
+     * @param entry
+     * @param block  viz {@linkplain Session#find(Key, ByteBuffer, int, ByteBuffer)}
+     * @param tap  obsah TAP {@code entry}, nebo {@code null} = přečíst ze souboru
+     * @return  {@code true}, pokud má první výskyt stejný obsah jako
+     *      {@code block}; při shodě jen hashe, nebo pokud TAP nelze
+     *      přečíst, {@code false}
+     */
+    private static boolean isSameBlock(Entry entry, ByteBuffer block, ByteBuffer tap) {
+        int start = entry.offset + LEN_SIZE;
+        ByteBuffer first = null;
+        if (tap != null && start + block.remaining() <= tap.limit()) {
+            first = tap.duplicate();
+            ((Buffer) first).limit(start + block.remaining());
+            ((Buffer) first).position(start);
+        }
+        else {
+            first = readBlock(entry.source, start, block.remaining());
+        }
+        if (first == null) {
+            return false;
+        }
+        if (!first.equals(block)) {
+            log.warn("dedup hash collision: " + entry.source + ", index = " + entry.offset);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @param source  jméno TAP, případně položky archivu
+     * @param start  pozice v (rozbaleném) TAP
+     * @param length
+     * @return  část TAP, nebo {@code null}, pokud ji nelze přečíst
+     */
+    private static ByteBuffer readBlock(String source, long start, int length) {
+        File file = getSourceFile(source);
+        int separatorIdx = source.indexOf(TapArchive.ENTRY_SEPARATOR);
+        try {
+            if (separatorIdx >= 0) {
+                try (ZipFile zipFile = new ZipFile(file)) {
+                    ZipEntry zipEntry = zipFile.getEntry(source.substring(
+                            separatorIdx + TapArchive.ENTRY_SEPARATOR.length()));
+                    if (zipEntry == null) {
+                        throw new FileNotFoundException(source);
+                    }
+                    try (InputStream in = zipFile.getInputStream(zipEntry)) {
+                        return readBlock(in, start, length);
+                    }
+                }
+            }
+            try (InputStream in = TapArchive.isGzip(file)
+                    ? new GZIPInputStream(new FileInputStream(file))
+                    : new FileInputStream(file)) {
+                return readBlock(in, start, length);
+            }
+        } catch (IOException ioex) {
+            log.info("cannot read dedup source: " + source + "; " + ioex.getMessage());
+            return null;
+        }
+    }
+
+    private static ByteBuffer readBlock(InputStream in, long start, int length)
+            throws IOException {
+        DataInputStream dataIn = new DataInputStream(in);
+        long remaining = start;
+        while (remaining > 0) {
+            long skipped = dataIn.skip(remaining);
+            if (skipped <= 0) {
+                if (dataIn.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        byte[] data = new byte[length];
+        dataIn.readFully(data);
+        return ByteBuffer.wrap(data);
+    }
+
+    /**
+     *
+     * @param entry
+     * @return  {@code true} pro záznam z uložené tabulky, jehož TAP už
+     *      neexistuje nebo má jinou délku nebo čas změny
+     */
+    private boolean isStale(Entry entry) {
+        if (!entry.loaded) {
+            return false;
+        }
+        // (klíč i s identitou: záznamy z různých uložení)
+        String id = entry.source + '\n' + entry.sourceLength + '\n' + entry.sourceModified;
+        Boolean stale = staleSources.get(id);
+        if (stale == null) {
+            File file = getSourceFile(entry.source);
+            stale = !file.isFile() || file.length() != entry.sourceLength
+                    || file.lastModified() != entry.sourceModified;
+            if (stale) {
+                log.info("stale dedup entries: " + entry.source);
+            }
+            staleSources.put(id, stale);
+        }
+        return stale;
+    }
+
+    /**
+     *
+     * @param file
+     * @return  jméno TAP pro tabulku: kanonická cesta (nebo absolutní,
+     *      pokud ji nelze zjistit)
+     * @see TapArchive#getSourceName(File, String)
+     */
+    public static String getSourceName(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException ioex) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    /**
+     *
+     * @param source  jméno TAP, případně položky archivu
+     *      ({@code games.zip!/gold.tap})
+     * @return  soubor (archiv) se zdrojem
+     */
+    static File getSourceFile(String source) {
+        int separatorIdx = source.indexOf(TapArchive.ENTRY_SEPARATOR);
+        return new File(separatorIdx < 0 ? source : source.substring(0, separatorIdx));
+    }
+
+    /**
+     *
+     * @param fixedOwners  {@code true} = první výskyty jsou dané předem
+     *      ({@linkplain #addAll(List, String)}), {@linkplain Session#add(Key, int)}
+     *      nic nepřidává; blok, který předem určen nebyl (např. za poškozeným
+     *      úsekem), se tedy dekóduje vždy
+     */
+    public void setFixedOwners(boolean fixedOwners) {
+        this.fixedOwners = fixedOwners;
+    }
+
+    /**
+     * Najde bloky dat, které {@linkplain Tap2bas} porovnává s tabulkou,
+     * stejným průchodem dvojicemi "hlavička + data" jako analýza, ale bez
+     * dekódování. Skončí na prvním poškozeném místě.
+     *
+     * @param tap  obsah TAP (od {@code position} do {@code limit};
+     *      pozice se nemění)
+     * @param onlyBasic
+     * @param analyzeVars
+     * @return  bloky v pořadí v TAP; pozice jsou od {@code position}
+     */
+    static List<Block> findBlocks(ByteBuffer tap, boolean onlyBasic, boolean analyzeVars) {
+        List<Block> result = new ArrayList<>();
+        int base = tap.position();
+        int length = tap.remaining();
+        int idx = 0;
+        while (idx + LEN_SIZE + Tap2bas.DEFAULT_HEADER_SIZE + LEN_SIZE <= length) {
+            if (lsbMSB(tap, base + idx) != Tap2bas.DEFAULT_HEADER_SIZE
+                    || (tap.get(base + idx + LEN_SIZE) & 0xFF) != Tap2bas.FLAG_HEADER) {
+                break;
+            }
+            TapBlockType type = TapBlockType.getByNum(tap.get(base + idx + LEN_SIZE + 1) & 0xFF);
+            int dataIdx = idx + LEN_SIZE + Tap2bas.DEFAULT_HEADER_SIZE;
+            int dataLen = lsbMSB(tap, base + dataIdx);
+            int flagIdx = dataIdx + LEN_SIZE;
+            if (type == null || dataLen < 1 || flagIdx + dataLen > length
+                    || (tap.get(base + flagIdx) & 0xFF) != Tap2bas.FLAG_DATA) {
+                break;
+            }
+            if (dataLen >= MIN_BLOCK_LENGTH && (type == TapBlockType.BASIC || !onlyBasic)) {
+                ByteBuffer block = tap.duplicate();
+                ((Buffer) block).position(base + flagIdx);
+                ((Buffer) block).limit(base + flagIdx + dataLen);
+                result.add(new Block(new Key(block, type, onlyBasic, analyzeVars), dataIdx));
+            }
+            idx = flagIdx + dataLen;
+        }
+        return result;
+    }
+
+    private static int lsbMSB(ByteBuffer data, int idx) {
+        return (data.get(idx) & 0xFF) + (data.get(idx + 1) & 0xFF) * 256;
+    }
+
+    /**
+     *
+     * @return  počet různých bloků v tabulce
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     *
+     * @return  počet porovnaných bloků v potvrzených převodech
+     *      (od vytvoření nebo načtení tabulky), viz {@linkplain Session#confirm()}
+     */
+    public long getBlocks() {
+        return blocks.get();
+    }
+
+    public long getDuplicateBlocks() {
+        return duplicateBlocks.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getDuplicateBytes() {
+        return duplicateBytes.get();
+    }
+
+    /**
+     *
+     * @return  podíl bytů v opakovaných blocích, {@code 0 - 1}
+     */
+    public double getDedupRatio() {
+        long total = bytes.get();
+        return total == 0 ? 0 : (double) duplicateBytes.get() / total;
+    }
+
+    /**
+     *
+     * @return  např. {@code dedup: 12 of 80 blocks, 15360 of 92160 B (16.7 %)}
+     */
+    public String getSummary() {
+        return String.format(Locale.ROOT, "dedup: %d of %d blocks, %d of %d B (%.1f %%)",
+                duplicateBlocks.get(), blocks.get(), duplicateBytes.get(),
+                bytes.get(), getDedupRatio() * 100);
+    }
+
+    /**
+     * Načte uloženou tabulku.
+     *
+     * @param file
+     * @return  tabulka; prázdná, pokud soubor neexistuje nebo jej
+     *      nelze načíst (jiná verze formátu, poškozený soubor)
+     */
+    public static BlockDedupTable load(File file) {
+        BlockDedupTable table = new BlockDedupTable();
+        if (!file.isFile()) {
+            return table;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readShort() != FORMAT_VERSION) {
+                log.info("unknown dedup table format: " + file);
+                return table;
+            }
+            int count = in.readInt();
+            for (int i=0; i<count; i++) {
+                Key key = new Key(in.readLong(), in.readInt(),
+                        in.readUnsignedByte(), in.readUnsignedByte());
+                int offset = in.readInt();
+                long sourceLength = in.readLong();
+                long sourceModified = in.readLong();
+                table.entries.put(key, new Entry(in.readUTF(), offset, true,
+                        sourceLength, sourceModified));
+            }
+            log.info("dedup table loaded: " + file + "; blocks = " + count);
+        } catch (IOException ioex) {
+            log.warn("cannot load dedup table: " + file + "; " + ioex.getMessage());
+            table.entries.clear();
+        }
+        return table;
+    }
+
+    /**
+     * Uloží tabulku; nejdříve do dočasného souboru, který pak přejmenuje.
+     * S každým záznamem se uloží délka a čas změny jeho TAP (archivu);
+     * nepotvrzené záznamy, záznamy, jejichž TAP není soubor (např.
+     * {@code stdin}), a neplatné záznamy z načtené tabulky se neuloží.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void save(File file) throws IOException {
+        // (tabulka se může ještě měnit; uloží se stav v tuto chvíli)
+        Map<Key, Entry> snapshot = new HashMap<>();
+        Map<String, long[]> sourceIds = new HashMap<>();
+        for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            if (!entry.confirmed) {
+                continue;
+            }
+            if (entry.loaded) {
+                if (!isStale(entry)) {
+                    snapshot.put(e.getKey(), entry);
+                }
+                continue;
+            }
+            long[] id = sourceIds.get(entry.source);
+            if (id == null) {
+                File sourceFile = getSourceFile(entry.source);
+                id = sourceFile.isFile()
+                        ? new long[] {sourceFile.length(), sourceFile.lastModified()}
+                        : new long[0];
+                sourceIds.put(entry.source, id);
+            }
+            if (id.length != 0) {
+                snapshot.put(e.getKey(), new Entry(entry.source, entry.offset, true,
+                        id[0], id[1]));
+            }
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<Key, Entry> e : snapshot.entrySet()) {
+                Key key = e.getKey();
+                Entry entry = e.getValue();
+                out.writeLong(key.hash);
+                out.writeInt(key.length);
+                out.writeByte(key.typeNum);
+                out.writeByte(key.mode);
+                out.writeInt(entry.offset);
+                out.writeLong(entry.sourceLength);
+                out.writeLong(entry.sourceModified);
+                out.writeUTF(entry.source);
+            }
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException amnsex) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+}   // BlockDedupTable.java
@@ -6,12 +6,21 @@
 
 package cz.mp.zxs.tools.tap2bas;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
 /**
  * Třída pro práci s polem dat.
  * <p>
- * <em>Pozor, neprovádí kontroly na přetečení!</em> Např. 
- * v metodách: {@code read*()}, {@code skip()}, {@code back()}!
- * Hlídat ručně metodami {@linkplain #lastWasReaded()}, 
+ * Data jsou uložena v {@linkplain ByteBuffer}. Může jít o kopii pole
+ * ({@linkplain #ByteArrayData(byte[])}), nebo přímo o zadaný buffer bez
+ * kopírování ({@linkplain #ByteArrayData(java.nio.ByteBuffer)}),
+ * např. o soubor namapovaný do paměti ({@code MappedByteBuffer}).
+ * <p>
+ * <em>Pozor, {@code skip()}, {@code back()} a {@code setIdx()} pozici
+ * nekontrolují!</em> Čtení mimo data ({@code read*()}, {@code getSlice()})
+ * vyhodí {@code IndexOutOfBoundsException} s indexem a délkou dat
+ * (např. u useknutého TAP). Hlídat ručně metodami {@linkplain #lastWasReaded()}, 
  * {@linkplain #isLast()}, {@linkplain #getIdx()} a {@linkplain #length()}.
  * 
  * @author Martin Pokorný
@@ -19,7 +28,9 @@ package cz.mp.zxs.tools.tap2bas;
  */
 public class ByteArrayData {
     
-    protected byte[] data;
+    /** (indexuje se absolutně, od 0; {@code position} se nepoužívá) */
+    protected final ByteBuffer data;
+    protected final int length;
     protected int idx = 0;
 
     /**
@@ -27,9 +38,33 @@ public class ByteArrayData {
      * @param data
      */
     public ByteArrayData(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     *
+     * @param data
+     * @param offset
+     * @param length
+     */
+    public ByteArrayData(byte[] data, int offset, int length) {
         // kopie dat:
-        this.data = new byte[data.length];
-        System.arraycopy(data, 0, this.data, 0, data.length);
+        byte[] copy = new byte[length];
+        System.arraycopy(data, offset, copy, 0, length);
+        this.data = ByteBuffer.wrap(copy);
+        this.length = length;
+    }
+
+    /**
+     * Data se nekopírují; použije se pohled na obsah {@code buffer}
+     * od jeho {@code position} do {@code limit}.
+     * Pozice v {@code buffer} se nemění.
+     *
+     * @param buffer
+     */
+    public ByteArrayData(ByteBuffer buffer) {
+        this.data = buffer.slice();
+        this.length = this.data.limit();
     }
 
     public void begin() {
@@ -53,7 +88,11 @@ public class ByteArrayData {
     }
     
     public int read() {
-        return data[idx++] & 0xFF;
+        if (idx < 0 || idx >= length) {
+            // (ByteBuffer.get(int) hlásí chybu bez indexu)
+            throw outOfBounds(idx);
+        }
+        return data.get(idx++) & 0xFF;
     }
     
     public int readLsbMSB() {
@@ -69,21 +108,54 @@ public class ByteArrayData {
      * @return  "00" - "ff" (používá malá písmena)
      */
     public String readAndReturnAsHex() {
-        int val = read();
-        if (val <= 15) {
-            return "0" + Integer.toHexString(val);      // (protože toHexString ořezává nuly (0F -> F))
-        }
-        else {
-            return Integer.toHexString(val);
+        return HEX_STRINGS[read()];
+    }
+
+    /** "00" - "ff" pro všechny hodnoty bytu */
+    private static final String[] HEX_STRINGS = new String[256];
+    static {
+        for (int i=0; i<256; i++) {
+            // (toHexString ořezává nuly (0F -> F))
+            HEX_STRINGS[i] = (i <= 15 ? "0" : "") + Integer.toHexString(i);
         }
     }
     
     public byte[] readBlock(int length) {
+        checkRange(idx, length);
         byte[] result = new byte[length];
-        System.arraycopy(data, idx, result, 0, length);
+        ByteBuffer src = data.duplicate();
+        ((Buffer) src).position(idx);
+        src.get(result);
         idx += length;
         return result;
     }
+
+    /**
+     * Jako {@linkplain #readBlock(int)}, ale data se nekopírují.
+     *
+     * @param length
+     * @return  pohled jen pro čtení na {@code length} bytů od aktuální pozice
+     * @see #getSlice(int, int)
+     */
+    public ByteBuffer readSlice(int length) {
+        ByteBuffer result = getSlice(idx, length);
+        idx += length;
+        return result;
+    }
+
+    /**
+     *
+     * @param offset
+     * @param length
+     * @return  pohled jen pro čtení na zadanou část dat (data se nekopírují)
+     */
+    public ByteBuffer getSlice(int offset, int length) {
+        checkRange(offset, length);
+        ByteBuffer dup = data.asReadOnlyBuffer();
+        ((Buffer) dup).limit(offset + length);
+        ((Buffer) dup).position(offset);
+        return dup.slice();
+    }
     
     public String readBlockAndReturnAsString(int length) {
         return new String(readBlock(length));
@@ -97,20 +169,32 @@ public class ByteArrayData {
         return result;        
     }
     
+    private IndexOutOfBoundsException outOfBounds(int index) {
+        return new IndexOutOfBoundsException(
+                "Index " + index + " out of bounds for length " + length);
+    }
+
+    private void checkRange(int offset, int count) {
+        if (offset < 0 || count < 0 || offset > length - count) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset
+                    + " + " + count + ") out of bounds for length " + length);
+        }
+    }
+
     public boolean lastWasReaded() {
-        return idx >= data.length;
+        return idx >= length;
     }
     
     public boolean isLast() {
-        return idx == data.length-1;
+        return idx == length-1;
     }
     
     public int length() {
-        return data.length;
+        return length;
     }
     
     public boolean isEmpty() {
-        return data.length == 0;
+        return length == 0;
     }
 
 }   // ByteArrayData.java
@@ -0,0 +1,276 @@
+/*
+ * ConversionCache.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adresář s uloženými výstupy převodů ("cache"). Klíčem je hash obsahu TAP
+ * ({@linkplain TapBlockIndex#hash64(java.nio.ByteBuffer)}), jeho délka
+ * a volby, které mění výstup (režim, formát, {@code --recover}).
+ * Při shodě se výstup jen zkopíruje, TAP se vůbec nedekóduje.
+ * <p>
+ * Každý záznam je jeden soubor; zapisuje se do dočasného souboru, který se
+ * pak přejmenuje, takže záznam je vždy buď celý, nebo žádný. Jeden adresář
+ * tak mohou sdílet pracovní vlákna dávky i souběžně běžící procesy.
+ * <p>
+ * Velikost adresáře je omezená; při překročení se mažou nejdéle nepoužité
+ * záznamy (LRU podle času poslední změny souboru, který se při každém
+ * použití záznamu aktualizuje).
+ *
+ * @author Martin Pokorný
+ * @see Tap2basBatch#setCache(cz.mp.zxs.tools.tap2bas.ConversionCache)
+ * @see Tap2basCli
+ */
+public class ConversionCache {
+    private static final Logger log = LoggerFactory.getLogger(ConversionCache.class);
+
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    private static final String ENTRY_EXT = ".out";
+    private static final String TMP_EXT = ".tmp";
+    /** po jaké době se smaže dočasný soubor (např. po pádu procesu) */
+    private static final long STALE_TMP_MS = 60L * 60 * 1000;
+    /** při mazání se velikost sníží pod tuto část limitu */
+    private static final int EVICT_TO_PERCENT = 90;
+
+    private final File dir;
+    private final long maxSize;
+    /** odhad velikosti záznamů; jiné procesy ho mohou změnit */
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     *
+     * @param dir  adresář (případně se vytvoří)
+     * @param maxSize  max. velikost všech záznamů v bytech
+     * @throws IOException  pokud adresář nelze vytvořit
+     */
+    public ConversionCache(File dir, long maxSize) throws IOException {
+        if (dir == null) {
+            throw new IllegalArgumentException("dir=null");
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        if (dir.mkdirs()) {
+            log.info("Created cache directory: " + dir);
+        }
+        if (!dir.isDirectory()) {
+            throw new IOException("not a directory: " + dir);
+        }
+        this.dir = dir;
+        this.maxSize = maxSize;
+        long total = 0;
+        for (File entry : listEntries()) {
+            total += entry.length();
+        }
+        size.set(total);
+        log.info("cache " + dir + ": " + total + " B");
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     *
+     * @return  (odhad) velikosti všech záznamů
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Klíč záznamu, např. {@code 3f1c...e0_2943_vars.json};
+     * je zároveň jménem souboru (bez přípony).
+     *
+     * @param tapContent  obsah TAP (od {@code position} do {@code limit};
+     *      pozice se nemění)
+     * @param onlyBasic
+     * @param analyzeVars
+     * @param outputFormat
+     * @param recover
+     * @return
+     */
+    public static String key(ByteBuffer tapContent, boolean onlyBasic,
+            boolean analyzeVars, OutputFormat outputFormat, boolean recover) {
+        if (outputFormat == null) {
+            throw new IllegalArgumentException("outputFormat=null");
+        }
+        String mode = onlyBasic ? "basic" : (analyzeVars ? "vars" : "all");
+        return String.format("%016x_%d_%s%s.%s",
+                TapBlockIndex.hash64(tapContent), tapContent.remaining(),
+                mode, recover ? "_recover" : "",
+                outputFormat.name().toLowerCase());
+    }
+
+    private File getEntryFile(String key) {
+        return new File(dir, key + ENTRY_EXT);
+    }
+
+    /**
+     * Zkopíruje uložený výstup do souboru.
+     *
+     * @param key
+     * @param outFile
+     * @return  {@code true}, pokud záznam existuje (a byl zkopírován)
+     * @throws IOException
+     */
+    public boolean copyTo(String key, File outFile) throws IOException {
+        File entry = getEntryFile(key);
+        try {
+            Files.copy(entry.toPath(), outFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException nsfex) {
+            // (nebo byl právě smazán jiným vláknem či procesem)
+            misses.incrementAndGet();
+            return false;
+        }
+        touch(entry);
+        return true;
+    }
+
+    private void touch(File entry) {
+        hits.incrementAndGet();
+        if (!entry.setLastModified(System.currentTimeMillis())) {
+            log.debug("cannot set last modified: " + entry);
+        }
+    }
+
+    /**
+     * Uloží výstup převodu. Pokud je pak překročena max. velikost,
+     * smažou se nejdéle nepoužité záznamy.
+     *
+     * @param key
+     * @param outFile  hotový (uzavřený) výstup
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public void put(String key, File outFile) throws FileNotFoundException, IOException {
+        if (!outFile.isFile()) {
+            throw new FileNotFoundException(outFile.getAbsolutePath());
+        }
+        long length = outFile.length();
+        if (length > maxSize) {
+            log.info("not cached (too big): " + outFile);
+            return;
+        }
+        File entry = getEntryFile(key);
+        File tmp = File.createTempFile("entry_" + key, TMP_EXT, dir);
+        try {
+            Files.copy(outFile.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            long previous = entry.length();     // (0, pokud neexistuje)
+            try {
+                Files.move(tmp.toPath(), entry.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnsex) {
+                Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            size.addAndGet(length - previous);
+        } finally {
+            if (tmp.exists() && !tmp.delete()) {
+                log.warn("cannot delete: " + tmp);
+            }
+        }
+        if (size.get() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Smaže nejdéle nepoužité záznamy, dokud velikost neklesne
+     * pod {@value #EVICT_TO_PERCENT} % limitu. Smaže i staré dočasné soubory.
+     */
+    synchronized void evict() {
+        if (size.get() <= maxSize) {
+            return;     // (mezitím už smazalo jiné vlákno)
+        }
+        List<File> entries = listEntries();
+        final long[] lastModified = new long[entries.size()];
+        Integer[] order = new Integer[entries.size()];
+        long total = 0;
+        for (int i=0; i<order.length; i++) {
+            File entry = entries.get(i);
+            order[i] = i;
+            // (čas se načte jen jednou; při řazení by se mohl měnit)
+            lastModified[i] = entry.lastModified();
+            total += entry.length();
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Long.compare(lastModified[o1], lastModified[o2]);
+            }
+        });
+        long limit = maxSize / 100 * EVICT_TO_PERCENT;
+        int deleted = 0;
+        for (int i=0; i<order.length && total > limit; i++) {
+            File entry = entries.get(order[i]);
+            long length = entry.length();
+            if (entry.delete()) {
+                total -= length;
+                deleted++;
+            }
+        }
+        size.set(total);
+        log.info("cache evicted: " + deleted + " entries; size = " + total + " B");
+
+        long staleTime = System.currentTimeMillis() - STALE_TMP_MS;
+        File[] tmpFiles = dir.listFiles();
+        if (tmpFiles != null) {
+            for (File file : tmpFiles) {
+                if (file.getName().endsWith(TMP_EXT) && file.lastModified() < staleTime
+                        && !file.delete()) {
+                    log.warn("cannot delete: " + file);
+                }
+            }
+        }
+    }
+
+    private List<File> listEntries() {
+        List<File> entries = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(ENTRY_EXT) && file.isFile()) {
+                    entries.add(file);
+                }
+            }
+        }
+        return entries;
+    }
+
+}   // ConversionCache.java
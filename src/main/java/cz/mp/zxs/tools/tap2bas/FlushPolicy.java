@@ -0,0 +1,43 @@
+/*
+ * FlushPolicy.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+
+/**
+ * Kdy se má výstup z {@linkplain AsciiOutput} odeslat do souboru/proudu.
+ * Bez ohledu na zvolenou hodnotu se výstup odešle vždy, když se zaplní
+ * buffer, a na konci souboru.
+ *
+ * @author Martin Pokorný
+ * @see AsciiOutput
+ */
+public enum FlushPolicy {
+    /** Po každém bloku TAP. */
+    BLOCK,
+    /** Až na konci celého souboru (nebo při zaplnění bufferu). */
+    FILE,
+    /** Vždy, když je v bufferu alespoň zadaný počet bytů. */
+    SIZE,
+    ;
+
+    /**
+     *
+     * @param name  {@code block}, {@code file}, {@code size}
+     *      (nerozlišují se velká a malá písmena)
+     * @return  {@code FlushPolicy} nebo {@code null}, pokud jméno
+     *      neodpovídá žádné hodnotě
+     */
+    public static FlushPolicy getByName(String name) {
+        for (FlushPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(name)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+}   // FlushPolicy
@@ -0,0 +1,169 @@
+/*
+ * JfrTapEvents.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Události pro Java Flight Recorder. Jediná třída, která používá
+ * {@code jdk.jfr}; načítá se jen přes {@linkplain TapEvents#create()}.
+ * <p>
+ * Události mají kategorii {@code tap2bas} a jména
+ * {@value #FILE_EVENT}, {@value #BLOCK_EVENT}, {@value #VARS_EVENT}.
+ * Pokud záznam JFR neběží nebo je událost v konfiguraci vypnutá,
+ * {@code begin}/{@code commit} nic nedělají. Zásobník se neukládá
+ * (události jsou pro každý blok; místo je jasné z typu události).
+ *
+ * @author Martin Pokorný
+ * @see TapEvents
+ */
+final class JfrTapEvents extends TapEvents {
+
+    static final String FILE_EVENT = "cz.mp.zxs.tools.tap2bas.File";
+    static final String BLOCK_EVENT = "cz.mp.zxs.tools.tap2bas.Block";
+    static final String VARS_EVENT = "cz.mp.zxs.tools.tap2bas.Vars";
+
+    @Name(FILE_EVENT)
+    @Label("TAP File")
+    @Description("Conversion of one TAP file")
+    @Category("tap2bas")
+    @StackTrace(false)
+    static final class FileEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Block Pairs")
+        int blocks;
+        @Label("Skipped Ranges")
+        int skipped;
+        @Label("OK")
+        boolean ok;
+    }
+
+    @Name(BLOCK_EVENT)
+    @Label("TAP Block")
+    @Description("Header and data block pair")
+    @Category("tap2bas")
+    @StackTrace(false)
+    static final class BlockEvent extends Event {
+        @Label("Offset")
+        int offset;
+        @Label("Type")
+        String type;
+        @Label("Data Length")
+        @DataAmount
+        int length;
+        @Label("Duplicate")
+        boolean duplicate;
+    }
+
+    @Name(VARS_EVENT)
+    @Label("VARS Table")
+    @Description("Analysis of the table of variables of a BASIC block")
+    @Category("tap2bas")
+    @StackTrace(false)
+    static final class VarsEvent extends Event {
+        @Label("Offset")
+        int offset;
+        @Label("Length")
+        @DataAmount
+        int length;
+        @Label("Variables")
+        int variables;
+        @Label("Valid")
+        @Description("false = analysis aborted, probably machine code")
+        boolean valid;
+    }
+
+    private FileEvent fileEvent;
+    private BlockEvent blockEvent;
+    private VarsEvent varsEvent;
+
+    /** */
+    JfrTapEvents() {
+    }
+
+    @Override
+    void fileStart() {
+        fileEvent = new FileEvent();
+        fileEvent.begin();
+    }
+
+    @Override
+    void fileEnd(String source, long bytes, int blocks, int skipped, boolean ok) {
+        FileEvent event = fileEvent;
+        fileEvent = null;
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.bytes = bytes;
+            event.blocks = blocks;
+            event.skipped = skipped;
+            event.ok = ok;
+            event.commit();
+        }
+    }
+
+    @Override
+    void blockStart() {
+        blockEvent = new BlockEvent();
+        blockEvent.begin();
+    }
+
+    @Override
+    void blockEnd(int offset, TapBlockType type, int length, boolean duplicate) {
+        BlockEvent event = blockEvent;
+        blockEvent = null;
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.offset = offset;
+            event.type = type.name();
+            event.length = length;
+            event.duplicate = duplicate;
+            event.commit();
+        }
+    }
+
+    @Override
+    void varsStart() {
+        varsEvent = new VarsEvent();
+        varsEvent.begin();
+    }
+
+    @Override
+    void varsEnd(int offset, int length, int variables, boolean valid) {
+        VarsEvent event = varsEvent;
+        varsEvent = null;
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.offset = offset;
+            event.length = length;
+            event.variables = variables;
+            event.valid = valid;
+            event.commit();
+        }
+    }
+
+}   // JfrTapEvents.java
@@ -0,0 +1,484 @@
+/*
+ * JsonTapVisitor.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.IOException;
+
+/**
+ * Výstup ve formátu JSON: jeden záznam (objekt) na blok, řádku BASICu
+ * a proměnnou. Buď jako jedno pole JSON, nebo jako NDJSON (jeden záznam
+ * na řádku). Zapisuje se postupně přímo do {@linkplain AsciiOutput},
+ * bez vytváření stromu dokumentu.
+ * <p>
+ * Např. (NDJSON): <pre><tt>
+ * {"type":"header","offset":0,"blockType":"BASIC","name":"","dataLength":224,"p1":32768,"p2":224}
+ * {"type":"data","offset":21,"blockType":"BASIC","length":224}
+ * {"type":"line","offset":24,"line":11,"text":"DATA BIN 00011000","numbers":[24]}
+ * {"type":"var","kind":"number","offset":260,"name":"beep","value":7}
+ * {"type":"var","kind":"numericArray","name":"a","dimensions":[2,3],"values":[1,2,3,4,5,6]}
+ * </tt></pre>
+ * Typy záznamů: {@code header}, {@code data} (blok dat; {@code blockType}
+ * z hlavičky), {@code line}, {@code vars} (začátek tabulky proměnných),
+ * {@code var} ({@code kind}: {@code string}, {@code number}, {@code for},
+ * {@code numericArray}, {@code stringArray}), {@code error}
+ * {@code skipped} (přeskočený poškozený úsek) a {@code duplicate} (blok dat
+ * stejný jako {@code sourceOffset} v TAP {@code source}).
+ * {@code offset} je pozice v TAP (u bloků začátek jejich 2B délky,
+ * u řádky začátek čísla řádky, u proměnné její první byte; u polí se
+ * neuvádí).
+ * Čísla jsou hodnoty z {@linkplain TapByteArrayData#parseBasicNumber(int, int, int, int, int)};
+ * číslo, které nelze převést, je {@code null}.
+ *
+ * @author Martin Pokorný
+ * @see OutputFormat
+ */
+public class JsonTapVisitor implements TapVisitor {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** Před řádkou BASICu je 2B číslo řádky a 2B délka. */
+    private static final int LINE_HEADER_LEN = 4;
+
+    private final AsciiOutput out;
+    private final boolean ndjson;
+
+    private int recordCount = 0;
+    /** Záznam je rozepsaný (jen pokud analýza skončila uprostřed záznamu). */
+    private boolean recordOpen = false;
+    /** Záznam pole je rozepsaný (čeká na {@code arrayEnd}). */
+    private boolean arrayOpen = false;
+    private boolean dimensionsOpen = false;
+    private boolean valuesOpen = false;
+    private int dimensionCount = 0;
+
+    /** Pro text řádky; používá se opakovaně. */
+    private final StringBuilder sb = new StringBuilder(256);
+
+    /**
+     *
+     * @param out
+     * @param ndjson  {@code true} = jeden záznam na řádku,
+     *      {@code false} = jedno pole JSON
+     */
+    public JsonTapVisitor(AsciiOutput out, boolean ndjson) {
+        if (out == null) {
+            throw new IllegalArgumentException("out=null");
+        }
+        this.out = out;
+        this.ndjson = ndjson;
+    }
+
+    @Override
+    public void tapStart() throws IOException {
+        recordCount = 0;
+        arrayOpen = false;
+        if (!ndjson) {
+            out.write('[');
+        }
+    }
+
+    @Override
+    public void tapEnd() throws IOException {
+        closeRecord();
+        if (!ndjson) {
+            out.write("\n]\n");
+        }
+    }
+
+    private void beginRecord(String type) throws IOException {
+        if (!ndjson) {
+            out.write(recordCount == 0 ? "\n" : ",\n");
+        }
+        recordCount++;
+        recordOpen = true;
+        out.write("{\"type\":\"");
+        out.write(type);
+        out.write('"');
+    }
+
+    private void endRecord() throws IOException {
+        recordOpen = false;
+        out.write('}');
+        if (ndjson) {
+            out.write('\n');
+        }
+    }
+
+    private void writeName(String name) throws IOException {
+        out.write(",\"");
+        out.write(name);
+        out.write("\":");
+    }
+
+    private void writeField(String name, int value) throws IOException {
+        writeName(name);
+        out.writeInt(value);
+    }
+
+    private void writeField(String name, CharSequence value) throws IOException {
+        writeName(name);
+        writeString(value);
+    }
+
+    private void writeField(String name, char value) throws IOException {
+        writeName(name);
+        out.write('"');
+        out.write(value);
+        out.write('"');
+    }
+
+    /**
+     * Řetězec JSON; znaky mimo tisknutelné ASCII jako {@code \}{@code uXXXX}.
+     *
+     * @param text
+     * @throws IOException
+     */
+    private void writeString(CharSequence text) throws IOException {
+        out.write('"');
+        for (int i=0; i<text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                out.write('\\');
+                out.write(ch);
+            }
+            else if (ch < 0x20 || ch >= 0x7F) {
+                out.write("\\u");
+                out.write(HEX_DIGITS[ch >> 12 & 0xF]);
+                out.write(HEX_DIGITS[ch >> 8 & 0xF]);
+                out.write(HEX_DIGITS[ch >> 4 & 0xF]);
+                out.write(HEX_DIGITS[ch & 0xF]);
+            }
+            else {
+                out.write(ch);
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     *
+     * @param name
+     * @param data  na začátku 5B čísla
+     * @throws IOException
+     */
+    private void writeNumberField(String name, TapByteArrayData data) throws IOException {
+        writeName(name);
+        writeNumber(data);
+    }
+
+    /**
+     *
+     * @param data  na začátku 5B čísla
+     * @throws IOException
+     */
+    private void writeNumber(TapByteArrayData data) throws IOException {
+        int numberIdx = data.getIdx();
+        if (numberIdx + TapByteArrayData.NUMBER_REPRESENTATION_LEN > data.length()) {
+            out.write("null");      // (useknutý TAP; záznam zůstane platný)
+            return;
+        }
+        try {
+            data.readBlockAndWriteBasicNumber(out);
+        } catch (IllegalArgumentException ex) {
+            out.write("null");
+            data.setIdx(numberIdx + TapByteArrayData.NUMBER_REPRESENTATION_LEN);
+        }
+    }
+
+    @Override
+    public void invalidHeader(int offset, int blockLength) throws IOException {
+        beginRecord("error");
+        writeField("offset", offset);
+        writeField("message", "Invalid header size");
+        writeField("blockLength", blockLength);
+        endRecord();
+    }
+
+    @Override
+    public void header(int offset, TapBlockType type, String name,
+            int dataLength, int p1, int p2) throws IOException {
+        beginRecord("header");
+        writeField("offset", offset);
+        writeField("blockType", type.name());
+        writeField("name", name);
+        writeField("dataLength", dataLength);
+        writeField("p1", p1);
+        writeField("p2", p2);
+        endRecord();
+    }
+
+    @Override
+    public void basicStart(int offset, int dataLength) throws IOException {
+        beginRecord("data");
+        writeField("offset", offset);
+        writeField("blockType", TapBlockType.BASIC.name());
+        writeField("length", dataLength);
+        endRecord();
+    }
+
+    @Override
+    public void basicLine(int lineNum, TapByteArrayData data, int length)
+            throws IOException, InvalidTapException {
+        int lineIdx = data.getIdx();
+        int lineOffset = data.getTapOffset() - LINE_HEADER_LEN;
+        sb.setLength(0);
+        data.readBlockAndAppendEscapedString(length, sb);
+        int textLen = sb.length();
+        if (textLen > 0 && sb.charAt(textLen - 1) == '\r') {
+            sb.setLength(textLen - 1);     // (0x0D na konci řádky)
+        }
+
+        beginRecord("line");
+        writeField("offset", lineOffset);
+        writeField("line", lineNum);
+        writeField("text", sb);
+        // čísla ve vnitřní reprezentaci (0x0E + 5B)
+        data.setIdx(lineIdx);
+        int count = 0;
+        while (data.skipToNextBasicNumber(lineIdx + length)) {
+            if (count++ == 0) {
+                writeName("numbers");
+                out.write('[');
+            }
+            else {
+                out.write(',');
+            }
+            int numberIdx = data.getIdx();
+            try {
+                data.readBlockAndWriteBasicNumber(out);
+            } catch (IllegalArgumentException ex) {
+                out.write("null");  // (text výpisu čísla nepotřebuje)
+            }
+            data.setIdx(numberIdx + TapByteArrayData.NUMBER_REPRESENTATION_LEN);
+        }
+        if (count > 0) {
+            out.write(']');
+        }
+        endRecord();
+    }
+
+    @Override
+    public boolean isEmbeddedNumbersWanted() {
+        return false;   // (čte si je basicLine)
+    }
+
+    @Override
+    public void embeddedNumber(int lineNum, TapByteArrayData data) throws IOException {
+    }
+
+    @Override
+    public void varsStart(TapByteArrayData data, int length) throws IOException {
+        beginRecord("vars");
+        writeField("offset", data.getTapOffset());
+        writeField("length", length);
+        endRecord();
+    }
+
+    private void beginVariable(String kind, int offset) throws IOException {
+        beginRecord("var");
+        writeField("kind", kind);
+        writeField("offset", offset);
+    }
+
+    @Override
+    public void stringVariable(char name, TapByteArrayData data, int length)
+            throws IOException, InvalidTapException {
+        int offset = data.getTapOffset() - 3;    // (1B jméno, 2B délka)
+        sb.setLength(0);
+        data.readBlockAndAppendEscapedString(length, sb);
+        beginVariable("string", offset);
+        writeField("name", name);
+        writeField("value", sb);
+        endRecord();
+    }
+
+    @Override
+    public void numberVariable(String name, TapByteArrayData data) throws IOException {
+        // (každý znak jména je jeden byte)
+        beginVariable("number", data.getTapOffset() - name.length());
+        writeField("name", name);
+        writeNumberField("value", data);
+        endRecord();
+    }
+
+    @Override
+    public void forLoopVariable(char name, TapByteArrayData data,
+            int lineNumForNext, int cmdNumAfterNext) throws IOException {
+        beginVariable("for", data.getTapOffset() - 1);
+        writeField("name", name);
+        writeNumberField("value", data);
+        writeNumberField("limit", data);
+        writeNumberField("step", data);
+        writeField("line", lineNumForNext);
+        writeField("statement", cmdNumAfterNext);
+        endRecord();
+    }
+
+    private void beginArray(String kind, char name) throws IOException {
+        beginRecord("var");
+        writeField("kind", kind);
+        writeField("name", name);
+        arrayOpen = true;
+        dimensionsOpen = false;
+        valuesOpen = false;
+    }
+
+    @Override
+    public void numericArrayStart(char name) throws IOException {
+        beginArray("numericArray", name);
+    }
+
+    @Override
+    public void stringArrayStart(char name) throws IOException {
+        beginArray("stringArray", name);
+    }
+
+    @Override
+    public void arrayDimensions(int count) throws IOException {
+        dimensionCount = count;
+        writeName("dimensions");
+        out.write('[');
+        dimensionsOpen = true;
+        closeDimensions(0);
+    }
+
+    /**
+     *
+     * @param written  počet již zapsaných rozměrů
+     * @throws IOException
+     */
+    private void closeDimensions(int written) throws IOException {
+        if (dimensionsOpen && written >= dimensionCount) {
+            out.write(']');
+            dimensionsOpen = false;
+        }
+    }
+
+    @Override
+    public void arrayDimension(int index, int size) throws IOException {
+        if (index > 0) {
+            out.write(',');
+        }
+        out.writeInt(size);
+        closeDimensions(index + 1);
+    }
+
+    @Override
+    public void arrayValues() throws IOException {
+        writeName("values");
+        out.write('[');
+        valuesOpen = true;
+    }
+
+    @Override
+    public void numericArrayElement(int index, TapByteArrayData data) throws IOException {
+        if (index > 0) {
+            out.write(',');
+        }
+        writeNumber(data);
+    }
+
+    @Override
+    public void stringArrayItem(int index, TapByteArrayData data, int length)
+            throws IOException, InvalidTapException {
+        sb.setLength(0);
+        data.readBlockAndAppendEscapedString(length, sb);
+        if (index > 0) {
+            out.write(',');
+        }
+        writeString(sb);
+    }
+
+    @Override
+    public void arrayEnd() throws IOException {
+        closeArray();
+    }
+
+    /**
+     * Dokončí rozepsaný záznam pole (i když pole nešlo celé přečíst).
+     *
+     * @throws IOException
+     */
+    private void closeArray() throws IOException {
+        if (!arrayOpen) {
+            return;
+        }
+        if (dimensionsOpen) {
+            out.write(']');
+            dimensionsOpen = false;
+        }
+        if (valuesOpen) {
+            out.write(']');
+            valuesOpen = false;
+        }
+        arrayOpen = false;
+        endRecord();
+    }
+
+    /**
+     * Dokončí případný rozepsaný záznam, aby výstup zůstal platný JSON.
+     *
+     * @throws IOException
+     */
+    private void closeRecord() throws IOException {
+        closeArray();
+        if (recordOpen) {
+            endRecord();
+        }
+    }
+
+    @Override
+    public void skipped(int offset, int length, String reason) throws IOException {
+        closeRecord();
+        beginRecord("skipped");
+        writeField("offset", offset);
+        writeField("length", length);
+        writeField("message", reason);
+        endRecord();
+        out.endOfBlock();
+    }
+
+    @Override
+    public void duplicateBlock(int offset, TapBlockType type, int length,
+            String source, int sourceOffset) throws IOException {
+        beginRecord("duplicate");
+        writeField("offset", offset);
+        writeField("blockType", type.name());
+        writeField("length", length);
+        writeField("source", source);
+        writeField("sourceOffset", sourceOffset);
+        endRecord();
+        out.endOfBlock();
+    }
+
+    @Override
+    public void invalidVars(int offset) throws IOException {
+        closeArray();
+        beginRecord("error");
+        writeField("offset", offset);
+        writeField("message", "Invalid table of variables");
+        endRecord();
+    }
+
+    @Override
+    public void basicEnd() throws IOException {
+        out.endOfBlock();
+    }
+
+    @Override
+    public void binaryBlock(int offset, TapBlockType type, TapByteArrayData data,
+            int length) throws IOException {
+        beginRecord("data");
+        writeField("offset", offset);
+        writeField("blockType", type.name());
+        writeField("length", length);
+        endRecord();
+        out.endOfBlock();
+    }
+
+}   // JsonTapVisitor.java
@@ -10,16 +10,18 @@ import org.slf4j.LoggerFactory;
  * @author Martin Pokorný
  */
 public class Main {
-    private static final Logger log;
-    static {
-        if (System.getProperty("java.util.logging.config.file") == null) {
-            System.setProperty("java.util.logging.config.file", "logging.properties");
-        }
-        log = LoggerFactory.getLogger(Main.class);
-    }    
 
     // -------------------------------------------------------------------------
     public static void main(String[] args) {
+        if (Tap2basClient.isClientMode(args)) {
+            // (klient bez logování a commons-cli, kvůli rychlému startu)
+            Tap2basClient.main(args);
+            return;
+        }
+        if (System.getProperty("java.util.logging.config.file") == null) {
+            System.setProperty("java.util.logging.config.file", "logging.properties");
+        }
+        Logger log = LoggerFactory.getLogger(Main.class);
         log.info("version: " + VERSION);
         
         new Tap2basCli().executeWithArgs(args);
@@ -0,0 +1,56 @@
+/*
+ * OutputFormat.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+
+/**
+ * Formát výstupu {@linkplain Tap2bas}.
+ *
+ * @author Martin Pokorný
+ * @see Tap2bas#setOutputFormat(cz.mp.zxs.tools.tap2bas.OutputFormat)
+ */
+public enum OutputFormat {
+    /** Text pro člověka, viz {@linkplain TextTapVisitor}. */
+    TEXT(null),
+    /** Jedno pole JSON se záznamy, viz {@linkplain JsonTapVisitor}. */
+    JSON(".json"),
+    /** Jeden záznam JSON na řádku ("newline delimited JSON"). */
+    NDJSON(".ndjson"),
+    ;
+
+    private final String extension;
+
+    private OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     *
+     * @return  přípona výstupního souboru, nebo {@code null} pro text
+     *      (přípona pak závisí na tom, co se vypisuje)
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     *
+     * @param name  {@code text}, {@code json}, {@code ndjson}
+     *      (nerozlišují se velká a malá písmena)
+     * @return  {@code OutputFormat} nebo {@code null}, pokud jméno
+     *      neodpovídá žádné hodnotě
+     */
+    public static OutputFormat getByName(String name) {
+        for (OutputFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}   // OutputFormat
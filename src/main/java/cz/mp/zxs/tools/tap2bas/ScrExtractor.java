@@ -0,0 +1,295 @@
+/*
+ * ScrExtractor.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extrakce obrázků {@code SCREEN$} z TAP do souborů {@code .scr}.
+ * <p>
+ * Obrázek je blok binárních dat ({@linkplain TapBlockType#BINARY_DATA})
+ * o délce přesně {@linkplain Tap2bas#SCREEN_LENGTH} B, který se podle
+ * hlavičky ({@code p1}) nahrává na adresu {@linkplain Tap2bas#SCREEN_ADDRESS}.
+ * Z TAP se čtou jen délky bloků a hlavičky; data obrázku se do souboru
+ * přenesou přímo z kanálu TAP souboru ({@code FileChannel.transferTo}),
+ * bez kopírování přes haldu. TAP rozbalený z archivu ({@linkplain TapArchive})
+ * se zpracuje přímo z paměti.
+ *
+ * @author Martin Pokorný
+ * @see Tap2basCli
+ * @see Tap2basBatch#setExtractScrs(boolean)
+ */
+public final class ScrExtractor {
+    private static final Logger log = LoggerFactory.getLogger(ScrExtractor.class);
+
+    public static final String SCR_EXT = ".scr";
+
+    private static final int LEN_SIZE = 2;
+    /** blok s hlavičkou a 2B délka a flag dalšího bloku */
+    private static final int HEADER_READ_SIZE =
+            LEN_SIZE + Tap2bas.DEFAULT_HEADER_SIZE + LEN_SIZE + 1;
+    /** flag + obrázek + parita */
+    private static final int SCREEN_BLOCK_LEN = Tap2bas.SCREEN_LENGTH + 2;
+
+    /**
+     * Obrázek nalezený v TAP.
+     */
+    public static final class Screen {
+        private final String name;
+        private final long offset;
+
+        Screen(String name, long offset) {
+            this.name = name;
+            this.offset = offset;
+        }
+
+        /**
+         *
+         * @return  jméno z hlavičky (bez mezer na konci)
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         *
+         * @return  pozice dat obrázku (za flagem) v TAP
+         */
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+
+    private ScrExtractor() {
+    }
+
+    /**
+     * Najde obrázky v TAP. Čte jen délky bloků a hlavičky.
+     *
+     * @param channel  TAP soubor
+     * @return
+     * @throws IOException
+     */
+    public static List<Screen> findScreens(FileChannel channel) throws IOException {
+        return findScreens(channel, null, channel.size());
+    }
+
+    /**
+     * Najde obrázky v TAP, který je už v paměti (např. rozbalený z archivu).
+     *
+     * @param content  obsah TAP (od {@code position} do {@code limit});
+     *      pozice obrázků jsou relativní k {@code position}
+     * @return
+     * @see TapArchive
+     */
+    public static List<Screen> findScreens(ByteBuffer content) {
+        try {
+            return findScreens(null, content, content.remaining());
+        } catch (IOException ioex) {
+            // (z paměti se čte jen v rámci velikosti)
+            throw new IllegalStateException(ioex);
+        }
+    }
+
+    /**
+     *
+     * @param channel  TAP soubor, nebo {@code null}
+     * @param content  obsah TAP, pokud {@code channel} je {@code null}
+     * @param size
+     * @return
+     * @throws IOException
+     */
+    private static List<Screen> findScreens(FileChannel channel, ByteBuffer content,
+            long size) throws IOException {
+        List<Screen> screens = new ArrayList<>();
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_READ_SIZE);
+        long pos = 0;
+        while (pos + LEN_SIZE <= size) {
+            ((Buffer) buf).clear();
+            ((Buffer) buf).limit((int) Math.min(HEADER_READ_SIZE, size - pos));
+            if (channel != null) {
+                readFully(channel, buf, pos);
+            }
+            else {
+                readFully(content, buf, (int) pos);
+            }
+            int len = lsbMSB(buf, 0);
+            if (len == Tap2bas.DEFAULT_HEADER_SIZE && buf.limit() == HEADER_READ_SIZE) {
+                // flag, typ, 10B jméno, délka dat, p1, p2, parita
+                int p = LEN_SIZE + 2 + Tap2bas.NAME_IN_HEADER_LEN;
+                int dataBlockIdx = LEN_SIZE + Tap2bas.DEFAULT_HEADER_SIZE;
+                if (buf.get(LEN_SIZE) == Tap2bas.FLAG_HEADER
+                        && buf.get(LEN_SIZE + 1) == TapBlockType.BINARY_DATA.getNum()
+                        && lsbMSB(buf, p) == Tap2bas.SCREEN_LENGTH
+                        && lsbMSB(buf, p + 2) == Tap2bas.SCREEN_ADDRESS
+                        && lsbMSB(buf, dataBlockIdx) == SCREEN_BLOCK_LEN
+                        && (buf.get(dataBlockIdx + LEN_SIZE) & 0xFF) == Tap2bas.FLAG_DATA) {
+                    long screenOffset = pos + dataBlockIdx + LEN_SIZE + 1;
+                    if (screenOffset + Tap2bas.SCREEN_LENGTH <= size) {
+                        char[] name = new char[Tap2bas.NAME_IN_HEADER_LEN];
+                        for (int i=0; i<name.length; i++) {
+                            name[i] = (char) (buf.get(LEN_SIZE + 2 + i) & 0xFF);
+                        }
+                        screens.add(new Screen(new String(name).trim(), screenOffset));
+                    }
+                    pos += dataBlockIdx + LEN_SIZE + SCREEN_BLOCK_LEN;
+                    continue;
+                }
+            }
+            pos += LEN_SIZE + len;
+        }
+        return screens;
+    }
+
+    /**
+     * Zapíše všechny obrázky z TAP do souborů {@code .scr}.
+     * Jediný obrázek se zapíše do {@code outFile}, více obrázků do souborů
+     * očíslovaných od 1: {@code name_1.scr}, {@code name_2.scr} ...
+     * Adresář pro výstup se případně vytvoří.
+     *
+     * @param tapFile
+     * @param outFile  např. {@code gold.scr}
+     * @return  zapsané soubory (prázdný seznam, pokud TAP neobsahuje
+     *      žádný obrázek)
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public static List<File> extract(File tapFile, File outFile)
+            throws FileNotFoundException, IOException {
+        if (!tapFile.exists() || tapFile.isDirectory()) {
+            throw new FileNotFoundException(tapFile.getAbsolutePath());
+        }
+        List<File> written = new ArrayList<>();
+        try (FileChannel in = FileChannel.open(tapFile.toPath(), StandardOpenOption.READ)) {
+            List<Screen> screens = findScreens(in);
+            File parent = outFile.getAbsoluteFile().getParentFile();
+            if (! screens.isEmpty() && parent.mkdirs()) {
+                log.info("Created directory for: " + outFile);
+            }
+            for (int i=0; i<screens.size(); i++) {
+                File scrFile = screens.size() == 1
+                        ? outFile : getNumberedFile(outFile, i + 1);
+                Screen screen = screens.get(i);
+                writeScreen(in, screen.getOffset(), scrFile);
+                log.info("SCREEN$ \"" + screen.getName() + "\" -> " + scrFile);
+                written.add(scrFile);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Jako {@linkplain #extract(java.io.File, java.io.File)}, ale pro TAP,
+     * který je už v paměti (např. rozbalený z archivu).
+     *
+     * @param content  obsah TAP (od {@code position} do {@code limit})
+     * @param outFile  např. {@code gold.scr}
+     * @return  zapsané soubory
+     * @throws IOException
+     * @see TapArchive
+     */
+    public static List<File> extract(ByteBuffer content, File outFile)
+            throws IOException {
+        List<File> written = new ArrayList<>();
+        List<Screen> screens = findScreens(content);
+        File parent = outFile.getAbsoluteFile().getParentFile();
+        if (! screens.isEmpty() && parent.mkdirs()) {
+            log.info("Created directory for: " + outFile);
+        }
+        for (int i=0; i<screens.size(); i++) {
+            File scrFile = screens.size() == 1
+                    ? outFile : getNumberedFile(outFile, i + 1);
+            Screen screen = screens.get(i);
+            ByteBuffer data = content.duplicate();
+            ((Buffer) data).position(content.position() + (int) screen.getOffset());
+            ((Buffer) data).limit(data.position() + Tap2bas.SCREEN_LENGTH);
+            try (FileChannel out = FileChannel.open(scrFile.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (data.hasRemaining()) {
+                    out.write(data);
+                }
+            }
+            log.info("SCREEN$ \"" + screen.getName() + "\" -> " + scrFile);
+            written.add(scrFile);
+        }
+        return written;
+    }
+
+    /**
+     *
+     * @param outFile  např. {@code gold.scr}
+     * @param num
+     * @return  např. {@code gold_2.scr}
+     */
+    static File getNumberedFile(File outFile, int num) {
+        String name = outFile.getName();
+        int dotIdx = name.lastIndexOf('.');
+        String numbered = dotIdx > 0
+                ? name.substring(0, dotIdx) + "_" + num + name.substring(dotIdx)
+                : name + "_" + num;
+        return new File(outFile.getParentFile(), numbered);
+    }
+
+    /**
+     * Přenese data obrázku přímo z kanálu TAP do souboru.
+     *
+     * @param in
+     * @param offset
+     * @param scrFile
+     * @throws IOException
+     */
+    private static void writeScreen(FileChannel in, long offset, File scrFile)
+            throws IOException {
+        try (FileChannel out = FileChannel.open(scrFile.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long done = 0;
+            while (done < Tap2bas.SCREEN_LENGTH) {
+                long n = in.transferTo(offset + done, Tap2bas.SCREEN_LENGTH - done, out);
+                if (n <= 0) {
+                    throw new EOFException("unexpected end of file; " + scrFile);
+                }
+                done += n;
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long pos)
+            throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void readFully(ByteBuffer content, ByteBuffer buf, int pos) {
+        ByteBuffer src = content.duplicate();
+        ((Buffer) src).position(content.position() + pos);
+        ((Buffer) src).limit(src.position() + buf.remaining());
+        buf.put(src);
+    }
+
+    private static int lsbMSB(ByteBuffer buf, int idx) {
+        return (buf.get(idx) & 0xFF) | (buf.get(idx + 1) & 0xFF) << 8;
+    }
+
+}   // ScrExtractor.java
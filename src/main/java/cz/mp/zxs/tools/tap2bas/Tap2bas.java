@@ -11,11 +11,19 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Writer;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.math.BigDecimal;
+import java.nio.file.StandardOpenOption;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,9 +51,48 @@ public class Tap2bas {
     private static final Logger log = LoggerFactory.getLogger(Tap2bas.class);
     
     protected TapByteArrayData tapContent;
+    /** Pro čtení po blocích z proudu; jinak {@code null}. */
+    protected TapStreamReader tapStream;
+    /** Pozice začátku {@code tapContent} v celém TAP (při čtení z proudu). */
+    protected int tapOffset = 0;
+    /** Jen pokud byl výstup zadán metodou {@linkplain #setOutWriter(java.io.Writer)}. */
     protected Writer fout;
+    protected final AsciiOutput out = new AsciiOutput();
+    /** Zadaná politika; {@code null} = podle výstupu (soubor: FILE, stdout: BLOCK). */
+    protected FlushPolicy flushPolicy = null;
     
     protected String fileNameInHeader;
+
+    /** Jen dvojice bloků s hlavičkou na těchto pozicích (seřazené); {@code null} = všechny. */
+    protected int[] selectedOffsets = null;
+
+    /** Příjemce událostí během procházení TAP. */
+    private TapVisitor visitor;
+    private TextTapVisitor textVisitor;
+    protected OutputFormat outputFormat = OutputFormat.TEXT;
+
+    /** Po chybě hledat další hlavičku a pokračovat, viz {@linkplain #setRecover(boolean)}. */
+    protected boolean recover = false;
+    /** konec právě analyzované tabulky proměnných v {@code tapContent} */
+    private int varsEndIdx;
+    private final List<TapResyncScanner.SkippedRange> skippedRanges = new ArrayList<>();
+
+    /** Již zpracované bloky, viz {@linkplain #setDedup(BlockDedupTable, String)}; {@code null} = bez deduplikace. */
+    protected BlockDedupTable dedupTable = null;
+    /** Jméno TAP pro odkazy z {@code dedupTable}. */
+    protected String dedupSource;
+    /** Deduplikace v posledním převodu; {@code null} = bez deduplikace. */
+    protected BlockDedupTable.Session dedupSession = null;
+
+    /** Statistika, viz {@linkplain #setStats(TapStats)}; {@code null} = bez statistiky. */
+    protected TapStats stats = null;
+
+    /** Události pro JFR; {@code null} = vypnuto (výchozí), viz {@linkplain TapEvents}. */
+    private TapEvents events = TapEvents.create();
+    /** Jméno vstupu pro události, viz {@linkplain #setSourceName(String)}. */
+    protected String sourceName;
+    /** Počet zpracovaných dvojic bloků při poslední analýze (pro události). */
+    private int blockPairCount = 0;
     
     protected static final int NAME_IN_HEADER_LEN = 10;
     protected static final int DEFAULT_HEADER_SIZE = 19;
@@ -67,11 +114,16 @@ public class Tap2bas {
     public static final int SCREEN_LENGTH = 6912;   // = SCREEN_BITMAP_LENGTH + SCREEN_ATTRIB_LENGTH
     public static final int SCREEN_WIDTH = 256;     // px ... = 32 * 8
     public static final int SCREEN_HEIGHT = 192;    // px     = 24 * 8
+    /** Adresa obrazovky v paměti ZX Spectra */
+    public static final int SCREEN_ADDRESS = 16384;
     
     private static final int MAX_VARS_DATA_LEGTH = 49152; // 48*1024 = 48kiB = celá RAM ZX Spectra
     // (? je toto opravdu omezeno, nebo jsem si to dříve vymyslel ? Aneb příště psát komentář ...)
     private static final int MAX_VARS_ARRAY_DIM = 4;
 
+    /** Soubory od této velikosti se mapují do paměti, menší se načtou. */
+    private static final int MIN_MAPPED_FILE_SIZE = 256 * 1024;
+
     
     /** */
     public Tap2bas() {
@@ -149,113 +201,453 @@ public class Tap2bas {
      * @throws IllegalStateException
      * @see #setInFile(java.io.File) 
      * @see #setOutWriter(java.io.Writer) 
-     * @see #analyzeBasicBlock(int, boolean, boolean) 
+     * @see #analyzeBasicBlock(int, int, boolean, boolean) 
+     * @see #processTapStream(boolean, boolean) 
+     * @see TextTapVisitor
      */
     private void processTap(boolean onlyBasic, boolean analyzeVars) 
             throws IOException, InvalidTapException {
-        if (tapContent == null || tapContent.isEmpty()) {
-            throw new IllegalStateException("tapContent is blank");
+        if (! out.hasTarget()) {
+            setOutWriter(null);     // stdout
+        }
+        try {
+            visitTap(getOutputVisitor(), onlyBasic, analyzeVars);
+        }
+        finally {
+            out.flush();    // (konec souboru)
         }
+    }
 
-        tapContent.begin();
-        while (! tapContent.lastWasReaded()) {
-            int startOfBlockIdx = tapContent.getIdx();
-            int blockLen = tapContent.readLsbMSB();
-            //log.debug("blockLen = " + blockLen);
-            
-            if (blockLen != DEFAULT_HEADER_SIZE) {
-                // (chyba mi většinou vznikala pokud se do analýzy VARS 
-                //  začlenila i následují data. Teď se při chybě VARS 
-                //  posunuje index v tapConten na správné místo)                
-                String indexInfo = "index = " + startOfBlockIdx + " (0x" + Integer.toHexString(startOfBlockIdx) + ")";
-                String blockLenInfo = "blockLen = " + blockLen + " (0x" + Integer.toHexString(blockLen) + ")";
-                log.warn("Invalid header size. " + blockLenInfo + "; " + indexInfo);
-                if (!onlyBasic) {
-                    writeToOut("\nERROR: Invalid header size. " + blockLen + "; " + indexInfo);
-                }
-                throw new InvalidTapException("Invalid header size. " + blockLen + "; " + indexInfo);
+    /**
+     * Projde TAP a jednotlivé části (hlavičky, řádky BASICu, proměnné, 
+     * bloky dat) předá jako události do {@code visitor}; na výstup
+     * tohoto {@code Tap2bas} se nic nezapisuje.
+     * Např. pro další zpracování programů bez převodu na text a zpět.
+     * 
+     * @param visitor
+     * @param onlyBasic  pokud je {@code true}, předají se jen BASIC programy,
+     *      bez hlaviček a bez tabulky proměnných
+     * @param analyzeVars  pokud je {@code false}, tabulka proměnných se přeskočí
+     * @throws IOException
+     * @throws InvalidTapException 
+     * @throws IllegalStateException
+     * @see TapVisitorAdapter
+     */
+    public void visit(TapVisitor visitor, boolean onlyBasic, boolean analyzeVars) 
+            throws IOException, InvalidTapException {
+        if (visitor == null) {
+            throw new IllegalArgumentException("visitor=null");
+        }
+        visitTap(visitor, onlyBasic, analyzeVars);
+    }
+
+    /**
+     * 
+     * @param onlyBasic
+     * @param analyzeVars
+     * @throws IOException
+     * @throws InvalidTapException 
+     */
+    private void processTapContent(boolean onlyBasic, boolean analyzeVars) 
+            throws IOException, InvalidTapException {
+        if (selectedOffsets != null) {
+            for (int offset : selectedOffsets) {
+                tapContent.setIdx(offset);
+                processBlockPair(onlyBasic, analyzeVars);
             }
-                    
-            TapBlockType typeFromHeader;
-            int flag = tapContent.read();            
-            if (flag == FLAG_HEADER) {
-
-                int typeNum = tapContent.read();
-                typeFromHeader = TapBlockType.getByNum(typeNum);
-                log.debug("--- block type = " + typeFromHeader);
-                if (typeFromHeader == null) {
-                    throw new InvalidTapException(
-                            "unknown type: 0x" + Integer.toHexString(typeNum));
+        }
+        else {
+            tapContent.begin();
+            while (! tapContent.lastWasReaded()) {
+                int pairIdx = tapContent.getIdx();
+                try {
+                    processBlockPair(onlyBasic, analyzeVars);
+                } catch (InvalidTapException | RuntimeException ex) {
+                    if (!recover) {
+                        throw ex;
+                    }
+                    resync(pairIdx, ex, onlyBasic);
                 }
+            }
+        }
+    }
+
+    /**
+     * Přeskočí poškozený úsek až k další použitelné hlavičce
+     * (nebo ke konci TAP).
+     * 
+     * @param errorIdx  začátek dvojice bloků, ve které nastala chyba
+     * @param ex  chyba
+     * @param onlyBasic
+     * @throws IOException 
+     * @see TapResyncScanner#findNextHeader(java.nio.ByteBuffer, int) 
+     */
+    private void resync(int errorIdx, Exception ex, boolean onlyBasic) 
+            throws IOException {
+        String reason = ex instanceof InvalidTapException 
+                ? ex.getMessage() : ex.toString();
+        int nextIdx = TapResyncScanner.findNextHeader(
+                tapContent.getSlice(0, tapContent.length()), errorIdx + 1);
+        if (nextIdx < 0) {
+            nextIdx = tapContent.length();
+        }
+        TapResyncScanner.SkippedRange range = new TapResyncScanner.SkippedRange(
+                errorIdx, nextIdx - errorIdx, reason);
+        skippedRanges.add(range);
+        log.warn("skipped: " + range);
+        if (!onlyBasic) {
+            visitor.skipped(range.getOffset(), range.getLength(), reason);
+        }
+        tapContent.setIdx(nextIdx);
+    }
 
-                // zbylý obsah hlavičky:
-                //  10B jméno, 6B header info, 1B parity
-                if (onlyBasic) {
-                    tapContent.skip(17);
+    /**
+     * 
+     * @param visitor
+     * @param onlyBasic
+     * @param analyzeVars
+     * @throws IOException
+     * @throws InvalidTapException 
+     * @throws IllegalStateException
+     */
+    private void visitTap(TapVisitor visitor, boolean onlyBasic, boolean analyzeVars) 
+            throws IOException, InvalidTapException {
+        this.visitor = visitor;
+        skippedRanges.clear();
+        blockPairCount = 0;
+        dedupSession = dedupTable != null ? dedupTable.newSession(dedupSource) : null;
+        boolean ok = false;
+        if (events != null) {
+            events.fileStart();
+        }
+        try {
+            if (tapStream == null
+                    && (tapContent == null || tapContent.isEmpty())) {
+                throw new IllegalStateException("tapContent is blank");
+            }
+            visitor.tapStart();
+            try {
+                if (tapStream != null) {
+                    processTapStream(onlyBasic, analyzeVars);
                 }
                 else {
-                    String headerInfo = readHeaderDataAndFormat(typeFromHeader);
-                    //logDebug(headerInfo);
-                    writeToOut("\n=== ");
-                    writeToOut(headerInfo + "\n");
-                    log.info("=== " + headerInfo);
+                    tapOffset = 0;
+                    if (stats != null) {
+                        stats.addBytes(tapContent.length());
+                    }
+                    processTapContent(onlyBasic, analyzeVars);
                 }
+            } catch (InvalidTapException ex) {
+                visitor.tapEnd();   // (výstup zůstane úplný až po chybu)
+                throw ex;
+            }
+            visitor.tapEnd();
+            ok = true;
+        }
+        finally {
+            this.visitor = null;
+            if (events != null) {
+                events.fileEnd(sourceName, getVisitedBytes(), blockPairCount,
+                        skippedRanges.size(), ok);
+            }
+        }
+    }
+
+    /**
+     * 
+     * @return  délka TAP dat zpracovaných při poslední analýze
+     */
+    private long getVisitedBytes() {
+        if (tapStream != null) {
+            return (long) tapStream.getOffset() + tapStream.getLength();
+        }
+        return tapContent != null ? tapContent.length() : 0;
+    }
+
+    /**
+     * 
+     * @return  výstup do {@linkplain #out} v zadaném formátu
+     * @see #setOutputFormat(cz.mp.zxs.tools.tap2bas.OutputFormat) 
+     */
+    private TapVisitor getOutputVisitor() {
+        switch (outputFormat) {
+            case JSON:
+                return new JsonTapVisitor(out, false);
+            case NDJSON:
+                return new JsonTapVisitor(out, true);
+            default:
+                return getTextVisitor();
+        }
+    }
+
+    /**
+     * 
+     * @return  textový výstup do {@linkplain #out}
+     */
+    private TapVisitor getTextVisitor() {
+        if (textVisitor == null) {
+            textVisitor = new TextTapVisitor(out);
+        }
+        return textVisitor;
+    }
+
+    /**
+     * Dvojice bloků "hlavička + data" jako popisy, jejichž obsah
+     * (výpis BASICu, VARS, výpis bytů) se dekóduje až na vyžádání.
+     * Např. pro katalog pásky, nebo pro jeden program z mnoha.
+     * <pre>
+     * for (TapBlock block : tap2bas.blocks()) {
+     *     if (block.isBasic() &amp;&amp; "gold".equals(block.getName())) {
+     *         String listing = block.getBasicListing();
+     *     }
+     * }
+     * </pre>
+     * Iterátor je "líný", TAP prochází postupně. Výstup tohoto 
+     * {@code Tap2bas} se nemění.
+     * 
+     * @return
+     * @throws IllegalStateException  pokud se TAP čte z proudu,
+     *      nebo není zadán
+     * @see TapBlock
+     * @see #setInFile(java.io.File) 
+     * @see #setTapContent(java.nio.ByteBuffer) 
+     */
+    public Iterable<TapBlock> blocks() {
+        if (tapStream != null) {
+            throw new IllegalStateException("blocks() is not supported for a stream");
+        }
+        if (tapContent == null || tapContent.isEmpty()) {
+            throw new IllegalStateException("tapContent is blank");
+        }
+        final ByteBuffer content = tapContent.getSlice(0, tapContent.length());
+        return new Iterable<TapBlock>() {
+            @Override
+            public Iterator<TapBlock> iterator() {
+                return new TapBlockIterator(content);
+            }
+        };
+    }
+
+    /**
+     * Analýza jen tabulky proměnných (pro {@linkplain TapBlock}).
+     * 
+     * @param offset  začátek tabulky proměnných v TAP
+     * @param length
+     * @throws IOException
+     * @throws InvalidTapException 
+     * @see #analyzeVarsTable(int) 
+     */
+    void writeVarsTable(int offset, int length) 
+            throws IOException, InvalidTapException {
+        tapOffset = 0;
+        tapContent.setIdx(offset);
+        visitor = getTextVisitor();
+        try {
+            analyzeVarsTable(length);
+        }
+        finally {
+            visitor = null;
+            out.flush();
+        }
+    }
 
-                // ---- Data následující po hlavičce:
+    /**
+     * Jako {@linkplain #processTap(boolean, boolean)}, ale TAP se čte 
+     * z proudu po jednotlivých dvojicích bloků "hlavička + data".
+     * 
+     * @param onlyBasic
+     * @param analyzeVars
+     * @throws IOException
+     * @throws InvalidTapException 
+     * @throws IllegalStateException
+     * @see TapStreamReader
+     */
+    private void processTapStream(boolean onlyBasic, boolean analyzeVars) 
+            throws IOException, InvalidTapException {
+        boolean empty = true;
+        while (readNextFromStream()) {
+            empty = false;
+            tapOffset = tapStream.getOffset();
+            if (stats != null) {
+                stats.addBytes(tapStream.getLength());
+            }
+            if (selectedOffsets != null 
+                    && Arrays.binarySearch(selectedOffsets, tapOffset) < 0) {
+                continue;
+            }
+            tapContent = new TapByteArrayData(ByteBuffer.wrap(
+                    tapStream.getBuffer(), 0, tapStream.getLength()));
+            tapContent.setTapBaseOffset(tapOffset);
+            processBlockPair(onlyBasic, analyzeVars);
+        }
+        if (empty) {
+            throw new IllegalStateException("tapContent is blank");
+        }
+    }
+    
+    private boolean readNextFromStream() throws IOException {
+        TapStats.Phase previous = enterPhase(TapStats.Phase.READ);
+        try {
+            return tapStream.readNext();
+        }
+        finally {
+            exitPhase(previous);
+        }
+    }
 
-                int dataBlockLen = tapContent.readLsbMSB();
-                log.info("dataBlockLen = " + dataBlockLen);
+    /**
+     * Zpracuje jeden blok s hlavičkou a blok dat, který po ní následuje.
+     * 
+     * @param onlyBasic
+     * @param analyzeVars
+     * @throws IOException
+     * @throws InvalidTapException 
+     * @see #processTap(boolean, boolean) 
+     */
+    private void processBlockPair(boolean onlyBasic, boolean analyzeVars) 
+            throws IOException, InvalidTapException {
+        int startOfBlockIdx = tapOffset + tapContent.getIdx();
+        if (events != null) {
+            events.blockStart();
+        }
+        int blockLen = tapContent.readLsbMSB();
+        //log.debug("blockLen = " + blockLen);
+        
+        if (blockLen != DEFAULT_HEADER_SIZE) {
+            // (chyba mi většinou vznikala pokud se do analýzy VARS 
+            //  začlenila i následují data. Teď se při chybě VARS 
+            //  posunuje index v tapConten na správné místo)                
+            String indexInfo = "index = " + startOfBlockIdx + " (0x" + Integer.toHexString(startOfBlockIdx) + ")";
+            String blockLenInfo = "blockLen = " + blockLen + " (0x" + Integer.toHexString(blockLen) + ")";
+            log.warn("Invalid header size. " + blockLenInfo + "; " + indexInfo);
+            if (!onlyBasic) {
+                visitor.invalidHeader(startOfBlockIdx, blockLen);
+            }
+            throw new InvalidTapException("Invalid header size. " + blockLen + "; " + indexInfo);
+        }
                 
-                flag = tapContent.read();
-                if (flag != FLAG_DATA) {
-                    throw new InvalidTapException(
-                            "wrong flag: 0x" + Integer.toHexString(flag));
-                }
+        TapBlockType typeFromHeader;
+        int flag = tapContent.read();            
+        if (flag == FLAG_HEADER) {
 
-                if (typeFromHeader == TapBlockType.BASIC) {
-                    analyzeBasicBlock(dataBlockLen - 1, onlyBasic, analyzeVars);  // 1B za již načtený flag
-                }
-                else if (onlyBasic) {
-                    tapContent.skip(dataBlockLen - 1);
+            int typeNum = tapContent.read();
+            typeFromHeader = TapBlockType.getByNum(typeNum);
+            log.debug("--- block type = " + typeFromHeader);
+            if (typeFromHeader == null) {
+                throw new InvalidTapException(
+                        "unknown type: 0x" + Integer.toHexString(typeNum));
+            }
+            if (stats != null) {
+                stats.addBlock(typeFromHeader);
+            }
+
+            // zbylý obsah hlavičky:
+            //  10B jméno, 6B header info, 1B parity
+            if (onlyBasic) {
+                tapContent.skip(17);
+            }
+            else {
+                TapStats.Phase previous = enterPhase(TapStats.Phase.HEADER);
+                try {
+                    readHeaderData(startOfBlockIdx, typeFromHeader);
                 }
-                else {      // (např. Code or SCREEN$)
-                    String hexDump = tapContent.readBlockReturnAsHexDump(dataBlockLen - 2); // -1 za flag a -1 za paritu na konci
-                    writeToOut(hexDump);
-
-                    //writeToOut("\n"); // (ne \n, to už zapíše readBlockReturnAsHexDump)
-                    writeToOut("--- same data -- \"decimal\" dump: \n");
-                    tapContent.back(dataBlockLen - 2);
-                    String decDump = tapContent.readBlockReturnAsDecadicDump(dataBlockLen - 2);
-                    writeToOut(decDump);
-
-                    tapContent.skip(1);     // parita ("checksum")
-                            
-                    writeToOut("\n");                    
-                    if (fout != null) {
-                        fout.flush();
-                    }                    
+                finally {
+                    exitPhase(previous);
                 }
             }
-            else {
+
+            // ---- Data následující po hlavičce:
+
+            int dataBlockIdx = tapOffset + tapContent.getIdx();
+            int dataBlockLen = tapContent.readLsbMSB();
+            log.info("dataBlockLen = " + dataBlockLen);
+            
+            flag = tapContent.read();
+            if (flag != FLAG_DATA) {
                 throw new InvalidTapException(
                         "wrong flag: 0x" + Integer.toHexString(flag));
             }
-        }            
+
+            BlockDedupTable.Key dedupKey = null;
+            if (dedupSession != null && dataBlockLen >= BlockDedupTable.MIN_BLOCK_LENGTH
+                    && (typeFromHeader == TapBlockType.BASIC || !onlyBasic)) {
+                int flagIdx = tapContent.getIdx() - 1;
+                if (flagIdx + dataBlockLen <= tapContent.length()) {
+                    ByteBuffer block = tapContent.getSlice(flagIdx, dataBlockLen);
+                    dedupKey = new BlockDedupTable.Key(block,
+                            typeFromHeader, onlyBasic, analyzeVars);
+                    // (z proudu je v paměti jen tato dvojice bloků)
+                    BlockDedupTable.Entry first = dedupSession.find(dedupKey, block,
+                            dataBlockIdx, tapStream == null 
+                                    ? tapContent.getSlice(0, tapContent.length()) : null);
+                    if (first != null) {
+                        visitor.duplicateBlock(dataBlockIdx, typeFromHeader,
+                                dataBlockLen - 2, first.getSource(), first.getOffset());
+                        tapContent.skip(dataBlockLen - 1);
+                        blockPairEnd(startOfBlockIdx, typeFromHeader, dataBlockLen, true);
+                        return;
+                    }
+                }
+            }
+
+            if (typeFromHeader == TapBlockType.BASIC) {
+                TapStats.Phase previous = enterPhase(TapStats.Phase.BASIC);
+                try {
+                    analyzeBasicBlock(dataBlockIdx, dataBlockLen - 1,   // 1B za již načtený flag
+                            onlyBasic, analyzeVars);
+                }
+                finally {
+                    exitPhase(previous);
+                }
+            }
+            else if (onlyBasic) {
+                tapContent.skip(dataBlockLen - 1);
+            }
+            else {      // (např. Code or SCREEN$)
+                int startIdx = tapContent.getIdx();
+                TapStats.Phase previous = enterPhase(TapStats.Phase.DUMP);
+                try {
+                    visitor.binaryBlock(dataBlockIdx, typeFromHeader, tapContent, 
+                            dataBlockLen - 2); // -1 za flag a -1 za paritu na konci
+                }
+                finally {
+                    exitPhase(previous);
+                }
+                tapContent.setIdx(startIdx + dataBlockLen - 2);
+                tapContent.skip(1);     // parita ("checksum")
+            }
+            if (dedupKey != null) {
+                dedupSession.add(dedupKey, dataBlockIdx);
+            }
+            blockPairEnd(startOfBlockIdx, typeFromHeader, dataBlockLen, false);
+        }
+        else {
+            throw new InvalidTapException(
+                    "wrong flag: 0x" + Integer.toHexString(flag));
+        }
     }
     
+    private void blockPairEnd(int headerIdx, TapBlockType type, int dataBlockLen,
+            boolean duplicate) {
+        blockPairCount++;
+        if (events != null) {
+            events.blockEnd(headerIdx, type, dataBlockLen, duplicate);
+        }
+    }
+
     // (typ se předává jako parametr, protože je potřeba i dále, po volání této metody)
     /**
      * Čte část hlavičky bez čísla typu, tj:
-     * 10 B jméno, 2 B délka dat, 2 B param 1, 2 B param 2, 1 B parity.
-     * <p>
-     * např.: <pre><tt>BASIC program  name="myprog"  dataLength=17808  p1=9005  p2=15931
-     * </tt></pre>
+     * 10 B jméno, 2 B délka dat, 2 B param 1, 2 B param 2, 1 B parity
+     * a předá ji jako {@linkplain TapVisitor#header(int, TapBlockType, String, int, int, int)}.
      * 
+     * @param headerIdx  pozice bloku s hlavičkou v TAP
      * @param typeFromHeader  předtím načtený typ
-     * @return  hlavičku jako formátovaný text (viz kód)
+     * @throws IOException
      * @throws IllegalArgumentException
      */
-    private String readHeaderDataAndFormat(TapBlockType typeFromHeader) {
+    private void readHeaderData(int headerIdx, TapBlockType typeFromHeader) 
+            throws IOException {
         if (typeFromHeader == null) {
             throw new IllegalArgumentException("typeFromHeader=null");
         }
@@ -263,33 +655,14 @@ public class Tap2bas {
                 .readBlockAndReturnAsString(NAME_IN_HEADER_LEN).trim();                
 
         // zbylý obsah hlavičky: (6B header info, 1B checksum)
-        //tapContent.skip(blockLen - 2 - NAME_IN_HEADER_LEN);  // 1B za flag, 1B za typ, 10B jméno                
         int dataLen = tapContent.readLsbMSB();
 
-        String param1text = "";
-        if (typeFromHeader == TapBlockType.NUMBERS || typeFromHeader == TapBlockType.TEXTS) {
-            // pole čísel | pole znaků:   parameter 1 =  "0 , jméno_proměnné"
-            int B1 = tapContent.read();
-            int B2 = tapContent.read();
-            StringBuilder sb = new StringBuilder();
-            sb.append(B1);
-            if (TapByteArrayData.isPrintableChar(B1)) {
-                sb.append("(").append(String.valueOf((char) B1)).append(")");
-            }
-            sb.append(" ");
-            sb.append(B2);
-            if (TapByteArrayData.isPrintableChar(B2)) {
-                sb.append("(").append(String.valueOf((char) B2)).append(")");
-            }
-            param1text = sb.toString();
-        }
-        else {        
-            // BASIC: parameter 1 = 1 - 9999  -- řádek pro autostart 
-            //        parameter 1 >= 32768  -- řádek pro autostart není definován
-            //        parameter 1 = 0 | 10000 - 32767  -- ??
-            // Code:  parameter 1 = * (>16kB)  -- adresa v paměti kam se má zapsat kód
-            param1text = String.valueOf(tapContent.readLsbMSB());
-        }
+        // BASIC: parameter 1 = 1 - 9999  -- řádek pro autostart 
+        //        parameter 1 >= 32768  -- řádek pro autostart není definován
+        //        parameter 1 = 0 | 10000 - 32767  -- ??
+        // Code:  parameter 1 = * (>16kB)  -- adresa v paměti kam se má zapsat kód
+        // pole čísel | pole znaků:   parameter 1 =  "0 , jméno_proměnné"
+        int param1 = tapContent.readLsbMSB();
 
         // BASIC: parameter 2 = *  -- adresa začátku oblasti proměnných
         // pole čísel | pole znaků:  parameter 2 = X -- nedefinováno
@@ -299,22 +672,15 @@ public class Tap2bas {
         // parita (checksum). (Počítá se jako XOR postupně přes všechny byty)
         // ("bitwise XOR of all bytes including the flag byte")
         tapContent.read();
-        //String parity = tapContent.readAndReturnAsHex();
 
-        StringBuilder sbHeader = new StringBuilder();
-        sbHeader.append(typeFromHeader.getDescription());
-        sbHeader.append("  name=\"").append(name).append("\"");
-        sbHeader.append("  dataLength=").append(dataLen);
-        sbHeader.append("  p1=").append(param1text);
-        sbHeader.append("  p2=").append(param2);
-        //sbHeader.append("  parity=0x").append(parity);
-
-        return sbHeader.toString();
+        log.info("=== " + typeFromHeader.getDescription() + "  name=\"" + name + "\"");
+        visitor.header(headerIdx, typeFromHeader, name, dataLen, param1, param2);
     }
     
     /**
      * Analyzuje blok dat v hlavičce označený jako program v BASICu.
      * 
+     * @param dataBlockIdx  pozice bloku dat v TAP
      * @param dataLen
      * @param onlyBasic  pokud je {@code true}, zapíše se na výstup jen výpis
      *      BASIC programů. Pro {@code false} se na výstup zapíše i 
@@ -324,12 +690,16 @@ public class Tap2bas {
      * @throws InvalidTapException
      * @see #processTap(boolean, boolean) 
      */
-    private void analyzeBasicBlock(int dataLen, boolean onlyBasic, boolean analyzeVars) 
+    private void analyzeBasicBlock(int dataBlockIdx, int dataLen, 
+            boolean onlyBasic, boolean analyzeVars) 
             throws IOException, InvalidTapException {
         log.debug("dataLen = " + dataLen);
         
         int dataLenWoParity = dataLen - 1;
         int startIdx = tapContent.getIdx();
+        visitor.basicStart(dataBlockIdx, dataLenWoParity);
+        boolean numbersWanted = visitor.isEmbeddedNumbersWanted();
+        int lineCount = 0;
         // (tapContent.getIdx() - startIdx  = počet načtených bytů)
         while (tapContent.getIdx() - startIdx < dataLenWoParity) {            // dataLen-1 ... 1B za "checksum" na konci, který (zatím) nechci zpracovat, viz konec while...
             // jedna řádka v Basicu:
@@ -360,44 +730,30 @@ public class Tap2bas {
                 // přeskočit VARS ?
                 if (onlyBasic || analyzeVars == false) {    
                     tapContent.skip(varsLength);
-                    
-                    if (fout != null) {
-                        fout.flush();
-                    }                
                     break;
                 }
 
                 // analyzovat oblast VARS :
 
-                writeToOut("--- table of variables (VARS) -- hexdump: \n");                
-
-                // 1. VARS jen jako hexdump;
-                String hexDump = tapContent.readBlockReturnAsHexDump(varsLength);
-                writeToOut("    length = ");
-                writeIntToOut(varsLength);
-                writeToOut("\n");
-                writeToOut(hexDump);
-                if (fout != null) {
-                    fout.flush();
-                }                
+                int varsIdx = tapContent.getIdx();
+                visitor.varsStart(tapContent, varsLength);
+                tapContent.setIdx(varsIdx);
 
                 log.info("analyzeVars");
-                // 2. VARS znovu, ale tentokrát jako analýza
-                writeToOut("--- table of variables (VARS) -- analyzed: \n");
-                tapContent.back(varsLength);
-
-                boolean validTable = analyzeVarsTable(varsLength);
+                boolean validTable;
+                TapStats.Phase previous = enterPhase(TapStats.Phase.VARS);
+                try {
+                    validTable = analyzeVarsTable(varsLength);
+                }
+                finally {
+                    exitPhase(previous);
+                }
                 if (!validTable) {                    
                     log.info("!validTable");
                     // NE: throw new InvalidTapException("Invalid table of variables");
-                    writeToOut("ERROR: Invalid table of variables");
                     // (posun idx v tapContent v metodě analyzeVarsTable)
                 }
 
-                if (fout != null) {
-                    fout.flush();
-                }                
-                
                 break;   // (tabulka proměnných je na konci, po analýze skončit)
             }
             
@@ -405,21 +761,46 @@ public class Tap2bas {
             //log.debug("remainingLineLen = " + remainingLineLen + "   0x" + Integer.toHexString(remainingLineLen));
             //log.debug("remainingLineLen = " + remainingLineLen);
             
-            writeIntToOut(lineNum);
-            writeToOut(" ");
-
             // --- zbytek řádky po čísle řádky jsou BASIC příkazy
-            String basicLine = tapContent
-                    .readBlockAndReturnAsEscapedString(remainingLineLen);
-            writeToOut(basicLine);
-            writeToOut("\n");
-            
-            if (fout != null) {
-                fout.flush();
+            int lineIdx = tapContent.getIdx();
+            int lineEnd = lineIdx + remainingLineLen;
+            // (s chybnou délkou by se četlo až z další dvojice bloků a ta
+            //  by se pak přeskočila i s hlavičkou)
+            if (recover && lineEnd > startIdx + dataLenWoParity) {
+                throw new InvalidTapException("BASIC line " + lineNum 
+                        + " exceeds the data block; index = " + (tapOffset + lineIdx));
             }
+            visitor.basicLine(lineNum, tapContent, remainingLineLen);
+            lineCount++;
+            if (numbersWanted) {
+                tapContent.setIdx(lineIdx);
+                while (tapContent.skipToNextBasicNumber(lineEnd)) {
+                    int numberIdx = tapContent.getIdx();
+                    visitor.embeddedNumber(lineNum, tapContent);
+                    tapContent.setIdx(numberIdx + TapByteArrayData.NUMBER_REPRESENTATION_LEN);
+                }
+            }
+            skipTo(lineEnd);
         }   // while
         
         tapContent.skip(1);     // ! a ten 1B za "checksum" na konci
+        if (stats != null) {
+            stats.addBasicLines(lineCount);
+        }
+        visitor.basicEnd();
+    }
+
+    /**
+     * Po události s daty nastaví {@code idx} na konec dat, pokud je 
+     * návštěvník nepřečetl celá. (Text s chybnými daty mohl být přečten
+     * i za konec, pak se tam pokračuje, stejně jako dříve při výpisu.)
+     * 
+     * @param endIdx
+     */
+    private void skipTo(int endIdx) {
+        if (tapContent.getIdx() < endIdx) {
+            tapContent.setIdx(endIdx);
+        }
     }
 
     
@@ -478,8 +859,13 @@ public class Tap2bas {
         log.info("dataLen = " + dataLen);
         
         boolean valid = true;
+        int varCount = 0;
+        if (events != null) {
+            events.varsStart();
+        }
         
         int startIdx = tapContent.getIdx();
+        varsEndIdx = startIdx + dataLen;
         // (tapContent.getIdx() - startIdx  = počet načtených bytů)
         int lenToEnd;
         while (valid && 
@@ -524,13 +910,21 @@ public class Tap2bas {
             else {
                 valid = false;
             }
+            if (valid) {
+                varCount++;
+            }
         } 
+        if (stats != null) {
+            stats.addVariables(varCount);
+        }
+        if (events != null) {
+            events.varsEnd(tapOffset + startIdx, dataLen, varCount, valid);
+        }
         
         if (!valid) {
-            writeToOut("Invalid data. Table of variables probably contains a machine code. ");
-            writeToOut("Byte at: 0x" + Integer.toHexString(tapContent.getIdx()) + "\n");
+            visitor.invalidVars(tapOffset + tapContent.getIdx());
             log.warn("Invalid data. Table of variables probably contains a machine code. ");
-            log.warn("Byte at: 0x" + Integer.toHexString(tapContent.getIdx()));
+            log.warn("Byte at: 0x" + Integer.toHexString(tapOffset + tapContent.getIdx()));
             int readed = tapContent.getIdx() - startIdx;
             log.info("readed: " + readed + " Bytes");
 
@@ -553,21 +947,19 @@ public class Tap2bas {
     private boolean analyzeVarString(int varId) 
             throws IOException, InvalidTapException {
         char name = (char)(varId + 0x20); // (= malé písmeno)
-        writeToOut(name);
         if (! TapByteArrayData.isValidVariableName(String.valueOf(name))) {
             log.warn("name = \"" + String.valueOf(name) + "\"");
             return false;
         }         
-        writeToOut(" = ");
 
         int slen = tapContent.readLsbMSB();
+        if (! fitsInVars(slen)) {
+            return false;
+        }
 
-        String text = tapContent.readBlockAndReturnAsEscapedString(slen);
-
-        writeToOut("\"");
-        writeToOut(text);
-        writeToOut("\"");
-        writeToOut("   -- string\n");
+        int textIdx = tapContent.getIdx();
+        visitor.stringVariable(name, tapContent, slen);
+        skipTo(textIdx + slen);
         return true;
     }
     
@@ -585,12 +977,7 @@ public class Tap2bas {
             log.warn("name = \"" + String.valueOf(name) + "\"");
             return false;
         }        
-        writeToOut(name);
-        writeToOut(" = ");
-
-        BigDecimal val = tapContent.readBlockAndParseBasicNumber();
-        writeToOut(val.toPlainString());
-        writeToOut("   -- numeric (one character name)\n");
+        visitNumberVariable(String.valueOf(name));
         return true;
     }
     
@@ -614,8 +1001,7 @@ public class Tap2bas {
             log.warn("name = \"" + String.valueOf(name) + "\"");
             return false;
         }
-        writeToOut(name);
-        writeToOut(":  ");
+        visitor.numericArrayStart(name);
 
         int datalen = tapContent.readLsbMSB();
         if (datalen > MAX_VARS_DATA_LEGTH) {
@@ -628,53 +1014,34 @@ public class Tap2bas {
             log.warn("dimensions = \"" + dimensions + "\"");
             return false;
         }
-        writeToOut("dimensions = ");
-        writeIntToOut(dimensions);
+        visitor.arrayDimensions(dimensions);
+        if (! fitsInVars(dimensions * 2)) {
+            return false;
+        }
 
         // velikost rozměrů
-        int[] dimSizes = new int[dimensions];
-
-        writeToOut("\n");
         int totalItemsCount = 1;
         for (int k=0; k<dimensions; k++) {
             int size = tapContent.readLsbMSB();
-            writeToOut("    dim ");
-            writeIntToOut(k+1);
-            writeToOut(":  size = ");
-            writeIntToOut(size);
-            writeToOut("\n");
-            dimSizes[k] = size;
+            visitor.arrayDimension(k, size);
             totalItemsCount = totalItemsCount * size;
         }
-        if (totalItemsCount > MAX_VARS_DATA_LEGTH) {
+        if (totalItemsCount > MAX_VARS_DATA_LEGTH
+                || ! fitsInVars(totalItemsCount * TapByteArrayData.NUMBER_REPRESENTATION_LEN)) {
             log.warn("totalItemsCount = \"" + totalItemsCount + "\"");
             return false;
         }
 
-        int[] limits = new int[dimensions];
-        limits[0] = 1;
-        for (int k=1; k<dimensions; k++) {
-            limits[k] =  limits[k-1] * dimSizes[k-1];
-        }
-
         if (totalItemsCount > 0) {
-            writeToOut("    values = \n");
-            BigDecimal item = tapContent.readBlockAndParseBasicNumber();
-            writeToOut("      ");
-            writeToOut(item.toPlainString());
-            writeToOut(", ");
-            for (int idx=1; idx<totalItemsCount; idx++) {
-                for (int j=1; j<limits.length; j++) {
-                    if (idx % limits[j] == 0) {
-                        writeToOut("\n      ");
-                    }
-                }
-                item = tapContent.readBlockAndParseBasicNumber();
-                writeToOut(item.toPlainString());
-                writeToOut(", ");
+            visitor.arrayValues();
+            int itemIdx = tapContent.getIdx();
+            for (int idx=0; idx<totalItemsCount; idx++) {
+                visitor.numericArrayElement(idx, tapContent);
+                itemIdx += TapByteArrayData.NUMBER_REPRESENTATION_LEN;
+                tapContent.setIdx(itemIdx);
             }
         }
-        writeToOut("\n    -- numeric array\n");
+        visitor.arrayEnd();
         return true;
     }
          
@@ -692,23 +1059,49 @@ public class Tap2bas {
         name.append((char)(varId - 0x40));
         // písmena mezi                
         int ch;                
-        while ((ch = tapContent.read()) < 0x80) {            
+        while (true) {
+            if (! fitsInVars(1)) {
+                return false;
+            }
+            ch = tapContent.read();
+            if (ch >= 0x80) {
+                break;
+            }
             name.append((char) ch);
         }
         // posledni pismeno
         name.append((char) (ch-0x80));        
-        if (! TapByteArrayData.isValidVariableName(name.toString())) {
+        if (! TapByteArrayData.isValidVariableName(name.toString())
+                || ! fitsInVars(TapByteArrayData.NUMBER_REPRESENTATION_LEN)) {
             log.warn("name = \"" + name.toString() + "\"");
             return false;
         }
-        writeToOut(name.toString());
-        writeToOut(" = ");
-
-        BigDecimal val = tapContent.readBlockAndParseBasicNumber();
-        writeToOut(val.toPlainString()); 
-        writeToOut("   -- numeric (multi character name)\n");
+        visitNumberVariable(name.toString());
         return true;
     }
+
+    /**
+     * 
+     * @param name
+     * @throws IOException 
+     */
+    private void visitNumberVariable(String name) throws IOException {
+        int numberIdx = tapContent.getIdx();
+        visitor.numberVariable(name, tapContent);
+        tapContent.setIdx(numberIdx + TapByteArrayData.NUMBER_REPRESENTATION_LEN);
+    }
+
+    /**
+     * Při {@linkplain #setRecover(boolean)} hlídá, aby analýza proměnné 
+     * nečetla za konec tabulky proměnných (tj. z další dvojice bloků).
+     * 
+     * @param len  kolik bytů se má od aktuální pozice ještě číst
+     * @return  {@code false}, pokud by se četlo za konec tabulky
+     * @see #analyzeVarsTable(int) 
+     */
+    private boolean fitsInVars(int len) {
+        return !recover || tapContent.getIdx() + len <= varsEndIdx;
+    }
     
     /**
      * 
@@ -725,8 +1118,7 @@ public class Tap2bas {
             log.warn("name = \"" + String.valueOf(name) + "\"");
             return false;
         }
-        writeToOut(name);
-        writeToOut(" = ");
+        visitor.stringArrayStart(name);
 
         int datalen = tapContent.readLsbMSB();
         if (datalen > MAX_VARS_DATA_LEGTH) {
@@ -740,39 +1132,35 @@ public class Tap2bas {
             log.warn("dimensions = \"" + dimensions + "\"");
         //    return false;
         }
-        writeToOut("dimensions = ");
-        writeIntToOut(dimensions);
+        visitor.arrayDimensions(dimensions);
+        if (! fitsInVars(dimensions * 2)) {
+            return false;
+        }
 
         // velikost rozměrů
         int[] dimSizes = new int[dimensions];
+        int itemsLen = 0;
 
-        writeToOut("\n");
-        int itemsCount = 1;
         for (int k=0; k<dimensions; k++) {
             int size = tapContent.readLsbMSB();
             if (size > MAX_VARS_DATA_LEGTH) {
                 return false;
             }
-            writeToOut("    dim ");
-            writeIntToOut(k+1);
-            writeToOut(":  size = ");
-            writeIntToOut(size);            
-            writeToOut("\n");
+            visitor.arrayDimension(k, size);
             dimSizes[k] = size;
-            itemsCount = itemsCount * size;
+            itemsLen += size;
+        }
+        if (! fitsInVars(itemsLen)) {
+            return false;
         }
 
-        writeToOut("    values = \n");
+        visitor.arrayValues();
         for (int k=0; k<dimensions; k++) {
-            String text = tapContent.readBlockAndReturnAsEscapedString(dimSizes[k]);
-            writeToOut("      \"");
-            writeToOut(text);
-            writeToOut("\", ");
-            if (k != dimensions-1) {
-                writeToOut("\n      ");
-            }
+            int textIdx = tapContent.getIdx();
+            visitor.stringArrayItem(k, tapContent, dimSizes[k]);
+            skipTo(textIdx + dimSizes[k]);
         }
-        writeToOut("\n    -- string array\n");
+        visitor.arrayEnd();
         return true;
     }
 
@@ -792,53 +1180,318 @@ public class Tap2bas {
             log.warn("name = \"" + String.valueOf(name) + "\"");
             return false;
         }        
-        writeToOut(name);
-        writeToOut(" = ");
+        int numbersIdx = tapContent.getIdx();
 
         // 5 B  -- (počáteční ?) hodnota řídící prom.
-        BigDecimal val = tapContent.readBlockAndParseBasicNumber();
-        writeToOut(val.toPlainString());
-
         // 5 B  --  konečná hodnota řídící prom.
-        BigDecimal finalVal = tapContent.readBlockAndParseBasicNumber();
-        writeToOut("  to = ");
-        writeToOut(finalVal.toPlainString());
-
         // 5 B  --  hodnota velikosti kroku řídící prom.
-        BigDecimal stepVal = tapContent.readBlockAndParseBasicNumber();
-        writeToOut("  step = ");
-        writeToOut(stepVal.toPlainString());
+        tapContent.skip(3 * TapByteArrayData.NUMBER_REPRESENTATION_LEN);
 
         // 2 B  --  číslo řádku na který se cyklus vrací po příkaze NEXT
         int lineNumForNext = tapContent.readLsbMSB();
-        writeToOut("  lineNumForNext = ");
-        writeIntToOut(lineNumForNext);
 
         // 1 B  --  číslo příkazu na řádce, kam se cyklus vrací po NEXT
         int cmdNumAfterNext = tapContent.read();
-        writeToOut("  cmdNumAfterNext = ");
-        writeIntToOut(cmdNumAfterNext);
+        int endIdx = tapContent.getIdx();
         
-        writeToOut("   -- variable for loop\n");
+        tapContent.setIdx(numbersIdx);
+        visitor.forLoopVariable(name, tapContent, lineNumForNext, cmdNumAfterNext);
+        tapContent.setIdx(endIdx);
         return true;
     }
             
     /**
+     * Větší soubory se mapují do paměti ({@code MappedByteBuffer}),
+     * takže se jejich obsah nekopíruje na haldu; menší se načtou 
+     * do pole jen jednou, bez další kopie.
      * 
      * @param inFile  soubor tap, který má být analyzován
      * @throws FileNotFoundException
      * @throws IOException 
-     * @see #setTapContent(byte[])
+     * @see #setTapContent(java.nio.ByteBuffer)
      */
     public void setInFile(File inFile) 
             throws FileNotFoundException, IOException {
         if (inFile == null) {
             throw new IllegalArgumentException("inFile=null");
         }
+        setTapContent(readTapFile(inFile, stats));
+        sourceName = inFile.getPath();
+    }
+
+    /**
+     * Jako {@linkplain #readTapFile(java.io.File)}, čas se započítá
+     * do {@linkplain TapStats.Phase#READ}. (Velký soubor namapovaný do 
+     * paměti se skutečně čte až při zpracování.)
+     * 
+     * @param inFile
+     * @param stats  může být {@code null}
+     * @return
+     * @throws FileNotFoundException
+     * @throws IOException 
+     */
+    static ByteBuffer readTapFile(File inFile, TapStats stats) 
+            throws FileNotFoundException, IOException {
+        if (stats == null) {
+            return readTapFile(inFile);
+        }
+        TapStats.Phase previous = stats.enter(TapStats.Phase.READ);
+        try {
+            return readTapFile(inFile);
+        }
+        finally {
+            stats.exit(previous);
+        }
+    }
+
+    /**
+     * Načte (nebo namapuje do paměti) obsah TAP souboru,
+     * viz {@linkplain #setInFile(java.io.File)}.
+     * 
+     * @param inFile
+     * @return
+     * @throws FileNotFoundException
+     * @throws IOException 
+     * @see TapBlockIndex#forFile(java.io.File, java.nio.ByteBuffer, boolean) 
+     */
+    static ByteBuffer readTapFile(File inFile) 
+            throws FileNotFoundException, IOException {
         if (!inFile.exists() || inFile.isDirectory()) {
             throw new FileNotFoundException(inFile.getAbsolutePath());
         }
-        setTapContent(Files.readAllBytes(inFile.toPath()));
+        try (FileChannel channel = FileChannel.open(
+                inFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("file is too big: " + inFile);
+            }
+            ByteBuffer buffer;
+            if (size >= MIN_MAPPED_FILE_SIZE) {
+                // (mapování zůstane platné i po uzavření kanálu)
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            else {
+                buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                }
+                ((Buffer) buffer).flip();
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Formát výstupu metod {@code analyze*}; výchozí je text.
+     * 
+     * @param outputFormat
+     * @see JsonTapVisitor
+     */
+    public void setOutputFormat(OutputFormat outputFormat) {
+        if (outputFormat == null) {
+            throw new IllegalArgumentException("outputFormat=null");
+        }
+        this.outputFormat = outputFormat;
+    }
+
+    /**
+     * Režim obnovy poškozeného TAP: po chybě formátu se neskončí výjimkou,
+     * ale poškozený úsek se přeskočí až k další použitelné hlavičce
+     * a analýza pokračuje. Přeskočené úseky vrací 
+     * {@linkplain #getSkippedRanges()}.
+     * Program v BASICu a tabulka proměnných se přitom čtou jen v rámci 
+     * délky bloku dat; řádka s chybnou délkou přesahující blok je chyba
+     * (jinak by se s ní přeskočila i následující hlavička).
+     * (Jen pro TAP celý v paměti, ne při čtení z proudu
+     * a ne pro vybrané bloky.)
+     * 
+     * @param recover  výchozí je {@code false}
+     * @see TapResyncScanner
+     * @see TapVisitor#skipped(int, int, String)
+     */
+    public void setRecover(boolean recover) {
+        this.recover = recover;
+    }
+
+    /**
+     * Deduplikace bloků dat: blok, který už je v tabulce (např. z dříve
+     * zpracovaného TAP), se nedekóduje a místo jeho výpisu se předá jen
+     * {@linkplain TapVisitor#duplicateBlock(int, TapBlockType, int, String, int)}.
+     * Ostatní bloky se po zpracování do tabulky přidají; pro ostatní TAP
+     * platí až po {@linkplain #confirmDedup()}.
+     * 
+     * @param table  tabulka, nebo {@code null} = bez deduplikace (výchozí)
+     * @param source  jméno tohoto TAP pro odkazy v tabulce
+     * @see BlockDedupTable
+     */
+    public void setDedup(BlockDedupTable table, String source) {
+        if (table != null && source == null) {
+            throw new IllegalArgumentException("source=null");
+        }
+        this.dedupTable = table;
+        this.dedupSource = source;
+        this.dedupSession = null;
+    }
+
+    /**
+     * Potvrdí, že výstup posledního převodu je zapsaný; teprve pak na
+     * jeho bloky mohou odkazovat ostatní TAP (a teprve pak se přičte
+     * do statistiky tabulky). Bez deduplikace nedělá nic.
+     * 
+     * @see BlockDedupTable.Session#confirm()
+     */
+    public void confirmDedup() {
+        if (dedupSession != null) {
+            dedupSession.confirm();
+        }
+    }
+
+    /**
+     * 
+     * @return  deduplikace v posledním převodu, nebo {@code null}
+     */
+    BlockDedupTable.Session getDedupSession() {
+        return dedupSession;
+    }
+
+    /**
+     * Statistika dalších převodů: počty bloků, řádků a proměnných,
+     * délka TAP a čas jednotlivých fází (včetně zápisu výstupu).
+     * Měření řídí volající: {@linkplain TapStats#start()} před
+     * {@linkplain #setInFile(java.io.File)} a {@linkplain TapStats#stop()}
+     * po {@linkplain #closeOutWriter()}.
+     * 
+     * @param stats  nebo {@code null} = bez statistiky (výchozí)
+     */
+    public void setStats(TapStats stats) {
+        this.stats = stats;
+        out.setStats(stats);
+    }
+
+    /**
+     * Jméno vstupu pro diagnostické události (JFR, viz {@linkplain TapEvents}).
+     * Nastaví ho {@linkplain #setInFile(java.io.File)}; ostatní metody 
+     * {@code setIn*} a {@code setTapContent} ho zruší.
+     * 
+     * @param sourceName  např. cesta k TAP; může být {@code null}
+     */
+    public void setSourceName(String sourceName) {
+        this.sourceName = sourceName;
+    }
+
+    /**
+     * 
+     * @param events  nebo {@code null} = bez událostí
+     * @see TapEvents#load() 
+     */
+    void setEvents(TapEvents events) {
+        this.events = events;
+    }
+
+    private TapStats.Phase enterPhase(TapStats.Phase phase) {
+        return stats != null ? stats.enter(phase) : null;
+    }
+
+    private void exitPhase(TapStats.Phase previous) {
+        if (stats != null) {
+            stats.exit(previous);
+        }
+    }
+
+    /**
+     * 
+     * @return  úseky přeskočené při poslední analýze 
+     *      (v režimu obnovy, viz {@linkplain #setRecover(boolean)})
+     */
+    public List<TapResyncScanner.SkippedRange> getSkippedRanges() {
+        return Collections.unmodifiableList(skippedRanges);
+    }
+
+    /**
+     * Zpracují se jen dvojice bloků "hlavička + data" s hlavičkou na
+     * zadaných pozicích (např. z {@linkplain TapBlockIndex}); při čtení
+     * celého souboru se na ně přímo skočí, při čtení z proudu se ostatní
+     * dvojice přeskočí.
+     * 
+     * @param offsets  pozice hlaviček v TAP, 
+     *      nebo {@code null} = všechny bloky (výchozí)
+     */
+    public void setSelectedOffsets(int[] offsets) {
+        if (offsets == null) {
+            this.selectedOffsets = null;
+            return;
+        }
+        this.selectedOffsets = offsets.clone();
+        Arrays.sort(this.selectedOffsets);
+    }
+
+    /**
+     * Do výstupu vypíše jen seznam bloků z indexu (bez analýzy bloků).
+     * 
+     * @param index
+     * @throws IOException 
+     * @see TapBlockIndex#writeListing(cz.mp.zxs.tools.tap2bas.AsciiOutput) 
+     */
+    public void listBlocks(TapBlockIndex index) throws IOException {
+        if (! out.hasTarget()) {
+            setOutWriter(null);     // stdout
+        }
+        try {
+            index.writeListing(out);
+        }
+        finally {
+            out.flush();
+        }
+    }
+    
+    /**
+     * Do výstupu vypíše výsledek kontroly struktury a parity bloků.
+     * 
+     * @param report
+     * @throws IOException 
+     * @see TapVerifier#verify(java.nio.ByteBuffer) 
+     */
+    public void writeVerifyReport(TapVerifier.Report report) throws IOException {
+        if (! out.hasTarget()) {
+            setOutWriter(null);     // stdout
+        }
+        try {
+            report.writeReport(out, "");
+        }
+        finally {
+            out.flush();
+        }
+    }
+    
+    /**
+     * Nastaví vstup jako proud. TAP se pak čte a analyzuje postupně, 
+     * po blocích; v paměti je vždy jen jeden blok s hlavičkou a blok dat.
+     * Proud se neuzavírá, to je na volajícím.
+     * 
+     * @param in  proud s obsahem TAP souboru
+     * @see TapStreamReader
+     * @see #setInChannel(java.nio.channels.ReadableByteChannel) 
+     */
+    public void setInStream(InputStream in) {
+        if (in == null) {
+            throw new IllegalArgumentException("in=null");
+        }
+        this.tapContent = null;
+        this.tapStream = new TapStreamReader(in);
+        this.sourceName = null;
+    }
+
+    /**
+     * 
+     * @param channel
+     * @see #setInStream(java.io.InputStream) 
+     */
+    public void setInChannel(ReadableByteChannel channel) {
+        if (channel == null) {
+            throw new IllegalArgumentException("channel=null");
+        }
+        this.tapContent = null;
+        this.tapStream = new TapStreamReader(channel);
+        this.sourceName = null;
     }
     
     /**
@@ -851,26 +1504,47 @@ public class Tap2bas {
         if (tapContent.length < MIN_TAP_SIZE) {
             throw new IllegalArgumentException("tapContent.length < MIN_TAP_SIZE");
         }
+        this.tapStream = null;
         this.tapContent = new TapByteArrayData(tapContent);
+        this.sourceName = null;
+    }
+
+    /**
+     * Data se nekopírují, použije se přímo obsah {@code tapContent}
+     * (od {@code position} do {@code limit}).
+     * 
+     * @param tapContent  toto bude analyzováno
+     * @throws IllegalArgumentException
+     * @see #setInFile(java.io.File)
+     */
+    public void setTapContent(ByteBuffer tapContent) {
+        if (tapContent.remaining() < MIN_TAP_SIZE) {
+            throw new IllegalArgumentException("tapContent.length < MIN_TAP_SIZE");
+        }
+        this.tapStream = null;
+        this.tapContent = new TapByteArrayData(tapContent);
+        this.sourceName = null;
     }
     
     /**
+     * Výstup je v kódování {@code US-ASCII}, viz {@linkplain AsciiOutput}.
      * 
      * @param outFile  může být {@code null}. 
      *      V případě {@code null} se bude zapisovat na {@code stdout}.
      * @throws FileNotFoundException
      * @throws IOException 
+     * @see #setFlushPolicy(cz.mp.zxs.tools.tap2bas.FlushPolicy) 
      */
     public void setOutFile(File outFile) 
             throws FileNotFoundException, IOException {
         if (outFile == null) {
+            setOutWriter(null);
             return;
         }
                 
-        OutputStreamWriter writer = new OutputStreamWriter(
-                new FileOutputStream(outFile), 
-                Charset.forName("US-ASCII"));
-        setOutWriter(writer);
+        this.fout = null;
+        out.setTarget(new FileOutputStream(outFile), true);
+        out.setFlushPolicy(flushPolicy != null ? flushPolicy : FlushPolicy.FILE);
     }
     
     /**
@@ -880,81 +1554,80 @@ public class Tap2bas {
      * 
      * @param fout  může být {@code null}. 
      *      V případě {@code null} se bude zapisovat na {@code stdout}.
+     * @see #setFlushPolicy(cz.mp.zxs.tools.tap2bas.FlushPolicy) 
      */
     public void setOutWriter(Writer fout) {
         this.fout = fout;
-    }        
+        if (fout == null) {
+            // (System.out se neuzavírá)
+            out.setTarget(System.out, false);
+            out.setFlushPolicy(flushPolicy != null ? flushPolicy : FlushPolicy.BLOCK);
+        }
+        else {
+            out.setTarget(fout, true);
+            out.setFlushPolicy(flushPolicy != null ? flushPolicy : FlushPolicy.FILE);
+        }
+    }
 
     /**
-     * 
-     * @return 
+     * Výstup do proudu (bytů v {@code US-ASCII}), bez převodu přes
+     * {@code Writer}. Proud se neuzavírá, to je na volajícím.
+     *
+     * @param outStream
+     * @see #setOutWriter(java.io.Writer)
      */
-    public Writer getOutWriter() {
-        return fout;
+    public void setOutStream(OutputStream outStream) {
+        if (outStream == null) {
+            throw new IllegalArgumentException("outStream=null");
+        }
+        this.fout = null;
+        out.setTarget(outStream, false);
+        out.setFlushPolicy(flushPolicy != null ? flushPolicy : FlushPolicy.FILE);
     }
 
-//    /**
-//     * Vypíše se jako znak.
-//     * 
-//     * @param dataByte
-//     * @throws IOException 
-//     */
-//    private void writeCharToOut(int dataByte) throws IOException {
-//        writeToOut((char)dataByte);
-//    }
-
     /**
-     * Vypíše se jako číslo.
-     * 
-     * @param dataByte
-     * @throws IOException 
+     *
+     * @return  výstup zadaný metodou {@linkplain #setOutWriter(java.io.Writer)},
+     *      jinak {@code null}
      */
-    private void writeIntToOut(int dataByte) throws IOException {
-        writeToOut(String.valueOf(dataByte));
+    public Writer getOutWriter() {
+        return fout;
     }
 
     /**
+     * Kdy se má výstup odesílat. Pokud se nezadá, pro soubor se použije
+     * {@linkplain FlushPolicy#FILE} a pro {@code stdout} 
+     * {@linkplain FlushPolicy#BLOCK}.
      * 
-     * @param dataCh
-     * @throws IOException 
+     * @param flushPolicy  může být {@code null} (= výchozí podle výstupu)
      */
-    private void writeToOut(char dataCh) throws IOException {
-        if (fout == null) {
-            System.out.print(dataCh);
-            return;
+    public void setFlushPolicy(FlushPolicy flushPolicy) {
+        this.flushPolicy = flushPolicy;
+        if (flushPolicy != null) {
+            out.setFlushPolicy(flushPolicy);
         }
-        fout.write(dataCh);
     }
-    
+
     /**
      * 
-     * @param data
-     * @throws IOException 
+     * @param flushSize  počet bytů pro {@linkplain FlushPolicy#SIZE}
      */
-    private void writeToOut(String data) throws IOException {
-        if (fout == null) {
-            System.out.print(data);
-            return;
-        }
-        fout.write(data);
+    public void setFlushSize(int flushSize) {
+        out.setFlushSize(flushSize);
     }
 
     /**
-     * Uzavře "OutputWriter".
-     * Pokud OutputWriter nebyl zadán, neprovede nic.
+     * Uzavře výstup (soubor nebo "OutputWriter").
+     * Pokud se zapisovalo na {@code stdout}, jen odešle zbytek výstupu.
      *
      * @throws IOException
      */
     public void closeOutWriter() throws IOException {
-        if (fout == null) {
-            return;
-        }
-
         try {
-            fout.flush();
+            out.close();
         }
         finally {
-            fout.close();
+            fout = null;
         }
     }
 
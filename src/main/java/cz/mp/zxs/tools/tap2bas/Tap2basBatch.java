@@ -0,0 +1,1010 @@
+/*
+ * Tap2basBatch.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_ERR_GENERAL;
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_ERR_TAP_FORMAT;
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_OK;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dávkový převod více TAP souborů najednou.
+ * <p>
+ * Vstupem mohou být jednotlivé soubory, adresáře (prochází se rekurzivně,
+ * berou se soubory s příponou {@code .tap}, {@code .tap.gz} a {@code .zip})
+ * a masky ("glob"), např. {@code tapes/**}{@code /*.tap}.
+ * TAP se čtou i přímo z archivů, bez rozbalování na disk
+ * (viz {@linkplain TapArchive}); z archivu ZIP se převede každá položka
+ * {@code .tap} a výstup se pojmenuje podle cesty položky v archivu,
+ * např. {@code games.zip!/gold/gold.tap} &rarr; {@code games/gold/gold.txt}.
+ * Soubory se rozdělí mezi pracovní vlákna; každé vlákno má vlastní
+ * instanci {@linkplain Tap2bas}. Chyba v jednom souboru neukončí
+ * celý běh, jen se zaznamená do výsledku pro daný soubor.
+ * <p>
+ * Místo převodu lze soubory jen zkontrolovat,
+ * viz {@linkplain #setVerifyOnly(boolean)}, nebo z nich jen vybrat obrázky,
+ * viz {@linkplain #setExtractScrs(boolean)}.
+ * <p>
+ * S {@linkplain #setCache(cz.mp.zxs.tools.tap2bas.ConversionCache)} se
+ * výstupy převodů ukládají a nezměněné soubory se už znovu nepřevádí.
+ * S {@linkplain #setDedup(cz.mp.zxs.tools.tap2bas.BlockDedupTable)} se 
+ * bloky opakující se napříč soubory dekódují jen jednou.
+ *
+ * @author Martin Pokorný
+ * @see Tap2bas
+ * @see Tap2basCli
+ */
+public class Tap2basBatch {
+    private static final Logger log = LoggerFactory.getLogger(Tap2basBatch.class);
+
+    public static final String TAP_EXT = ".tap";
+    public static final String OUT_EXT_BASIC = ".bas";
+    public static final String OUT_EXT_ALL = ".txt";
+
+    private final int threads;
+    private File outDir;
+    private boolean onlyBasic = false;
+    private boolean analyzeVars = false;
+    private boolean verifyOnly = false;
+    private boolean extractScrs = false;
+    private boolean recover = false;
+    private FlushPolicy flushPolicy = null;
+    private OutputFormat outputFormat = OutputFormat.TEXT;
+    private int flushSize = AsciiOutput.DEFAULT_FLUSH_SIZE;
+    private ConversionCache cache = null;
+    private BlockDedupTable dedupTable = null;
+    private TapStatsTotal statsTotal = null;
+
+    /** Každé pracovní vlákno má vlastní {@code Tap2bas} (a tím i buffer výstupu). */
+    private final ThreadLocal<Tap2bas> workerTap2bas = new ThreadLocal<Tap2bas>() {
+        @Override
+        protected Tap2bas initialValue() {
+            return new Tap2bas();
+        }
+    };
+
+    /** Buffer pro data rozbalená z archivů; také jeden pro každé vlákno. */
+    private final ThreadLocal<TapArchive.Buffer> workerBuffer = 
+            new ThreadLocal<TapArchive.Buffer>() {
+        @Override
+        protected TapArchive.Buffer initialValue() {
+            return new TapArchive.Buffer();
+        }
+    };
+
+    /** Archivy ZIP otevřené během {@linkplain #run()}; sdílí je všechna vlákna. */
+    private final Map<File, TapArchive> openArchives = new HashMap<File, TapArchive>();
+
+    private final List<Item> items = new ArrayList<Item>();
+
+    /**
+     *
+     * @param threads  počet pracovních vláken
+     * @throws IllegalArgumentException
+     */
+    public Tap2basBatch(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads <= 0");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     *
+     * @param outDir  adresář pro výstupy. Může být {@code null}, pak se
+     *      výstup zapíše do stejného adresáře jako je vstupní soubor.
+     */
+    public void setOutDir(File outDir) {
+        this.outDir = outDir;
+    }
+
+    /**
+     *
+     * @param onlyBasic
+     * @param analyzeVars
+     * @see Tap2bas#analyzeAndExtractOnlyBasic()
+     * @see Tap2bas#analyzeAll()
+     * @see Tap2bas#analyzeWithoutVars()
+     */
+    public void setMode(boolean onlyBasic, boolean analyzeVars) {
+        this.onlyBasic = onlyBasic;
+        this.analyzeVars = onlyBasic ? false : analyzeVars;
+    }
+
+    /**
+     *
+     * @param verifyOnly  {@code true} = soubory se nepřevádí, jen se
+     *      zkontroluje struktura a parita bloků; výstupní soubory se nevytváří
+     * @see TapVerifier
+     * @see Result#getVerifyReport()
+     */
+    public void setVerifyOnly(boolean verifyOnly) {
+        this.verifyOnly = verifyOnly;
+    }
+
+    /**
+     *
+     * @param extractScrs  {@code true} = soubory se nepřevádí, jen se
+     *      z nich vyberou obrázky {@code SCREEN$} do souborů {@code .scr}
+     *      (pojmenovaných stejně jako výstup převodu)
+     * @see ScrExtractor
+     */
+    public void setExtractScrs(boolean extractScrs) {
+        this.extractScrs = extractScrs;
+    }
+
+    /**
+     *
+     * @param recover  přeskakovat poškozené úseky TAP; počet přeskočených
+     *      úseků je pak ve zprávě výsledku (ten zůstává v pořádku)
+     * @see Tap2bas#setRecover(boolean)
+     */
+    public void setRecover(boolean recover) {
+        this.recover = recover;
+    }
+
+    /**
+     *
+     * @param cache  může být {@code null} (= výchozí, výstupy se neukládají);
+     *      výsledek převodu z cache má zprávu {@code cached}
+     * @see ConversionCache
+     */
+    public void setCache(ConversionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     *
+     * @param dedupTable  tabulka sdílená všemi soubory dávky, nebo 
+     *      {@code null} (= výchozí, bez deduplikace). Výstup pak závisí
+     *      i na dříve zpracovaných souborech, proto se neukládá do cache;
+     *      nezávisí ale na počtu vláken (první výskyt je první v pořadí 
+     *      souborů, viz {@linkplain #claimDedupBlocks(ExecutorService)}).
+     * @see Tap2bas#setDedup(cz.mp.zxs.tools.tap2bas.BlockDedupTable, java.lang.String)
+     */
+    public void setDedup(BlockDedupTable dedupTable) {
+        this.dedupTable = dedupTable;
+    }
+
+    /**
+     *
+     * @param statsTotal  sem se přičte statistika převodu každého souboru,
+     *      nebo {@code null} (= výchozí, bez statistiky)
+     * @see Tap2bas#setStats(cz.mp.zxs.tools.tap2bas.TapStats)
+     */
+    public void setStats(TapStatsTotal statsTotal) {
+        this.statsTotal = statsTotal;
+    }
+
+    /**
+     *
+     * @param flushPolicy  může být {@code null} (= výchozí)
+     * @param flushSize
+     * @see Tap2bas#setFlushPolicy(cz.mp.zxs.tools.tap2bas.FlushPolicy)
+     */
+    public void setFlushPolicy(FlushPolicy flushPolicy, int flushSize) {
+        this.flushPolicy = flushPolicy;
+        this.flushSize = flushSize;
+    }
+
+    /**
+     *
+     * @param outputFormat  pro JSON má výstupní soubor příponu podle formátu
+     * @see Tap2bas#setOutputFormat(cz.mp.zxs.tools.tap2bas.OutputFormat)
+     */
+    public void setOutputFormat(OutputFormat outputFormat) {
+        if (outputFormat == null) {
+            throw new IllegalArgumentException("outputFormat=null");
+        }
+        this.outputFormat = outputFormat;
+    }
+
+    /**
+     * Přidá vstup; soubor, adresář nebo masku ("glob").
+     *
+     * @param input
+     * @return  počet přidaných souborů
+     * @throws IOException
+     */
+    public int addInput(String input) throws IOException {
+        if (input == null) {
+            throw new IllegalArgumentException("input=null");
+        }
+        List<Item> found = expandInput(input);
+        items.addAll(found);
+        log.info("input \"" + input + "\": " + found.size() + " file(s)");
+        return found.size();
+    }
+
+    /**
+     *
+     * @return  počet souborů ke zpracování
+     */
+    public int getInputCount() {
+        return items.size();
+    }
+
+    /**
+     * Zjistí, zda zadaný vstup je maska ("glob").
+     *
+     * @param input
+     * @return
+     */
+    public static boolean isGlob(String input) {
+        for (int i=0; i<input.length(); i++) {
+            char ch = input.charAt(i);
+            if (ch == '*' || ch == '?' || ch == '[' || ch == '{') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     *
+     * @param input  soubor, adresář, nebo maska
+     * @return
+     * @throws IOException
+     */
+    private static List<Item> expandInput(String input) throws IOException {
+        List<Item> result = new ArrayList<Item>();
+        if (isGlob(input)) {
+            // základní adresář = vše před první částí cesty s "glob" znaky
+            String path = input.replace('\\', '/');
+            int firstGlobIdx = 0;
+            while (! isGlob(String.valueOf(path.charAt(firstGlobIdx)))) {
+                firstGlobIdx++;
+            }
+            int slashIdx = path.lastIndexOf('/', firstGlobIdx);
+            String base = slashIdx < 0 ? "." : path.substring(0, slashIdx + 1);
+            String pattern = path.substring(slashIdx + 1);
+            File baseDir = new File(base);
+            if (baseDir.isDirectory()) {
+                collectFiles(baseDir, getGlobMatcher(pattern), result);
+            }
+        }
+        else {
+            File file = new File(input);
+            if (file.isDirectory()) {
+                collectFiles(file, null, result);
+            }
+            else if (file.exists()) {
+                addFile(file, file.getName(), result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * V Javě {@code **}{@code /} vyžaduje aspoň jeden adresář, takže např.
+     * {@code tapes/**}{@code /*.tap} nenajde {@code tapes/top.tap}. 
+     * Vrácená maska proto zkouší i varianty bez {@code **}{@code /}
+     * (jako v shellu s {@code globstar}).
+     *
+     * @param pattern  maska relativně k základnímu adresáři
+     * @return
+     */
+    static PathMatcher getGlobMatcher(String pattern) {
+        final List<PathMatcher> matchers = new ArrayList<PathMatcher>();
+        Set<String> variants = new HashSet<String>();
+        addGlobVariants(pattern, 0, variants);
+        for (String variant : variants) {
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + variant));
+        }
+        return new PathMatcher() {
+            @Override
+            public boolean matches(Path path) {
+                for (PathMatcher matcher : matchers) {
+                    if (matcher.matches(path)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     *
+     * @param pattern
+     * @param fromIdx  odkud hledat další {@code **}{@code /}
+     * @param variants  sem se přidá {@code pattern} a všechny varianty
+     *      s vynechanými {@code **}{@code /} (od {@code fromIdx})
+     */
+    private static void addGlobVariants(String pattern, int fromIdx, Set<String> variants) {
+        variants.add(pattern);
+        int idx = pattern.indexOf("**/", fromIdx);
+        while (idx >= 0) {
+            // (jen celá část cesty, ne např. "a**/")
+            if (idx == 0 || pattern.charAt(idx - 1) == '/') {
+                addGlobVariants(pattern.substring(0, idx) + pattern.substring(idx + 3),
+                        idx, variants);
+            }
+            idx = pattern.indexOf("**/", idx + 3);
+        }
+    }
+
+    /**
+     * Přidá soubor; z archivu ZIP přidá všechny jeho položky {@code .tap}.
+     *
+     * @param file
+     * @param relPath  cesta relativně k zadanému adresáři
+     * @param result
+     * @throws IOException
+     */
+    private static void addFile(File file, String relPath, List<Item> result) 
+            throws IOException {
+        if (TapArchive.isZip(file)) {
+            String dir = TapArchive.stripArchiveExt(relPath) + "/";
+            String localDir = TapArchive.stripArchiveExt(file.getName()) + "/";
+            try (TapArchive archive = new TapArchive(file)) {
+                for (String entryName : archive.getTapEntryNames()) {
+                    result.add(new Item(file, entryName, 
+                            dir + entryName, localDir + entryName));
+                }
+            }
+        }
+        else {
+            String outPath = TapArchive.isGzip(file) 
+                    ? TapArchive.stripArchiveExt(relPath) : relPath;
+            result.add(new Item(file, null, outPath, new File(outPath).getName()));
+        }
+    }
+
+    /**
+     *
+     * @param name
+     * @return  {@code true} pro soubor {@code .tap}, {@code .tap.gz} nebo
+     *      {@code .zip}
+     */
+    private static boolean isDefaultInput(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(TAP_EXT) || lower.endsWith(TAP_EXT + TapArchive.GZIP_EXT)
+                || lower.endsWith(TapArchive.ZIP_EXT);
+    }
+
+    /**
+     *
+     * @param baseDir
+     * @param matcher  může být {@code null}, pak se berou soubory s
+     *      příponou {@code .tap}, {@code .tap.gz} a {@code .zip}
+     * @param result
+     * @throws IOException
+     */
+    private static void collectFiles(File baseDir, final PathMatcher matcher,
+            final List<Item> result) throws IOException {
+        final Path basePath = baseDir.toPath();
+        final List<Item> found = new ArrayList<Item>();
+        Files.walkFileTree(basePath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) 
+                    throws IOException {
+                if (! attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path relative = basePath.relativize(file);
+                boolean matches = (matcher == null)
+                        ? isDefaultInput(file.getFileName().toString())
+                        : matcher.matches(relative);
+                if (matches) {
+                    addFile(file.toFile(), relative.toString().replace('\\', '/'), found);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        // (pořadí procházení adresářů závisí na souborovém systému)
+        Collections.sort(found);
+        result.addAll(found);
+    }
+
+    /**
+     * Zpracuje všechny přidané soubory.
+     *
+     * @return  výsledky v pořadí, v jakém byly soubory přidány
+     * @throws InterruptedException
+     */
+    public List<Result> run() throws InterruptedException {
+        log.info("files = " + items.size() + "; threads = " + threads);
+        assignOutSuffixes();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Result>> futures = new ArrayList<Future<Result>>(items.size());
+        boolean dedup = dedupTable != null && !verifyOnly && !extractScrs;
+        try {
+            if (dedup) {
+                claimDedupBlocks(executor);
+            }
+            for (final Item item : items) {
+                futures.add(executor.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        if (verifyOnly) {
+                            return verify(item);
+                        }
+                        return extractScrs ? extractScreens(item) : convert(item, true);
+                    }
+                }));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<Result> results = new ArrayList<Result>(items.size());
+        try {
+            for (int i=0; i<futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException ex) {
+                    log.error(ex.getMessage(), ex);
+                    results.add(new Result(items.get(i), null, RESULT_ERR_GENERAL,
+                            String.valueOf(ex.getCause()), 0));
+                }
+            }
+            if (dedup) {
+                reconvertDangling(results);
+            }
+        } finally {
+            closeArchives();
+            if (dedup) {
+                dedupTable.setFixedOwners(false);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Určí předem první výskyty bloků pro deduplikaci: bloky se najdou
+     * ve všech souborech paralelně, ale do tabulky se přidají v pořadí
+     * souborů. Odkaz tak vede vždy na první soubor (v pořadí) s blokem
+     * a výstup nezávisí na tom, které vlákno se k bloku dostane dřív;
+     * také se žádný blok nedekóduje ve dvou vláknech zároveň.
+     * <p>
+     * Takto určený první výskyt platí, až když je výstup jeho souboru
+     * zapsaný; pokud převod prvního souboru skončí chybou dřív, než blok
+     * dekóduje, soubory s odkazem na blok se převedou znovu, viz
+     * {@linkplain #reconvertDangling(List)}.
+     *
+     * @param executor
+     * @throws InterruptedException
+     */
+    private void claimDedupBlocks(ExecutorService executor) throws InterruptedException {
+        List<Future<List<BlockDedupTable.Block>>> futures = 
+                new ArrayList<Future<List<BlockDedupTable.Block>>>(items.size());
+        for (final Item item : items) {
+            futures.add(executor.submit(new Callable<List<BlockDedupTable.Block>>() {
+                @Override
+                public List<BlockDedupTable.Block> call() throws IOException {
+                    return BlockDedupTable.findBlocks(readItem(item, null), 
+                            onlyBasic, analyzeVars);
+                }
+            }));
+        }
+        for (int i=0; i<futures.size(); i++) {
+            Item item = items.get(i);
+            try {
+                dedupTable.addAll(futures.get(i).get(), item.getDedupSource());
+            } catch (ExecutionException ex) {
+                // (chyba se ohlásí při převodu)
+                log.info(item.getSourceName() + ": " + ex.getCause());
+            }
+        }
+        dedupTable.setFixedOwners(true);
+    }
+
+    /**
+     * Převede znovu soubory, jejichž výstup odkazuje na blok, jehož výpis
+     * nevznikl (převod prvního souboru s blokem skončil chybou, nebo blok
+     * přeskočil jako poškozený). Nepotvrzené první výskyty se z tabulky
+     * odeberou a soubory se převádí postupně v pořadí, s novými prvními
+     * výskyty, takže výstup zase nezávisí na vláknech. Pokud některý
+     * z nových převodů skončí chybou, opakuje se to (soubor s chybou se
+     * už znovu nepřevádí, takže opakování skončí).
+     *
+     * @param results  výsledky v pořadí souborů; nahradí se výsledky
+     *      nových převodů
+     */
+    private void reconvertDangling(List<Result> results) {
+        dedupTable.setFixedOwners(false);
+        boolean reconverted;
+        do {
+            dedupTable.removeUnconfirmed();
+            reconverted = false;
+            for (int i=0; i<items.size(); i++) {
+                Item item = items.get(i);
+                if (results.get(i).isOk() && item.dedupSession != null
+                        && !item.dedupSession.hasValidReferences()) {
+                    log.info(item.getSourceName() + ": reconverting, a referenced block was not written");
+                    item.dedupSession.revoke();
+                    results.set(i, convert(item, false));
+                    reconverted = true;
+                }
+            }
+        } while (reconverted);
+    }
+
+    /**
+     * Načte obsah TAP; z archivu ho rozbalí do bufferu vlákna.
+     *
+     * @param item
+     * @param stats  může být {@code null}
+     * @return  obsah; z archivu platí jen do dalšího čtení ve stejném vlákně
+     * @throws IOException
+     */
+    private ByteBuffer readItem(Item item, TapStats stats) throws IOException {
+        if (item.entryName == null && !TapArchive.isGzip(item.file)) {
+            return Tap2bas.readTapFile(item.file, stats);
+        }
+        TapStats.Phase previous = stats != null 
+                ? stats.enter(TapStats.Phase.READ) : null;
+        try {
+            if (item.entryName == null) {
+                return TapArchive.readGzip(item.file, workerBuffer.get());
+            }
+            return getArchive(item.file).read(item.entryName, workerBuffer.get());
+        } finally {
+            if (stats != null) {
+                stats.exit(previous);
+            }
+        }
+    }
+
+    /**
+     *
+     * @param file
+     * @return  otevřený archiv; otevře se jen jednou pro celý běh
+     * @throws IOException
+     */
+    private TapArchive getArchive(File file) throws IOException {
+        synchronized (openArchives) {
+            TapArchive archive = openArchives.get(file);
+            if (archive == null) {
+                archive = new TapArchive(file);
+                openArchives.put(file, archive);
+            }
+            return archive;
+        }
+    }
+
+    /**
+     * Uzavře archivy otevřené během {@linkplain #run()}.
+     */
+    private void closeArchives() {
+        synchronized (openArchives) {
+            for (TapArchive archive : openArchives.values()) {
+                try {
+                    archive.close();
+                } catch (IOException ioex) {
+                    log.warn("cannot close: " + archive.getFile() + "; " + ioex.getMessage());
+                }
+            }
+            openArchives.clear();
+        }
+    }
+
+    /**
+     *
+     * @param item
+     * @return
+     */
+    private File getOutFile(Item item) {
+        if (outputFormat.getExtension() != null) {
+            return getOutFile(item, outputFormat.getExtension());
+        }
+        return getOutFile(item, onlyBasic ? OUT_EXT_BASIC : OUT_EXT_ALL);
+    }
+
+    /**
+     *
+     * @param item
+     * @param ext  přípona výstupního souboru
+     * @return
+     */
+    private File getOutFile(Item item, String ext) {
+        if (outDir == null) {
+            return new File(item.file.getParentFile(), 
+                    replaceExt(item.localPath, item.outSuffix + ext));
+        }
+        return new File(outDir, replaceExt(item.relPath, item.outSuffix + ext));
+    }
+
+    /**
+     * Zajistí, aby dva vstupy nepsaly do stejného výstupu (např. 
+     * {@code a/x.tap} a {@code b/x.tap} s {@code outDir}, nebo 
+     * {@code games.zip!/x.tap} a {@code games/x.tap}). Výstup prvního
+     * vstupu (v pořadí přidání) zůstane, další dostanou příponu 
+     * {@code _2}, {@code _3} ... (např. {@code x_2.bas}).
+     */
+    private void assignOutSuffixes() {
+        Set<String> taken = new HashSet<String>();
+        List<Item> duplicates = new ArrayList<Item>();
+        for (Item item : items) {
+            item.outSuffix = "";
+            if (! taken.add(getOutKey(item))) {
+                duplicates.add(item);
+            }
+        }
+        for (Item item : duplicates) {
+            String first = getOutFile(item).getPath();
+            int num = 2;
+            do {
+                item.outSuffix = "_" + num++;
+            } while (! taken.add(getOutKey(item)));
+            log.warn("duplicate output " + first + "; " + item.getSourceName() 
+                    + " -> " + getOutFile(item));
+        }
+    }
+
+    /**
+     *
+     * @param item
+     * @return  klíč výstupu pro hledání duplicit (nezávisí na velikosti písmen,
+     *      kvůli souborovým systémům, které ji nerozlišují)
+     */
+    private String getOutKey(Item item) {
+        return getOutFile(item).getAbsoluteFile().toPath().normalize()
+                .toString().toLowerCase();
+    }
+
+    /**
+     *
+     * @param path
+     * @param ext
+     * @return  {@code path} s příponou {@code ext} místo původní
+     */
+    private static String replaceExt(String path, String ext) {
+        int dotIdx = path.lastIndexOf('.');
+        if (dotIdx > path.lastIndexOf('/')) {
+            path = path.substring(0, dotIdx);
+        }
+        return path + ext;
+    }
+
+    /**
+     * Převede jeden soubor. Nevyhazuje výjimky, chyba se vrátí ve výsledku.
+     *
+     * @param item
+     * @param measure  {@code false} = nepřičítat do souhrnné statistiky
+     *      (soubor se převádí znovu)
+     * @return
+     */
+    private Result convert(Item item, boolean measure) {
+        long startNs = System.nanoTime();
+        File outFile = getOutFile(item);
+        Tap2bas tap2bas = workerTap2bas.get();
+        tap2bas.setFlushPolicy(flushPolicy);
+        tap2bas.setFlushSize(flushSize);
+        tap2bas.setOutputFormat(outputFormat);
+        tap2bas.setRecover(recover);
+        tap2bas.setDedup(dedupTable, dedupTable != null ? item.getDedupSource() : null);
+        TapStats stats = null;
+        if (statsTotal != null && measure) {
+            stats = new TapStats();
+            stats.start();
+        }
+        tap2bas.setStats(stats);
+        int resultCode = RESULT_OK;
+        String message = null;
+        String cacheKey = null;
+        try {
+            ByteBuffer tapContent = readItem(item, stats);
+            File parent = outFile.getParentFile();
+            if (parent != null && parent.mkdirs()) {
+                log.info("Created directory for: " + outFile);
+            }
+            if (cache != null && dedupTable == null) {
+                cacheKey = ConversionCache.key(tapContent, onlyBasic, analyzeVars,
+                        outputFormat, recover);
+                if (cache.copyTo(cacheKey, outFile)) {
+                    addStats(stats, item);
+                    long timeMs = (System.nanoTime() - startNs) / 1000000;
+                    return new Result(item, outFile, RESULT_OK, "cached", timeMs);
+                }
+            }
+            tap2bas.setTapContent(tapContent);
+            tap2bas.setSourceName(item.getSourceName());
+            tap2bas.setOutFile(outFile);
+
+            if (onlyBasic) {
+                tap2bas.analyzeAndExtractOnlyBasic();
+            }
+            else if (analyzeVars) {
+                tap2bas.analyzeAll();
+            }
+            else {
+                tap2bas.analyzeWithoutVars();
+            }
+            List<TapResyncScanner.SkippedRange> skipped = tap2bas.getSkippedRanges();
+            if (! skipped.isEmpty()) {
+                int skippedBytes = 0;
+                for (TapResyncScanner.SkippedRange range : skipped) {
+                    skippedBytes += range.getLength();
+                }
+                message = "recovered; skipped " + skipped.size() 
+                        + " damaged range(s), " + skippedBytes + " B";
+                log.info(item.getSourceName() + ": " + message);
+                // (z cache by se zpráva o přeskočených úsecích ztratila)
+                cacheKey = null;
+            }
+        } catch (InvalidTapException ex) {
+            log.info(item.getSourceName() + ": " + ex.getMessage(), ex);
+            resultCode = RESULT_ERR_TAP_FORMAT;
+            message = ex.getClass().getName() + ": " + ex.getMessage();
+        } catch (Exception ex) {
+            log.info(item.getSourceName() + ": " + ex.getMessage(), ex);
+            resultCode = RESULT_ERR_GENERAL;
+            message = ex.getClass().getName() + ": " + ex.getMessage();
+        } finally {
+            try {
+                tap2bas.closeOutWriter();
+            } catch (IOException ioex) {
+                log.error(ioex.getMessage(), ioex);
+                if (resultCode == RESULT_OK) {
+                    resultCode = RESULT_ERR_GENERAL;
+                    message = ioex.getClass().getName() + ": " + ioex.getMessage();
+                }
+            }
+        }
+        addStats(stats, item);
+        if (dedupTable != null) {
+            item.dedupSession = tap2bas.getDedupSession();
+            if (resultCode == RESULT_OK) {
+                tap2bas.confirmDedup();
+            }
+        }
+        if (cacheKey != null && resultCode == RESULT_OK) {
+            try {
+                cache.put(cacheKey, outFile);
+            } catch (IOException ioex) {
+                // (výstup je v pořádku, jen se neuloží)
+                log.warn("cannot cache: " + outFile + "; " + ioex.getMessage());
+            }
+        }
+        long timeMs = (System.nanoTime() - startNs) / 1000000;
+        return new Result(item, outFile, resultCode, message, timeMs);
+    }
+
+    /**
+     * Ukončí měření převodu a přičte ho do souhrnu.
+     *
+     * @param stats  může být {@code null} (bez statistiky)
+     * @param item
+     */
+    private void addStats(TapStats stats, Item item) {
+        if (stats != null) {
+            stats.stop();
+            statsTotal.add(stats, item.getSourceName());
+        }
+    }
+
+    /**
+     * Zkontroluje jeden soubor. Nevyhazuje výjimky, chyba se vrátí ve výsledku.
+     *
+     * @param item
+     * @return
+     * @see TapVerifier#verify(java.nio.ByteBuffer)
+     */
+    private Result verify(Item item) {
+        long startNs = System.nanoTime();
+        TapVerifier.Report report = null;
+        int resultCode = RESULT_OK;
+        String message = null;
+        try {
+            ByteBuffer tapContent = readItem(item, null);
+            report = TapVerifier.verify(tapContent);
+            if (! report.isOk()) {
+                resultCode = RESULT_ERR_TAP_FORMAT;
+                message = report.getSummary();
+            }
+        } catch (Exception ex) {
+            log.info(item.getSourceName() + ": " + ex.getMessage(), ex);
+            resultCode = RESULT_ERR_GENERAL;
+            message = ex.getClass().getName() + ": " + ex.getMessage();
+        }
+        long timeMs = (System.nanoTime() - startNs) / 1000000;
+        return new Result(item, null, resultCode, message, timeMs, report);
+    }
+
+    /**
+     * Vybere obrázky z jednoho souboru. Nevyhazuje výjimky, chyba se vrátí 
+     * ve výsledku.
+     *
+     * @param item
+     * @return  výsledek; výstupní soubor je první zapsaný obrázek
+     *      ({@code null}, pokud TAP žádný neobsahuje)
+     * @see ScrExtractor#extract(java.io.File, java.io.File)
+     */
+    private Result extractScreens(Item item) {
+        long startNs = System.nanoTime();
+        File outFile = getOutFile(item, ScrExtractor.SCR_EXT);
+        File firstScrFile = null;
+        int resultCode = RESULT_OK;
+        String message;
+        try {
+            List<File> written = item.isArchived() 
+                    ? ScrExtractor.extract(readItem(item, null), outFile)
+                    : ScrExtractor.extract(item.file, outFile);
+            if (! written.isEmpty()) {
+                firstScrFile = written.get(0);
+            }
+            message = "screens: " + written.size();
+        } catch (Exception ex) {
+            log.info(item.getSourceName() + ": " + ex.getMessage(), ex);
+            resultCode = RESULT_ERR_GENERAL;
+            message = ex.getClass().getName() + ": " + ex.getMessage();
+        }
+        long timeMs = (System.nanoTime() - startNs) / 1000000;
+        return new Result(item, firstScrFile, resultCode, message, timeMs);
+    }
+
+    /**
+     * Jeden vstupní soubor dávky (nebo položka archivu ZIP).
+     */
+    private static final class Item implements Comparable<Item> {
+        /** soubor TAP, nebo archiv */
+        final File file;
+        /** jméno položky v archivu ZIP, nebo {@code null} */
+        final String entryName;
+        /** cesta relativně k zadanému adresáři; podle ní se odvozuje jméno výstupu */
+        final String relPath;
+        /** cesta relativně k adresáři {@code file}; pro výstup bez {@code outDir} */
+        final String localPath;
+        /** přípona jména výstupu, pokud by se jinak shodoval s jiným, např. {@code _2} */
+        String outSuffix = "";
+        /** deduplikace v posledním převodu, viz {@linkplain Tap2basBatch#reconvertDangling(List)} */
+        BlockDedupTable.Session dedupSession = null;
+
+        Item(File file, String entryName, String relPath, String localPath) {
+            this.file = file;
+            this.entryName = entryName;
+            this.relPath = relPath;
+            this.localPath = localPath;
+        }
+
+        /**
+         *
+         * @return  {@code true} = obsah se rozbaluje z archivu
+         */
+        boolean isArchived() {
+            return entryName != null || TapArchive.isGzip(file);
+        }
+
+        /**
+         *
+         * @return  cesta k souboru, pro položku archivu ZIP
+         *      např. {@code games.zip!/gold/gold.tap}
+         */
+        String getSourceName() {
+            return entryName == null 
+                    ? file.getPath() : TapArchive.getSourceName(file, entryName);
+        }
+
+        /**
+         *
+         * @return  jméno pro {@linkplain BlockDedupTable}; nezávisí na
+         *      tom, jak byla zadána cesta
+         */
+        String getDedupSource() {
+            String source = BlockDedupTable.getSourceName(file);
+            return entryName == null ? source : source + TapArchive.ENTRY_SEPARATOR + entryName;
+        }
+
+        @Override
+        public int compareTo(Item o) {
+            int result = relPath.compareTo(o.relPath);
+            // (stejná cesta: např. games/x.tap a games.zip!/x.tap)
+            return result != 0 ? result : getSourceName().compareTo(o.getSourceName());
+        }
+    }
+
+    /**
+     * Výsledek převodu jednoho souboru dávky.
+     */
+    public static final class Result {
+        private final File inFile;
+        private final String inName;
+        private final File outFile;
+        private final int resultCode;
+        private final String message;
+        private final long timeMs;
+        private final TapVerifier.Report verifyReport;
+
+        Result(Item item, File outFile, int resultCode, String message, long timeMs) {
+            this(item, outFile, resultCode, message, timeMs, null);
+        }
+
+        Result(Item item, File outFile, int resultCode, String message, long timeMs,
+                TapVerifier.Report verifyReport) {
+            this.inFile = item.file;
+            this.inName = item.getSourceName();
+            this.outFile = outFile;
+            this.resultCode = resultCode;
+            this.message = message;
+            this.timeMs = timeMs;
+            this.verifyReport = verifyReport;
+        }
+
+        /**
+         *
+         * @return  vstupní soubor; pro položku archivu ZIP archiv
+         */
+        public File getInFile() {
+            return inFile;
+        }
+
+        /**
+         *
+         * @return  cesta ke vstupu, pro položku archivu ZIP
+         *      např. {@code games.zip!/gold/gold.tap}
+         */
+        public String getInName() {
+            return inName;
+        }
+
+        /**
+         * @return  výstupní soubor, nebo {@code null} při jen kontrole souborů
+         *      (nebo pokud nebyl nalezen žádný obrázek)
+         */
+        public File getOutFile() {
+            return outFile;
+        }
+
+        /**
+         * @return  jedna z hodnot {@code Tap2basCli.RESULT_*}
+         */
+        public int getResultCode() {
+            return resultCode;
+        }
+
+        public boolean isOk() {
+            return resultCode == RESULT_OK;
+        }
+
+        /**
+         * @return  popis chyby (nebo přeskočených úseků) nebo {@code null}
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        public long getTimeMs() {
+            return timeMs;
+        }
+
+        /**
+         * @return  výsledek kontroly souboru, nebo {@code null}, pokud se
+         *      soubor převáděl (nebo jej nešlo načíst)
+         * @see Tap2basBatch#setVerifyOnly(boolean)
+         */
+        public TapVerifier.Report getVerifyReport() {
+            return verifyReport;
+        }
+    }
+
+}   // Tap2basBatch.java
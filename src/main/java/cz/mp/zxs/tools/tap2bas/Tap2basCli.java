@@ -9,9 +9,17 @@ package cz.mp.zxs.tools.tap2bas;
 
 import static cz.mp.zxs.tools.tap2bas.Version.VERSION;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -39,16 +47,46 @@ public final class Tap2basCli {
     private boolean optHelp = false;
     private boolean optVersion = false;
     private String optInputFileName = null;
+    private String[] optInputFileNames = null;
     private String optOutFileName = null;        
+    /** {@code -i -} */
+    private boolean optStdin = false;
+    private String optOutDirName = null;
+    private int optThreads = Runtime.getRuntime().availableProcessors();
     private boolean optOnlyBasic = false;
     private boolean optVarsAnalyze = false;
+    private boolean optStream = false;
+    private FlushPolicy optFlushPolicy = null;
+    private OutputFormat optFormat = OutputFormat.TEXT;
+    private int optFlushSize = AsciiOutput.DEFAULT_FLUSH_SIZE;
+    private boolean optIndex = false;
+    private boolean optList = false;
+    private int[] optBlockNums = null;
+    private String optBlockName = null;
+    private boolean optVerify = false;
+    private boolean optRecover = false;
+    private boolean optExtractScrs = false;
+    private String optScrFileName = null;
+    private String optCacheDirName = null;
+    private long optCacheSize = ConversionCache.DEFAULT_MAX_SIZE;
+    private boolean optDedup = false;
+    private boolean optServer = false;
+    private int optServerPort = Tap2basServer.DEFAULT_PORT;
+    private String optDedupFileName = null;
+    private boolean optStats = false;
+    private boolean optStatsJson = false;
 
-    private Tap2bas tap2bas = new Tap2bas();
+    /** jen pro převod jednoho souboru; (ne např. pro {@code --help} a dávku) */
+    private Tap2bas tap2bas = null;
+    private InputStream tapInStream = null;
 
     public static final int RESULT_OK = 0;
     public static final int RESULT_ERR_GENERAL = 1;
     public static final int RESULT_ERR_OPTS = 2;
     public static final int RESULT_ERR_TAP_FORMAT = 3;
+
+    /** {@code -i -} = {@code stdin}, {@code -o -} = {@code stdout} */
+    static final String STDIO_FILE_NAME = "-";
         
     /**
      * 
@@ -66,6 +104,20 @@ public final class Tap2basCli {
         pout("Examples:");
         pout("  java -jar zxs_tap2bas.jar -i gold.tap -o gold.txt");
         pout("  java -jar zxs_tap2bas.jar -i gold.tap --onlyBasic -o gold.bas");
+        pout("  java -jar zxs_tap2bas.jar -i tapes/ --onlyBasic --outDir basic --threads 8");
+        pout("  java -jar zxs_tap2bas.jar -i \"tapes/**/*.tap\" --outDir txt");
+        pout("  java -jar zxs_tap2bas.jar -i games.tap --index --list");
+        pout("  java -jar zxs_tap2bas.jar -i games.tap --index --name gold --onlyBasic");
+        pout("  java -jar zxs_tap2bas.jar -i tapes/ --verify");
+        pout("  java -jar zxs_tap2bas.jar -i gold.tap.gz -o gold.txt");
+        pout("  java -jar zxs_tap2bas.jar -i games.zip --outDir txt");
+        pout("  unzip -p games.zip gold.tap | java -jar zxs_tap2bas.jar -i - -o - | less");
+        pout("  java -jar zxs_tap2bas.jar -i gold.tap --extractScrs gold.scr");
+        pout("  java -jar zxs_tap2bas.jar -i tapes/ --outDir txt --cache ~/.tap2bas-cache");
+        pout("  java -jar zxs_tap2bas.jar -i tapes/ --outDir txt --dedup tapes.dedup");
+        pout("  java -jar zxs_tap2bas.jar -i tapes/ --outDir txt --stats json");
+        pout("  java -jar zxs_tap2bas.jar --server &");
+        pout("  java -jar zxs_tap2bas.jar " + Tap2basClient.CLIENT_ARG + " -i gold.tap -o gold.txt");
     }
     
     /**
@@ -134,17 +186,24 @@ public final class Tap2basCli {
         options.addOption(version);
 
         Option inFileName = Option.builder("i")
-                .hasArg(true)
+                .hasArgs()
                 .required(false)
-                .desc("input TAP file name. Mandatory")
+                .desc("input TAP file name. Mandatory. "
+                        + "More files, directories or glob patterns "
+                        + "(e.g. \"tapes/**/*.tap\") turn on the batch mode. "
+                        + "\"-\" reads stdin (block by block, as with --stream). "
+                        + "A .tap.gz file is decompressed in memory; "
+                        + "a .zip file turns on the batch mode and all .tap "
+                        + "entries are converted (the outputs are named "
+                        + "after the entry paths).")
                 .build();
         options.addOption(inFileName);
 
         Option outFileName = Option.builder("o")
                 .hasArg(true)
                 .required(false)
-                .desc("output file name. If it is not specified, "
-                        + "the output is made to stdout.")
+                .desc("output file name. If it is not specified "
+                        + "or it is \"-\", the output is made to stdout.")
                 .build();
         options.addOption(outFileName);
 
@@ -166,7 +225,201 @@ public final class Tap2basCli {
                 .build();
         options.addOption(analyzeVars);                
         
-        // TODO --extractScrs file
+        Option stream = Option.builder()
+                .longOpt("stream")
+                .hasArg(false)
+                .required(false)
+                .desc("read the input file block by block instead of loading "
+                        + "it whole into memory")
+                .build();
+        options.addOption(stream);
+
+        Option flush = Option.builder()
+                .longOpt("flush")
+                .hasArg(true)
+                .argName("policy")
+                .required(false)
+                .desc("when the output is written: "
+                        + "\"block\" after every TAP block, "
+                        + "\"file\" at the end of the file, "
+                        + "\"size[:bytes]\" whenever the buffered output reaches "
+                        + "the size (default " + AsciiOutput.DEFAULT_FLUSH_SIZE + "). "
+                        + "Default is \"file\" for an output file "
+                        + "and \"block\" for stdout.")
+                .build();
+        options.addOption(flush);
+
+        Option format = Option.builder()
+                .longOpt("format")
+                .hasArg(true)
+                .argName("text|json|ndjson")
+                .required(false)
+                .desc("output format: \"text\" (default), "
+                        + "\"json\" (one array of records), "
+                        + "\"ndjson\" (one record per line). "
+                        + "A record is written per block, BASIC line and variable.")
+                .build();
+        options.addOption(format);
+
+        Option outDirName = Option.builder()
+                .longOpt("outDir")
+                .hasArg(true)
+                .required(false)
+                .desc("output directory for the batch mode. "
+                        + "If it is not specified, outputs are written "
+                        + "next to the input files.")
+                .build();
+        options.addOption(outDirName);
+
+        Option threads = Option.builder()
+                .longOpt("threads")
+                .hasArg(true)
+                .required(false)
+                .desc("number of worker threads for the batch mode. "
+                        + "Default is the number of CPU cores.")
+                .build();
+        options.addOption(threads);
+
+        Option cache = Option.builder()
+                .longOpt("cache")
+                .hasArg(true)
+                .argName("dir")
+                .required(false)
+                .desc("directory for saved conversion outputs. "
+                        + "An unchanged input converted with the same options "
+                        + "is not decoded again, the saved output is copied. "
+                        + "In the single-file mode it needs -o.")
+                .build();
+        options.addOption(cache);
+
+        Option cacheSize = Option.builder()
+                .longOpt("cacheSize")
+                .hasArg(true)
+                .argName("MB")
+                .required(false)
+                .desc("max. size of the --cache directory in MB; "
+                        + "least recently used outputs are deleted. "
+                        + "Default is " + (ConversionCache.DEFAULT_MAX_SIZE / 1024 / 1024) + ".")
+                .build();
+        options.addOption(cacheSize);
+
+        Option dedup = Option.builder()
+                .longOpt("dedup")
+                .hasArg(true)
+                .optionalArg(true)
+                .argName("file")
+                .required(false)
+                .desc("data blocks identical to an already processed block "
+                        + "(in any input) are not decoded again; the output "
+                        + "contains only a reference to the first one. "
+                        + "The table of processed blocks is loaded from "
+                        + "and saved to the file, if it is specified.")
+                .build();
+        options.addOption(dedup);
+
+        Option stats = Option.builder()
+                .longOpt("stats")
+                .hasArg(true)
+                .optionalArg(true)
+                .argName("text|json")
+                .required(false)
+                .desc("prints statistics of the conversion: bytes, blocks by type, "
+                        + "BASIC lines, variables, time of each phase (read, header, "
+                        + "basic, vars, dump, output), allocated memory and throughput. "
+                        + "To stderr in the single-file mode, with the summary "
+                        + "in the batch mode (also as the JMX MBean "
+                        + TapStatsTotal.OBJECT_NAME + "). Default is \"text\".")
+                .build();
+        options.addOption(stats);
+
+        Option server = Option.builder()
+                .longOpt("server")
+                .hasArg(true)
+                .optionalArg(true)
+                .argName("port")
+                .required(false)
+                .desc("runs a conversion server on localhost (default port " 
+                        + Tap2basServer.DEFAULT_PORT + ") with --threads workers. "
+                        + "Use \"" + Tap2basClient.CLIENT_ARG + "\" as the first option "
+                        + "(with -i, -o, --onlyBasic, --analyzeVars, --format, "
+                        + "--recover, --port) to convert a file on the server "
+                        + "without the startup of the whole program.")
+                .build();
+        options.addOption(server);
+
+        Option index = Option.builder()
+                .longOpt("index")
+                .hasArg(false)
+                .required(false)
+                .desc("use (or create) the block index saved next to the input "
+                        + "file (<file>" + TapBlockIndex.SIDECAR_EXT + "). "
+                        + "The index is valid while the size, the modification "
+                        + "time and the hash of the file are unchanged.")
+                .build();
+        options.addOption(index);
+
+        Option list = Option.builder()
+                .longOpt("list")
+                .hasArg(false)
+                .required(false)
+                .desc("prints only the list of blocks (offset, length, flag, "
+                        + "type, name, p1, p2, parity)")
+                .build();
+        options.addOption(list);
+
+        Option block = Option.builder()
+                .longOpt("block")
+                .hasArg(true)
+                .argName("n[,n...]")
+                .required(false)
+                .desc("processes only the blocks with the given numbers "
+                        + "(from 0, see --list) and their header or data block")
+                .build();
+        options.addOption(block);
+
+        Option name = Option.builder()
+                .longOpt("name")
+                .hasArg(true)
+                .required(false)
+                .desc("processes only the blocks with the given name in the header")
+                .build();
+        options.addOption(name);
+
+        Option verify = Option.builder()
+                .longOpt("verify")
+                .hasArg(false)
+                .required(false)
+                .desc("only checks the structure of the TAP file (block lengths, "
+                        + "flags, headers) and the parity of all blocks "
+                        + "and prints the bad blocks. In the batch mode "
+                        + "the files are checked in parallel.")
+                .build();
+        options.addOption(verify);
+
+        Option recover = Option.builder()
+                .longOpt("recover")
+                .hasArg(false)
+                .required(false)
+                .desc("damaged TAP: after an error skips to the next valid header "
+                        + "(length, flag, type and parity) and continues. "
+                        + "The skipped ranges are reported.")
+                .build();
+        options.addOption(recover);
+
+        Option extractScrs = Option.builder()
+                .longOpt("extractScrs")
+                .hasArg(true)
+                .optionalArg(true)
+                .argName("file")
+                .required(false)
+                .desc("only extracts SCREEN$ blocks (" + Tap2bas.SCREEN_LENGTH 
+                        + " B of binary data loaded at " + Tap2bas.SCREEN_ADDRESS
+                        + ") to " + ScrExtractor.SCR_EXT + " files. "
+                        + "Default file name is the name of the input file; "
+                        + "more screens are numbered (name_1.scr, name_2.scr ...). "
+                        + "In the batch mode the file is not specified.")
+                .build();
+        options.addOption(extractScrs);
     }
     
     /**
@@ -193,12 +446,129 @@ public final class Tap2basCli {
                 optVersion = true;
             }
             if (commandLine.hasOption("i")) {
-                optInputFileName = commandLine.getOptionValue("i");
-                log.info("-i = " + optInputFileName);
+                optInputFileNames = commandLine.getOptionValues("i");
+                optInputFileName = optInputFileNames[0];
+                log.info("-i = " + Arrays.toString(optInputFileNames));
+                optStdin = Arrays.asList(optInputFileNames).contains(STDIO_FILE_NAME);
             } 
             if (commandLine.hasOption("o")) {
                 optOutFileName = commandLine.getOptionValue("o");
                 log.info("-o = " + optOutFileName);
+                if (STDIO_FILE_NAME.equals(optOutFileName)) {
+                    optOutFileName = null;      // (stdout)
+                }
+            }
+            if (commandLine.hasOption("stream")) {
+                log.info("--stream");
+                optStream = true;
+            }
+            if (commandLine.hasOption("flush")) {
+                String flushText = commandLine.getOptionValue("flush");
+                log.info("--flush = " + flushText);
+                parseFlushOptValue(flushText);
+            }
+            if (commandLine.hasOption("format")) {
+                String formatText = commandLine.getOptionValue("format");
+                log.info("--format = " + formatText);
+                optFormat = OutputFormat.getByName(formatText);
+                if (optFormat == null) {
+                    exitWithError("invalid output format: " + formatText, RESULT_ERR_OPTS);
+                }
+            }
+            if (commandLine.hasOption("outDir")) {
+                optOutDirName = commandLine.getOptionValue("outDir");
+                log.info("--outDir = " + optOutDirName);
+            }
+            if (commandLine.hasOption("threads")) {
+                String threadsText = commandLine.getOptionValue("threads");
+                log.info("--threads = " + threadsText);
+                try {
+                    optThreads = Integer.parseInt(threadsText);
+                } catch (NumberFormatException nfex) {
+                    exitWithError("invalid number of threads: " + threadsText, RESULT_ERR_OPTS);
+                }
+                if (optThreads <= 0) {
+                    exitWithError("invalid number of threads: " + threadsText, RESULT_ERR_OPTS);
+                }
+            }
+            if (commandLine.hasOption("cache")) {
+                optCacheDirName = commandLine.getOptionValue("cache");
+                log.info("--cache = " + optCacheDirName);
+            }
+            if (commandLine.hasOption("cacheSize")) {
+                String cacheSizeText = commandLine.getOptionValue("cacheSize");
+                log.info("--cacheSize = " + cacheSizeText);
+                try {
+                    optCacheSize = Long.parseLong(cacheSizeText) * 1024 * 1024;
+                } catch (NumberFormatException nfex) {
+                    exitWithError("invalid cache size: " + cacheSizeText, RESULT_ERR_OPTS);
+                }
+                if (optCacheSize <= 0) {
+                    exitWithError("invalid cache size: " + cacheSizeText, RESULT_ERR_OPTS);
+                }
+            }
+            if (commandLine.hasOption("server")) {
+                String portText = commandLine.getOptionValue("server");
+                log.info("--server = " + portText);
+                optServer = true;
+                if (portText != null) {
+                    try {
+                        optServerPort = Integer.parseInt(portText);
+                    } catch (NumberFormatException nfex) {
+                        exitWithError("invalid port: " + portText, RESULT_ERR_OPTS);
+                    }
+                    if (optServerPort <= 0 || optServerPort > 0xFFFF) {
+                        exitWithError("invalid port: " + portText, RESULT_ERR_OPTS);
+                    }
+                }
+            }
+            if (commandLine.hasOption("dedup")) {
+                optDedupFileName = commandLine.getOptionValue("dedup");
+                log.info("--dedup = " + optDedupFileName);
+                optDedup = true;
+            }
+            if (commandLine.hasOption("stats")) {
+                String statsText = commandLine.getOptionValue("stats");
+                log.info("--stats = " + statsText);
+                optStats = true;
+                if (statsText != null) {
+                    if ("json".equalsIgnoreCase(statsText)) {
+                        optStatsJson = true;
+                    }
+                    else if (!"text".equalsIgnoreCase(statsText)) {
+                        exitWithError("invalid stats format: " + statsText, RESULT_ERR_OPTS);
+                    }
+                }
+            }
+            if (commandLine.hasOption("index")) {
+                log.info("--index");
+                optIndex = true;
+            }
+            if (commandLine.hasOption("list")) {
+                log.info("--list");
+                optList = true;
+            }
+            if (commandLine.hasOption("block")) {
+                String blockText = commandLine.getOptionValue("block");
+                log.info("--block = " + blockText);
+                parseBlockOptValue(blockText);
+            }
+            if (commandLine.hasOption("name")) {
+                optBlockName = commandLine.getOptionValue("name");
+                log.info("--name = " + optBlockName);
+            }
+            if (commandLine.hasOption("verify")) {
+                log.info("--verify");
+                optVerify = true;
+            }
+            if (commandLine.hasOption("recover")) {
+                log.info("--recover");
+                optRecover = true;
+            }
+            if (commandLine.hasOption("extractScrs")) {
+                optScrFileName = commandLine.getOptionValue("extractScrs");
+                log.info("--extractScrs = " + optScrFileName);
+                optExtractScrs = true;
             }
             if (commandLine.hasOption("analyzeVars")) {
                 log.info("--analyzeVars");
@@ -215,6 +585,56 @@ public final class Tap2basCli {
         }
     }
 
+    /**
+     * Pomocná metoda pro {@linkplain #parseArgs(java.lang.String[])}.
+     * 
+     * @param blockText  {@code n[,n...]}
+     */
+    private void parseBlockOptValue(String blockText) {
+        String[] parts = blockText.split(",");
+        optBlockNums = new int[parts.length];
+        for (int i=0; i<parts.length; i++) {
+            try {
+                optBlockNums[i] = Integer.parseInt(parts[i].trim());
+            } catch (NumberFormatException nfex) {
+                optBlockNums[i] = -1;
+            }
+            if (optBlockNums[i] < 0) {
+                exitWithError("invalid block number: " + parts[i], RESULT_ERR_OPTS);
+            }
+        }
+    }
+
+    /**
+     * Pomocná metoda pro {@linkplain #parseArgs(java.lang.String[])}.
+     * 
+     * @param flushText  {@code block|file|size[:bytes]}
+     */
+    private void parseFlushOptValue(String flushText) {
+        String policyName = flushText;
+        String sizeText = null;
+        int colonIdx = flushText.indexOf(':');
+        if (colonIdx >= 0) {
+            policyName = flushText.substring(0, colonIdx);
+            sizeText = flushText.substring(colonIdx + 1);
+        }
+        optFlushPolicy = FlushPolicy.getByName(policyName);
+        if (optFlushPolicy == null 
+                || (sizeText != null && optFlushPolicy != FlushPolicy.SIZE)) {
+            exitWithError("invalid flush policy: " + flushText, RESULT_ERR_OPTS);
+        }
+        if (sizeText != null) {
+            try {
+                optFlushSize = Integer.parseInt(sizeText);
+            } catch (NumberFormatException nfex) {
+                optFlushSize = 0;
+            }
+            if (optFlushSize <= 0) {
+                exitWithError("invalid flush size: " + sizeText, RESULT_ERR_OPTS);
+            }
+        }
+    }
+
     /**
      * Obslouží parametry {@code --help}, {@code --version} a pokud byl 
      * nějaký takový parametr zadán, tak i ukončí program.
@@ -246,9 +666,14 @@ public final class Tap2basCli {
             exitWithError("input and output file have same name", RESULT_ERR_OPTS);
         }
         
-        File inFile = new File(optInputFileName);
-        if (!inFile.exists() || inFile.isDirectory()) {
-            exitWithError("input file not found", RESULT_ERR_OPTS);
+        if (optStdin) {
+            validateOptStdin();
+        }
+        else {
+            File inFile = new File(optInputFileName);
+            if (!inFile.exists() || inFile.isDirectory()) {
+                exitWithError("input file not found", RESULT_ERR_OPTS);
+            }
         }
 
         log.info("outFileName = " + optOutFileName);
@@ -259,6 +684,126 @@ public final class Tap2basCli {
                 exitWithError("output file has forbidden extension", RESULT_ERR_OPTS);
             }               
         }        
+        
+        if (optRecover && optStream) {
+            exitWithError("option --recover can not be used with --stream", RESULT_ERR_OPTS);
+        }
+        if (optVerify && isIndexNeeded()) {
+            exitWithError("option --verify can not be used with "
+                    + "--index, --list, --block and --name", RESULT_ERR_OPTS);
+        }
+        validateOptExtractScrs();
+        validateOptCache();
+        validateOptStats();
+        if (optCacheDirName != null && optOutFileName == null) {
+            exitWithError("option --cache needs -o in the single-file mode", RESULT_ERR_OPTS);
+        }
+    }
+
+    /**
+     * Pomocná metoda pro {@linkplain #validateOptValuesForTap2bas()}.
+     * Ze {@code stdin} se čte jako s {@code --stream} (po blocích);
+     * volby, které potřebují celý soubor, nelze použít.
+     */
+    private void validateOptStdin() {
+        if (optRecover || optVerify || optExtractScrs || optCacheDirName != null
+                || isIndexNeeded()) {
+            exitWithError("option -i - can not be used with --recover, --verify, "
+                    + "--extractScrs, --cache, --index, --list, --block and --name",
+                    RESULT_ERR_OPTS);
+        }
+    }
+
+    /**
+     * Pomocná metoda pro {@linkplain #validateOptValuesForTap2bas()}
+     * a {@linkplain #validateOptValuesForBatch()}.
+     */
+    private void validateOptCache() {
+        if (optDedup && (optCacheDirName != null || optVerify 
+                || optExtractScrs || optList)) {
+            exitWithError("option --dedup can not be used with --cache, --verify, "
+                    + "--extractScrs and --list", RESULT_ERR_OPTS);
+        }
+        if (optCacheDirName == null) {
+            return;
+        }
+        if (optStream || optVerify || optExtractScrs || isIndexNeeded()) {
+            exitWithError("option --cache can not be used with --stream, --verify, "
+                    + "--extractScrs, --index, --list, --block and --name", RESULT_ERR_OPTS);
+        }
+        File cacheDir = new File(optCacheDirName);
+        if (cacheDir.exists() && !cacheDir.isDirectory()) {
+            exitWithError("cache directory is a file", RESULT_ERR_OPTS);
+        }
+    }
+
+    /**
+     * Pomocná metoda pro {@linkplain #validateOptValuesForTap2bas()}
+     * a {@linkplain #validateOptValuesForBatch()}.
+     */
+    private void validateOptStats() {
+        if (optStats && (optVerify || optExtractScrs || optList)) {
+            exitWithError("option --stats can not be used with --verify, "
+                    + "--extractScrs and --list", RESULT_ERR_OPTS);
+        }
+    }
+
+    /**
+     * Pomocná metoda pro {@linkplain #validateOptValuesForTap2bas()}
+     * a {@linkplain #validateOptValuesForBatch()}.
+     */
+    private void validateOptExtractScrs() {
+        if (!optExtractScrs) {
+            return;
+        }
+        if (optVerify || isIndexNeeded()) {
+            exitWithError("option --extractScrs can not be used with --verify, "
+                    + "--index, --list, --block and --name", RESULT_ERR_OPTS);
+        }
+        if (optScrFileName != null) {
+            if (optInputFileName.equals(optScrFileName)
+                    || hasFileForbiddedExt(optScrFileName.toLowerCase())) {
+                exitWithError("invalid SCREEN$ file name: " + optScrFileName, RESULT_ERR_OPTS);
+            }
+        }
+    }
+
+    /**
+     * Jen vybere obrázky {@code SCREEN$} ze zadaného souboru.
+     * 
+     * @see ScrExtractor
+     */
+    private void executeExtractScrsWithOpts() {
+        validateOptValuesForTap2bas();  // (pokud jsou parametry zadány špatně, tak ukončí program)
+
+        File inFile = new File(optInputFileName);
+        File scrFile;
+        if (optScrFileName != null) {
+            scrFile = new File(optScrFileName);
+        }
+        else {
+            String name = TapArchive.stripArchiveExt(inFile.getName());
+            int dotIdx = name.lastIndexOf('.');
+            if (dotIdx > 0) {
+                name = name.substring(0, dotIdx);
+            }
+            scrFile = new File(inFile.getAbsoluteFile().getParentFile(), 
+                    name + ScrExtractor.SCR_EXT);
+        }
+        try {
+            List<File> written = TapArchive.isGzip(inFile)
+                    ? ScrExtractor.extract(readInFile(inFile, null), scrFile)
+                    : ScrExtractor.extract(inFile, scrFile);
+            if (written.isEmpty()) {
+                perr("Warning: no SCREEN$ block found");
+            }
+            for (File file : written) {
+                pout(file.getPath());
+            }
+        } catch (Exception ex) {
+            log.info(ex.getMessage(), ex);
+            exitWithError(ex, RESULT_ERR_GENERAL);
+        }
     }
     
     private static final String[] FORBIDDEN_EXTS = new String[] {
@@ -289,8 +834,63 @@ public final class Tap2basCli {
         log.debug("");
         validateOptValuesForTap2bas();  // (pokud jsou parametry zadány špatně, tak ukončí program)
         
+        tap2bas = new Tap2bas();
+        TapStats stats = null;
+        if (optStats) {
+            stats = new TapStats();
+            stats.start();
+            tap2bas.setStats(stats);
+        }
         try {        
-            tap2bas.setInFile(new File(optInputFileName));
+            tap2bas.setFlushPolicy(optFlushPolicy);
+            tap2bas.setFlushSize(optFlushSize);
+            tap2bas.setOutputFormat(optFormat);
+            tap2bas.setRecover(optRecover);
+            File inFile = new File(optInputFileName);
+            ByteBuffer tapContent = null;
+            if (optVerify) {
+                // (jen kontrola; obsah se nepředává do tap2bas)
+                tapContent = readInFile(inFile, null);
+            }
+            else if (optStdin) {
+                // (System.in se neuzavírá)
+                tap2bas.setInStream(System.in);
+            }
+            else if (optStream) {
+                tapInStream = new FileInputStream(optInputFileName);
+                if (TapArchive.isGzip(inFile)) {
+                    tapInStream = new GZIPInputStream(tapInStream);
+                }
+                tap2bas.setInStream(tapInStream);
+            }
+            else {
+                tapContent = readInFile(inFile, stats);
+                tap2bas.setTapContent(tapContent);
+            }
+            tap2bas.setSourceName(optStdin ? "stdin" : inFile.getPath());
+            BlockDedupTable dedupTable = null;
+            if (optDedup) {
+                dedupTable = loadDedupTable();
+                tap2bas.setDedup(dedupTable, optStdin 
+                        ? "stdin" : BlockDedupTable.getSourceName(inFile));
+            }
+            ConversionCache cache = null;
+            String cacheKey = null;
+            if (optCacheDirName != null) {
+                cache = new ConversionCache(new File(optCacheDirName), optCacheSize);
+                cacheKey = ConversionCache.key(tapContent, optOnlyBasic,
+                        optVarsAnalyze, optFormat, optRecover);
+            }
+            TapBlockIndex index = null;
+            if (isIndexNeeded()) {
+                if (tapContent == null) {
+                    tapContent = readInFile(inFile, null);
+                }
+                index = TapBlockIndex.forFile(inFile, tapContent, optIndex);
+                if (!optList) {
+                    tap2bas.setSelectedOffsets(selectHeaderOffsets(index));
+                }
+            }
             if (optOutFileName == null) {
                 tap2bas.setOutFile(null);
             }
@@ -302,10 +902,23 @@ public final class Tap2basCli {
                     log.info("Created directory for: " + optOutFileName);
                 }
 
+                if (cache != null && cache.copyTo(cacheKey, optOutFile)) {
+                    log.info("output from cache: " + cacheKey);
+                    printStats(stats);
+                    return;
+                }
                 tap2bas.setOutFile(optOutFile);
             }
 
-            if (optOnlyBasic) {
+            TapVerifier.Report verifyReport = null;
+            if (optVerify) {
+                verifyReport = TapVerifier.verify(tapContent);
+                tap2bas.writeVerifyReport(verifyReport);
+            }
+            else if (optList) {
+                tap2bas.listBlocks(index);
+            }
+            else if (optOnlyBasic) {
                 tap2bas.analyzeAndExtractOnlyBasic();
             }
             else if (optVarsAnalyze) {
@@ -316,6 +929,27 @@ public final class Tap2basCli {
             }            
             
             closeTap2basOutWriter();
+            printStats(stats);
+            for (TapResyncScanner.SkippedRange range : tap2bas.getSkippedRanges()) {
+                log.warn("skipped damaged data: " + range);
+                perr("Warning: skipped damaged data: " + range);
+            }
+            if (dedupTable != null) {
+                tap2bas.confirmDedup();
+                saveDedupTable(dedupTable);
+                perr(dedupTable.getSummary());
+            }
+            if (cache != null && tap2bas.getSkippedRanges().isEmpty()) {
+                try {
+                    cache.put(cacheKey, new File(optOutFileName));
+                } catch (IOException ioex) {
+                    log.warn("cannot cache: " + optOutFileName + "; " + ioex.getMessage());
+                }
+            }
+            if (verifyReport != null && !verifyReport.isOk()) {
+                exitWithError("bad blocks: " + verifyReport.getBadBlocks().size(),
+                        RESULT_ERR_TAP_FORMAT);
+            }
         } catch (InvalidTapException ex) {
             log.info(ex.getMessage(), ex);
             closeTap2basOutWriter();
@@ -329,6 +963,330 @@ public final class Tap2basCli {
         }        
     }
     
+    /**
+     * Načte vstupní soubor; {@code .tap.gz} rozbalí v paměti.
+     * 
+     * @param inFile
+     * @param stats  může být {@code null}
+     * @return
+     * @throws IOException 
+     * @see TapArchive#readGzip(java.io.File, cz.mp.zxs.tools.tap2bas.TapArchive.Buffer)
+     */
+    private static ByteBuffer readInFile(File inFile, TapStats stats) throws IOException {
+        if (! TapArchive.isGzip(inFile)) {
+            return Tap2bas.readTapFile(inFile, stats);
+        }
+        TapStats.Phase previous = stats != null 
+                ? stats.enter(TapStats.Phase.READ) : null;
+        try {
+            return TapArchive.readGzip(inFile, new TapArchive.Buffer());
+        } finally {
+            if (stats != null) {
+                stats.exit(previous);
+            }
+        }
+    }
+
+    /**
+     * 
+     * @return  {@code true}, pokud je pro zadané parametry potřeba
+     *      {@linkplain TapBlockIndex}
+     */
+    private boolean isIndexNeeded() {
+        return optIndex || optList || optBlockNums != null || optBlockName != null;
+    }
+
+    /**
+     * Pozice hlaviček dvojic bloků podle {@code --block} a {@code --name}.
+     * Pokud nelze, ukončí program s chybou.
+     * 
+     * @param index
+     * @return  pozice hlaviček, nebo {@code null} = všechny bloky
+     */
+    private int[] selectHeaderOffsets(TapBlockIndex index) {
+        if (optBlockNums == null && optBlockName == null) {
+            return null;
+        }
+        Set<Integer> offsets = new TreeSet<>();
+        if (optBlockNums != null) {
+            for (int blockNum : optBlockNums) {
+                if (blockNum >= index.size()) {
+                    exitWithError("block " + blockNum + " not found (blocks: " 
+                            + index.size() + ")", RESULT_ERR_OPTS);
+                }
+                TapBlockIndex.Entry header = index.getHeaderOf(blockNum);
+                if (header == null) {
+                    exitWithError("block " + blockNum + " has no header", RESULT_ERR_OPTS);
+                }
+                offsets.add(header.getOffset());
+            }
+        }
+        if (optBlockName != null) {
+            List<TapBlockIndex.Entry> headers = index.findHeadersByName(optBlockName);
+            if (headers.isEmpty()) {
+                exitWithError("no block with name: " + optBlockName, RESULT_ERR_OPTS);
+            }
+            for (TapBlockIndex.Entry header : headers) {
+                offsets.add(header.getOffset());
+            }
+        }
+        int[] result = new int[offsets.size()];
+        int i = 0;
+        for (int offset : offsets) {
+            result[i++] = offset;
+        }
+        return result;
+    }
+
+    /**
+     * Zjistí, zda se má použít dávkový režim. Tj. zda bylo zadáno více
+     * vstupů, nebo vstupem je adresář, maska ("glob") či archiv ZIP.
+     *
+     * @return
+     * @see Tap2basBatch
+     */
+    private boolean isBatchMode() {
+        if (optInputFileNames == null) {
+            return false;
+        }
+        if (optInputFileNames.length > 1 || optOutDirName != null) {
+            return true;
+        }
+        return Tap2basBatch.isGlob(optInputFileName)
+                || new File(optInputFileName).isDirectory()
+                || TapArchive.isZip(new File(optInputFileName));
+    }
+
+    /**
+     * Validuje hodnoty parametrů pro dávkový režim.
+     * Pokud byly parametry zadány špatně, ukončí program s chybou.
+     */
+    private void validateOptValuesForBatch() {
+        if (optOutFileName != null) {
+            exitWithError("option -o can not be used in the batch mode; use --outDir", RESULT_ERR_OPTS);
+        }
+        if (optStdin) {
+            exitWithError("option -i - can not be used in the batch mode", RESULT_ERR_OPTS);
+        }
+        if (isIndexNeeded()) {
+            exitWithError("options --index, --list, --block and --name "
+                    + "can not be used in the batch mode", RESULT_ERR_OPTS);
+        }
+        if (optRecover && optStream) {
+            exitWithError("option --recover can not be used with --stream", RESULT_ERR_OPTS);
+        }
+        validateOptExtractScrs();
+        if (optScrFileName != null) {
+            exitWithError("option --extractScrs can not have a file in the batch mode; "
+                    + "use --outDir", RESULT_ERR_OPTS);
+        }
+        validateOptCache();
+        validateOptStats();
+        if (optOutDirName != null) {
+            File outDir = new File(optOutDirName);
+            if (outDir.exists() && !outDir.isDirectory()) {
+                exitWithError("output directory is a file", RESULT_ERR_OPTS);
+            }
+        }
+    }
+
+    /**
+     * Vykoná {@code Tap2bas} v dávkovém režimu nad všemi zadanými vstupy.
+     * Vypíše souhrn a ukončí program s nejhorším výsledkem ze všech souborů.
+     *
+     * @see Tap2basBatch
+     */
+    private void executeBatchWithOpts() {
+        validateOptValuesForBatch();  // (pokud jsou parametry zadány špatně, tak ukončí program)
+
+        Tap2basBatch batch = new Tap2basBatch(optThreads);
+        batch.setMode(optOnlyBasic, optVarsAnalyze);
+        batch.setVerifyOnly(optVerify);
+        batch.setRecover(optRecover);
+        batch.setExtractScrs(optExtractScrs);
+        batch.setFlushPolicy(optFlushPolicy, optFlushSize);
+        batch.setOutputFormat(optFormat);
+        if (optOutDirName != null) {
+            batch.setOutDir(new File(optOutDirName));
+        }
+        List<Tap2basBatch.Result> results = null;
+        BlockDedupTable dedupTable = null;
+        TapStatsTotal statsTotal = null;
+        if (optStats) {
+            statsTotal = new TapStatsTotal();
+            statsTotal.register();
+            batch.setStats(statsTotal);
+        }
+        long startNs = System.nanoTime();
+        try {
+            if (optCacheDirName != null) {
+                batch.setCache(new ConversionCache(new File(optCacheDirName), optCacheSize));
+            }
+            if (optDedup) {
+                dedupTable = loadDedupTable();
+                batch.setDedup(dedupTable);
+            }
+            for (String input : optInputFileNames) {
+                if (batch.addInput(input) == 0) {
+                    log.warn("no input files for: " + input);
+                    perr("Warning: no input files for: " + input);
+                }
+            }
+            if (batch.getInputCount() == 0) {
+                exitWithError("input file not found", RESULT_ERR_OPTS);
+            }
+            results = batch.run();
+        } catch (Exception ex) {
+            log.info(ex.getMessage(), ex);
+            exitWithError(ex, RESULT_ERR_GENERAL);
+            return;
+        }
+
+        long wallTimeMs = (System.nanoTime() - startNs) / 1000000;
+        int resultCode = printBatchSummary(results, wallTimeMs);
+        if (dedupTable != null) {
+            saveDedupTable(dedupTable);
+            log.info(dedupTable.getSummary());
+            pout(dedupTable.getSummary());
+        }
+        if (statsTotal != null) {
+            String text = optStatsJson ? statsTotal.toJson() : statsTotal.toText();
+            log.info(text);
+            pout(text);
+            statsTotal.unregister();
+        }
+        if (resultCode != RESULT_OK) {
+            System.exit(resultCode);
+        }
+    }
+
+    /**
+     * Spustí server pro převody; běží, dokud není program ukončen.
+     * 
+     * @see Tap2basServer
+     * @see Tap2basClient
+     */
+    private void executeServerWithOpts() {
+        if (optInputFileNames != null || optOutFileName != null) {
+            exitWithError("options -i and -o can not be used with --server", RESULT_ERR_OPTS);
+        }
+        Tap2basServer server = new Tap2basServer(optServerPort, optThreads);
+        try {
+            server.start();
+            pout("listening on localhost:" + server.getPort()
+                    + "; token file: " + server.getTokenFile());
+            server.run();
+        } catch (IOException ioex) {
+            log.info(ioex.getMessage(), ioex);
+            exitWithError(ioex, RESULT_ERR_GENERAL);
+        }
+    }
+
+    /**
+     * 
+     * @return  tabulka pro {@code --dedup}; ze souboru, pokud byl zadán
+     */
+    private BlockDedupTable loadDedupTable() {
+        if (optDedupFileName == null) {
+            return new BlockDedupTable();
+        }
+        return BlockDedupTable.load(new File(optDedupFileName));
+    }
+
+    /**
+     * Uloží tabulku pro {@code --dedup}, pokud byl zadán soubor.
+     * Chyba při ukládání není chybou převodu.
+     * 
+     * @param dedupTable 
+     */
+    private void saveDedupTable(BlockDedupTable dedupTable) {
+        if (optDedupFileName == null) {
+            return;
+        }
+        try {
+            dedupTable.save(new File(optDedupFileName));
+        } catch (IOException ioex) {
+            log.warn("cannot save dedup table: " + optDedupFileName + "; " + ioex.getMessage());
+            perr("Warning: cannot save dedup table: " + optDedupFileName);
+        }
+    }
+
+    /**
+     * Vypíše výsledek pro každý soubor dávky a celkový souhrn.
+     *
+     * @param results
+     * @param wallTimeMs  celkový čas zpracování dávky
+     * @return  nejhorší (nejvyšší) výsledek ze všech souborů
+     */
+    private int printBatchSummary(List<Tap2basBatch.Result> results, long wallTimeMs) {
+        int resultCode = RESULT_OK;
+        int failed = 0;
+        long totalTimeMs = 0;
+        AsciiOutput sysOut = new AsciiOutput();
+        sysOut.setTarget(System.out, false);
+        for (Tap2basBatch.Result result : results) {
+            totalTimeMs += result.getTimeMs();
+            TapVerifier.Report verifyReport = result.getVerifyReport();
+            if (verifyReport != null) {
+                if (result.isOk()) {
+                    pout("OK     " + result.getInName() 
+                            + "  --  " + verifyReport.getSummary());
+                }
+                else {
+                    failed++;
+                    resultCode = Math.max(resultCode, result.getResultCode());
+                    pout("ERR(" + result.getResultCode() + ") " 
+                            + result.getInName() 
+                            + "  --  " + verifyReport.getSummary());
+                    try {
+                        verifyReport.writeBadBlocks(sysOut, "       ");
+                        sysOut.flush();
+                    } catch (IOException ioex) {
+                        log.error(ioex.getMessage(), ioex);
+                    }
+                }
+            }
+            else if (result.isOk()) {
+                pout("OK     " + result.getInName() 
+                        + (result.getOutFile() != null 
+                                ? "  ->  " + result.getOutFile().getPath() : "")
+                        + (result.getMessage() != null ? "  --  " + result.getMessage() : ""));
+            }
+            else {
+                failed++;
+                resultCode = Math.max(resultCode, result.getResultCode());
+                pout("ERR(" + result.getResultCode() + ") " 
+                        + result.getInName() 
+                        + "  --  " + result.getMessage());
+            }
+        }
+        String summary = "files: " + results.size() 
+                + ", ok: " + (results.size() - failed)
+                + ", failed: " + failed
+                + ", time: " + wallTimeMs + " ms"
+                + " (sum of files: " + totalTimeMs + " ms)";
+        log.info(summary);
+        pout(summary);
+        return resultCode;
+    }
+
+    /**
+     * Pomocná metoda pro {@linkplain #executeTap2basWithOpts()}; 
+     * ukončí měření a vypíše statistiku na {@code stderr} 
+     * (na {@code stdout} může být výstup převodu).
+     * 
+     * @param stats  může být {@code null} (bez {@code --stats})
+     */
+    private void printStats(TapStats stats) {
+        if (stats == null) {
+            return;
+        }
+        stats.stop();
+        String text = optStatsJson ? stats.toJson() : stats.toText();
+        log.info(text);
+        perr(text);
+    }
+
     /** 
      * Pomocná metoda pro {@linkplain #executeTap2basWithOpts()}. 
      * @see Tap2bas#closeOutWriter()
@@ -339,6 +1297,13 @@ public final class Tap2basCli {
         } catch (IOException ioex) {
             log.error(ioex.getMessage(), ioex);
         }        
+        if (tapInStream != null) {
+            try {
+                tapInStream.close();
+            } catch (IOException ioex) {
+                log.error(ioex.getMessage(), ioex);
+            }        
+        }
     }
     
     /**
@@ -351,6 +1316,15 @@ public final class Tap2basCli {
         if (optHelp || optVersion) {    // (Tap2bas se zde nevykonává...)
             executeInfoOptsAndExit();
         }
+        else if (optServer) {
+            executeServerWithOpts();
+        }
+        else if (isBatchMode()) {
+            executeBatchWithOpts();
+        }
+        else if (optExtractScrs) {
+            executeExtractScrsWithOpts();
+        }
         else {
             executeTap2basWithOpts();
         }
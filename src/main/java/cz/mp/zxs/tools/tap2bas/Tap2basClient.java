@@ -0,0 +1,382 @@
+/*
+ * Tap2basClient.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_ERR_GENERAL;
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_ERR_OPTS;
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_OK;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Klient pro {@linkplain Tap2basServer}: převod udělá běžící server,
+ * klient jen pošle požadavek a výstup zapíše do souboru nebo na
+ * {@code stdout}.
+ * <p>
+ * Z příkazové řádky jako první parametr {@code --client}, viz
+ * {@linkplain #isClientMode(java.lang.String[])}. Klient schválně nepoužívá
+ * knihovny (commons-cli, slf4j) ani třídy pro převod, aby se jich při
+ * startu JVM načetlo co nejméně.
+ * <p>
+ * S požadavkem se posílá klíč serveru; klient ho načte ze souboru, který
+ * zapsal server ({@linkplain #getTokenFile(int)}), takže server může
+ * používat jen jeho vlastník.
+ *
+ * @author Martin Pokorný
+ * @see Main
+ */
+public class Tap2basClient {
+
+    public static final String CLIENT_ARG = "--client";
+
+    private static final String TOKEN_FILE_PREFIX = ".zxs_tap2bas_server_";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int port;
+    private int flags = 0;
+    private String formatName = "TEXT";
+    private boolean sendContent = false;
+    private String token = null;
+
+    /**
+     * Odpověď serveru.
+     */
+    public static final class Response {
+        private final int resultCode;
+        private final String message;
+        private final List<String> warnings;
+
+        Response(int resultCode, String message, List<String> warnings) {
+            this.resultCode = resultCode;
+            this.message = message;
+            this.warnings = Collections.unmodifiableList(warnings);
+        }
+
+        /**
+         *
+         * @return  stejné jako výsledek programu, např.
+         *      {@linkplain Tap2basCli#RESULT_ERR_TAP_FORMAT}
+         */
+        public int getResultCode() {
+            return resultCode;
+        }
+
+        public boolean isOk() {
+            return resultCode == RESULT_OK;
+        }
+
+        /**
+         *
+         * @return  popis chyby, nebo {@code ""}
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         *
+         * @return  např. přeskočené poškozené úseky
+         */
+        public List<String> getWarnings() {
+            return warnings;
+        }
+    }
+
+    /**
+     *
+     * @param port  port serveru na {@code localhost}
+     */
+    public Tap2basClient(int port) {
+        this.port = port;
+    }
+
+    /**
+     *
+     * @param onlyBasic
+     * @param analyzeVars
+     * @see Tap2bas#analyzeAndExtractOnlyBasic()
+     * @see Tap2bas#analyzeAll()
+     */
+    public void setMode(boolean onlyBasic, boolean analyzeVars) {
+        flags &= Tap2basServer.FLAG_RECOVER;
+        if (onlyBasic) {
+            flags |= Tap2basServer.FLAG_ONLY_BASIC;
+        }
+        else if (analyzeVars) {
+            flags |= Tap2basServer.FLAG_ANALYZE_VARS;
+        }
+    }
+
+    /**
+     *
+     * @param recover
+     * @see Tap2bas#setRecover(boolean)
+     */
+    public void setRecover(boolean recover) {
+        if (recover) {
+            flags |= Tap2basServer.FLAG_RECOVER;
+        }
+        else {
+            flags &= ~Tap2basServer.FLAG_RECOVER;
+        }
+    }
+
+    /**
+     *
+     * @param formatName  {@code text}, {@code json}, {@code ndjson}
+     *      (ověřuje server)
+     * @see OutputFormat
+     */
+    public void setFormat(String formatName) {
+        if (formatName == null) {
+            throw new IllegalArgumentException("formatName=null");
+        }
+        this.formatName = formatName;
+    }
+
+    /**
+     *
+     * @param sendContent  {@code true} = poslat obsah TAP (např. pokud server
+     *      k souboru nemá přístup; max. 16 MB); jinak se posílá jen cesta
+     *      a soubor čte server (výchozí)
+     */
+    public void setSendContent(boolean sendContent) {
+        this.sendContent = sendContent;
+    }
+
+    /**
+     *
+     * @param token  klíč serveru; {@code null} = načíst ze souboru
+     *      {@linkplain #getTokenFile(int)} (výchozí)
+     * @see Tap2basServer#getToken()
+     */
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    /**
+     *
+     * @param port
+     * @return  výchozí soubor s klíčem serveru na daném portu
+     *      (v domovském adresáři uživatele)
+     */
+    public static File getTokenFile(int port) {
+        return new File(System.getProperty("user.home"), TOKEN_FILE_PREFIX + port);
+    }
+
+    /**
+     *
+     * @return  klíč zadaný přes {@linkplain #setToken(String)}, nebo ze souboru
+     * @throws IOException  soubor nelze přečíst (např. server neběží)
+     */
+    private String getToken() throws IOException {
+        if (token != null) {
+            return token;
+        }
+        File tokenFile = getTokenFile(port);
+        try {
+            return new String(Files.readAllBytes(tokenFile.toPath()),
+                    StandardCharsets.US_ASCII).trim();
+        } catch (IOException ioex) {
+            throw new IOException("cannot read server token: " + tokenFile, ioex);
+        }
+    }
+
+    /**
+     * Převede TAP na serveru.
+     *
+     * @param tapFile
+     * @param out  sem se zapíše výstup převodu (neuzavírá se)
+     * @return
+     * @throws FileNotFoundException
+     * @throws IOException  chyba spojení (např. server neběží:
+     *      {@code ConnectException}), nebo nelze přečíst klíč serveru
+     */
+    public Response convert(File tapFile, OutputStream out)
+            throws FileNotFoundException, IOException {
+        if (!tapFile.isFile()) {
+            throw new FileNotFoundException(tapFile.getAbsolutePath());
+        }
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            String requestToken = getToken();
+            DataOutputStream request = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+            request.writeInt(Tap2basServer.MAGIC);
+            request.writeShort(Tap2basServer.VERSION);
+            request.writeUTF(requestToken);
+            request.writeByte(flags);
+            request.writeUTF(formatName);
+            if (sendContent) {
+                if (tapFile.length() > Tap2basServer.MAX_CONTENT_LENGTH) {
+                    throw new IOException("file is too big to send: " + tapFile);
+                }
+                byte[] content = Files.readAllBytes(tapFile.toPath());
+                request.writeByte(Tap2basServer.INPUT_CONTENT);
+                request.writeInt(content.length);
+                request.write(content);
+            }
+            else {
+                request.writeByte(Tap2basServer.INPUT_PATH);
+                request.writeUTF(tapFile.getAbsolutePath());
+            }
+            request.flush();
+
+            DataInputStream response = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int chunkLen;
+            while ((chunkLen = response.readInt()) > 0) {
+                while (chunkLen > 0) {
+                    int n = Math.min(chunkLen, buffer.length);
+                    response.readFully(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                    chunkLen -= n;
+                }
+            }
+            int resultCode = response.readInt();
+            String message = response.readUTF();
+            int warningCount = response.readInt();
+            List<String> warnings = new ArrayList<>(warningCount);
+            for (int i=0; i<warningCount; i++) {
+                warnings.add(response.readUTF());
+            }
+            return new Response(resultCode, message, warnings);
+        }
+    }
+
+    /**
+     *
+     * @param args
+     * @return  {@code true}, pokud je první parametr {@code --client}
+     */
+    public static boolean isClientMode(String[] args) {
+        return args.length > 0 && CLIENT_ARG.equals(args[0]);
+    }
+
+    /**
+     * Klient z příkazové řádky: <pre>
+     * --client [--port N] -i file.tap [-o file.txt] [--onlyBasic] [--analyzeVars]
+     *     [--format text|json|ndjson] [--recover] [--sendContent]
+     * </pre>
+     * Ukončí program se stejným výsledkem, jako by převod běžel lokálně.
+     *
+     * @param args  (první je {@code --client})
+     */
+    public static void main(String[] args) {
+        int port = Tap2basServer.DEFAULT_PORT;
+        String inFileName = null;
+        String outFileName = null;
+        boolean onlyBasic = false;
+        boolean analyzeVars = false;
+        boolean recover = false;
+        boolean sendContent = false;
+        String formatName = "text";
+        try {
+            for (int i=1; i<args.length; i++) {
+                String arg = args[i];
+                if ("-i".equals(arg) || "--input".equals(arg)) {
+                    inFileName = args[++i];
+                }
+                else if ("-o".equals(arg) || "--output".equals(arg)) {
+                    outFileName = args[++i];
+                }
+                else if ("--port".equals(arg)) {
+                    port = Integer.parseInt(args[++i]);
+                }
+                else if ("--format".equals(arg)) {
+                    formatName = args[++i];
+                }
+                else if ("--onlyBasic".equals(arg)) {
+                    onlyBasic = true;
+                }
+                else if ("--analyzeVars".equals(arg)) {
+                    analyzeVars = true;
+                }
+                else if ("--recover".equals(arg)) {
+                    recover = true;
+                }
+                else if ("--sendContent".equals(arg)) {
+                    sendContent = true;
+                }
+                else {
+                    exitWithError("unknown client option: " + arg, RESULT_ERR_OPTS);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+            exitWithError("invalid client options", RESULT_ERR_OPTS);
+        }
+        if (inFileName == null) {
+            exitWithError("input file not defined", RESULT_ERR_OPTS);
+        }
+        if (inFileName.equals(outFileName)) {
+            exitWithError("input and output file have same name", RESULT_ERR_OPTS);
+        }
+        File inFile = new File(inFileName);
+        if (!inFile.isFile()) {
+            exitWithError("input file not found", RESULT_ERR_OPTS);
+        }
+
+        Tap2basClient client = new Tap2basClient(port);
+        client.setMode(onlyBasic, analyzeVars);
+        client.setRecover(recover);
+        client.setFormat(formatName);
+        client.setSendContent(sendContent);
+        Response response = null;
+        try {
+            if (outFileName == null) {
+                OutputStream out = new BufferedOutputStream(System.out, BUFFER_SIZE);
+                response = client.convert(inFile, out);
+                out.flush();
+            }
+            else {
+                File outFile = new File(outFileName);
+                File outDir = outFile.getAbsoluteFile().getParentFile();
+                if (outDir != null) {
+                    outDir.mkdirs();
+                }
+                try (OutputStream out = new BufferedOutputStream(
+                        new FileOutputStream(outFile), BUFFER_SIZE)) {
+                    response = client.convert(inFile, out);
+                }
+            }
+        } catch (ConnectException cex) {
+            exitWithError("server is not running on port " + port, RESULT_ERR_GENERAL);
+        } catch (IOException ioex) {
+            exitWithError(ioex.toString(), RESULT_ERR_GENERAL);
+        }
+        for (String warning : response.getWarnings()) {
+            System.err.println("Warning: " + warning);
+        }
+        if (!response.isOk()) {
+            exitWithError(response.getMessage(), response.getResultCode());
+        }
+    }
+
+    private static void exitWithError(String msg, int resultCode) {
+        System.err.println("Error: " + msg);
+        System.exit(resultCode);
+    }
+
+}   // Tap2basClient.java
@@ -0,0 +1,522 @@
+/*
+ * Tap2basServer.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_ERR_GENERAL;
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_ERR_TAP_FORMAT;
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_OK;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Server pro převody; běží stále, takže se pro každý soubor neplatí
+ * start JVM, načítání tříd a "studený" JIT. Poslouchá jen na
+ * {@code localhost} (TCP). Klient je {@linkplain Tap2basClient}.
+ * <p>
+ * Server čte soubory s právy svého uživatele, proto přijme jen požadavek
+ * s tajným klíčem ("token"). Ten se náhodně vygeneruje při startu a zapíše
+ * do souboru, který může číst jen vlastník
+ * ({@linkplain Tap2basClient#getTokenFile(int)}); klient ho odtud načte.
+ * Ostatní uživatelé počítače se tak k souborům přes server nedostanou.
+ * <p>
+ * Jedno spojení = jeden požadavek. Požadavek
+ * ({@code DataOutputStream}): <pre>
+ * int MAGIC, short VERSION, UTF token, byte volby (FLAG_*), UTF formát (OutputFormat),
+ * byte INPUT_PATH + UTF cesta  |  byte INPUT_CONTENT + int délka + obsah TAP
+ * </pre>
+ * Odpověď: <pre>
+ * (int délka &gt; 0 + výstup)*, int 0, int výsledek (RESULT_*), UTF zpráva,
+ * int počet varování, UTF varování*
+ * </pre>
+ * Výstup se posílá průběžně, během převodu.
+ * Požadavky se zpracují ve skupině vláken; každé vlákno má vlastní
+ * instanci {@linkplain Tap2bas}. Skupina má pevnou velikost, proto má čtení
+ * požadavku časový limit ({@linkplain #setReadTimeout(int)}); nečinné
+ * spojení jinak blokuje vlákno natrvalo.
+ *
+ * @author Martin Pokorný
+ * @see Tap2basCli
+ */
+public class Tap2basServer {
+    private static final Logger log = LoggerFactory.getLogger(Tap2basServer.class);
+
+    public static final int DEFAULT_PORT = 23128;   // (0x5A58 = "ZX")
+
+    static final int MAGIC = 0x54324253;    // "T2BS"
+    static final int VERSION = 2;
+
+    static final int FLAG_ONLY_BASIC = 1;
+    static final int FLAG_ANALYZE_VARS = 2;
+    static final int FLAG_RECOVER = 4;
+
+    static final int INPUT_PATH = 1;
+    static final int INPUT_CONTENT = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Max. délka obsahu TAP v požadavku (TAP ze ZX Spectra má obvykle desítky kB). */
+    static final int MAX_CONTENT_LENGTH = 16 * 1024 * 1024;
+    private static final int TOKEN_BYTES = 16;
+    /** Výchozí časový limit čtení požadavku [ms]. */
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+    private final int port;
+    private final int threads;
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+    private File tokenFile = null;
+    private String token;
+    /** Souhrn všech požadavků, viz {@linkplain #getStats()}. */
+    private final TapStatsTotal statsTotal = new TapStatsTotal();
+
+    /** Každé pracovní vlákno má vlastní {@code Tap2bas}. */
+    private final ThreadLocal<Tap2bas> workerTap2bas = new ThreadLocal<Tap2bas>() {
+        @Override
+        protected Tap2bas initialValue() {
+            return new Tap2bas();
+        }
+    };
+
+    /**
+     *
+     * @param port  {@code 0} = libovolný volný port, viz {@linkplain #getPort()}
+     * @param threads  počet pracovních vláken
+     */
+    public Tap2basServer(int port, int threads) {
+        if (port < 0 || port > 0xFFFF) {
+            throw new IllegalArgumentException("port");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads <= 0");
+        }
+        this.port = port;
+        this.threads = threads;
+    }
+
+    /**
+     * Nastaví časový limit pro čtení požadavku. Pokud klient v tomto čase
+     * nic nepošle, spojení se uzavře a vlákno se uvolní pro další
+     * požadavky. Týká se až nově přijatých spojení.
+     *
+     * @param readTimeout  [ms]; {@code 0} = bez limitu
+     */
+    public void setReadTimeout(int readTimeout) {
+        if (readTimeout < 0) {
+            throw new IllegalArgumentException("readTimeout < 0");
+        }
+        this.readTimeout = readTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     *
+     * @param tokenFile  soubor pro klíč; {@code null} = výchozí podle
+     *      portu, viz {@linkplain Tap2basClient#getTokenFile(int)}
+     */
+    public void setTokenFile(File tokenFile) {
+        if (serverSocket != null) {
+            throw new IllegalStateException("already started");
+        }
+        this.tokenFile = tokenFile;
+    }
+
+    /**
+     *
+     * @return  soubor s klíčem pro klienty (po startu)
+     */
+    public File getTokenFile() {
+        return tokenFile;
+    }
+
+    /**
+     *
+     * @return  klíč, který musí poslat klient (po startu)
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Otevře port (jen na {@code localhost}) a zapíše soubor s klíčem.
+     *
+     * @throws IOException  např. pokud je port už obsazen
+     */
+    public void start() throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("already started");
+        }
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        try {
+            token = newToken();
+            if (tokenFile == null) {
+                tokenFile = Tap2basClient.getTokenFile(serverSocket.getLocalPort());
+            }
+            writeTokenFile(tokenFile, token);
+            tokenFile.deleteOnExit();
+        } catch (IOException ioex) {
+            serverSocket.close();
+            serverSocket = null;
+            throw ioex;
+        }
+        executor = Executors.newFixedThreadPool(threads);
+        statsTotal.register();
+        log.info("listening on " + serverSocket.getLocalSocketAddress()
+                + "; threads = " + threads + "; token file = " + tokenFile);
+    }
+
+    /**
+     *
+     * @return  náhodný klíč (hex)
+     */
+    private static String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Zapíše klíč do souboru, který může číst jen vlastník
+     * ({@code rw-------}). Soubor se vytvoří znovu, aby nezůstala
+     * oprávnění starého souboru.
+     *
+     * @param file
+     * @param token
+     * @throws IOException
+     */
+    private static void writeTokenFile(File file, String token) throws IOException {
+        Path path = file.toPath();
+        Files.deleteIfExists(path);
+        try {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException uoex) {
+            // (Windows: soubor v domovském adresáři má jeho oprávnění)
+            Files.createFile(path);
+        }
+        Files.write(path, token.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     *
+     * @return  port, na kterém server poslouchá
+     */
+    public int getPort() {
+        if (serverSocket == null) {
+            throw new IllegalStateException("not started");
+        }
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     *
+     * @return  souhrnná statistika požadavků od startu (nebo od
+     *      {@linkplain TapStatsTotal#reset()}); je zaregistrována i jako
+     *      MBean {@value TapStatsTotal#OBJECT_NAME}
+     */
+    public TapStatsTotal getStats() {
+        return statsTotal;
+    }
+
+    /**
+     * Přijímá spojení, dokud není server zastaven
+     * ({@linkplain #stop()}).
+     *
+     * @throws IOException
+     */
+    public void run() throws IOException {
+        if (serverSocket == null) {
+            throw new IllegalStateException("not started");
+        }
+        try {
+            while (true) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException sex) {
+                    if (serverSocket.isClosed()) {
+                        break;  // (stop)
+                    }
+                    throw sex;
+                }
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Zastaví přijímání spojení; rozpracované požadavky se dokončí.
+     *
+     * @throws IOException
+     */
+    public void stop() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+            Files.deleteIfExists(tokenFile.toPath());
+        }
+        statsTotal.unregister();
+    }
+
+    /**
+     * Zpracuje jedno spojení. Nevyhazuje výjimky.
+     *
+     * @param socket
+     */
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            // (jen čtení požadavku; odpověď se jen zapisuje)
+            s.setSoTimeout(readTimeout);
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(s.getInputStream(), BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(s.getOutputStream(), BUFFER_SIZE));
+            convert(in, out);
+            out.flush();
+        } catch (IOException ioex) {
+            // (např. klient spojení ukončil nebo nic neposlal,
+            //  SocketTimeoutException)
+            log.info("connection: " + ioex.getMessage(), ioex);
+        }
+    }
+
+    /**
+     * Přečte požadavek, převede TAP a zapíše odpověď.
+     *
+     * @param in
+     * @param out
+     * @throws IOException  chyba spojení (chyba převodu se vrací v odpovědi)
+     */
+    private void convert(DataInputStream in, DataOutputStream out) throws IOException {
+        if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+            throw new IOException("unknown request");
+        }
+        // (klíč se ověří dřív, než se čte cokoli dalšího)
+        if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.US_ASCII),
+                in.readUTF().getBytes(StandardCharsets.US_ASCII))) {
+            log.warn("request with invalid token rejected");
+            writeResult(out, RESULT_ERR_GENERAL, "access denied: invalid token",
+                    Collections.<String>emptyList());
+            return;
+        }
+        int flags = in.readUnsignedByte();
+        String formatName = in.readUTF();
+        int inputKind = in.readUnsignedByte();
+        String path = null;
+        byte[] content = null;
+        if (inputKind == INPUT_PATH) {
+            path = in.readUTF();
+        }
+        else if (inputKind == INPUT_CONTENT) {
+            content = readContent(in, in.readInt());
+        }
+        else {
+            throw new IOException("unknown input: " + inputKind);
+        }
+        log.info("request: " + (path != null ? path : content.length + " B")
+                + "; flags = " + flags + "; format = " + formatName);
+
+        Tap2bas tap2bas = workerTap2bas.get();
+        TapStats stats = new TapStats();
+        stats.start();
+        tap2bas.setStats(stats);
+        ChunkedOutputStream chunks = new ChunkedOutputStream(out);
+        int resultCode = RESULT_OK;
+        String message = "";
+        List<String> warnings = new ArrayList<>();
+        try {
+            OutputFormat format = OutputFormat.getByName(formatName);
+            if (format == null) {
+                throw new IllegalArgumentException("unknown format: " + formatName);
+            }
+            tap2bas.setOutputFormat(format);
+            tap2bas.setRecover((flags & FLAG_RECOVER) != 0);
+            if (path != null) {
+                tap2bas.setInFile(new File(path));
+            }
+            else {
+                tap2bas.setTapContent(ByteBuffer.wrap(content));
+            }
+            tap2bas.setOutStream(chunks);
+            if ((flags & FLAG_ONLY_BASIC) != 0) {
+                tap2bas.analyzeAndExtractOnlyBasic();
+            }
+            else if ((flags & FLAG_ANALYZE_VARS) != 0) {
+                tap2bas.analyzeAll();
+            }
+            else {
+                tap2bas.analyzeWithoutVars();
+            }
+            for (TapResyncScanner.SkippedRange range : tap2bas.getSkippedRanges()) {
+                warnings.add("skipped damaged data: " + range);
+            }
+        } catch (InvalidTapException ex) {
+            log.info(ex.getMessage(), ex);
+            resultCode = RESULT_ERR_TAP_FORMAT;
+            message = ex.getClass().getName() + ": " + ex.getMessage();
+        } catch (ChunkException ex) {
+            throw ex.getCause();    // (spojení)
+        } catch (Exception ex) {
+            log.info(ex.getMessage(), ex);
+            resultCode = RESULT_ERR_GENERAL;
+            message = ex.getClass().getName() + ": " + ex.getMessage();
+        } finally {
+            try {
+                tap2bas.closeOutWriter();   // (proud se neuzavírá)
+            } catch (ChunkException ex) {
+                throw ex.getCause();
+            } finally {
+                stats.stop();
+                statsTotal.add(stats, path != null ? path : "(content)");
+            }
+        }
+        writeResult(out, resultCode, message, warnings);
+    }
+
+    /**
+     * Přečte obsah TAP z požadavku. Buffer roste, až jak data přicházejí,
+     * takže ohlášená délka sama o sobě paměť nezabere.
+     *
+     * @param in
+     * @param length  ohlášená délka
+     * @return
+     * @throws IOException  chybná délka, nebo chyba spojení
+     */
+    private static byte[] readContent(DataInputStream in, int length) throws IOException {
+        if (length < 0 || length > MAX_CONTENT_LENGTH) {
+            throw new IOException("invalid content length: " + length);
+        }
+        byte[] content = new byte[Math.min(length, BUFFER_SIZE)];
+        int count = 0;
+        while (count < length) {
+            if (count == content.length) {
+                content = Arrays.copyOf(content, 
+                        (int) Math.min(length, 2L * content.length));
+            }
+            int n = in.read(content, count, content.length - count);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            count += n;
+        }
+        return content;
+    }
+
+    /**
+     * Zapíše konec výstupu a výsledek převodu.
+     *
+     * @param out
+     * @param resultCode
+     * @param message
+     * @param warnings
+     * @throws IOException
+     */
+    private static void writeResult(DataOutputStream out, int resultCode,
+            String message, List<String> warnings) throws IOException {
+        out.writeInt(0);
+        out.writeInt(resultCode);
+        out.writeUTF(message);
+        out.writeInt(warnings.size());
+        for (String warning : warnings) {
+            out.writeUTF(warning);
+        }
+    }
+
+    /**
+     * Chyba zápisu do spojení (na rozdíl od chyby převodu).
+     */
+    private static final class ChunkException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ChunkException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * Výstup převodu po částech: 4B délka + data.
+     */
+    private static final class ChunkedOutputStream extends FilterOutputStream {
+
+        ChunkedOutputStream(DataOutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;     // (0 = konec výstupu)
+            }
+            try {
+                ((DataOutputStream) out).writeInt(len);
+                out.write(b, off, len);
+            } catch (IOException ioex) {
+                throw new ChunkException(ioex);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // (odesílá se až celá odpověď, nebo po zaplnění bufferu spojení)
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+}   // Tap2basServer.java
@@ -0,0 +1,273 @@
+/*
+ * TapArchive.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Čtení TAP přímo z archivů ZIP ({@code .zip}) a GZIP ({@code .tap.gz}),
+ * bez rozbalování na disk.
+ * <p>
+ * Z archivu ZIP se berou položky s příponou {@code .tap}. Položky se
+ * čtou přes {@linkplain ZipFile}, tj. v libovolném pořadí a z více vláken
+ * najednou (každé vlákno se svým {@linkplain Buffer}). Data se rozbalí do
+ * {@linkplain Buffer}, který se použije znovu pro další položku; vrácený
+ * {@code ByteBuffer} proto platí jen do dalšího čtení do stejného bufferu.
+ * <p>
+ * Položky s absolutní cestou nebo s {@code ..} v cestě se přeskočí
+ * (jejich jméno se používá pro jméno výstupu).
+ *
+ * @author Martin Pokorný
+ * @see Tap2basBatch
+ * @see Tap2basCli
+ */
+public final class TapArchive implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(TapArchive.class);
+
+    public static final String ZIP_EXT = ".zip";
+    public static final String GZIP_EXT = ".gz";
+
+    /** oddělovač archivu a položky ve jménu zdroje (jako u URL {@code jar:}) */
+    public static final String ENTRY_SEPARATOR = "!/";
+
+    /** ochrana proti "zip bombě"; TAP bývá nejvýše v jednotkách MB */
+    static final int MAX_ENTRY_SIZE = 256 * 1024 * 1024;
+
+    private final File file;
+    private final ZipFile zipFile;
+
+    /**
+     * Otevře archiv ZIP.
+     *
+     * @param file
+     * @throws FileNotFoundException
+     * @throws IOException  pokud soubor není archiv ZIP
+     */
+    public TapArchive(File file) throws FileNotFoundException, IOException {
+        if (!file.exists() || file.isDirectory()) {
+            throw new FileNotFoundException(file.getAbsolutePath());
+        }
+        this.file = file;
+        this.zipFile = new ZipFile(file);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     *
+     * @return  jména položek s příponou {@code .tap} v pořadí v archivu
+     */
+    public List<String> getTapEntryNames() {
+        List<String> result = new ArrayList<>();
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String name = entry.getName();
+            if (entry.isDirectory()
+                    || !name.toLowerCase().endsWith(Tap2basBatch.TAP_EXT)) {
+                continue;
+            }
+            if (! isSafeEntryName(name)) {
+                log.warn(file + ": skipped entry with unsafe path: " + name);
+                continue;
+            }
+            result.add(name);
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @param name
+     * @return  {@code false} pro absolutní cestu nebo cestu s {@code ..}
+     */
+    static boolean isSafeEntryName(String name) {
+        String path = name.replace('\\', '/');
+        if (path.startsWith("/") || path.indexOf(':') >= 0) {
+            return false;
+        }
+        for (String part : path.split("/")) {
+            if (part.equals("..")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rozbalí položku archivu.
+     *
+     * @param entryName
+     * @param buffer  buffer pro rozbalená data
+     * @return  obsah položky; platí do dalšího čtení do {@code buffer}
+     * @throws FileNotFoundException  pokud archiv položku nemá
+     * @throws IOException
+     */
+    public ByteBuffer read(String entryName, Buffer buffer)
+            throws FileNotFoundException, IOException {
+        ZipEntry entry = zipFile.getEntry(entryName);
+        if (entry == null) {
+            throw new FileNotFoundException(getSourceName(file, entryName));
+        }
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            return buffer.readFully(in, entry.getSize(), getSourceName(file, entryName));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        zipFile.close();
+    }
+
+    /**
+     * Rozbalí TAP z archivu GZIP (např. {@code gold.tap.gz}).
+     *
+     * @param gzFile
+     * @param buffer  buffer pro rozbalená data
+     * @return  obsah TAP; platí do dalšího čtení do {@code buffer}
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public static ByteBuffer readGzip(File gzFile, Buffer buffer)
+            throws FileNotFoundException, IOException {
+        if (!gzFile.exists() || gzFile.isDirectory()) {
+            throw new FileNotFoundException(gzFile.getAbsolutePath());
+        }
+        try (InputStream in = new GZIPInputStream(new FileInputStream(gzFile))) {
+            // (velikost v patičce GZIP je jen modulo 2^32; stačí odhad)
+            return buffer.readFully(in, gzFile.length() * 4, gzFile.getPath());
+        }
+    }
+
+    /**
+     *
+     * @param file
+     * @return  {@code true} pro soubor {@code *.zip}
+     */
+    public static boolean isZip(File file) {
+        return file.getName().toLowerCase().endsWith(ZIP_EXT);
+    }
+
+    /**
+     *
+     * @param file
+     * @return  {@code true} pro soubor {@code *.gz}
+     */
+    public static boolean isGzip(File file) {
+        return file.getName().toLowerCase().endsWith(GZIP_EXT);
+    }
+
+    /**
+     *
+     * @param file
+     * @return  {@code true} pro archiv ZIP nebo GZIP
+     */
+    public static boolean isArchive(File file) {
+        return isZip(file) || isGzip(file);
+    }
+
+    /**
+     *
+     * @param name  např. {@code gold.tap.gz}, {@code games.zip}
+     * @return  jméno bez přípony archivu, např. {@code gold.tap}, {@code games}
+     */
+    public static String stripArchiveExt(String name) {
+        String lower = name.toLowerCase();
+        if (lower.endsWith(ZIP_EXT)) {
+            return name.substring(0, name.length() - ZIP_EXT.length());
+        }
+        if (lower.endsWith(GZIP_EXT)) {
+            return name.substring(0, name.length() - GZIP_EXT.length());
+        }
+        return name;
+    }
+
+    /**
+     *
+     * @param archive
+     * @param entryName
+     * @return  např. {@code games.zip!/gold/gold.tap}
+     */
+    public static String getSourceName(File archive, String entryName) {
+        return archive.getPath() + ENTRY_SEPARATOR + entryName;
+    }
+
+    /**
+     * Znovu použitelný buffer pro rozbalená data. Zvětšuje se podle
+     * potřeby a už se nezmenšuje. Není synchronizovaný;
+     * jeden buffer patří jednomu vláknu.
+     */
+    public static final class Buffer {
+        private static final int INITIAL_SIZE = 64 * 1024;
+
+        private byte[] data = new byte[INITIAL_SIZE];
+
+        /**
+         *
+         * @return  aktuální velikost
+         */
+        int capacity() {
+            return data.length;
+        }
+
+        /**
+         * Přečte celý vstup do bufferu.
+         *
+         * @param in
+         * @param sizeHint  očekávaná velikost, nebo {@code -1}
+         * @param source  jméno vstupu pro chybové hlášení
+         * @return  obal přečtených dat
+         * @throws IOException  i pokud je vstup větší než
+         *      {@linkplain TapArchive#MAX_ENTRY_SIZE}
+         */
+        ByteBuffer readFully(InputStream in, long sizeHint, String source)
+                throws IOException {
+            if (sizeHint > data.length) {
+                grow(sizeHint, source);
+            }
+            int len = 0;
+            while (true) {
+                if (len == data.length) {
+                    grow((long) data.length * 2, source);
+                }
+                int n = in.read(data, len, data.length - len);
+                if (n < 0) {
+                    break;
+                }
+                len += n;
+            }
+            return ByteBuffer.wrap(data, 0, len);
+        }
+
+        private void grow(long size, String source) throws IOException {
+            if (data.length >= MAX_ENTRY_SIZE) {
+                throw new IOException("entry is too big: " + source);
+            }
+            byte[] bigger = new byte[(int) Math.min(size, MAX_ENTRY_SIZE)];
+            System.arraycopy(data, 0, bigger, 0, data.length);
+            data = bigger;
+        }
+    }
+
+}   // TapArchive.java
@@ -0,0 +1,355 @@
+/*
+ * TapBlock.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Popis jedné dvojice bloků TAP "hlavička + data" (nebo bloku dat bez
+ * hlavičky). Obsah se dekóduje (výpis BASICu, VARS, výpis bytů)
+ * až na vyžádání, viz {@linkplain Tap2bas#blocks()}.
+ * <p>
+ * Data se nekopírují, popis jen odkazuje do obsahu TAP.
+ * Bloky ze stejného iterátoru sdílí jeden dekodér, nejsou tedy určeny
+ * pro souběžné použití z více vláken.
+ *
+ * @author Martin Pokorný
+ * @see Tap2bas#blocks()
+ */
+public final class TapBlock {
+
+    private static final int LEN_SIZE = 2;
+    private static final int NOT_FOUND = -1;
+    private static final int UNKNOWN = -2;
+
+    private static final int DECODE_LISTING = 0;
+    private static final int DECODE_VARS = 1;
+    private static final int DECODE_WITHOUT_VARS = 2;
+    private static final int DECODE_ALL = 3;
+
+    private final ByteBuffer tap;
+    private final Tap2bas decoder;
+    private final int number;
+
+    private final int headerOffset;
+    private final int typeNum;
+    private final String name;
+    private final int headerDataLength;
+    private final int p1;
+    private final int p2;
+
+    private final int dataOffset;
+    private final int dataBlockLength;
+
+    /** (dopočítá se až na vyžádání) */
+    private int varsOffset = UNKNOWN;
+
+    /**
+     *
+     * @param tap  celý obsah TAP (indexuje se absolutně)
+     * @param decoder  {@code Tap2bas} nad stejným obsahem
+     * @param number
+     * @param headerOffset  nebo {@code -1} pro blok bez hlavičky
+     * @param dataOffset  nebo {@code -1} pro hlavičku bez dat
+     * @param dataBlockLength
+     */
+    TapBlock(ByteBuffer tap, Tap2bas decoder, int number,
+            int headerOffset, int dataOffset, int dataBlockLength) {
+        this.tap = tap;
+        this.decoder = decoder;
+        this.number = number;
+        this.headerOffset = headerOffset;
+        this.dataOffset = dataOffset;
+        this.dataBlockLength = dataBlockLength;
+        if (headerOffset >= 0) {
+            // 2B délka, flag, typ, 10B jméno, délka dat, p1, p2, parita
+            int idx = headerOffset + LEN_SIZE + 1;
+            typeNum = tap.get(idx) & 0xFF;
+            char[] nameChars = new char[Tap2bas.NAME_IN_HEADER_LEN];
+            for (int i=0; i<nameChars.length; i++) {
+                nameChars[i] = (char) (tap.get(idx + 1 + i) & 0xFF);
+            }
+            name = new String(nameChars).trim();
+            idx += 1 + Tap2bas.NAME_IN_HEADER_LEN;
+            headerDataLength = lsbMSB(idx);
+            p1 = lsbMSB(idx + 2);
+            p2 = lsbMSB(idx + 4);
+        }
+        else {
+            typeNum = -1;
+            name = null;
+            headerDataLength = 0;
+            p1 = 0;
+            p2 = 0;
+        }
+    }
+
+    private int lsbMSB(int idx) {
+        return (tap.get(idx) & 0xFF) | (tap.get(idx + 1) & 0xFF) << 8;
+    }
+
+    /**
+     *
+     * @return  pořadí dvojice bloků v TAP (od 0)
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    public boolean hasHeader() {
+        return headerOffset >= 0;
+    }
+
+    /**
+     *
+     * @return  pozice hlavičky v TAP (začátek její 2B délky),
+     *      nebo {@code -1}
+     */
+    public int getHeaderOffset() {
+        return headerOffset;
+    }
+
+    /**
+     *
+     * @return  typ z hlavičky, nebo {@code null} (bez hlavičky, neznámý typ)
+     */
+    public TapBlockType getType() {
+        return hasHeader() ? TapBlockType.getByNum(typeNum) : null;
+    }
+
+    /**
+     *
+     * @return  jméno z hlavičky (bez mezer na konci), nebo {@code null}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     *
+     * @return  délka dat uvedená v hlavičce
+     */
+    public int getHeaderDataLength() {
+        return headerDataLength;
+    }
+
+    public int getP1() {
+        return p1;
+    }
+
+    public int getP2() {
+        return p2;
+    }
+
+    public boolean hasData() {
+        return dataOffset >= 0;
+    }
+
+    /**
+     *
+     * @return  pozice bloku dat v TAP (začátek jeho 2B délky), nebo {@code -1}
+     */
+    public int getDataOffset() {
+        return dataOffset;
+    }
+
+    /**
+     *
+     * @return  počet bytů dat (bez flagu a parity)
+     */
+    public int getDataLength() {
+        return hasData() ? Math.max(0, dataBlockLength - 2) : 0;
+    }
+
+    /**
+     *
+     * @return  flag bloku dat, nebo {@code -1}
+     */
+    public int getDataFlag() {
+        return hasData() && dataBlockLength > 0 ? tap.get(dataOffset + LEN_SIZE) & 0xFF : -1;
+    }
+
+    /**
+     *
+     * @return  data (bez flagu a parity) jen pro čtení; nekopírují se
+     */
+    public ByteBuffer getData() {
+        ByteBuffer dup = tap.asReadOnlyBuffer();
+        int start = hasData() ? dataOffset + LEN_SIZE + 1 : 0;
+        ((Buffer) dup).limit(start + getDataLength());
+        ((Buffer) dup).position(start);
+        return dup.slice();
+    }
+
+    /**
+     * Parita se počítá až při volání.
+     *
+     * @return  {@code true}, pokud sedí parita hlavičky i dat
+     */
+    public boolean isParityOk() {
+        return (!hasHeader() || isParityOk(headerOffset, Tap2bas.DEFAULT_HEADER_SIZE))
+                && (!hasData() || isParityOk(dataOffset, dataBlockLength));
+    }
+
+    private boolean isParityOk(int offset, int length) {
+        int parity = 0;
+        int end = offset + LEN_SIZE + length;
+        for (int i=offset + LEN_SIZE; i<end; i++) {
+            parity ^= tap.get(i);
+        }
+        return parity == 0;
+    }
+
+    public boolean isBasic() {
+        return getType() == TapBlockType.BASIC && hasData();
+    }
+
+    /**
+     *
+     * @return  {@code true}, pokud je za programem v BASICu
+     *      tabulka proměnných
+     */
+    public boolean hasVars() {
+        return isBasic() && findVarsOffset() >= 0;
+    }
+
+    /**
+     * Najde začátek tabulky proměnných (jen přeskakuje řádky programu),
+     * stejně jako {@code Tap2bas.analyzeBasicBlock}.
+     *
+     * @return
+     */
+    private int findVarsOffset() {
+        if (varsOffset == UNKNOWN) {
+            varsOffset = NOT_FOUND;
+            int idx = dataOffset + LEN_SIZE + 1;
+            int end = idx + getDataLength();
+            while (idx + 1 < end) {
+                int lineNum = (tap.get(idx) & 0xFF) << 8 | (tap.get(idx + 1) & 0xFF);
+                if (lineNum > Tap2bas.MAX_LINE_NUM_IN_BASIC) {
+                    varsOffset = idx;
+                    break;
+                }
+                if (idx + 3 >= end) {
+                    break;
+                }
+                idx += 4 + lsbMSB(idx + 2);
+            }
+        }
+        return varsOffset;
+    }
+
+    /**
+     *
+     * @return  výpis programu v BASICu
+     * @throws IOException
+     * @throws InvalidTapException
+     * @throws IllegalStateException  pokud blok není program v BASICu
+     */
+    public String getBasicListing() throws IOException, InvalidTapException {
+        if (!isBasic()) {
+            throw new IllegalStateException("not a BASIC block");
+        }
+        return decode(DECODE_LISTING);
+    }
+
+    /**
+     *
+     * @return  analýza tabulky proměnných, nebo {@code null}, pokud ji
+     *      blok nemá
+     * @throws IOException
+     * @throws InvalidTapException
+     * @see #hasVars()
+     */
+    public String getVarsAnalysis() throws IOException, InvalidTapException {
+        if (!hasVars()) {
+            return null;
+        }
+        return decode(DECODE_VARS);
+    }
+
+    /**
+     *
+     * @return  {@code hexdump} dat
+     */
+    public String getHexDump() {
+        return new TapByteArrayData(getData()).readBlockReturnAsHexDump(getDataLength());
+    }
+
+    /**
+     *
+     * @return  {@code 'decadic' dump} dat
+     */
+    public String getDecadicDump() {
+        return new TapByteArrayData(getData()).readBlockReturnAsDecadicDump(getDataLength());
+    }
+
+    /**
+     * Stejný výstup, jaký by pro tuto dvojici bloků zapsal
+     * {@linkplain Tap2bas#analyzeAll()}, resp.
+     * {@linkplain Tap2bas#analyzeWithoutVars()}.
+     *
+     * @param analyzeVars
+     * @return
+     * @throws IOException
+     * @throws InvalidTapException
+     */
+    public String getText(boolean analyzeVars) throws IOException, InvalidTapException {
+        return decode(analyzeVars ? DECODE_ALL : DECODE_WITHOUT_VARS);
+    }
+
+    /**
+     *
+     * @param what
+     * @return
+     * @throws IOException
+     * @throws InvalidTapException
+     */
+    private String decode(int what) throws IOException, InvalidTapException {
+        StringWriter sw = new StringWriter();
+        decoder.setOutWriter(sw);
+        try {
+            if (what == DECODE_VARS) {
+                int end = dataOffset + LEN_SIZE + 1 + getDataLength();
+                decoder.writeVarsTable(findVarsOffset(), end - findVarsOffset());
+            }
+            else {
+                int offset = hasHeader() ? headerOffset : dataOffset;
+                decoder.setSelectedOffsets(new int[] { offset });
+                if (what == DECODE_LISTING) {
+                    decoder.analyzeAndExtractOnlyBasic();
+                }
+                else if (what == DECODE_ALL) {
+                    decoder.analyzeAll();
+                }
+                else {
+                    decoder.analyzeWithoutVars();
+                }
+            }
+        }
+        finally {
+            decoder.closeOutWriter();
+        }
+        return sw.toString();
+    }
+
+    @Override
+    public String toString() {
+        if (!hasHeader()) {
+            return "#" + number + " data  length=" + getDataLength();
+        }
+        TapBlockType type = getType();
+        return "#" + number + " " + (type != null ? type.getDescription().trim() : "? (" + typeNum + ")")
+                + "  name=\"" + name + "\"  dataLength=" + headerDataLength
+                + "  p1=" + p1 + "  p2=" + p2;
+    }
+
+}   // TapBlock.java
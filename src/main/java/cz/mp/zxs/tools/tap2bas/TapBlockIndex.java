@@ -0,0 +1,488 @@
+/*
+ * TapBlockIndex.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index bloků TAP souboru: pro každý blok jeho pozice, délka, flag,
+ * parita a u hlaviček i typ, jméno, délka dat a parametry {@code p1},
+ * {@code p2}. Vytvoří se jedním průchodem souborem, bez analýzy obsahu
+ * bloků.
+ * <p>
+ * Index lze uložit do binárního souboru vedle TAP souboru
+ * (viz {@linkplain #getSidecarFile(java.io.File)}). Uložený index platí,
+ * jen dokud se nezmění velikost, čas poslední změny a hash TAP souboru.
+ * Dotazy jako "vypiš blok 7" nebo "program se jménem X" pak najdou
+ * pozici bloku bez procházení celého (třeba i velkého) souboru,
+ * viz {@linkplain Tap2bas#setSelectedOffsets(int[])}.
+ *
+ * @author Martin Pokorný
+ * @see Tap2basCli
+ */
+public class TapBlockIndex {
+    private static final Logger log = LoggerFactory.getLogger(TapBlockIndex.class);
+
+    /** přípona souboru s indexem (přidává se za celé jméno TAP souboru) */
+    public static final String SIDECAR_EXT = ".tapidx";
+
+    private static final int MAGIC = 0x54324249;    // "T2BI"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int LEN_SIZE = 2;
+
+    /**
+     * Jeden blok TAP.
+     */
+    public static final class Entry {
+        private final int offset;
+        private final int length;
+        private final int flag;
+        private final boolean parityOk;
+        // (jen hlavička)
+        private final int typeNum;
+        private final String name;
+        private final int dataLength;
+        private final int p1;
+        private final int p2;
+
+        Entry(int offset, int length, int flag, boolean parityOk,
+                int typeNum, String name, int dataLength, int p1, int p2) {
+            this.offset = offset;
+            this.length = length;
+            this.flag = flag;
+            this.parityOk = parityOk;
+            this.typeNum = typeNum;
+            this.name = name;
+            this.dataLength = dataLength;
+            this.p1 = p1;
+            this.p2 = p2;
+        }
+
+        /**
+         *
+         * @return  pozice začátku bloku (jeho 2B délky) v TAP
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         *
+         * @return  délka bloku (včetně flagu a parity, bez 2B délky)
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         *
+         * @return  flag bloku, nebo {@code -1} pro prázdný blok
+         */
+        public int getFlag() {
+            return flag;
+        }
+
+        public boolean isParityOk() {
+            return parityOk;
+        }
+
+        public boolean isHeader() {
+            return name != null;
+        }
+
+        /**
+         *
+         * @return  číslo typu z hlavičky, nebo {@code -1}, pokud blok
+         *      není hlavička
+         */
+        public int getTypeNum() {
+            return typeNum;
+        }
+
+        /**
+         *
+         * @return  typ z hlavičky, nebo {@code null}, pokud blok není
+         *      hlavička nebo je typ neznámý
+         */
+        public TapBlockType getType() {
+            return isHeader() ? TapBlockType.getByNum(typeNum) : null;
+        }
+
+        /**
+         *
+         * @return  jméno z hlavičky (bez mezer na konci),
+         *      nebo {@code null}, pokud blok není hlavička
+         */
+        public String getName() {
+            return name;
+        }
+
+        public int getDataLength() {
+            return dataLength;
+        }
+
+        public int getP1() {
+            return p1;
+        }
+
+        public int getP2() {
+            return p2;
+        }
+    }
+
+    private final List<Entry> entries;
+    private final long fileSize;
+    private final long lastModified;
+    private final long hash;
+
+    private TapBlockIndex(List<Entry> entries, long fileSize, long lastModified, long hash) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.hash = hash;
+    }
+
+    /**
+     * Vytvoří index jedním průchodem přes obsah TAP.
+     *
+     * @param tap  obsah TAP (od {@code position} do {@code limit};
+     *      pozice se nemění)
+     * @param lastModified  čas poslední změny souboru (pro ověření
+     *      platnosti uloženého indexu)
+     * @return
+     * @throws InvalidTapException  pokud je poslední blok useknutý
+     */
+    public static TapBlockIndex build(ByteBuffer tap, long lastModified)
+            throws InvalidTapException {
+        ByteBuffer data = tap.slice();
+        int size = data.limit();
+        List<Entry> entries = new ArrayList<>();
+        int idx = 0;
+        while (idx < size) {
+            if (idx + LEN_SIZE > size) {
+                throw new InvalidTapException("truncated block; index = " + idx
+                        + " (0x" + Integer.toHexString(idx) + ")");
+            }
+            int len = (data.get(idx) & 0xFF) | (data.get(idx + 1) & 0xFF) << 8;
+            int start = idx + LEN_SIZE;
+            if (start + len > size) {
+                throw new InvalidTapException("truncated block; index = " + idx
+                        + " (0x" + Integer.toHexString(idx) + ")"
+                        + ", blockLen = " + len);
+            }
+            int parity = TapVerifier.xor(data, start, start + len);
+            int flag = len > 0 ? data.get(start) & 0xFF : -1;
+            if (len == Tap2bas.DEFAULT_HEADER_SIZE && flag == Tap2bas.FLAG_HEADER) {
+                // flag, typ, 10B jméno, délka dat, p1, p2, parita
+                char[] name = new char[Tap2bas.NAME_IN_HEADER_LEN];
+                for (int i=0; i<name.length; i++) {
+                    name[i] = (char) (data.get(start + 2 + i) & 0xFF);
+                }
+                int p = start + 2 + Tap2bas.NAME_IN_HEADER_LEN;
+                entries.add(new Entry(idx, len, flag, parity == 0,
+                        data.get(start + 1) & 0xFF,
+                        new String(name).trim(),
+                        lsbMSB(data, p), lsbMSB(data, p + 2), lsbMSB(data, p + 4)));
+            }
+            else {
+                entries.add(new Entry(idx, len, flag, parity == 0, -1, null, 0, 0, 0));
+            }
+            idx = start + len;
+        }
+        return new TapBlockIndex(entries, size, lastModified, hash64(data));
+    }
+
+    private static int lsbMSB(ByteBuffer data, int idx) {
+        return (data.get(idx) & 0xFF) | (data.get(idx + 1) & 0xFF) << 8;
+    }
+
+    /**
+     * Vrátí index pro TAP soubor. Pokud {@code useSidecar}, použije
+     * uložený index (pokud stále platí), jinak ho vytvoří a uloží.
+     *
+     * @param tapFile
+     * @param content  obsah {@code tapFile}
+     * @param useSidecar
+     * @return
+     * @throws InvalidTapException
+     * @see #getSidecarFile(java.io.File)
+     */
+    public static TapBlockIndex forFile(File tapFile, ByteBuffer content, boolean useSidecar)
+            throws InvalidTapException {
+        long lastModified = tapFile.lastModified();
+        if (!useSidecar) {
+            return build(content, lastModified);
+        }
+        File sidecar = getSidecarFile(tapFile);
+        TapBlockIndex index = load(sidecar);
+        if (index != null && index.isValidFor(content, lastModified)) {
+            log.info("using index: " + sidecar);
+            return index;
+        }
+        index = build(content, lastModified);
+        try {
+            index.save(sidecar);
+            log.info("index saved: " + sidecar);
+        } catch (IOException ioex) {
+            // (např. adresář jen pro čtení; index se použije jen teď)
+            log.warn("cannot save index: " + sidecar + "; " + ioex.getMessage());
+        }
+        return index;
+    }
+
+    /**
+     *
+     * @param tapFile
+     * @return  soubor pro uložený index, např. {@code game.tap.tapidx}
+     */
+    public static File getSidecarFile(File tapFile) {
+        return new File(tapFile.getPath() + SIDECAR_EXT);
+    }
+
+    /**
+     *
+     * @param content
+     * @param lastModified
+     * @return  {@code true}, pokud index odpovídá zadanému obsahu souboru
+     */
+    public boolean isValidFor(ByteBuffer content, long lastModified) {
+        return fileSize == content.remaining()
+                && this.lastModified == lastModified
+                && hash == hash64(content);
+    }
+
+    /**
+     * Uloží index; nejdříve do dočasného souboru, který pak přejmenuje,
+     * takže souběžně čtený index není nikdy rozepsaný.
+     *
+     * @param sidecar
+     * @throws IOException
+     */
+    public void save(File sidecar) throws IOException {
+        File tmp = new File(sidecar.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeLong(fileSize);
+            out.writeLong(lastModified);
+            out.writeLong(hash);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeInt(entry.offset);
+                out.writeShort(entry.length);
+                out.writeShort(entry.flag);
+                out.writeBoolean(entry.parityOk);
+                out.writeBoolean(entry.isHeader());
+                if (entry.isHeader()) {
+                    out.writeByte(entry.typeNum);
+                    out.writeUTF(entry.name);
+                    out.writeShort(entry.dataLength);
+                    out.writeShort(entry.p1);
+                    out.writeShort(entry.p2);
+                }
+            }
+        }
+        try {
+            Files.move(tmp.toPath(), sidecar.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException amnsex) {
+            Files.move(tmp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Načte uložený index. Platnost pro TAP soubor se zde neověřuje,
+     * viz {@linkplain #isValidFor(java.nio.ByteBuffer, long)}.
+     *
+     * @param sidecar
+     * @return  index, nebo {@code null}, pokud soubor neexistuje
+     *      nebo jej nelze načíst (jiná verze formátu, poškozený soubor)
+     */
+    public static TapBlockIndex load(File sidecar) {
+        if (!sidecar.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(sidecar)))) {
+            if (in.readInt() != MAGIC || in.readShort() != FORMAT_VERSION) {
+                log.info("unknown index format: " + sidecar);
+                return null;
+            }
+            long fileSize = in.readLong();
+            long lastModified = in.readLong();
+            long hash = in.readLong();
+            int count = in.readInt();
+            if (count < 0) {
+                return null;
+            }
+            List<Entry> entries = new ArrayList<>(Math.min(count, 1024));
+            for (int i=0; i<count; i++) {
+                int offset = in.readInt();
+                int length = in.readUnsignedShort();
+                int flag = in.readShort();
+                boolean parityOk = in.readBoolean();
+                if (in.readBoolean()) {
+                    int typeNum = in.readUnsignedByte();
+                    String name = in.readUTF();
+                    entries.add(new Entry(offset, length, flag, parityOk, typeNum, name,
+                            in.readUnsignedShort(), in.readUnsignedShort(), in.readUnsignedShort()));
+                }
+                else {
+                    entries.add(new Entry(offset, length, flag, parityOk, -1, null, 0, 0, 0));
+                }
+            }
+            return new TapBlockIndex(entries, fileSize, lastModified, hash);
+        } catch (EOFException eofex) {
+            log.info("truncated index: " + sidecar);
+            return null;
+        } catch (IOException ioex) {
+            log.warn("cannot read index: " + sidecar + "; " + ioex.getMessage());
+            return null;
+        }
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Entry get(int blockNum) {
+        return entries.get(blockNum);
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     *
+     * @param blockNum  číslo bloku (od 0)
+     * @return  hlavička dvojice bloků, do které patří zadaný blok
+     *      (blok sám, nebo hlavička před blokem dat),
+     *      nebo {@code null} pro blok bez hlavičky
+     */
+    public Entry getHeaderOf(int blockNum) {
+        Entry entry = entries.get(blockNum);
+        if (entry.isHeader()) {
+            return entry;
+        }
+        if (blockNum > 0 && entries.get(blockNum - 1).isHeader()) {
+            return entries.get(blockNum - 1);
+        }
+        return null;
+    }
+
+    /**
+     *
+     * @param name  jméno z hlavičky (mezery na konci se ignorují)
+     * @return  hlavičky se zadaným jménem
+     */
+    public List<Entry> findHeadersByName(String name) {
+        String trimmed = name.trim();
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.isHeader() && entry.name.equals(trimmed)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Vypíše index jako tabulku, jeden blok na řádek.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeListing(AsciiOutput out) throws IOException {
+        out.write("   #  offset    length  flag  type                name        dataLength     p1     p2  parity\n");
+        for (int i=0; i<entries.size(); i++) {
+            Entry entry = entries.get(i);
+            String flagText = entry.flag < 0 ? "  - " : String.format("0x%02x", entry.flag);
+            if (entry.isHeader()) {
+                TapBlockType type = entry.getType();
+                out.write(String.format("%4d  0x%06x  %6d  %s  %-18s  %-10s  %10d  %5d  %5d  %s\n",
+                        i, entry.offset, entry.length, flagText,
+                        type != null ? type.getDescription().trim() : "? (" + entry.typeNum + ")",
+                        "\"" + entry.name + "\"",
+                        entry.dataLength, entry.p1, entry.p2,
+                        entry.parityOk ? "ok" : "ERROR"));
+            }
+            else {
+                out.write(String.format("%4d  0x%06x  %6d  %s  %-18s  %-10s  %10s  %5s  %5s  %s\n",
+                        i, entry.offset, entry.length, flagText,
+                        "data", "", "", "", "",
+                        entry.parityOk ? "ok" : "ERROR"));
+            }
+            out.endOfBlock();
+        }
+    }
+
+    /**
+     * Rychlý 64bitový hash (MurmurHash64A); čte po 8 bytech.
+     *
+     * @param data  (od {@code position} do {@code limit}; pozice se nemění)
+     * @return
+     */
+    public static long hash64(ByteBuffer data) {
+        final long m = 0xc6a4a7935bd1e995L;
+        final int r = 47;
+        ByteBuffer buf = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int len = buf.remaining();
+        long h = 0x7A58L ^ (len * m);   // ("ZX")
+        while (buf.remaining() >= 8) {
+            long k = buf.getLong();
+            k *= m;
+            k ^= k >>> r;
+            k *= m;
+            h ^= k;
+            h *= m;
+        }
+        int rest = buf.remaining();
+        if (rest > 0) {
+            long k = 0;
+            for (int i=0; i<rest; i++) {
+                k |= (buf.get() & 0xFFL) << (8 * i);
+            }
+            h ^= k;
+            h *= m;
+        }
+        h ^= h >>> r;
+        h *= m;
+        h ^= h >>> r;
+        return h;
+    }
+
+}   // TapBlockIndex.java
@@ -0,0 +1,107 @@
+/*
+ * TapBlockIterator.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Postupně prochází TAP po dvojicích bloků "hlavička + data".
+ * Čte jen délky bloků (a hlavičky až při vytvoření {@linkplain TapBlock});
+ * obsah bloků se nedekóduje.
+ *
+ * @author Martin Pokorný
+ * @see Tap2bas#blocks()
+ */
+final class TapBlockIterator implements Iterator<TapBlock> {
+
+    private static final int LEN_SIZE = 2;
+
+    private final ByteBuffer tap;
+    private final int size;
+    private final Tap2bas decoder;
+    private int idx = 0;
+    private int number = 0;
+
+    /**
+     *
+     * @param tap  celý obsah TAP (indexuje se absolutně, od 0)
+     */
+    TapBlockIterator(ByteBuffer tap) {
+        this.tap = tap;
+        this.size = tap.limit();
+        this.decoder = new Tap2bas();
+        this.decoder.setTapContent(tap);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return idx < size;
+    }
+
+    @Override
+    public TapBlock next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int blockLen = readBlockLength(idx);
+        int headerOffset = -1;
+        if (isHeader(idx, blockLen)) {
+            headerOffset = idx;
+            idx += LEN_SIZE + blockLen;
+            if (idx >= size) {
+                return new TapBlock(tap, decoder, number++, headerOffset, -1, 0);
+            }
+            blockLen = readBlockLength(idx);
+            if (isHeader(idx, blockLen)) {
+                // (hlavička bez dat; další hlavička patří do další dvojice)
+                return new TapBlock(tap, decoder, number++, headerOffset, -1, 0);
+            }
+        }
+        int dataOffset = idx;
+        idx += LEN_SIZE + blockLen;
+        return new TapBlock(tap, decoder, number++, headerOffset, dataOffset, blockLen);
+    }
+
+    /**
+     *
+     * @param offset
+     * @return
+     * @throws IllegalStateException  pokud je blok useknutý
+     *      (příčinou je {@code InvalidTapException})
+     */
+    private int readBlockLength(int offset) {
+        if (offset + LEN_SIZE > size) {
+            throw truncated(offset);
+        }
+        int blockLen = (tap.get(offset) & 0xFF) | (tap.get(offset + 1) & 0xFF) << 8;
+        if (offset + LEN_SIZE + blockLen > size) {
+            throw truncated(offset);
+        }
+        return blockLen;
+    }
+
+    private boolean isHeader(int offset, int blockLen) {
+        return blockLen == Tap2bas.DEFAULT_HEADER_SIZE
+                && (tap.get(offset + LEN_SIZE) & 0xFF) == Tap2bas.FLAG_HEADER;
+    }
+
+    private IllegalStateException truncated(int offset) {
+        idx = size;     // (dál už nic)
+        return new IllegalStateException(new InvalidTapException(
+                "truncated block; index = " + offset
+                + " (0x" + Integer.toHexString(offset) + ")"));
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+}   // TapBlockIterator.java
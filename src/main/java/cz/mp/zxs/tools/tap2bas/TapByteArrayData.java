@@ -7,10 +7,12 @@
 
 package cz.mp.zxs.tools.tap2bas;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.math.MathContext;
-import java.util.Map;
-import java.util.TreeMap;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 
 /**
@@ -28,14 +30,35 @@ import java.util.TreeMap;
  */
 public class TapByteArrayData extends ByteArrayData {
 
-    private static Map<Integer,String> keywords = 
-            new TreeMap<Integer,String>();
-    private static Map<Integer,String> controlCharNames = 
-            new TreeMap<Integer,String>();
+    // ---- tabulka pro readBlockAndAppendEscapedString; pro každou hodnotu bytu:
+    /** byte se vynechá (řídící znaky) */
+    private static final byte ESC_SKIP = 0;
+    /** byte se zapíše jako znak */
+    private static final byte ESC_CHAR = 1;
+    /** zapíše se text z {@code ESCAPE_TEXTS} */
+    private static final byte ESC_TEXT = 2;
+    /** začátek 5B čísla; vynechá se */
+    private static final byte ESC_NUMBER = 3;
+    /** řídící znak s parametrem; zapíše se "{NAME " + parametr(y) + "}" */
+    private static final byte ESC_ATTRIBUTE = 4;
 
-    static {
-        initZxsKeywordsMap();
-        initZxsControlCharNames();
+    /**
+     * Tabulky pro BASIC; vytvoří se až při prvním použití (např. 
+     * {@code --help} nebo výpis bloků je vůbec nepotřebují).
+     */
+    private static final class BasicTables {
+        /** index = kód znaku; {@code null} = není klíčové slovo */
+        static final String[] KEYWORDS = new String[256];
+        static final String[] CONTROL_CHAR_NAMES = new String[256];
+
+        static final byte[] ESCAPE_ACTIONS = new byte[256];
+        static final char[][] ESCAPE_TEXTS = new char[256][];
+
+        static {
+            initZxsKeywords(KEYWORDS);
+            initZxsControlCharNames(CONTROL_CHAR_NAMES);
+            initEscapeTable(ESCAPE_ACTIONS, ESCAPE_TEXTS);
+        }
     }
 
     /** každé číslo je v Basicu v paměti reprezentováno 5B.
@@ -52,8 +75,109 @@ public class TapByteArrayData extends ByteArrayData {
         super(data);    
     }
 
+    /**
+     * 
+     * @param data 
+     * @param offset 
+     * @param length 
+     */
+    public TapByteArrayData(byte[] data, int offset, int length) {
+        super(data, offset, length);    
+    }
+
+    /**
+     * Data se nekopírují.
+     * 
+     * @param buffer 
+     * @see ByteArrayData#ByteArrayData(java.nio.ByteBuffer) 
+     */
+    public TapByteArrayData(ByteBuffer buffer) {
+        super(buffer);    
+    }
+
+    /**
+     * Pohled na část dat, např. na jeden blok TAP. Data se nekopírují.
+     * 
+     * @param offset
+     * @param length
+     * @return  nová instance s vlastním indexem, začínající na 0
+     */
+    public TapByteArrayData sliceBlock(int offset, int length) {
+        return new TapByteArrayData(getSlice(offset, length));
+    }
+
+    /** Pozice začátku těchto dat v celém TAP (při čtení z proudu). */
+    private int tapBaseOffset = 0;
+
+    /**
+     * 
+     * @param tapBaseOffset  pozice začátku těchto dat v celém TAP
+     * @see #getTapOffset() 
+     */
+    public void setTapBaseOffset(int tapBaseOffset) {
+        this.tapBaseOffset = tapBaseOffset;
+    }
+
+    /**
+     * 
+     * @return  pozice aktuálního bytu ({@code idx}) v celém TAP
+     */
+    public int getTapOffset() {
+        return tapBaseOffset + idx;
+    }
+
     private static final int DEFAULT_SB_SIZE = 8192;
-    
+
+    private static final int HEX_DUMP_LINE_LEN = 16;
+    private static final int DEC_DUMP_LINE_LEN = 8;
+
+    /** "0123456789abcdef" jako byty; pro převod půlbytu ("nibble") na znak */
+    private static final byte[] HEX_DIGITS = {
+        '0', '1', '2', '3', '4', '5', '6', '7',
+        '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    /** {@code String.format("%3d", i)} pro 0-255; 3 byty na hodnotu */
+    private static final byte[] DEC3_DIGITS = new byte[256 * 3];
+    static {
+        for (int i=0; i<256; i++) {
+            DEC3_DIGITS[i*3] = (byte) (i >= 100 ? '0' + i / 100 : ' ');
+            DEC3_DIGITS[i*3 + 1] = (byte) (i >= 10 ? '0' + i / 10 % 10 : ' ');
+            DEC3_DIGITS[i*3 + 2] = (byte) ('0' + i % 10);
+        }
+    }
+
+    /** buffer pro jeden řádek výpisu; stačí i pro nejdelší řádek "hexDump" */
+    private byte[] dumpLine;
+
+    private byte[] getDumpLine() {
+        if (dumpLine == null) {
+            dumpLine = new byte[128];
+        }
+        return dumpLine;
+    }
+
+    /**
+     * Zapíše adresu na začátek řádku výpisu ({@code String.format("%04x: ")}).
+     *
+     * @param line
+     * @param value
+     * @return  pozice za zapsanou adresou
+     */
+    private static int putDumpOffset(byte[] line, int value) {
+        int digits = 4;
+        while (digits < 8 && (value >>> (digits * 4)) != 0) {
+            digits++;
+        }
+        for (int j=digits-1; j>=0; j--) {
+            line[j] = HEX_DIGITS[value & 0xF];
+            value >>>= 4;
+        }
+        line[digits] = ':';
+        line[digits + 1] = ' ';
+        return digits + 2;
+    }
+
     /**
      * Načte data zadané délky a vrátí je formátované jako "decadicDump".
      * <p>
@@ -61,31 +185,57 @@ public class TapByteArrayData extends ByteArrayData {
      * 
      * @param length
      * @return 
+     * @see #writeBlockAsDecadicDump(int, cz.mp.zxs.tools.tap2bas.AsciiOutput) 
      */
     public String readBlockReturnAsDecadicDump(int length) {
-        StringBuilder sb = new StringBuilder(DEFAULT_SB_SIZE);
-        
-        final int LINE_LEN = 8;
+        StringWriter sw = new StringWriter(DEFAULT_SB_SIZE);
+        AsciiOutput out = new AsciiOutput(DEFAULT_SB_SIZE);
+        out.setTarget(sw, true);
+        try {
+            writeBlockAsDecadicDump(length, out);
+            out.close();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);    // (StringWriter nevyhazuje)
+        }
+        return sw.toString();
+    }
+
+    /**
+     * Načte data zadané délky a zapíše je do {@code out} formátované jako
+     * "decadicDump". Zapisuje se po řádcích přes jeden buffer, bez
+     * vytváření objektů pro jednotlivé byty.
+     * 
+     * @param length
+     * @param out
+     * @throws IOException 
+     * @see #readBlockReturnAsDecadicDump(int) 
+     */
+    public void writeBlockAsDecadicDump(int length, AsciiOutput out) 
+            throws IOException {
+        byte[] line = getDumpLine();
         int i = 0;
-        sb.append(String.format("%04x: ", i));
-        //sb.append("  ");
-        
+        int pos = putDumpOffset(line, i);
+
         while(i < length) {
-            int num = read();            
-            sb.append(String.format("%3d", num));
-            
+            int num = read() * 3;
+            line[pos++] = DEC3_DIGITS[num];
+            line[pos++] = DEC3_DIGITS[num + 1];
+            line[pos++] = DEC3_DIGITS[num + 2];
+            line[pos++] = ',';
+
             i++;
-            sb.append(",");
-            if (i % LINE_LEN == 0) {                
-                //sb.append("\n  ");
-                sb.append(String.format("\n%04x: ", i));
+            if (i % DEC_DUMP_LINE_LEN == 0) {
+                line[pos++] = '\n';
+                out.writeBytes(line, 0, pos);
+                pos = putDumpOffset(line, i);
             }
             else if (i == length) {   // poslední znak
-                sb.append("\n  ");                
-            }            
+                line[pos++] = '\n';
+                line[pos++] = ' ';
+                line[pos++] = ' ';
+            }
         }
-        
-        return sb.toString();
+        out.writeBytes(line, 0, pos);
     }
     
     /**
@@ -99,86 +249,86 @@ public class TapByteArrayData extends ByteArrayData {
      * 
      * @param length
      * @return 
+     * @see #writeBlockAsHexDump(int, cz.mp.zxs.tools.tap2bas.AsciiOutput) 
      */
     public String readBlockReturnAsHexDump(int length) {
-        StringBuilder sb = new StringBuilder(DEFAULT_SB_SIZE);
-        
-        final int LINE_LEN = 16;
+        StringWriter sw = new StringWriter(DEFAULT_SB_SIZE);
+        AsciiOutput out = new AsciiOutput(DEFAULT_SB_SIZE);
+        out.setTarget(sw, true);
+        try {
+            writeBlockAsHexDump(length, out);
+            out.close();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);    // (StringWriter nevyhazuje)
+        }
+        return sw.toString();
+    }
+
+    /**
+     * Načte data zadané délky a zapíše je do {@code out} formátované jako
+     * "hexDump" (viz {@linkplain #readBlockReturnAsHexDump(int)}).
+     * <p>
+     * Data se čtou jen jednou; hexadecimální i textový sloupec se plní
+     * zároveň a celý řádek se zapíše přes jeden buffer, bez vytváření 
+     * objektů pro jednotlivé byty.
+     * 
+     * @param length
+     * @param out
+     * @throws IOException 
+     */
+    public void writeBlockAsHexDump(int length, AsciiOutput out) 
+            throws IOException {
+        final int LINE_LEN = HEX_DUMP_LINE_LEN;
+        byte[] line = getDumpLine();
+        // čitelné znaky pro pravý sloupec; jsou až na konci bufferu
+        final int textStart = line.length - LINE_LEN;
+        int textLen = 0;
         int i = 0;
-        sb.append(String.format("%04x: ", i));
+        int pos = putDumpOffset(line, i);
         
         while(i < length) {
-            sb.append(readAndReturnAsHex());
+            int ch = read();
+            line[pos++] = HEX_DIGITS[ch >>> 4];
+            line[pos++] = HEX_DIGITS[ch & 0xF];
+            line[pos++] = ' ';
+            // 0x7F ne, v ASCII je DEL; jiné znaky nahradit za "."
+            line[textStart + textLen++] = (ch >= 0x20 && ch <= 0x7E) ? (byte) ch : (byte) '.';
             i++;
             if (i % LINE_LEN == LINE_LEN/2) {    
-                sb.append("  ");          // mezera navíc pro lepší čitelnost 
+                line[pos++] = ' ';          // mezera navíc pro lepší čitelnost 
             }            
-            else {
-                sb.append(" ");
-            }
             if (i % LINE_LEN == 0) {                
-                sb.append(" ");
+                line[pos++] = ' ';
                 // jako text vypsat vše, co jako text vypsat lze; začít nový řádek
-                
-                back(LINE_LEN);
-                sb.append(getReadableColumnsForDump(LINE_LEN));
-                
-                //sb.append("\n");                
-                sb.append(String.format("\n%04x: ", i));
+                System.arraycopy(line, textStart, line, pos, textLen);
+                pos += textLen;
+                textLen = 0;
+                line[pos++] = '\n';
+                out.writeBytes(line, 0, pos);
+                pos = putDumpOffset(line, i);
             }
             else if (i == length) {   // poslední znak => zapsat ještě poslední řádek
-                sb.append(" ");
-                int lastLineLen = i % LINE_LEN;
+                line[pos++] = ' ';
                 
                 // nahradit prázdnou část v hexa, aby čitelný text byl zarovnán ve sloupci s textem nad ním
-                int iToEol = LINE_LEN - lastLineLen;
+                int iToEol = LINE_LEN - textLen;
                 if (iToEol >= LINE_LEN/2) {
-                    sb.append(" "); // za mezeru navíc pro lepší čitelnost
+                    line[pos++] = ' '; // za mezeru navíc pro lepší čitelnost
                 }                
-                for (int j=0; j<iToEol; j++) {
-                    sb.append("   ");
+                for (int j=0; j<iToEol*3; j++) {
+                    line[pos++] = ' ';
                 }
                 
-                // jako text vypsat vše, co jako text vypsat lze; začít nový řádek
-                back(lastLineLen);
-                sb.append(getReadableColumnsForDump(lastLineLen));
-
-                sb.append("\n");                
+                // jako text vypsat vše, co jako text vypsat lze
+                System.arraycopy(line, textStart, line, pos, textLen);
+                pos += textLen;
+                line[pos++] = '\n';
+                out.writeBytes(line, 0, pos);
+                pos = 0;
             }            
         }
-        
-        return sb.toString();
+        out.writeBytes(line, 0, pos);
     }
-    
-    /**
-     * Vrací text o délce {@code lineLength}, který obsahuje čitelné znaky.
-     * Tento text se vypíše v pravém sloupci, vedle hexadecilálních čísel.
-     * <p>
-     * Pomocná metoda pro {@linkplain #readBlockReturnAsHexDump(int)}.
-     * Před touto metodou volat {@linkplain #back(lineLength)}...
-     * <p>
-     * př: <pre><tt>
-     * b1 00 00 0f 00 00 42 01  00 7a 43 02 00 32 30 44  
-     *      -->  ......B..zC..20D  (pro lineLength=16)
-     * </tt></pre>
-     * 
-     * @param lineLength
-     * @return 
-     * 
-     */       
-    private String getReadableColumnsForDump(int lineLength) {
-        StringBuilder sb = new StringBuilder(lineLength + 1);
-        for (int j=0; j<lineLength; j++) {
-            int ch = read();
-            if(ch >= 0x20 && ch <= 0x7E) {  // 0x7F ne, v ASCII je DEL
-                sb.append((char)ch);
-            }
-            else {
-                sb.append(".");    // jiné znaky nahradit za "."
-            }          
-        }         
-        return sb.toString();
-    }          
 
     /**
      * .
@@ -187,6 +337,7 @@ public class TapByteArrayData extends ByteArrayData {
      * @param length
      * @return 
      * @throws InvalidTapException
+     * @see #readBlockAndAppendEscapedString(int, java.lang.StringBuilder) 
      */
     public String readBlockAndReturnAsEscapedString(int length) 
             throws InvalidTapException {
@@ -194,103 +345,129 @@ public class TapByteArrayData extends ByteArrayData {
             throw new IllegalArgumentException("length");
         }
         StringBuilder sb = new StringBuilder(length * 2);
-        int i=0;
-        while (i < length) {
+        readBlockAndAppendEscapedString(length, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Jako {@linkplain #readBlockAndReturnAsEscapedString(int)}, ale text 
+     * připojí do zadaného {@code sb}.
+     * <p>
+     * Každý byte se zpracuje jedním vyhledáním v tabulce 
+     * {@code ESCAPE_ACTIONS} / {@code ESCAPE_TEXTS} 
+     * a připojením předem připraveného textu.
+     * 
+     * @param length
+     * @param sb
+     * @throws InvalidTapException
+     */
+    public void readBlockAndAppendEscapedString(int length, StringBuilder sb) 
+            throws InvalidTapException {
+        if(length < 0) {
+            throw new IllegalArgumentException("length");
+        }
+        final byte[] escapeActions = BasicTables.ESCAPE_ACTIONS;
+        final char[][] escapeTexts = BasicTables.ESCAPE_TEXTS;
+        int end = idx + length;
+        while (idx < end) {
             int dataItem = read();
-            i++;
-            
-            // číslo je tam jako text následovaný vnitřní reprezentací čísla
-            // 0x0E + 5B. To přeskakovat.
-            if (isBeginOfNumberRepresentation(dataItem)) {
-                skip(NUMBER_REPRESENTATION_LEN);
-                i += NUMBER_REPRESENTATION_LEN;
-            }
-            // 'libra' (£)  -->  {pound}  (Není v bas2tap)
-            else if (isPoundChar(dataItem)) {       
-                sb.append("{pound}");
-            }          
-            // character 7F = copyright sign  -->  {(C)}
-            else if (isCopyrightChar(dataItem)) {
-                sb.append("{(C)}");
-            }     
-            else if (isPrintableChar(dataItem)
-                    || isEolChar(dataItem)) {
-                sb.append((char)dataItem);
+            switch (escapeActions[dataItem]) {
+                case ESC_TEXT:
+                    sb.append(escapeTexts[dataItem]);
+                    break;
+                case ESC_CHAR:
+                    sb.append((char)dataItem);
+                    break;
+                // číslo je tam jako text následovaný vnitřní reprezentací čísla
+                // 0x0E + 5B. To přeskakovat.
+                case ESC_NUMBER:
+                    idx += NUMBER_REPRESENTATION_LEN;
+                    break;
+                // např. {INVERSE 1} (Není v bas2tap)
+                case ESC_ATTRIBUTE:
+                    sb.append(escapeTexts[dataItem]).append(read());
+                    if (dataItem == 0x16) {   //  AT má dva parametry: (y,x)
+                        sb.append(' ').append(read());
+                    }
+                    sb.append('}');
+                    break;
+                default:    // ESC_SKIP
+                    // nic! tyto znaky prostě přeskakovat
+                    break;
             }
-            // např. {INVERSE 1} (Není v bas2tap)
-            else if (isControlCharToSetTextAttribute(dataItem)) {
-                String charName = getControlAsCharText(dataItem);
-                if (charName == null) {
-                    // (nemělo by nastat)
-                    throw new InvalidTapException("charName = null");
-                }
-                int value = read();
-                i++;        
-                sb.append("{").append(charName).append(" ")
-                        .append(String.valueOf(value));
-                if (dataItem == 0x16) {   //  AT má dva parametry: (y,x)
-                    int value2 = read();
-                    i++;
-                    sb.append(" ");
-                    sb.append(String.valueOf(value2));
-                }
-                sb.append("}");
-            }
-            else if (isControlChar(dataItem)) {
-                // nic! tyto znaky prostě přeskakovat
-            }
-            else if (isKeyword(dataItem)) {
-                String keyword = getKeyword(dataItem);
-                if (keyword == null) {
-                    // (nemělo by nastat)
-                    throw new InvalidTapException("keyword = null");
-                }
-                sb.append(keyword);
-            }        
-
-            // {-X} X is 1-8, characters 80-87 (block graphics without shift)
-            // {+X} X is 1-8, characters 88-8F (block graphics with shift)            
-            else if (isMosaicGraphicChar(dataItem)) {
-                if (dataItem == 0x80) {
-                    sb.append("{-8}");
-                }
-                else if (dataItem == 0x8F) {
-                    sb.append("{+8}");
-                }                
-                // {-1} - {-7}
-                else if (dataItem >= 0x81 && dataItem <= 0x87) {
-                    sb.append("{-");
-                    sb.append((char)('1'+dataItem-0x81));  // 1-8, ne 0-7 !
-                    sb.append("}");                        
-                }
-                // {+1} - {+7}  // (pozor, je ve znakové sadě v opačném pořadí)
-                else if (dataItem >= 0x88 && dataItem <= 0x8E) {
-                    sb.append("{+");
-                    sb.append((char)(0x8E-dataItem+'1'));  // 1-8, ne 0-7 !
-                    sb.append("}");                        
-                }
-            }            
+        }
+    }
 
-            // {X} X is 'A'-'U', converts to the UDG Spectrum ASCII value
-            else if (isUdgChar(dataItem)) {
-                sb.append("{").append((char)('A'+dataItem-0x90)).append("}");
+    /**
+     * Přeskočí na další číslo ve vnitřní reprezentaci ({@code 0x0E} + 5B)
+     * v řádce BASICu; parametry znaků pro nastavení atributů přeskakuje
+     * stejně jako {@linkplain #readBlockAndAppendEscapedString(int, java.lang.StringBuilder)}.
+     *
+     * @param end  pozice konce řádky
+     * @return  {@code true}, pokud se číslo našlo; {@code idx} je pak
+     *      na začátku jeho 5B. Jinak {@code false}.
+     */
+    public boolean skipToNextBasicNumber(int end) {
+        final byte[] escapeActions = BasicTables.ESCAPE_ACTIONS;
+        while (idx < end) {
+            int dataItem = read();
+            byte action = escapeActions[dataItem];
+            if (action == ESC_NUMBER) {
+                return idx + NUMBER_REPRESENTATION_LEN <= length();
             }
-            else {
-                // (nemělo by nastat)
-                throw new InvalidTapException("unknown data " + dataItem);
+            if (action == ESC_ATTRIBUTE) {
+                idx += (dataItem == 0x16) ? 2 : 1;     //  AT má dva parametry
             }
         }
-        
-        return sb.toString();
+        return false;
     }
 
     /**
      * 
      * @return 
+     * @see #readBlockAndWriteBasicNumber(cz.mp.zxs.tools.tap2bas.AsciiOutput) 
      */
     public BigDecimal readBlockAndParseBasicNumber() {
-        return (parseBasicNumber(
-                readBlockAndReturnAsInts(NUMBER_REPRESENTATION_LEN)));
+        int b0 = read();
+        int b1 = read();
+        int b2 = read();
+        int b3 = read();
+        int b4 = read();
+        return parseBasicNumber(b0, b1, b2, b3, b4);
+    }
+
+    /**
+     * Načte 5B číslo ve vnitřní reprezentaci Basicu ZX Spectra a zapíše jej
+     * do {@code out}; stejně jako {@code BigDecimal.toPlainString()} výsledku
+     * {@linkplain #readBlockAndParseBasicNumber()}.
+     * <p>
+     * {@code BigDecimal} ani {@code String} se nevytváří: když se hodnota
+     * vejde do {@code long} (mantisa jen z 2. a 3.B, viz 
+     * {@linkplain #decodeFloatUnscaled(int, int, int, int, int)}), počítá
+     * se v {@code long}, jinak po číslicích, viz 
+     * {@linkplain #writeFloatDigits(cz.mp.zxs.tools.tap2bas.AsciiOutput, int, int, int, int, int)}.
+     * 
+     * @param out
+     * @throws IOException 
+     */
+    public void readBlockAndWriteBasicNumber(AsciiOutput out) throws IOException {
+        int b0 = read();
+        int b1 = read();
+        int b2 = read();
+        int b3 = read();
+        int b4 = read();
+        if (b0 == 0) {
+            out.writeInt(decodeBasicInteger(b1, b2, b3, b4));
+            return;
+        }
+        checkFloatExponent(b0);
+        long unscaled = decodeFloatUnscaled(b0, b1, b2, b3, b4);
+        if (unscaled != NOT_DECODED) {
+            out.writeDecimal(unscaled, floatScale(b0, b1, b2));
+        }
+        else if (! writeFloatDigits(out, b0, b1, b2, b3, b4)) {
+            out.write(parseFloat(b0, b1, b2, b3, b4).toPlainString());
+        }
     }
             
     /**
@@ -303,82 +480,365 @@ public class TapByteArrayData extends ByteArrayData {
         if (rawValue.length != NUMBER_REPRESENTATION_LEN) {
             throw new IllegalArgumentException("rawValue.length != " + NUMBER_REPRESENTATION_LEN);
         }
-        
-//        for (int i : rawValue) {
-//            System.out.print(Integer.toHexString(i) + " ");
-//        }
-//        System.out.println();
-        
-        // --- integer
-        if (rawValue[0] == 0) {
-            // reprezentováno:   0x0  0x0|0xFF  LsB  MsB  0x0   
-            //   1.B = 0x0 --> integer
-            //   2.B = 0x0|0xFF -- 0xFF -> záporné číslo
-            // pro hodnoty  -65535 až +65535
-            int intResult = rawValue[2];
-            intResult += 256 * rawValue[3];
-            if (rawValue[1] == 0xFF) {
-                intResult = -intResult;
+        return parseBasicNumber(rawValue[0], rawValue[1], rawValue[2], 
+                rawValue[3], rawValue[4]);
+    }
+
+    /**
+     * 
+     * @param b0  1.B čísla
+     * @param b1
+     * @param b2
+     * @param b3
+     * @param b4
+     * @return 
+     * @see #parseBasicNumber(int[]) 
+     */
+    protected static BigDecimal parseBasicNumber(int b0, int b1, int b2, int b3, int b4) {
+        if (b0 == 0) {
+            return BigDecimal.valueOf(decodeBasicInteger(b1, b2, b3, b4));
+        }
+        checkFloatExponent(b0);
+        long unscaled = decodeFloatUnscaled(b0, b1, b2, b3, b4);
+        if (unscaled != NOT_DECODED) {
+            return BigDecimal.valueOf(unscaled, floatScale(b0, b1, b2));
+        }
+        return parseFloat(b0, b1, b2, b3, b4);
+    }
+
+    /**
+     * Celé číslo.
+     * <p>
+     * reprezentováno:   0x0  0x0|0xFF  LsB  MsB  0x0   
+     * <ul>
+     * <li>1.B = 0x0 --> integer</li>
+     * <li>2.B = 0x0|0xFF -- 0xFF -> záporné číslo</li>
+     * </ul>
+     * pro hodnoty  -65535 až +65535
+     * 
+     * @param b1
+     * @param b2
+     * @param b3
+     * @param b4
+     * @return 
+     */
+    private static int decodeBasicInteger(int b1, int b2, int b3, int b4) {
+        if ((b1 != 0x0 && b1 != 0xFF) || b4 != 0x0) {
+            throw new IllegalArgumentException("number is not a valid integer");
+        }
+        int value = b2 | (b3 << 8);
+        int signMask = -(b1 & 1);       // 0 nebo -1 (pro 0xFF)
+        return (value ^ signMask) - signMask;
+    }
+
+    /*
+     * Číslo s plovoucí čárkou.
+     * 
+     * reprezentováno:  
+     *   1.B = exponent + 0x80(=128)  (hodnota -127 až 126)
+     *   4 B = mantisa -- "binární zlomek"  (hodnota 0.5 až 1)
+     *         první bit je znaménko.
+     *         mantisa je automaticky = 0.5 (1 * 2^-1)
+     * hodnota = mantisa * 2^exponent
+     * např.
+     *   01111110 00000000 00000000 00000000 00000000
+     *     mantisa = 0.5
+     *     exp = 126-128 = -2
+     *   = 0.5 * 2^(-2) =  0.125
+     * např.
+     *   10000000 01001100 00000000 00000000 00000000   (01001100 = 76)
+     *     mantisa = 0.5 + (1 * 2^-2) + (1 * 2^-5) + (1 * 2^-6) =
+     *             = 0.5 + 0.25 + 0.03125 + 0.015625 =  0,796875
+     *     exp = 128-128 = 0
+     *   = 0.796925 * 2^(0) =  0.796875
+     * 
+     * (pozn. 0x7f 0x7f 0xff 0xff 0xff není přesně 0.5!   0.5 = 0x80 0x0 0x0 0x0 0x0!)
+     * 
+     * Výsledek (hodnota i "scale") musí být stejný jako u původního výpočtu:
+     *   mantisa = 0.5 + (b1 & 0x7F) / 256 + b2 / 65536 + b3 / 16777216 
+     *           + b4 / 4294967296         (každé dělení s DECIMAL64)
+     *   výsledek = mantisa * 2.pow(exp, DECIMAL64)
+     * Proto jsou jednotlivé členy předpočítané v tabulkách přesně tímto
+     * výpočtem. Když b3 = b4 = 0, jsou všechny členy mantisy přesné a
+     * mantisa je  m / 2^16; pak stačí počítat v long.
+     * Jinak má mantisa (zaokrouhlené členy b3 / 2^24, b4 / 2^32) až ~25
+     * desetinných míst, nevejde se do long a počítá se stejně přesně 
+     * v "číslicích" o základu 10^9 (viz writeFloatDigits).
+     */
+
+    private static final int MIN_FLOAT_EXP = -127;
+    private static final int MAX_FLOAT_EXP = 126;
+
+    /** Hodnota se nevejde do {@code long}; je nutné použít {@code BigDecimal}. */
+    private static final long NOT_DECODED = Long.MIN_VALUE;
+
+    private static final BigDecimal MANTISSA_HALF = new BigDecimal("0.5");
+
+    /**
+     * Předpočítané tabulky pro čísla s plovoucí čárkou; vytvoří se až při
+     * prvním dekódování takového čísla (ne např. pro {@code --onlyBasic}).
+     */
+    private static final class FloatTables {
+        /** {@code MANTISSA_TERMS[i][b]} = b / 256^(i+1) (DECIMAL64) */
+        static final BigDecimal[][] MANTISSA_TERMS = new BigDecimal[4][256];
+
+        /** 
+         * "scale" mantisy, když b3 = b4 = 0; 
+         * {@code MANTISSA_SCALES[(b1 & 0x7F) * 256 + b2]} 
+         */
+        static final byte[] MANTISSA_SCALES = new byte[128 * 256];
+
+        /** 2^exp (DECIMAL64); index = exp - MIN_FLOAT_EXP */
+        static final BigDecimal[] POW2 = new BigDecimal[MAX_FLOAT_EXP - MIN_FLOAT_EXP + 1];
+        /** {@code POW2[i].unscaledValue()}, nebo -1 když se nevejde do {@code long} */
+        static final long[] POW2_UNSCALED = new long[POW2.length];
+        static final int[] POW2_SCALES = new int[POW2.length];
+
+        /** 5^0 až 5^16 */
+        static final long[] POW5 = new long[17];
+
+        /** {@code MANTISSA_TERMS[i][b].unscaledValue()}; vždy nejvýše 16 číslic */
+        static final long[][] TERM_UNSCALED = new long[4][256];
+        static final byte[][] TERM_SCALES = new byte[4][256];
+        /** počet "číslic" (10^9) pro mantisu při největším "scale" členů */
+        static final int MANTISSA_LIMBS;
+
+        static {
+            final BigDecimal[] divisors = {
+                new BigDecimal("256"), new BigDecimal("65536"),
+                new BigDecimal("16777216"), new BigDecimal("4294967296")
+            };
+            int maxTermScale = MANTISSA_HALF.scale();
+            for (int i=0; i<MANTISSA_TERMS.length; i++) {
+                for (int b=0; b<256; b++) {
+                    BigDecimal term = new BigDecimal(b).divide(divisors[i], MathContext.DECIMAL64);
+                    MANTISSA_TERMS[i][b] = term;
+                    TERM_UNSCALED[i][b] = term.unscaledValue().longValue();
+                    TERM_SCALES[i][b] = (byte) term.scale();
+                    maxTermScale = Math.max(maxTermScale, term.scale());
+                }
             }
-            else if (rawValue[1] != 0x0) {
-                throw new IllegalArgumentException("number is not a valid integer");
+            // (+ 2 pro přesuny v addShifted)
+            MANTISSA_LIMBS = maxTermScale / LIMB_DIGITS + 3;
+            int zeroLowScale = Math.max(MANTISSA_HALF.scale(),
+                    Math.max(MANTISSA_TERMS[2][0].scale(), MANTISSA_TERMS[3][0].scale()));
+            for (int b1=0; b1<128; b1++) {
+                for (int b2=0; b2<256; b2++) {
+                    int scale = Math.max(zeroLowScale, Math.max(
+                            MANTISSA_TERMS[0][b1].scale(), MANTISSA_TERMS[1][b2].scale()));
+                    MANTISSA_SCALES[b1 * 256 + b2] = (byte) scale;
+                }
             }
-            if (rawValue[4] != 0x0) {
-                throw new IllegalArgumentException("number is not a valid integer");
+
+            BigDecimal two = new BigDecimal("2");
+            for (int exp=MIN_FLOAT_EXP; exp<=MAX_FLOAT_EXP; exp++) {
+                BigDecimal pow = two.pow(exp, MathContext.DECIMAL64);
+                int i = exp - MIN_FLOAT_EXP;
+                POW2[i] = pow;
+                POW2_SCALES[i] = pow.scale();
+                POW2_UNSCALED[i] = pow.unscaledValue().bitLength() < 63
+                        ? pow.unscaledValue().longValue() : -1;
             }
-            return new BigDecimal(intResult);
-        }
-        // --- float
-        else {
-            // reprezentováno:  
-            //   1.B = exponent + 0x80(=128)  (hodnota -127 až 126)
-            //   4 B = mantisa -- "binární zlomek"  (hodnota 0.5 až 1)
-            //         první bit je znaménko.
-            //         mantisa je automaticky = 0.5 (1 * 2^-1)
-            // hodnota = mantisa * 2^exponent
-            // např.
-            //   01111110 00000000 00000000 00000000 00000000
-            //     mantisa = 0.5
-            //     exp = 126-128 = -2
-            //   = 0.5 * 2^(-2) =  0.125
-            // např.
-            //   10000000 01001100 00000000 00000000 00000000   (01001100 = 76)
-            //     mantisa = 0.5 + (1 * 2^-2) + (1 * 2^-5) + (1 * 2^-6) =
-            //             = 0.5 + 0.25 + 0.03125 + 0.015625 =  0,796875
-            //     exp = 128-128 = 0
-            //   = 0.796925 * 2^(0) =  0.796875
-            
-            int exp = rawValue[0] - 128;
-//            System.out.println("  exp=" + exp);
-            if (exp <= -128 || exp >= 127) {
-                throw new IllegalArgumentException("number is not a valid float");
-            }  
-            int sign = rawValue[1] >> 7;
-//            System.out.println("  sign=" + sign);
-            
-            BigDecimal mantisa = new BigDecimal("0.5");
-            mantisa = mantisa.add(new BigDecimal(rawValue[1] & 0x7F).divide(new BigDecimal("256"), MathContext.DECIMAL64));
-            mantisa = mantisa.add(new BigDecimal(rawValue[2]).divide(new BigDecimal("65536"), MathContext.DECIMAL64));
-            mantisa = mantisa.add(new BigDecimal(rawValue[3]).divide(new BigDecimal("16777216"), MathContext.DECIMAL64));
-            mantisa = mantisa.add(new BigDecimal(rawValue[4]).divide(new BigDecimal("4294967296"), MathContext.DECIMAL64));
-
-            //double mantisa = 0.5d;
-            //mantisa += (rawValue[1] & 0x7F) / 256d;
-            //mantisa += rawValue[2] / 65536d;           // = 0xFFFF = 256^2
-            //mantisa += rawValue[3] / 16777216d;        // = 0xFFFFFF = 256^3
-            //mantisa += rawValue[4] / 4294967296d;      // = 0xFFFFFFFF = 256^4
-            
-            // (pozn. 0x7f 0x7f 0xff 0xff 0xff není přesně 0.5!   0.5 = 0x80 0x0 0x0 0x0 0x0!)
-            
-            BigDecimal result = mantisa.multiply(new BigDecimal("2").pow(exp, MathContext.DECIMAL64));
-            if (sign != 0) {
-                result = result.negate();
+
+            POW5[0] = 1;
+            for (int i=1; i<POW5.length; i++) {
+                POW5[i] = POW5[i-1] * 5;
             }
-            
-            return result;
         }
     }
 
+    /**
+     * 
+     * @param b0
+     * @throws IllegalArgumentException
+     */
+    private static void checkFloatExponent(int b0) {
+        int exp = b0 - 128;
+        if (exp < MIN_FLOAT_EXP || exp > MAX_FLOAT_EXP) {
+            throw new IllegalArgumentException("number is not a valid float");
+        }
+    }
+
+    /**
+     * Rychlý výpočet čísla s plovoucí čárkou v {@code long}.
+     * Volat až po {@linkplain #checkFloatExponent(int)}.
+     * 
+     * @return  "unscaled value", {@code scale} viz 
+     *      {@linkplain #floatScale(int, int, int)}; nebo {@linkplain #NOT_DECODED}
+     */
+    private static long decodeFloatUnscaled(int b0, int b1, int b2, int b3, int b4) {
+        if ((b3 | b4) != 0) {
+            return NOT_DECODED;
+        }
+        long pow2 = FloatTables.POW2_UNSCALED[b0 - 128 - MIN_FLOAT_EXP];
+        if (pow2 < 0) {
+            return NOT_DECODED;
+        }
+        int mantissaScale = FloatTables.MANTISSA_SCALES[(b1 & 0x7F) * 256 + b2];
+        // mantisa = m / 2^16 = m * 5^16 / 10^16  (přesně)
+        long m = 0x8000 | ((b1 & 0x7F) << 8) | b2;
+        long mantissa = (m * FloatTables.POW5[mantissaScale]) >>> (16 - mantissaScale);
+        if (64 - Long.numberOfLeadingZeros(mantissa) 
+                + 64 - Long.numberOfLeadingZeros(pow2) > 62) {
+            return NOT_DECODED;     // (mohlo by přetéct)
+        }
+        long result = mantissa * pow2;
+        return (b1 & 0x80) != 0 ? -result : result;
+    }
+
+    /**
+     * 
+     * @return  "scale" výsledku {@linkplain #decodeFloatUnscaled(int, int, int, int, int)}
+     */
+    private static int floatScale(int b0, int b1, int b2) {
+        return FloatTables.MANTISSA_SCALES[(b1 & 0x7F) * 256 + b2] 
+                + FloatTables.POW2_SCALES[b0 - 128 - MIN_FLOAT_EXP];
+    }
+
+    /** počet desítkových číslic v jedné "číslici" o základu {@linkplain #LIMB_BASE} */
+    private static final int LIMB_DIGITS = 9;
+    private static final long LIMB_BASE = 1000000000L;
+    /** 10^0 až 10^8 */
+    private static final long[] LIMB_POW10 = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L
+    };
+
+    /** (pro {@linkplain #writeFloatDigits(cz.mp.zxs.tools.tap2bas.AsciiOutput, int, int, int, int, int)}) */
+    private long[] mantissaLimbs;
+    private long[] productLimbs;
+    private byte[] floatDigits;
+
+    /**
+     * Zapíše číslo s plovoucí čárkou s celou 32b mantisou stejně jako 
+     * {@code parseFloat(..).toPlainString()}, ale bez {@code BigDecimal}:
+     * členy mantisy (předpočítané jako {@code long} + "scale") se sečtou 
+     * přesně v "číslicích" o základu 10^9 a vynásobí 2^exp stejně jako
+     * v {@code BigDecimal} (sčítání i násobení jsou přesné, bez zaokrouhlení).
+     * Volat až po {@linkplain #checkFloatExponent(int)}.
+     * 
+     * @return  {@code false}, pokud se 2^exp nevejde do {@code long}
+     *      (nenastane, DECIMAL64 má 16 číslic); pak nic nezapíše
+     * @throws IOException 
+     */
+    private boolean writeFloatDigits(AsciiOutput out, 
+            int b0, int b1, int b2, int b3, int b4) throws IOException {
+        int pow2Idx = b0 - 128 - MIN_FLOAT_EXP;
+        long pow2 = FloatTables.POW2_UNSCALED[pow2Idx];
+        if (pow2 < 0) {
+            return false;
+        }
+        final long[][] termUnscaled = FloatTables.TERM_UNSCALED;
+        final byte[][] termScales = FloatTables.TERM_SCALES;
+        boolean negative = (b1 & 0x80) != 0;
+        b1 &= 0x7F;
+        int scale = Math.max(MANTISSA_HALF.scale(), 
+                Math.max(Math.max(termScales[0][b1], termScales[1][b2]),
+                        Math.max(termScales[2][b3], termScales[3][b4])));
+
+        if (mantissaLimbs == null) {
+            mantissaLimbs = new long[FloatTables.MANTISSA_LIMBS];
+            productLimbs = new long[FloatTables.MANTISSA_LIMBS + 3];
+            floatDigits = new byte[productLimbs.length * LIMB_DIGITS];
+        }
+        final long[] sum = mantissaLimbs;
+        Arrays.fill(sum, 0);
+        // ---- mantisa (zarovnaná na "scale")
+        addShifted(sum, 5, scale - MANTISSA_HALF.scale());
+        addShifted(sum, termUnscaled[0][b1], scale - termScales[0][b1]);
+        addShifted(sum, termUnscaled[1][b2], scale - termScales[1][b2]);
+        addShifted(sum, termUnscaled[2][b3], scale - termScales[2][b3]);
+        addShifted(sum, termUnscaled[3][b4], scale - termScales[3][b4]);
+        normalizeLimbs(sum);
+
+        // ---- * 2^exp
+        final long[] product = productLimbs;
+        Arrays.fill(product, 0);
+        long p0 = pow2 % LIMB_BASE;
+        long p1 = (pow2 / LIMB_BASE) % LIMB_BASE;
+        long p2 = pow2 / LIMB_BASE / LIMB_BASE;
+        for (int i=0; i<sum.length; i++) {
+            long s = sum[i];
+            if (s != 0) {
+                // (součiny < 10^18; nejvýše 3 na pozici, vejdou se do long)
+                product[i] += s * p0;
+                product[i + 1] += s * p1;
+                product[i + 2] += s * p2;
+            }
+        }
+        normalizeLimbs(product);
+
+        // ---- číslice
+        final byte[] digits = floatDigits;
+        int start = digits.length;
+        int top = product.length - 1;
+        while (top > 0 && product[top] == 0) {
+            top--;
+        }
+        for (int i=0; i<=top; i++) {
+            long limb = product[i];
+            for (int d=0; d<LIMB_DIGITS; d++) {
+                digits[--start] = (byte) ('0' + limb % 10);
+                limb /= 10;
+                if (i == top && limb == 0) {
+                    break;
+                }
+            }
+        }
+        if (negative) {
+            out.writeByte('-');
+        }
+        out.writeDecimalDigits(digits, start, digits.length - start, 
+                scale + FloatTables.POW2_SCALES[pow2Idx]);
+        return true;
+    }
+
+    /**
+     * {@code limbs += value * 10^shift}; přenosy se nenormalizují.
+     * 
+     * @param limbs  "číslice" o základu 10^9, od nejnižší
+     * @param value  nejvýše 16 číslic
+     * @param shift 
+     */
+    private static void addShifted(long[] limbs, long value, int shift) {
+        if (value == 0) {
+            return;
+        }
+        int idx = shift / LIMB_DIGITS;
+        long mul = LIMB_POW10[shift % LIMB_DIGITS];
+        long low = (value % LIMB_BASE) * mul;     // < 10^18
+        long high = (value / LIMB_BASE) * mul;    // < 10^16
+        limbs[idx] += low % LIMB_BASE;
+        limbs[idx + 1] += low / LIMB_BASE + high % LIMB_BASE;
+        limbs[idx + 2] += high / LIMB_BASE;
+    }
+
+    private static void normalizeLimbs(long[] limbs) {
+        long carry = 0;
+        for (int i=0; i<limbs.length; i++) {
+            long v = limbs[i] + carry;
+            limbs[i] = v % LIMB_BASE;
+            carry = v / LIMB_BASE;
+        }
+    }
+
+    /**
+     * Výpočet čísla s plovoucí čárkou v {@code BigDecimal}; 
+     * jen sčítání a násobení předpočítaných hodnot.
+     * Volat až po {@linkplain #checkFloatExponent(int)}.
+     */
+    private static BigDecimal parseFloat(int b0, int b1, int b2, int b3, int b4) {
+        BigDecimal mantisa = MANTISSA_HALF
+                .add(FloatTables.MANTISSA_TERMS[0][b1 & 0x7F])
+                .add(FloatTables.MANTISSA_TERMS[1][b2])
+                .add(FloatTables.MANTISSA_TERMS[2][b3])
+                .add(FloatTables.MANTISSA_TERMS[3][b4]);
+        BigDecimal result = mantisa.multiply(FloatTables.POW2[b0 - 128 - MIN_FLOAT_EXP]);
+        if ((b1 & 0x80) != 0) {
+            result = result.negate();
+        }
+        return result;
+    }
+
     
     /**
      * 
@@ -433,7 +893,7 @@ public class TapByteArrayData extends ByteArrayData {
      * @see #isControlCharToSetTextAttribute(int) 
      */
     public static String getControlAsCharText(int data) {
-        return controlCharNames.get(data);
+        return data >= 0 && data <= 0xFF ? BasicTables.CONTROL_CHAR_NAMES[data] : null;
     }
     
     /**
@@ -537,117 +997,182 @@ public class TapByteArrayData extends ByteArrayData {
      * @return  text nebo {@code null}
      */
     public static final String getKeyword(int data) {
-        return keywords.get(data);
+        return data >= 0 && data <= 0xFF ? BasicTables.KEYWORDS[data] : null;
+    }
+
+    /**
+     * Připraví tabulku pro {@linkplain #readBlockAndAppendEscapedString(int, java.lang.StringBuilder)}.
+     * Odpovídá metodám {@code is*Char()}, {@linkplain #getKeyword(int)} 
+     * a {@linkplain #getControlAsCharText(int)}.
+     */
+    private static void initEscapeTable(byte[] escapeActions, char[][] escapeTexts) {
+        for (int dataItem = 0; dataItem <= 0xFF; dataItem++) {
+            String text = null;
+            byte action;
+            if (isBeginOfNumberRepresentation(dataItem)) {
+                action = ESC_NUMBER;
+            }
+            // 'libra' (£)  -->  {pound}  (Není v bas2tap)
+            else if (isPoundChar(dataItem)) {
+                text = "{pound}";
+                action = ESC_TEXT;
+            }
+            // character 7F = copyright sign  -->  {(C)}
+            else if (isCopyrightChar(dataItem)) {
+                text = "{(C)}";
+                action = ESC_TEXT;
+            }
+            else if (isPrintableChar(dataItem) || isEolChar(dataItem)) {
+                action = ESC_CHAR;
+            }
+            else if (isControlCharToSetTextAttribute(dataItem)) {
+                text = "{" + getControlAsCharText(dataItem) + " ";
+                action = ESC_ATTRIBUTE;
+            }
+            else if (isControlChar(dataItem)) {
+                action = ESC_SKIP;
+            }
+            else if (isKeyword(dataItem)) {
+                text = getKeyword(dataItem);
+                action = ESC_TEXT;
+            }
+            // {-X} X is 1-8, characters 80-87 (block graphics without shift)
+            // {+X} X is 1-8, characters 88-8F (block graphics with shift)
+            else if (isMosaicGraphicChar(dataItem)) {
+                if (dataItem == 0x80) {
+                    text = "{-8}";
+                }
+                else if (dataItem == 0x8F) {
+                    text = "{+8}";
+                }
+                // {-1} - {-7}
+                else if (dataItem <= 0x87) {
+                    text = "{-" + (char)('1'+dataItem-0x81) + "}";  // 1-8, ne 0-7 !
+                }
+                // {+1} - {+7}  // (pozor, je ve znakové sadě v opačném pořadí)
+                else {
+                    text = "{+" + (char)(0x8E-dataItem+'1') + "}";  // 1-8, ne 0-7 !
+                }
+                action = ESC_TEXT;
+            }
+            // {X} X is 'A'-'U', converts to the UDG Spectrum ASCII value
+            else {  // isUdgChar(dataItem)
+                text = "{" + (char)('A'+dataItem-0x90) + "}";
+                action = ESC_TEXT;
+            }
+            escapeActions[dataItem] = action;
+            escapeTexts[dataItem] = text == null ? null : text.toCharArray();
+        }
     }
 
     /**
      */
-    private static void initZxsControlCharNames() {
-        controlCharNames.put(0x10, "INK");
-        controlCharNames.put(0x11, "PAPER");
-        controlCharNames.put(0x12, "FLASH");
-        controlCharNames.put(0x13, "BRIGHT");
-        controlCharNames.put(0x14, "INVERSE");
-        controlCharNames.put(0x15, "OVER");
-        controlCharNames.put(0x16, "AT");
-        controlCharNames.put(0x17, "TAB");        
+    private static void initZxsControlCharNames(String[] controlCharNames) {
+        controlCharNames[0x10] = "INK";
+        controlCharNames[0x11] = "PAPER";
+        controlCharNames[0x12] = "FLASH";
+        controlCharNames[0x13] = "BRIGHT";
+        controlCharNames[0x14] = "INVERSE";
+        controlCharNames[0x15] = "OVER";
+        controlCharNames[0x16] = "AT";
+        controlCharNames[0x17] = "TAB";        
     }
 
     // (pozor v tokenech obsahující mezeru (např. v GO TO apod) nesmí být nezalomitelné mezery)
     /**
      */
-    private static void initZxsKeywordsMap() {
-        keywords.put(0xA5,"RND ");
-        keywords.put(0xA6,"INKEY$ ");
-        keywords.put(0xA7,"PI ");
-        keywords.put(0xA8,"FN ");
-        keywords.put(0xA9,"POINT ");
-        keywords.put(0xAA,"SCREEN$ ");
-        keywords.put(0xAB,"ATTR ");
-        keywords.put(0xAC,"AT ");
-        keywords.put(0xAD,"TAB ");
-        keywords.put(0xAE,"VAL$	");
-        keywords.put(0xAF,"CODE ");
-        keywords.put(0xB0,"VAL ");
-        keywords.put(0xB1,"LEN ");
-        keywords.put(0xB2,"SIN ");
-        keywords.put(0xB3,"COS ");
-        keywords.put(0xB4,"TAN ");
-        keywords.put(0xB5,"ASN ");
-        keywords.put(0xB6,"ACS ");
-        keywords.put(0xB7,"ATN ");
-        keywords.put(0xB8,"LN ");
-        keywords.put(0xB9,"EXP ");
-        keywords.put(0xBA,"INT ");
-        keywords.put(0xBB,"SQR ");
-        keywords.put(0xBC,"SGN ");
-        keywords.put(0xBD,"ABS ");
-        keywords.put(0xBE,"PEEK ");
-        keywords.put(0xBF,"IN ");
-        keywords.put(0xC0,"USR ");
-        keywords.put(0xC1,"STR$ ");
-        keywords.put(0xC2,"CHR$ ");
-        keywords.put(0xC3," NOT ");
-        keywords.put(0xC4,"BIN ");
-        keywords.put(0xC5," OR ");
-        keywords.put(0xC6," AND ");
-        keywords.put(0xC7,"<=");
-        keywords.put(0xC8,">=");
-        keywords.put(0xC9,"<>");
-        keywords.put(0xCA,"LINE ");
-        keywords.put(0xCB," THEN ");
-        keywords.put(0xCC," TO ");
-        keywords.put(0xCD," STEP ");
-        keywords.put(0xCE,"DEF FN ");
-        keywords.put(0xCF,"CAT ");
-        keywords.put(0xD0,"FORMAT ");
-        keywords.put(0xD1,"MOVE ");
-        keywords.put(0xD2,"ERASE ");
-        keywords.put(0xD3,"OPEN# ");
-        keywords.put(0xD4,"CLOSE# ");
-        keywords.put(0xD5,"MERGE ");
-        keywords.put(0xD6,"VERIFY ");
-        keywords.put(0xD7,"BEEP ");
-        keywords.put(0xD8,"CIRCLE ");
-        keywords.put(0xD9,"INK ");
-        keywords.put(0xDA,"PAPER ");
-        keywords.put(0xDB,"FLASH ");
-        keywords.put(0xDC,"BRIGHT ");
-        keywords.put(0xDD,"INVERSE ");
-        keywords.put(0xDE,"OVER ");
-        keywords.put(0xDF,"OUT ");
-        keywords.put(0xE0,"LPRINT ");
-        keywords.put(0xE1,"LLIST ");
-        keywords.put(0xE2,"STOP ");
-        keywords.put(0xE3,"READ ");
-        keywords.put(0xE4,"DATA ");
-        keywords.put(0xE5,"RESTORE ");
-        keywords.put(0xE6,"NEW ");
-        keywords.put(0xE7,"BORDER ");
-        keywords.put(0xE8,"CONTINUE ");
-        keywords.put(0xE9,"DIM ");
-        keywords.put(0xEA,"REM ");
-        keywords.put(0xEB,"FOR ");
-        keywords.put(0xEC,"GO TO ");
-        keywords.put(0xED,"GO SUB ");
-        keywords.put(0xEE,"INPUT ");
-        keywords.put(0xEF,"LOAD ");
-        keywords.put(0xF0,"LIST ");
-        keywords.put(0xF1,"LET ");
-        keywords.put(0xF2,"PAUSE ");
-        keywords.put(0xF3,"NEXT ");
-        keywords.put(0xF4,"POKE ");
-        keywords.put(0xF5,"PRINT ");
-        keywords.put(0xF6,"PLOT ");
-        keywords.put(0xF7,"RUN ");
-        keywords.put(0xF8,"SAVE ");
-        keywords.put(0xF9,"RANDOMIZE ");
-        keywords.put(0xFA,"IF ");
-        keywords.put(0xFB,"CLS ");
-        keywords.put(0xFC,"DRAW ");
-        keywords.put(0xFD,"CLEAR ");
-        keywords.put(0xFE,"RETURN ");
-        keywords.put(0xFF,"COPY ");
+    private static void initZxsKeywords(String[] keywords) {
+        keywords[0xA5] = "RND ";
+        keywords[0xA6] = "INKEY$ ";
+        keywords[0xA7] = "PI ";
+        keywords[0xA8] = "FN ";
+        keywords[0xA9] = "POINT ";
+        keywords[0xAA] = "SCREEN$ ";
+        keywords[0xAB] = "ATTR ";
+        keywords[0xAC] = "AT ";
+        keywords[0xAD] = "TAB ";
+        keywords[0xAE] = "VAL$	";
+        keywords[0xAF] = "CODE ";
+        keywords[0xB0] = "VAL ";
+        keywords[0xB1] = "LEN ";
+        keywords[0xB2] = "SIN ";
+        keywords[0xB3] = "COS ";
+        keywords[0xB4] = "TAN ";
+        keywords[0xB5] = "ASN ";
+        keywords[0xB6] = "ACS ";
+        keywords[0xB7] = "ATN ";
+        keywords[0xB8] = "LN ";
+        keywords[0xB9] = "EXP ";
+        keywords[0xBA] = "INT ";
+        keywords[0xBB] = "SQR ";
+        keywords[0xBC] = "SGN ";
+        keywords[0xBD] = "ABS ";
+        keywords[0xBE] = "PEEK ";
+        keywords[0xBF] = "IN ";
+        keywords[0xC0] = "USR ";
+        keywords[0xC1] = "STR$ ";
+        keywords[0xC2] = "CHR$ ";
+        keywords[0xC3] = " NOT ";
+        keywords[0xC4] = "BIN ";
+        keywords[0xC5] = " OR ";
+        keywords[0xC6] = " AND ";
+        keywords[0xC7] = "<=";
+        keywords[0xC8] = ">=";
+        keywords[0xC9] = "<>";
+        keywords[0xCA] = "LINE ";
+        keywords[0xCB] = " THEN ";
+        keywords[0xCC] = " TO ";
+        keywords[0xCD] = " STEP ";
+        keywords[0xCE] = "DEF FN ";
+        keywords[0xCF] = "CAT ";
+        keywords[0xD0] = "FORMAT ";
+        keywords[0xD1] = "MOVE ";
+        keywords[0xD2] = "ERASE ";
+        keywords[0xD3] = "OPEN# ";
+        keywords[0xD4] = "CLOSE# ";
+        keywords[0xD5] = "MERGE ";
+        keywords[0xD6] = "VERIFY ";
+        keywords[0xD7] = "BEEP ";
+        keywords[0xD8] = "CIRCLE ";
+        keywords[0xD9] = "INK ";
+        keywords[0xDA] = "PAPER ";
+        keywords[0xDB] = "FLASH ";
+        keywords[0xDC] = "BRIGHT ";
+        keywords[0xDD] = "INVERSE ";
+        keywords[0xDE] = "OVER ";
+        keywords[0xDF] = "OUT ";
+        keywords[0xE0] = "LPRINT ";
+        keywords[0xE1] = "LLIST ";
+        keywords[0xE2] = "STOP ";
+        keywords[0xE3] = "READ ";
+        keywords[0xE4] = "DATA ";
+        keywords[0xE5] = "RESTORE ";
+        keywords[0xE6] = "NEW ";
+        keywords[0xE7] = "BORDER ";
+        keywords[0xE8] = "CONTINUE ";
+        keywords[0xE9] = "DIM ";
+        keywords[0xEA] = "REM ";
+        keywords[0xEB] = "FOR ";
+        keywords[0xEC] = "GO TO ";
+        keywords[0xED] = "GO SUB ";
+        keywords[0xEE] = "INPUT ";
+        keywords[0xEF] = "LOAD ";
+        keywords[0xF0] = "LIST ";
+        keywords[0xF1] = "LET ";
+        keywords[0xF2] = "PAUSE ";
+        keywords[0xF3] = "NEXT ";
+        keywords[0xF4] = "POKE ";
+        keywords[0xF5] = "PRINT ";
+        keywords[0xF6] = "PLOT ";
+        keywords[0xF7] = "RUN ";
+        keywords[0xF8] = "SAVE ";
+        keywords[0xF9] = "RANDOMIZE ";
+        keywords[0xFA] = "IF ";
+        keywords[0xFB] = "CLS ";
+        keywords[0xFC] = "DRAW ";
+        keywords[0xFD] = "CLEAR ";
+        keywords[0xFE] = "RETURN ";
+        keywords[0xFF] = "COPY ";
     }
     
     
@@ -0,0 +1,102 @@
+/*
+ * TapEvents.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Diagnostické události převodu (soubor, dvojice bloků, tabulka proměnných),
+ * např. pro Java Flight Recorder, viz {@linkplain JfrTapEvents}.
+ * <p>
+ * Ve výchozím stavu vypnuté: {@linkplain #create()} vrací {@code null}
+ * a {@linkplain Tap2bas} pak jen testuje {@code null}. Zapínají se
+ * vlastností {@code -D}{@value #PROPERTY}{@code =true}; třídy JFR se
+ * načtou až potom, takže program běží i na JVM bez JFR (Java 7).
+ * <p>
+ * Volání se párují ({@code *Start} + {@code *End}) a vnořují
+ * (soubor &gt; blok &gt; tabulka proměnných); po chybě se {@code *End}
+ * bloku a tabulky nevolá. Jedna instance patří jednomu {@code Tap2bas},
+ * tj. jednomu vláknu.
+ *
+ * @author Martin Pokorný
+ * @see Tap2bas
+ */
+abstract class TapEvents {
+    private static final Logger log = LoggerFactory.getLogger(TapEvents.class);
+
+    /** Systémová vlastnost, která události zapíná. */
+    public static final String PROPERTY = "tap2bas.jfr";
+
+    private static final String JFR_IMPL_CLASS = "cz.mp.zxs.tools.tap2bas.JfrTapEvents";
+
+    private static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+    /**
+     *
+     * @return  události pro nový {@code Tap2bas}, nebo {@code null}
+     *      (vypnuto, nebo JVM nemá JFR)
+     */
+    static TapEvents create() {
+        return ENABLED ? load() : null;
+    }
+
+    /**
+     * Načte implementaci pro JFR bez ohledu na {@value #PROPERTY}.
+     *
+     * @return  nebo {@code null}, pokud JVM nemá JFR
+     */
+    static TapEvents load() {
+        try {
+            return (TapEvents) Class.forName(JFR_IMPL_CLASS)
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            log.warn("JFR events are not available: " + ex);
+            return null;
+        }
+    }
+
+    /** Začátek převodu souboru. */
+    abstract void fileStart();
+
+    /**
+     *
+     * @param source  jméno (cesta) vstupu, nebo {@code null}
+     * @param bytes  délka zpracovaných TAP dat
+     * @param blocks  počet zpracovaných dvojic bloků
+     * @param skipped  počet přeskočených poškozených úseků
+     * @param ok  {@code false} = převod skončil chybou
+     */
+    abstract void fileEnd(String source, long bytes, int blocks, int skipped, boolean ok);
+
+    /** Začátek dvojice bloků "hlavička + data". */
+    abstract void blockStart();
+
+    /**
+     *
+     * @param offset  pozice hlavičky v TAP
+     * @param type  typ z hlavičky
+     * @param length  délka bloku dat (včetně flagu a parity)
+     * @param duplicate  {@code true} = blok se nedekódoval (deduplikace)
+     */
+    abstract void blockEnd(int offset, TapBlockType type, int length, boolean duplicate);
+
+    /** Začátek tabulky proměnných. */
+    abstract void varsStart();
+
+    /**
+     *
+     * @param offset  pozice tabulky v TAP
+     * @param length
+     * @param variables  počet dekódovaných proměnných
+     * @param valid  {@code false} = analýza přerušena
+     *      (tabulka nejspíš obsahuje strojový kód)
+     */
+    abstract void varsEnd(int offset, int length, int variables, boolean valid);
+
+}   // TapEvents.java
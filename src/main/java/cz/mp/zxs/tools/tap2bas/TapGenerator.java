@@ -0,0 +1,553 @@
+/*
+ * TapGenerator.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Generátor syntetických TAP souborů (pro benchmarky a zátěžové testy).
+ * <p>
+ * Vytvoří platný TAP se strukturou, kterou očekává {@linkplain Tap2bas}:
+ * BASIC program (řádky s klíčovými slovy, čísly včetně 5B vnitřní
+ * reprezentace, řídícími znaky a řetězci), za ním tabulku proměnných
+ * (číselná a řetězcová pole, proměnné cyklu FOR, ...), bloky kódu a
+ * obrázky (SCREEN$). Celá tato skupina bloků se může opakovat
+ * ({@linkplain #setRepeat(int)}), tak lze vytvořit i hodně velký soubor.
+ * <p>
+ * Pro stejný {@code seed} a stejné nastavení vznikne vždy stejný obsah.
+ *
+ * @author Martin Pokorný
+ * @see TapGeneratorCli
+ */
+public class TapGenerator {
+
+    /** Maximální délka dat v jednom bloku (délka bloku je 2B; -1 flag, -1 parita). */
+    public static final int MAX_BLOCK_DATA_LENGTH = 0xFFFF - 2;
+    /**
+     * Maximální počet prvků jednoho číselného pole;
+     * {@linkplain Tap2bas} delší pole ve VARS nepřijme.
+     */
+    public static final int MAX_ARRAY_ITEMS = (49152 - 3) / TapByteArrayData.NUMBER_REPRESENTATION_LEN;
+    public static final int MAX_STRING_ARRAY_LENGTH = 49152 - 3;
+
+    private static final int FIRST_KEYWORD = 0xA5;
+    /** (příkazy; ostatní klíčová slova jsou funkce a operátory) */
+    private static final int FIRST_COMMAND = 0xCE;
+    private static final int NUMBER_MARK = 0x0E;
+    private static final int EOL = 0x0D;
+
+    private final Random random;
+
+    private int programLength = 4096;
+    private int lineCount = 0;
+    private int lineLength = 40;
+    private int keywordPercent = 20;
+    private int numberPercent = 15;
+    private int numericArrays = 0;
+    private int numericArrayItems = 0;
+    private int stringArrays = 0;
+    private int stringArrayLength = 0;
+    private int forLoops = 0;
+    private int codeLength = 0;
+    private int screens = 0;
+    private int repeat = 1;
+
+    /**
+     *
+     * @param seed
+     */
+    public TapGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Nastaví znovu počáteční stav generátoru náhodných čísel;
+     * např. pro každý soubor zvlášť.
+     *
+     * @param seed
+     */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     *
+     * @param programLength  přibližná délka programu v bytech;
+     *      použije se, pokud není zadán počet řádek
+     */
+    public void setProgramLength(int programLength) {
+        checkRange("programLength", programLength, 0, MAX_BLOCK_DATA_LENGTH);
+        this.programLength = programLength;
+    }
+
+    /**
+     *
+     * @param lineCount  počet řádek programu; 0 = podle délky programu
+     * @see #setProgramLength(int)
+     */
+    public void setLineCount(int lineCount) {
+        checkRange("lineCount", lineCount, 0, Tap2bas.MAX_LINE_NUM_IN_BASIC);
+        this.lineCount = lineCount;
+    }
+
+    /**
+     *
+     * @param lineLength  průměrná délka řádky v bytech
+     */
+    public void setLineLength(int lineLength) {
+        checkRange("lineLength", lineLength, 2, Tap2bas.MAX_LINE_LENGTH);
+        this.lineLength = lineLength;
+    }
+
+    /**
+     *
+     * @param keywordPercent  kolik procent částí řádky jsou klíčová slova
+     */
+    public void setKeywordPercent(int keywordPercent) {
+        checkRange("keywordPercent", keywordPercent, 0, 100);
+        this.keywordPercent = keywordPercent;
+    }
+
+    /**
+     *
+     * @param numberPercent  kolik procent částí řádky jsou čísla
+     *      (text + 5B vnitřní reprezentace)
+     */
+    public void setNumberPercent(int numberPercent) {
+        checkRange("numberPercent", numberPercent, 0, 100);
+        this.numberPercent = numberPercent;
+    }
+
+    /**
+     *
+     * @param count  počet číselných polí ve VARS (max. 26)
+     * @param items  počet prvků každého pole
+     */
+    public void setNumericArrays(int count, int items) {
+        checkRange("numericArrays", count, 0, 26);
+        checkRange("numericArrayItems", items, 1, MAX_ARRAY_ITEMS);
+        this.numericArrays = count;
+        this.numericArrayItems = items;
+    }
+
+    /**
+     *
+     * @param count  počet řetězcových polí ve VARS (max. 26)
+     * @param length  počet znaků každého pole
+     */
+    public void setStringArrays(int count, int length) {
+        checkRange("stringArrays", count, 0, 26);
+        checkRange("stringArrayLength", length, 1, MAX_STRING_ARRAY_LENGTH);
+        this.stringArrays = count;
+        this.stringArrayLength = length;
+    }
+
+    /**
+     *
+     * @param forLoops  počet proměnných cyklu FOR ve VARS (max. 26)
+     */
+    public void setForLoops(int forLoops) {
+        checkRange("forLoops", forLoops, 0, 26);
+        this.forLoops = forLoops;
+    }
+
+    /**
+     *
+     * @param codeLength  délka bloku kódu; 0 = bez bloku kódu
+     */
+    public void setCodeLength(int codeLength) {
+        checkRange("codeLength", codeLength, 0, MAX_BLOCK_DATA_LENGTH);
+        this.codeLength = codeLength;
+    }
+
+    /**
+     *
+     * @param screens  počet obrázků (SCREEN$)
+     */
+    public void setScreens(int screens) {
+        checkRange("screens", screens, 0, Integer.MAX_VALUE);
+        this.screens = screens;
+    }
+
+    /**
+     *
+     * @param repeat  kolikrát se má zopakovat celá skupina bloků
+     *      (program, kód, obrázky)
+     */
+    public void setRepeat(int repeat) {
+        checkRange("repeat", repeat, 1, Integer.MAX_VALUE);
+        this.repeat = repeat;
+    }
+
+    private static void checkRange(String name, int value, int min, int max) {
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(name + " = " + value
+                    + " (" + min + " - " + max + ")");
+        }
+    }
+
+    /**
+     *
+     * @return  obsah TAP souboru
+     * @see #generate(java.io.OutputStream)
+     */
+    public byte[] generate() {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try {
+            generate(bout);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);    // (ByteArrayOutputStream nevyhazuje)
+        }
+        return bout.toByteArray();
+    }
+
+    /**
+     * Zapíše TAP do proudu; v paměti je vždy jen jedna skupina bloků.
+     * Proud se neuzavírá.
+     *
+     * @param out
+     * @return  počet zapsaných bytů
+     * @throws IOException
+     * @throws IllegalStateException  pokud se BASIC program a VARS nevejdou
+     *      do jednoho bloku
+     */
+    public long generate(OutputStream out) throws IOException {
+        long total = 0;
+        for (int r=0; r<repeat; r++) {
+            ByteArrayOutputStream group = new ByteArrayOutputStream();
+
+            byte[] program = createProgram();
+            byte[] vars = createVars();
+            if (program.length + vars.length > MAX_BLOCK_DATA_LENGTH) {
+                throw new IllegalStateException("BASIC block is too big: "
+                        + (program.length + vars.length) + " B");
+            }
+            byte[] basic = new byte[program.length + vars.length];
+            System.arraycopy(program, 0, basic, 0, program.length);
+            System.arraycopy(vars, 0, basic, program.length, vars.length);
+            appendBlockPair(group, TapBlockType.BASIC, "gen" + r, basic, 10, program.length);
+
+            if (codeLength > 0) {
+                byte[] code = new byte[codeLength];
+                random.nextBytes(code);
+                appendBlockPair(group, TapBlockType.BINARY_DATA, "code" + r, code, 32768, 32768);
+            }
+            for (int s=0; s<screens; s++) {
+                byte[] screen = new byte[Tap2bas.SCREEN_LENGTH];
+                random.nextBytes(screen);
+                appendBlockPair(group, TapBlockType.BINARY_DATA, "screen" + s,
+                        screen, Tap2bas.SCREEN_ADDRESS, 32768);
+            }
+
+            group.writeTo(out);
+            total += group.size();
+        }
+        return total;
+    }
+
+    // -------------------------------------------------------------------------
+    // BASIC
+
+    /**
+     * Řádky BASIC programu (číslo řádky (MSB LSB), délka (LSB MSB), obsah, 0x0D).
+     *
+     * @return
+     */
+    private byte[] createProgram() {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int lines = lineCount;
+        if (lines == 0) {
+            lines = Math.max(1, programLength / (lineLength + 4));
+            lines = Math.min(lines, Tap2bas.MAX_LINE_NUM_IN_BASIC);
+        }
+        int step = Math.max(1, Math.min(10, Tap2bas.MAX_LINE_NUM_IN_BASIC / lines));
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int i=0; i<lines; i++) {
+            int lineNum = (i + 1) * step;
+            line.reset();
+            writeLineContent(line);
+            line.write(EOL);
+            result.write(lineNum >> 8);
+            result.write(lineNum & 0xFF);
+            result.write(line.size() & 0xFF);
+            result.write(line.size() >> 8);
+            result.write(line.toByteArray(), 0, line.size());
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Obsah jedné řádky (bez 0x0D).
+     *
+     * @param line
+     */
+    private void writeLineContent(ByteArrayOutputStream line) {
+        int length = Math.max(2, lineLength / 2 + random.nextInt(lineLength));
+        length = Math.min(length, Tap2bas.MAX_LINE_LENGTH - 1);
+        // příkaz na začátku
+        line.write(FIRST_COMMAND + random.nextInt(0x100 - FIRST_COMMAND));
+        while (line.size() < length) {
+            int kind = random.nextInt(100);
+            if (kind < keywordPercent) {
+                line.write(FIRST_KEYWORD + random.nextInt(0x100 - FIRST_KEYWORD));
+            }
+            else if (kind < keywordPercent + numberPercent) {
+                writeNumberWithText(line);
+            }
+            else if (kind < keywordPercent + numberPercent + 3) {
+                writeControl(line);
+            }
+            else if (kind < keywordPercent + numberPercent + 10) {
+                writeQuotedText(line);
+            }
+            else {
+                writeText(line, 1 + random.nextInt(4));
+            }
+        }
+    }
+
+    /**
+     * Číslo jako v BASICu: text čísla, 0x0E a 5B vnitřní reprezentace.
+     *
+     * @param out
+     */
+    private void writeNumberWithText(ByteArrayOutputStream out) {
+        String text;
+        if (random.nextInt(4) != 0) {
+            int value = random.nextInt(random.nextBoolean() ? 100 : 65536);
+            text = String.valueOf(value);
+            writeAscii(out, text);
+            out.write(NUMBER_MARK);
+            writeIntegerNumber(out, value);
+        }
+        else {
+            int hundredths = 1 + random.nextInt(1000000);
+            int fraction = hundredths % 100;
+            text = (hundredths / 100) + "." + (fraction < 10 ? "0" : "") + fraction;
+            writeAscii(out, text);
+            out.write(NUMBER_MARK);
+            writeFloatNumber(out, hundredths / 100d);
+        }
+    }
+
+    /**
+     * Řídící znak s parametry, např. INK 2 nebo AT 10,5.
+     *
+     * @param out
+     */
+    private void writeControl(ByteArrayOutputStream out) {
+        int control = 0x10 + random.nextInt(8);     // INK - TAB
+        out.write(control);
+        if (control == 0x16) {       // AT y,x
+            out.write(random.nextInt(22));
+            out.write(random.nextInt(32));
+        }
+        else {
+            out.write(random.nextInt(8));
+        }
+    }
+
+    private void writeQuotedText(ByteArrayOutputStream out) {
+        out.write('"');
+        int len = random.nextInt(20);
+        for (int i=0; i<len; i++) {
+            int ch = 0x20 + random.nextInt(0x5F);
+            out.write(ch == '"' ? '\'' : ch);
+        }
+        out.write('"');
+    }
+
+    private static final byte[] TEXT_CHARS =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ$=+-*/<>(),;: "
+            .getBytes();
+
+    private void writeText(ByteArrayOutputStream out, int length) {
+        for (int i=0; i<length; i++) {
+            out.write(TEXT_CHARS[random.nextInt(TEXT_CHARS.length)]);
+        }
+    }
+
+    private static void writeAscii(ByteArrayOutputStream out, String text) {
+        for (int i=0; i<text.length(); i++) {
+            out.write(text.charAt(i));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // 5B čísla
+
+    /**
+     * Celé číslo ve vnitřní reprezentaci: 0x0 0x0|0xFF LSB MSB 0x0.
+     *
+     * @param out
+     * @param value  -65535 až 65535
+     */
+    static void writeIntegerNumber(ByteArrayOutputStream out, int value) {
+        int abs = Math.abs(value);
+        out.write(0);
+        out.write(value < 0 ? 0xFF : 0);
+        out.write(abs & 0xFF);
+        out.write((abs >> 8) & 0xFF);
+        out.write(0);
+    }
+
+    /**
+     * Číslo s plovoucí čárkou ve vnitřní reprezentaci:
+     * exponent + 0x80, 4B mantisa (první bit = znaménko).
+     *
+     * @param out
+     * @param value  nenulové číslo
+     */
+    static void writeFloatNumber(ByteArrayOutputStream out, double value) {
+        double abs = Math.abs(value);
+        int exp = Math.getExponent(abs) + 1;     // mantisa 0.5 až 1
+        long mantissa = Math.round(abs / Math.pow(2, exp) * 4294967296d);
+        if (mantissa > 0xFFFFFFFFL) {    // (zaokrouhlením na 1.0)
+            mantissa >>>= 1;
+            exp++;
+        }
+        out.write(exp + 128);
+        int b1 = (int) (mantissa >>> 24) & 0x7F;
+        out.write(value < 0 ? b1 | 0x80 : b1);
+        out.write((int) (mantissa >>> 16) & 0xFF);
+        out.write((int) (mantissa >>> 8) & 0xFF);
+        out.write((int) mantissa & 0xFF);
+    }
+
+    /**
+     * Náhodné číslo pro VARS; přibližně polovina celých čísel.
+     *
+     * @param out
+     */
+    private void writeRandomNumber(ByteArrayOutputStream out) {
+        if (random.nextBoolean()) {
+            int value = random.nextInt(65536);
+            writeIntegerNumber(out, random.nextInt(4) == 0 ? -value : value);
+        }
+        else {
+            out.write(128 - 20 + random.nextInt(40));
+            for (int i=0; i<4; i++) {
+                out.write(random.nextInt(256));
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // VARS
+
+    /**
+     * Tabulka proměnných (viz {@code Tap2bas.analyzeVarsTable}).
+     *
+     * @return
+     */
+    private byte[] createVars() {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        // DIM a(items), DIM b(items), ...
+        for (int a=0; a<numericArrays; a++) {
+            result.write(0x81 + a);
+            int datalen = 1 + 2 + numericArrayItems * TapByteArrayData.NUMBER_REPRESENTATION_LEN;
+            writeLsbMsb(result, datalen);
+            result.write(1);
+            writeLsbMsb(result, numericArrayItems);
+            for (int i=0; i<numericArrayItems; i++) {
+                writeRandomNumber(result);
+            }
+        }
+        // DIM a$(length), ...
+        for (int a=0; a<stringArrays; a++) {
+            result.write(0xC1 + a);
+            writeLsbMsb(result, 1 + 2 + stringArrayLength);
+            result.write(1);
+            writeLsbMsb(result, stringArrayLength);
+            writeText(result, stringArrayLength);
+        }
+        // FOR a=... TO ... STEP ...
+        for (int f=0; f<forLoops; f++) {
+            result.write(0xE1 + f);
+            int from = random.nextInt(100);
+            writeIntegerNumber(result, from);
+            writeIntegerNumber(result, from + random.nextInt(1000));
+            writeIntegerNumber(result, 1 + random.nextInt(5));
+            writeLsbMsb(result, 10 * (1 + random.nextInt(100)));
+            result.write(1 + random.nextInt(3));
+        }
+        if (result.size() > 0) {
+            // x = ..., x$ = "..."
+            result.write('x');
+            writeRandomNumber(result);
+            result.write('X');
+            int len = random.nextInt(32);
+            writeLsbMsb(result, len);
+            writeText(result, len);
+        }
+        return result.toByteArray();
+    }
+
+    private static void writeLsbMsb(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write((value >> 8) & 0xFF);
+    }
+
+    // -------------------------------------------------------------------------
+    // bloky
+
+    /**
+     * Připojí hlavičku a blok dat.
+     *
+     * @param tap
+     * @param type
+     * @param name  jméno v hlavičce (max. 10 znaků)
+     * @param data
+     * @param param1
+     * @param param2
+     */
+    static void appendBlockPair(ByteArrayOutputStream tap, TapBlockType type,
+            String name, byte[] data, int param1, int param2) {
+        byte[] header = new byte[Tap2bas.DEFAULT_HEADER_SIZE];
+        header[0] = (byte) Tap2bas.FLAG_HEADER;
+        header[1] = (byte) type.getNum();
+        for (int i=0; i<Tap2bas.NAME_IN_HEADER_LEN; i++) {
+            header[2 + i] = (byte) (i < name.length() ? name.charAt(i) : ' ');
+        }
+        putLsbMsb(header, 12, data.length);
+        putLsbMsb(header, 14, param1);
+        putLsbMsb(header, 16, param2);
+        appendBlock(tap, header);
+
+        byte[] dataBlock = new byte[data.length + 2];
+        dataBlock[0] = (byte) Tap2bas.FLAG_DATA;
+        System.arraycopy(data, 0, dataBlock, 1, data.length);
+        appendBlock(tap, dataBlock);
+    }
+
+    /**
+     * Připojí blok (délka, obsah včetně flagu, parita).
+     * Poslední byte {@code block} se přepíše paritou.
+     *
+     * @param tap
+     * @param block
+     */
+    private static void appendBlock(ByteArrayOutputStream tap, byte[] block) {
+        int parity = 0;
+        for (int i=0; i<block.length-1; i++) {
+            parity ^= block[i];
+        }
+        block[block.length-1] = (byte) parity;
+        writeLsbMsb(tap, block.length);
+        tap.write(block, 0, block.length);
+    }
+
+    private static void putLsbMsb(byte[] data, int idx, int value) {
+        data[idx] = (byte) value;
+        data[idx + 1] = (byte) (value >> 8);
+    }
+
+}   // TapGenerator.java
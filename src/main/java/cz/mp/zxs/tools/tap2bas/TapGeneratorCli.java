@@ -0,0 +1,341 @@
+/*
+ * TapGeneratorCli.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_ERR_GENERAL;
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_ERR_OPTS;
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_OK;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rozhraní pro příkazovou řádku pro {@linkplain TapGenerator};
+ * vytvoří sadu ("korpus") syntetických TAP souborů.
+ * <p>
+ * Soubor číslo {@code n} se generuje se {@code seed + n}, takže lze
+ * kterýkoliv soubor vytvořit znovu i samostatně.
+ *
+ * @author Martin Pokorný
+ * @see TapGenerator
+ */
+public final class TapGeneratorCli {
+    private static final Logger log = LoggerFactory.getLogger(TapGeneratorCli.class);
+
+    private Options options = new Options();
+    private HelpFormatter helpFormatter = new HelpFormatter();
+
+    private boolean optHelp = false;
+    private String optOutDirName = null;
+    private int optCount = 1;
+    private long optSeed = 1;
+
+    private TapGenerator generator = new TapGenerator(0);
+
+    /** */
+    public TapGeneratorCli() {
+        createOptions();
+    }
+
+    // -------------------------------------------------------------------------
+    public static void main(String[] args) {
+        new TapGeneratorCli().executeWithArgs(args);
+    }
+
+    private void printHelp() {
+        pout("Generates synthetic Sinclair ZX Spectrum TAP files "
+                + "(for benchmarks and soak tests).");
+        pout("Usage:");
+        pout("  java -cp zxs_tap2bas.jar " + TapGeneratorCli.class.getName() + " [options...]");
+        pout("Options:");
+        StringWriter sw = new StringWriter();
+        helpFormatter.printOptions(new PrintWriter(sw), 79, options, 2, 2);
+        poutNoEol(sw.toString());
+        pout("Examples:");
+        pout("  ... -o corpus -n 1000 --programSize 16384 --arrays 2:4000 --code 8192 --screens 1");
+        pout("  ... -o big -n 10 --repeat 5000 --seed 7");
+    }
+
+    private static void pout(String text) {
+        System.out.println(text);
+    }
+
+    private static void poutNoEol(String text) {
+        System.out.print(text);
+    }
+
+    private static void perr(String text) {
+        System.err.println(text);
+    }
+
+    private static void exitWithError(String msg, int errCode) {
+        log.error("Error: " + msg);
+        perr("Error: " + msg);
+        System.exit(errCode);
+    }
+
+    private void createOptions() {
+        options.addOption(Option.builder("h")
+                .longOpt("help")
+                .hasArg(false)
+                .build());
+        options.addOption(Option.builder("o")
+                .longOpt("outDir")
+                .hasArg(true)
+                .desc("output directory (created if it does not exist)")
+                .build());
+        options.addOption(Option.builder("n")
+                .longOpt("count")
+                .hasArg(true)
+                .desc("number of files. Default is 1.")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("seed")
+                .hasArg(true)
+                .desc("seed of the first file; file n uses seed+n. Default is 1.")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("programSize")
+                .hasArg(true)
+                .desc("approximate size of the BASIC program in bytes")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("lines")
+                .hasArg(true)
+                .desc("number of BASIC lines (instead of --programSize)")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("lineLength")
+                .hasArg(true)
+                .desc("average BASIC line length in bytes")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("keywords")
+                .hasArg(true)
+                .desc("keyword density in percent")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("numbers")
+                .hasArg(true)
+                .desc("density of numbers (with 5-byte form) in percent")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("arrays")
+                .hasArg(true)
+                .argName("count:items")
+                .desc("numeric arrays in VARS")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("stringArrays")
+                .hasArg(true)
+                .argName("count:length")
+                .desc("string arrays in VARS")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("forLoops")
+                .hasArg(true)
+                .desc("number of FOR loop variables in VARS")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("code")
+                .hasArg(true)
+                .desc("size of the CODE block in bytes (0 = none)")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("screens")
+                .hasArg(true)
+                .desc("number of SCREEN$ blocks")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("repeat")
+                .hasArg(true)
+                .desc("how many times the whole group of blocks is repeated "
+                        + "in one file (for big files)")
+                .build());
+    }
+
+    /**
+     *
+     * @param args
+     */
+    private void parseArgs(String[] args) {
+        try {
+            CommandLineParser parser = new DefaultParser();
+            CommandLine cl = parser.parse(options, args);
+
+            if (cl.getOptions().length == 0 || cl.hasOption("h")) {
+                optHelp = true;
+                return;
+            }
+            optOutDirName = cl.getOptionValue("o");
+            if (optOutDirName == null) {
+                exitWithError("missing output directory (-o)", RESULT_ERR_OPTS);
+            }
+            if (cl.hasOption("n")) {
+                optCount = parseInt(cl, "n");
+            }
+            if (cl.hasOption("seed")) {
+                try {
+                    optSeed = Long.parseLong(cl.getOptionValue("seed"));
+                } catch (NumberFormatException nfex) {
+                    exitWithError("invalid --seed: " + cl.getOptionValue("seed"), RESULT_ERR_OPTS);
+                }
+            }
+            if (cl.hasOption("programSize")) {
+                generator.setProgramLength(parseInt(cl, "programSize"));
+            }
+            if (cl.hasOption("lines")) {
+                generator.setLineCount(parseInt(cl, "lines"));
+            }
+            if (cl.hasOption("lineLength")) {
+                generator.setLineLength(parseInt(cl, "lineLength"));
+            }
+            if (cl.hasOption("keywords")) {
+                generator.setKeywordPercent(parseInt(cl, "keywords"));
+            }
+            if (cl.hasOption("numbers")) {
+                generator.setNumberPercent(parseInt(cl, "numbers"));
+            }
+            if (cl.hasOption("arrays")) {
+                int[] countAndSize = parseCountAndSize(cl, "arrays");
+                generator.setNumericArrays(countAndSize[0], countAndSize[1]);
+            }
+            if (cl.hasOption("stringArrays")) {
+                int[] countAndSize = parseCountAndSize(cl, "stringArrays");
+                generator.setStringArrays(countAndSize[0], countAndSize[1]);
+            }
+            if (cl.hasOption("forLoops")) {
+                generator.setForLoops(parseInt(cl, "forLoops"));
+            }
+            if (cl.hasOption("code")) {
+                generator.setCodeLength(parseInt(cl, "code"));
+            }
+            if (cl.hasOption("screens")) {
+                generator.setScreens(parseInt(cl, "screens"));
+            }
+            if (cl.hasOption("repeat")) {
+                generator.setRepeat(parseInt(cl, "repeat"));
+            }
+        }
+        catch (ParseException pex) {
+            exitWithError(pex.getMessage(), RESULT_ERR_OPTS);
+        }
+        catch (IllegalArgumentException iaex) {
+            exitWithError(iaex.getMessage(), RESULT_ERR_OPTS);
+        }
+    }
+
+    private static int parseInt(CommandLine cl, String opt) {
+        String text = cl.getOptionValue(opt);
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException nfex) {
+            throw new IllegalArgumentException("invalid --" + opt + ": " + text);
+        }
+    }
+
+    /**
+     *
+     * @param cl
+     * @param opt
+     * @return  {@code [count, size]} z textu {@code count:size}
+     */
+    private static int[] parseCountAndSize(CommandLine cl, String opt) {
+        String text = cl.getOptionValue(opt);
+        int colonIdx = text.indexOf(':');
+        if (colonIdx < 0) {
+            throw new IllegalArgumentException("invalid --" + opt + ": " + text
+                    + " (expected count:size)");
+        }
+        try {
+            return new int[] {
+                Integer.parseInt(text.substring(0, colonIdx)),
+                Integer.parseInt(text.substring(colonIdx + 1))
+            };
+        } catch (NumberFormatException nfex) {
+            throw new IllegalArgumentException("invalid --" + opt + ": " + text);
+        }
+    }
+
+    /**
+     *
+     * @param index
+     * @return
+     */
+    static String getFileName(int index) {
+        return String.format("tape_%06d.tap", index);
+    }
+
+    /**
+     *
+     * @return  počet zapsaných bytů
+     * @throws IOException
+     */
+    private long generateFiles() throws IOException {
+        File outDir = new File(optOutDirName);
+        if (outDir.mkdirs()) {
+            log.info("Created directory: " + outDir);
+        }
+        if (!outDir.isDirectory()) {
+            throw new IOException("not a directory: " + outDir);
+        }
+        long total = 0;
+        for (int i=0; i<optCount; i++) {
+            generator.setSeed(optSeed + i);
+            File outFile = new File(outDir, getFileName(i));
+            boolean ok = false;
+            try (OutputStream out = new BufferedOutputStream(
+                    new FileOutputStream(outFile), 64 * 1024)) {
+                total += generator.generate(out);
+                ok = true;
+            } finally {
+                if (!ok && !outFile.delete()) {
+                    log.warn("Cannot delete: " + outFile);
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     *
+     * @param args
+     */
+    public void executeWithArgs(String[] args) {
+        parseArgs(args);
+        if (optHelp) {
+            printHelp();
+            System.exit(RESULT_OK);
+        }
+        long startNs = System.nanoTime();
+        try {
+            long total = generateFiles();
+            long timeMs = (System.nanoTime() - startNs) / 1000000;
+            pout("files: " + optCount + ", bytes: " + total + ", time: " + timeMs + " ms");
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+            exitWithError(ex.getClass().getName() + ": " + ex.getMessage(), RESULT_ERR_GENERAL);
+        } catch (IllegalStateException ex) {
+            exitWithError(ex.getMessage(), RESULT_ERR_OPTS);
+        }
+    }
+
+}   // TapGeneratorCli.java
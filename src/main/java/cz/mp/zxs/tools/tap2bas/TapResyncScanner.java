@@ -0,0 +1,134 @@
+/*
+ * TapResyncScanner.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hledání dalšího použitelného bloku s hlavičkou v poškozeném TAP,
+ * viz {@linkplain Tap2bas#setRecover(boolean)}.
+ * <p>
+ * Kandidát na hlavičku musí mít 2B délku 19, flag {@code 0x00},
+ * známý typ ({@linkplain TapBlockType}), správnou paritu a za ním
+ * musí být blok s flagem {@code 0xFF}.
+ * Hledá se po 8 bytech ({@code long}): pozice se podrobně kontrolují
+ * jen tam, kde je v daných 8 bytech byte {@code 19} (nižší byte délky
+ * hlavičky), takže i velké úseky "smetí" se projdou rychle.
+ *
+ * @author Martin Pokorný
+ * @see TapVerifier
+ */
+public final class TapResyncScanner {
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    /** 8x nižší byte délky hlavičky */
+    private static final long HEADER_LEN_BYTES = ONES * Tap2bas.DEFAULT_HEADER_SIZE;
+
+    /** 2B délka a hlavička, 2B délka a flag bloku dat */
+    private static final int CANDIDATE_LEN = 2 + Tap2bas.DEFAULT_HEADER_SIZE + 3;
+
+    /**
+     * Přeskočený (poškozený) úsek TAP.
+     */
+    public static final class SkippedRange {
+        private final int offset;
+        private final int length;
+        private final String reason;
+
+        SkippedRange(int offset, int length, String reason) {
+            this.offset = offset;
+            this.length = length;
+            this.reason = reason;
+        }
+
+        /**
+         *
+         * @return  pozice v TAP, kde začíná dvojice bloků s chybou
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         *
+         * @return  popis chyby, kvůli které se úsek přeskočil
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "index = " + offset + " (0x" + Integer.toHexString(offset) + ")"
+                    + ", length = " + length + "; " + reason;
+        }
+    }
+
+
+    private TapResyncScanner() {
+    }
+
+    /**
+     * Najde další blok s hlavičkou, od kterého lze pokračovat v analýze.
+     *
+     * @param data  celý obsah TAP (indexuje se absolutně, od 0)
+     * @param from  odkud hledat
+     * @return  pozice začátku bloku s hlavičkou (jeho 2B délky),
+     *      nebo {@code -1}, pokud už žádný není
+     */
+    public static int findNextHeader(ByteBuffer data, int from) {
+        int last = data.limit() - CANDIDATE_LEN;
+        int i = Math.max(from, 0);
+        while (i + 8 <= last) {
+            // ("has zero byte": nenulový, pokud některý byte = 19;
+            //  může hlásit i navíc, ale nic nevynechá)
+            long x = data.getLong(i) ^ HEADER_LEN_BYTES;
+            if (((x - ONES) & ~x & HIGH_BITS) != 0) {
+                for (int k=0; k<8; k++) {
+                    if (isHeaderAt(data, i + k)) {
+                        return i + k;
+                    }
+                }
+            }
+            i += 8;
+        }
+        for (; i <= last; i++) {
+            if (isHeaderAt(data, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     *
+     * @param data
+     * @param idx  (musí zbývat aspoň {@code CANDIDATE_LEN} bytů)
+     * @return
+     */
+    private static boolean isHeaderAt(ByteBuffer data, int idx) {
+        if (data.get(idx) != Tap2bas.DEFAULT_HEADER_SIZE
+                || data.get(idx + 1) != 0
+                || data.get(idx + 2) != Tap2bas.FLAG_HEADER
+                || TapBlockType.getByNum(data.get(idx + 3) & 0xFF) == null) {
+            return false;
+        }
+        int dataBlockIdx = idx + 2 + Tap2bas.DEFAULT_HEADER_SIZE;
+        int dataBlockLen = (data.get(dataBlockIdx) & 0xFF)
+                | (data.get(dataBlockIdx + 1) & 0xFF) << 8;
+        return dataBlockLen >= 2
+                && (data.get(dataBlockIdx + 2) & 0xFF) == Tap2bas.FLAG_DATA
+                && TapVerifier.xor(data, idx + 2, dataBlockIdx) == 0;
+    }
+
+}   // TapResyncScanner.java
@@ -0,0 +1,346 @@
+/*
+ * TapStats.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * Statistika převodu: zpracované byty, bloky podle typu, řádky BASICu,
+ * proměnné, čas jednotlivých fází, alokovaná paměť a propustnost.
+ * <p>
+ * Čas se měří po fázích ({@linkplain Phase}); vždy běží právě jedna fáze,
+ * takže časy se nepřekrývají a jejich součet je celkový čas. Fáze se
+ * přepíná metodami {@linkplain #enter(Phase)} a {@linkplain #exit(Phase)},
+ * např. zápis výstupu uprostřed výpisu bloku se započítá do
+ * {@linkplain Phase#OUTPUT}, ne do {@linkplain Phase#DUMP}.
+ * <p>
+ * Jedna instance = jeden soubor (případně jeden převod) v jednom vlákně;
+ * není vláknově bezpečná. Souhrn více převodů viz {@linkplain TapStatsTotal}.
+ *
+ * @author Martin Pokorný
+ * @see Tap2bas#setStats(cz.mp.zxs.tools.tap2bas.TapStats)
+ */
+public class TapStats {
+
+    /**
+     * Fáze převodu.
+     */
+    public enum Phase {
+        /** čtení TAP souboru */
+        READ,
+        /** hlavičky bloků */
+        HEADER,
+        /** výpis programu v BASICu */
+        BASIC,
+        /** tabulka proměnných */
+        VARS,
+        /** výpis ostatních bloků (hexdump, ...) */
+        DUMP,
+        /** zápis výstupu do souboru / proudu */
+        OUTPUT,
+        /** vše ostatní (rozdělení na bloky, deduplikace, ...) */
+        OTHER
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long[] phaseNanos = new long[PHASES.length];
+    private final long[] blocks = new long[TapBlockType.values().length];
+    private long bytes = 0;
+    private long outputBytes = 0;
+    private long basicLines = 0;
+    private long variables = 0;
+
+    private Phase phase = Phase.OTHER;
+    private long phaseStartNs;
+    private long startNs;
+    private long elapsedNs = 0;
+    private long startAllocated;
+    private long allocatedBytes = -1;
+    private boolean running = false;
+
+    /** */
+    public TapStats() {
+    }
+
+    /**
+     * Začátek měření (před čtením souboru), ve vlákně, které bude
+     * převádět.
+     */
+    public void start() {
+        startAllocated = getThreadAllocatedBytes();
+        startNs = System.nanoTime();
+        phaseStartNs = startNs;
+        phase = Phase.OTHER;
+        running = true;
+    }
+
+    /**
+     * Konec měření (po uzavření výstupu). Opakované volání nic nedělá.
+     */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()] += now - phaseStartNs;
+        elapsedNs += now - startNs;
+        long allocated = getThreadAllocatedBytes();
+        if (allocated >= 0 && startAllocated >= 0) {
+            allocatedBytes = Math.max(allocatedBytes, 0) + allocated - startAllocated;
+        }
+        running = false;
+    }
+
+    /**
+     * Přepne na zadanou fázi. Čas se počítá jen mezi {@linkplain #start()}
+     * a {@linkplain #stop()}.
+     *
+     * @param newPhase
+     * @return  předchozí fáze, pro {@linkplain #exit(Phase)}
+     */
+    public Phase enter(Phase newPhase) {
+        Phase previous = phase;
+        if (newPhase != previous) {
+            if (running) {
+                long now = System.nanoTime();
+                phaseNanos[previous.ordinal()] += now - phaseStartNs;
+                phaseStartNs = now;
+            }
+            phase = newPhase;
+        }
+        return previous;
+    }
+
+    /**
+     * Vrátí se k předchozí fázi.
+     *
+     * @param previous  výsledek {@linkplain #enter(Phase)}
+     */
+    public void exit(Phase previous) {
+        enter(previous);
+    }
+
+    public void addBytes(long count) {
+        bytes += count;
+    }
+
+    public void addOutputBytes(long count) {
+        outputBytes += count;
+    }
+
+    public void addBlock(TapBlockType type) {
+        blocks[type.ordinal()]++;
+    }
+
+    public void addBasicLines(long count) {
+        basicLines += count;
+    }
+
+    public void addVariables(long count) {
+        variables += count;
+    }
+
+    /**
+     *
+     * @return  délka zpracovaných TAP
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+    /**
+     *
+     * @param type
+     * @return  počet dvojic bloků (hlavička + data) daného typu
+     */
+    public long getBlocks(TapBlockType type) {
+        return blocks[type.ordinal()];
+    }
+
+    public long getBasicLines() {
+        return basicLines;
+    }
+
+    /**
+     *
+     * @return  počet dekódovaných proměnných v tabulkách proměnných
+     */
+    public long getVariables() {
+        return variables;
+    }
+
+    public long getPhaseNanos(Phase p) {
+        return phaseNanos[p.ordinal()];
+    }
+
+    /**
+     *
+     * @return  čas od {@linkplain #start()} do {@linkplain #stop()}
+     */
+    public long getElapsedNanos() {
+        return elapsedNs;
+    }
+
+    /**
+     *
+     * @return  paměť alokovaná vláknem během převodu, nebo {@code -1},
+     *      pokud to JVM neumí změřit
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     *
+     * @return  MB/s (zpracované byty TAP / celkový čas)
+     */
+    public double getThroughputMBps() {
+        return throughput(bytes, elapsedNs);
+    }
+
+    static double throughput(long bytes, long nanos) {
+        return nanos <= 0 ? 0 : bytes * 1e9 / nanos / (1024 * 1024);
+    }
+
+    /**
+     * Přičte jinou statistiku (např. více souborů jednoho vlákna).
+     *
+     * @param other  ukončená statistika
+     */
+    public void add(TapStats other) {
+        for (int i=0; i<phaseNanos.length; i++) {
+            phaseNanos[i] += other.phaseNanos[i];
+        }
+        for (int i=0; i<blocks.length; i++) {
+            blocks[i] += other.blocks[i];
+        }
+        bytes += other.bytes;
+        outputBytes += other.outputBytes;
+        basicLines += other.basicLines;
+        variables += other.variables;
+        elapsedNs += other.elapsedNs;
+        if (other.allocatedBytes >= 0) {
+            allocatedBytes = Math.max(allocatedBytes, 0) + other.allocatedBytes;
+        }
+    }
+
+    /**
+     * Čitelný výpis, např.: <pre>
+     * stats: 20012 B in 3.1 ms (6.2 MB/s), output 50210 B, allocated 1.3 MB
+     *   blocks: BASIC 1, CODE 2
+     *   BASIC lines: 312, variables: 40
+     *   time: read 0.2 ms (5 %), header ... other 0.1 ms (3 %)
+     * </pre>
+     *
+     * @return  (bez {@code \n} na konci)
+     */
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "stats: %d B in %.1f ms (%.1f MB/s), output %d B",
+                bytes, elapsedNs / 1e6, getThroughputMBps(), outputBytes));
+        if (allocatedBytes >= 0) {
+            sb.append(String.format(Locale.ROOT, ", allocated %.1f MB",
+                    allocatedBytes / (1024.0 * 1024)));
+        }
+        sb.append("\n  blocks:");
+        boolean first = true;
+        for (TapBlockType type : TapBlockType.values()) {
+            if (blocks[type.ordinal()] > 0) {
+                sb.append(first ? " " : ", ").append(type.name())
+                        .append(' ').append(blocks[type.ordinal()]);
+                first = false;
+            }
+        }
+        if (first) {
+            sb.append(" 0");
+        }
+        sb.append("\n  BASIC lines: ").append(basicLines)
+                .append(", variables: ").append(variables);
+        sb.append("\n  time:");
+        for (Phase p : PHASES) {
+            long nanos = phaseNanos[p.ordinal()];
+            sb.append(String.format(Locale.ROOT, " %s %.1f ms (%d %%)%s",
+                    p.name().toLowerCase(Locale.ROOT), nanos / 1e6,
+                    elapsedNs > 0 ? Math.round(nanos * 100.0 / elapsedNs) : 0,
+                    p.ordinal() < PHASES.length - 1 ? "," : ""));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Jeden objekt JSON, např.: <pre>
+     * {"bytes":20012,"outputBytes":50210,"timeMs":3.1,"throughputMBps":6.2,
+     *  "allocatedBytes":1363148,"blocks":{"BASIC":1,"CODE":2},
+     *  "basicLines":312,"variables":40,"phasesMs":{"read":0.2,...}}
+     * </pre>
+     *
+     * @return
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        appendJsonFields(sb);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    /**
+     * Položky objektu JSON, bez závorek (pro {@linkplain TapStatsTotal}).
+     *
+     * @param sb
+     */
+    void appendJsonFields(StringBuilder sb) {
+        sb.append(String.format(Locale.ROOT,
+                "\"bytes\":%d,\"outputBytes\":%d,\"timeMs\":%.3f,\"throughputMBps\":%.3f,"
+                + "\"allocatedBytes\":%d,\"blocks\":{",
+                bytes, outputBytes, elapsedNs / 1e6, getThroughputMBps(), allocatedBytes));
+        boolean first = true;
+        for (TapBlockType type : TapBlockType.values()) {
+            if (blocks[type.ordinal()] > 0) {
+                sb.append(first ? "" : ",").append('"').append(type.name())
+                        .append("\":").append(blocks[type.ordinal()]);
+                first = false;
+            }
+        }
+        sb.append("},\"basicLines\":").append(basicLines)
+                .append(",\"variables\":").append(variables)
+                .append(",\"phasesMs\":{");
+        for (Phase p : PHASES) {
+            sb.append(String.format(Locale.ROOT, "%s\"%s\":%.3f",
+                    p.ordinal() > 0 ? "," : "", p.name().toLowerCase(Locale.ROOT),
+                    phaseNanos[p.ordinal()] / 1e6));
+        }
+        sb.append('}');
+    }
+
+    /**
+     *
+     * @return  celková paměť alokovaná aktuálním vláknem, nebo {@code -1}
+     */
+    private static long getThreadAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspotThreads =
+                    (com.sun.management.ThreadMXBean) threads;
+            if (hotspotThreads.isThreadAllocatedMemorySupported()
+                    && hotspotThreads.isThreadAllocatedMemoryEnabled()) {
+                return hotspotThreads.getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+}   // TapStats.java
@@ -0,0 +1,79 @@
+/*
+ * TapStatsMXBean.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.util.Map;
+
+/**
+ * Souhrnná statistika převodů pro JMX (např. {@code jconsole},
+ * {@code jcmd}) v dávce a v režimu serveru.
+ * Jméno: {@value TapStatsTotal#OBJECT_NAME}.
+ *
+ * @author Martin Pokorný
+ * @see TapStatsTotal
+ */
+public interface TapStatsMXBean {
+
+    /**
+     *
+     * @return  počet převedených souborů (požadavků)
+     */
+    long getFiles();
+
+    long getBytes();
+
+    long getOutputBytes();
+
+    /**
+     *
+     * @return  součet časů převodů (ne doba běhu; vlákna běží souběžně)
+     */
+    long getTimeMs();
+
+    /**
+     *
+     * @return  MB/s jednoho vlákna (byty / součet časů převodů)
+     */
+    double getThroughputMBps();
+
+    /**
+     *
+     * @return  nebo {@code -1}, pokud to JVM neumí změřit
+     */
+    long getAllocatedBytes();
+
+    long getBasicLines();
+
+    long getVariables();
+
+    /**
+     *
+     * @return  typ bloku &rarr; počet
+     */
+    Map<String, Long> getBlocks();
+
+    /**
+     *
+     * @return  fáze &rarr; čas v ms
+     */
+    Map<String, Long> getPhaseTimesMs();
+
+    /**
+     *
+     * @return  soubor s nejdelším převodem (podezřelý TAP), nebo {@code ""}
+     */
+    String getSlowestFile();
+
+    long getSlowestFileMs();
+
+    /**
+     * Vynuluje statistiku.
+     */
+    void reset();
+
+}   // TapStatsMXBean.java
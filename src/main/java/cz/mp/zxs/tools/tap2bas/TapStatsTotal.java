@@ -0,0 +1,235 @@
+/*
+ * TapStatsTotal.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Souhrn statistik ({@linkplain TapStats}) více převodů; mohou ho sdílet
+ * pracovní vlákna dávky nebo serveru. Lze ho zaregistrovat jako MXBean,
+ * viz {@linkplain #register()}.
+ *
+ * @author Martin Pokorný
+ * @see Tap2basBatch#setStats(cz.mp.zxs.tools.tap2bas.TapStatsTotal)
+ */
+public class TapStatsTotal implements TapStatsMXBean {
+    private static final Logger log = LoggerFactory.getLogger(TapStatsTotal.class);
+
+    public static final String OBJECT_NAME = "cz.mp.zxs.tools.tap2bas:type=Stats";
+
+    private TapStats total = new TapStats();
+    private long files = 0;
+    private String slowestFile = "";
+    private long slowestFileNs = 0;
+
+    private ObjectName registeredName;
+
+    /** */
+    public TapStatsTotal() {
+    }
+
+    /**
+     * Přičte statistiku jednoho převodu.
+     *
+     * @param stats  ukončená statistika ({@linkplain TapStats#stop()})
+     * @param fileName  jméno převedeného souboru (pro nejpomalejší soubor)
+     */
+    public synchronized void add(TapStats stats, String fileName) {
+        total.add(stats);
+        files++;
+        if (stats.getElapsedNanos() > slowestFileNs) {
+            slowestFileNs = stats.getElapsedNanos();
+            slowestFile = fileName;
+        }
+    }
+
+    /**
+     *
+     * @return  kopie souhrnu
+     */
+    public synchronized TapStats getTotal() {
+        TapStats copy = new TapStats();
+        copy.add(total);
+        return copy;
+    }
+
+    @Override
+    public synchronized long getFiles() {
+        return files;
+    }
+
+    @Override
+    public synchronized long getBytes() {
+        return total.getBytes();
+    }
+
+    @Override
+    public synchronized long getOutputBytes() {
+        return total.getOutputBytes();
+    }
+
+    @Override
+    public synchronized long getTimeMs() {
+        return total.getElapsedNanos() / 1000000;
+    }
+
+    @Override
+    public synchronized double getThroughputMBps() {
+        return total.getThroughputMBps();
+    }
+
+    @Override
+    public synchronized long getAllocatedBytes() {
+        return total.getAllocatedBytes();
+    }
+
+    @Override
+    public synchronized long getBasicLines() {
+        return total.getBasicLines();
+    }
+
+    @Override
+    public synchronized long getVariables() {
+        return total.getVariables();
+    }
+
+    @Override
+    public synchronized Map<String, Long> getBlocks() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (TapBlockType type : TapBlockType.values()) {
+            result.put(type.name(), total.getBlocks(type));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getPhaseTimesMs() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (TapStats.Phase phase : TapStats.Phase.values()) {
+            result.put(phase.name().toLowerCase(Locale.ROOT),
+                    total.getPhaseNanos(phase) / 1000000);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized String getSlowestFile() {
+        return slowestFile;
+    }
+
+    @Override
+    public synchronized long getSlowestFileMs() {
+        return slowestFileNs / 1000000;
+    }
+
+    @Override
+    public synchronized void reset() {
+        total = new TapStats();
+        files = 0;
+        slowestFile = "";
+        slowestFileNs = 0;
+    }
+
+    /**
+     *
+     * @return  např. <pre>
+     * files: 120, stats: 2400512 B in 310.2 ms (7.4 MB/s), ...
+     *   ...
+     *   slowest: games/x.tap 25.0 ms
+     * </pre>
+     */
+    public synchronized String toText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("files: ").append(files).append(", ").append(total.toText());
+        if (files > 0) {
+            sb.append(String.format(Locale.ROOT, "\n  slowest: %s %.1f ms",
+                    slowestFile, slowestFileNs / 1e6));
+        }
+        return sb.toString();
+    }
+
+    /**
+     *
+     * @return  jeden objekt JSON; položky jako {@linkplain TapStats#toJson()}
+     *      a navíc {@code files}, {@code slowestFile}, {@code slowestFileMs}
+     */
+    public synchronized String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"files\":").append(files).append(',');
+        total.appendJsonFields(sb);
+        sb.append(",\"slowestFile\":");
+        appendJsonString(sb, slowestFile);
+        sb.append(String.format(Locale.ROOT, ",\"slowestFileMs\":%.3f}",
+                slowestFileNs / 1e6));
+        return sb.toString();
+    }
+
+    /**
+     * Řetězec JSON; řídicí znaky a znaky mimo ASCII jako {@code \}{@code uXXXX}.
+     *
+     * @param sb
+     * @param text
+     */
+    private static void appendJsonString(StringBuilder sb, String text) {
+        sb.append('"');
+        for (int i=0; i<text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                sb.append('\\').append(ch);
+            }
+            else if (ch < 0x20 || ch >= 0x7F) {
+                sb.append(String.format("\\u%04x", (int) ch));
+            }
+            else {
+                sb.append(ch);
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Zaregistruje souhrn v platformním {@code MBeanServer}
+     * jako {@value #OBJECT_NAME}. Pokud to nejde (např. jméno už je
+     * obsazeno), jen zapíše varování do logu.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            server.registerMBean(this, name);
+            registeredName = name;
+            log.info("registered MBean " + OBJECT_NAME);
+        } catch (JMException | SecurityException ex) {
+            log.warn("cannot register MBean " + OBJECT_NAME + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Odregistruje souhrn, pokud byl zaregistrován.
+     */
+    public void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException | SecurityException ex) {
+            log.warn("cannot unregister MBean " + OBJECT_NAME + ": " + ex.getMessage());
+        }
+        registeredName = null;
+    }
+
+}   // TapStatsTotal.java
@@ -0,0 +1,196 @@
+/*
+ * TapStreamReader.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Čte TAP ze vstupního proudu po blocích.
+ * <p>
+ * V paměti drží vždy jen jednu dvojici "hlavička + data", tj. nejvýše
+ * {@linkplain #MAX_PAIR_SIZE} bytů, bez ohledu na velikost celého TAP.
+ * Data dvojice jsou ve stejném formátu jako v TAP souboru (včetně 2B délek
+ * bloků), takže nad nimi lze pustit stejnou analýzu jako nad celým souborem.
+ * <p>
+ * Pozice v proudu jsou (stejně jako indexy v celém TAP souboru) typu
+ * {@code int}; delší proud než {@linkplain #MAX_STREAM_SIZE} bytů se
+ * odmítne výjimkou {@code IOException}, místo aby pozice přetekly.
+ *
+ * @author Martin Pokorný
+ * @see Tap2bas#setInStream(java.io.InputStream)
+ */
+public class TapStreamReader implements Closeable {
+
+    private static final int LEN_SIZE = 2;
+    private static final int MAX_BLOCK_SIZE = LEN_SIZE + 0xFFFF;
+    /** Hlavička + blok dat, každý včetně 2B délky. */
+    public static final int MAX_PAIR_SIZE = 2 * MAX_BLOCK_SIZE;
+    /** největší délka proudu, jejíž pozice se vejdou do {@code int} */
+    public static final long MAX_STREAM_SIZE = Integer.MAX_VALUE;
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    private static final int STREAM_BUFFER_SIZE = 16384;
+
+    private final InputStream in;
+    private final long maxStreamSize;
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int length = 0;
+    /** pozice začátku {@code buffer} v celém proudu */
+    private int offset = 0;
+    private long nextOffset = 0;
+
+    /**
+     *
+     * @param in
+     */
+    public TapStreamReader(InputStream in) {
+        this(in, MAX_STREAM_SIZE);
+    }
+
+    /**
+     *
+     * @param in
+     * @param maxStreamSize  nejvýše {@linkplain #MAX_STREAM_SIZE}
+     */
+    TapStreamReader(InputStream in, long maxStreamSize) {
+        if (in == null) {
+            throw new IllegalArgumentException("in=null");
+        }
+        if (maxStreamSize < 0 || maxStreamSize > MAX_STREAM_SIZE) {
+            throw new IllegalArgumentException("maxStreamSize=" + maxStreamSize);
+        }
+        this.maxStreamSize = maxStreamSize;
+        this.in = (in instanceof BufferedInputStream)
+                ? in : new BufferedInputStream(in, STREAM_BUFFER_SIZE);
+    }
+
+    /**
+     *
+     * @param channel
+     */
+    public TapStreamReader(ReadableByteChannel channel) {
+        this(Channels.newInputStream(channel));
+    }
+
+    /**
+     * Načte další blok. Pokud jde o hlavičku, načte i blok dat, který po
+     * ní následuje. Pokud první blok hlavičkou není, načte jen jeho délku;
+     * analýza pak skončí chybou stejně jako při analýze celého souboru.
+     *
+     * @return  {@code false} na konci proudu
+     * @throws IOException  (také {@code EOFException}, pokud je blok useknutý);
+     *      také pokud je proud delší než {@linkplain #MAX_STREAM_SIZE}
+     */
+    public boolean readNext() throws IOException {
+        // (nextOffset <= maxStreamSize, viz níže)
+        offset = (int) nextOffset;
+        length = 0;
+
+        int first = in.read();
+        if (first < 0) {
+            return false;
+        }
+        if (offset >= maxStreamSize) {
+            throw new IOException("TAP stream is too big; max size = "
+                    + maxStreamSize + " B");
+        }
+        ensureCapacity(LEN_SIZE);
+        buffer[length++] = (byte) first;
+        readFully(1);
+        int blockLen = lsbMSB(0);
+
+        if (blockLen == Tap2bas.DEFAULT_HEADER_SIZE) {
+            readFully(blockLen);
+            if ((buffer[LEN_SIZE] & 0xFF) == Tap2bas.FLAG_HEADER) {
+                // ---- blok dat následující po hlavičce:
+                int dataLenIdx = length;
+                readFully(LEN_SIZE);
+                readFully(lsbMSB(dataLenIdx));
+            }
+        }
+        nextOffset = (long) offset + length;
+        if (nextOffset > maxStreamSize) {
+            throw new IOException("TAP stream is too big; max size = "
+                    + maxStreamSize + " B");
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @param count
+     * @throws IOException
+     */
+    private void readFully(int count) throws IOException {
+        ensureCapacity(length + count);
+        int end = length + count;
+        while (length < end) {
+            int readed = in.read(buffer, length, end - length);
+            if (readed < 0) {
+                long idx = (long) offset + length;
+                throw new EOFException("truncated TAP; index = " + idx
+                        + " (0x" + Long.toHexString(idx) + ")");
+            }
+            length += readed;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            int newSize = buffer.length;
+            while (newSize < capacity) {
+                newSize *= 2;
+            }
+            byte[] newBuffer = new byte[Math.min(newSize, MAX_PAIR_SIZE)];
+            System.arraycopy(buffer, 0, newBuffer, 0, length);
+            buffer = newBuffer;
+        }
+    }
+
+    private int lsbMSB(int idx) {
+        return (buffer[idx] & 0xFF) + (buffer[idx + 1] & 0xFF) * 256;
+    }
+
+    /**
+     * Data naposledy načtené dvojice bloků.
+     * Pole se znovu používá, platné je jen {@linkplain #getLength()} bytů.
+     *
+     * @return
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     *
+     * @return  počet platných bytů v {@linkplain #getBuffer()}
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     *
+     * @return  pozice začátku naposledy načtené dvojice bloků v celém proudu
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+}   // TapStreamReader.java
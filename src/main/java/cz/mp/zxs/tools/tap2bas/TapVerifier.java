@@ -0,0 +1,347 @@
+/*
+ * TapVerifier.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Rychlá kontrola struktury TAP bez analýzy obsahu bloků: délky bloků,
+ * flagy, hlavičky (délka, typ), délka bloku dat podle hlavičky
+ * a parita (XOR všech bytů bloku včetně flagu a parity musí být 0).
+ * <p>
+ * Parita se počítá po 8 bytech ({@code long}) a výsledek se nakonec
+ * "složí" do jednoho bytu, viz {@linkplain #xor(java.nio.ByteBuffer, int, int)}.
+ * Kontrola tak jde rychlostí blízkou čtení paměti a hodí se k roztřídění
+ * souborů před (pomalejším) převodem.
+ *
+ * @author Martin Pokorný
+ * @see Tap2basCli
+ * @see Tap2basBatch#setVerifyOnly(boolean)
+ */
+public class TapVerifier {
+
+    private static final int LEN_SIZE = 2;
+
+    /**
+     * Chyba bloku.
+     */
+    public static enum Problem {
+        /** XOR bytů bloku není 0. */
+        PARITY("parity"),
+        /** Blok (nebo jeho 2B délka) přesahuje konec souboru. */
+        TRUNCATED("truncated"),
+        /** Blok nemá ani flag a paritu (délka {@code < 2}). */
+        EMPTY("empty block"),
+        /** Hlavička (flag {@code 0x00}) nemá 19 B. */
+        HEADER_LENGTH("header length"),
+        /** Neznámý typ v hlavičce. */
+        HEADER_TYPE("header type"),
+        /** Za hlavičkou není blok dat (s flagem {@code 0xFF}). */
+        FLAG("flag"),
+        /** Délka bloku dat neodpovídá délce dat v hlavičce. */
+        DATA_LENGTH("data length"),
+        ;
+
+        private final String description;
+
+        private Problem(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /**
+     * Blok s chybou.
+     */
+    public static final class BadBlock {
+        private final int blockNum;
+        private final int offset;
+        private final int length;
+        private final int flag;
+        private final int xor;
+        private final int expectedLength;
+        private final EnumSet<Problem> problems;
+
+        BadBlock(int blockNum, int offset, int length, int flag, int xor,
+                int expectedLength, EnumSet<Problem> problems) {
+            this.blockNum = blockNum;
+            this.offset = offset;
+            this.length = length;
+            this.flag = flag;
+            this.xor = xor;
+            this.expectedLength = expectedLength;
+            this.problems = problems;
+        }
+
+        /**
+         *
+         * @return  číslo bloku (od 0), stejně jako u {@code --list}
+         */
+        public int getBlockNum() {
+            return blockNum;
+        }
+
+        /**
+         *
+         * @return  pozice začátku bloku (jeho 2B délky) v TAP
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         *
+         * @return  délka bloku (včetně flagu a parity, bez 2B délky);
+         *      u useknuté 2B délky {@code -1}
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         *
+         * @return  flag bloku, nebo {@code -1}, pokud blok nemá ani flag
+         */
+        public int getFlag() {
+            return flag;
+        }
+
+        /**
+         *
+         * @return  XOR všech bytů bloku (správně {@code 0})
+         */
+        public int getXor() {
+            return xor;
+        }
+
+        public EnumSet<Problem> getProblems() {
+            return EnumSet.copyOf(problems);
+        }
+
+        public boolean hasProblem(Problem problem) {
+            return problems.contains(problem);
+        }
+
+        private String getProblemsText(int tapSize) {
+            StringBuilder sb = new StringBuilder();
+            for (Problem problem : problems) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(problem.getDescription());
+                if (problem == Problem.PARITY) {
+                    sb.append(String.format(" (xor = 0x%02x)", xor));
+                }
+                else if (problem == Problem.TRUNCATED && length >= 0) {
+                    sb.append(" (missing ")
+                            .append(offset + LEN_SIZE + length - tapSize)
+                            .append(" B)");
+                }
+                else if (problem == Problem.DATA_LENGTH) {
+                    sb.append(" (header: ").append(expectedLength).append(')');
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Výsledek kontroly jednoho TAP.
+     */
+    public static final class Report {
+        private final int tapSize;
+        private final int blockCount;
+        private final List<BadBlock> badBlocks;
+
+        Report(int tapSize, int blockCount, List<BadBlock> badBlocks) {
+            this.tapSize = tapSize;
+            this.blockCount = blockCount;
+            this.badBlocks = Collections.unmodifiableList(badBlocks);
+        }
+
+        public int getTapSize() {
+            return tapSize;
+        }
+
+        /**
+         *
+         * @return  počet všech bloků (i chybných)
+         */
+        public int getBlockCount() {
+            return blockCount;
+        }
+
+        public List<BadBlock> getBadBlocks() {
+            return badBlocks;
+        }
+
+        public boolean isOk() {
+            return badBlocks.isEmpty();
+        }
+
+        /**
+         *
+         * @return  např. {@code blocks: 24, bad: 2}
+         */
+        public String getSummary() {
+            return "blocks: " + blockCount + ", bad: " + badBlocks.size();
+        }
+
+        /**
+         * Vypíše souhrn a tabulku chybných bloků.
+         *
+         * @param out
+         * @param indent  odsazení řádků tabulky
+         * @throws IOException
+         */
+        public void writeReport(AsciiOutput out, String indent) throws IOException {
+            out.write(getSummary());
+            out.write('\n');
+            writeBadBlocks(out, indent);
+        }
+
+        /**
+         * Vypíše tabulku chybných bloků (pokud nějaké jsou).
+         *
+         * @param out
+         * @param indent  odsazení řádků tabulky
+         * @throws IOException
+         */
+        public void writeBadBlocks(AsciiOutput out, String indent) throws IOException {
+            if (badBlocks.isEmpty()) {
+                return;
+            }
+            out.write(indent);
+            out.write("   #  offset    length  flag  problem\n");
+            for (BadBlock block : badBlocks) {
+                String flagText = block.flag < 0
+                        ? "  - " : String.format("0x%02x", block.flag);
+                String lengthText = block.length < 0
+                        ? "-" : String.valueOf(block.length);
+                out.write(indent);
+                out.write(String.format("%4d  0x%06x  %6s  %s  %s\n",
+                        block.blockNum, block.offset, lengthText, flagText,
+                        block.getProblemsText(tapSize)));
+            }
+        }
+    }
+
+
+    private TapVerifier() {
+    }
+
+    /**
+     * Zkontroluje všechny bloky TAP. Nevyhazuje výjimku kvůli chybnému
+     * formátu; useknutý blok je vždy poslední.
+     *
+     * @param tap  obsah TAP (od {@code position} do {@code limit};
+     *      pozice se nemění)
+     * @return
+     */
+    public static Report verify(ByteBuffer tap) {
+        ByteBuffer data = tap.slice();
+        int size = data.limit();
+        List<BadBlock> badBlocks = new ArrayList<>();
+        int blockNum = 0;
+        int idx = 0;
+        // délka bloku dat podle předchozí hlavičky; -1 = nebyla hlavička
+        int expectedDataLen = -1;
+        while (idx < size) {
+            if (idx + LEN_SIZE > size) {
+                badBlocks.add(new BadBlock(blockNum, idx, -1, -1, 0, -1,
+                        EnumSet.of(Problem.TRUNCATED)));
+                blockNum++;
+                break;
+            }
+            int len = (data.get(idx) & 0xFF) | (data.get(idx + 1) & 0xFF) << 8;
+            int start = idx + LEN_SIZE;
+            int end = Math.min(start + len, size);
+            int flag = len > 0 && start < size ? data.get(start) & 0xFF : -1;
+            int xor = xor(data, start, end);
+
+            EnumSet<Problem> problems = EnumSet.noneOf(Problem.class);
+            boolean complete = start + len <= size;
+            if (! complete) {
+                problems.add(Problem.TRUNCATED);
+            }
+            else if (xor != 0) {
+                problems.add(Problem.PARITY);
+            }
+            if (len < 2) {
+                problems.add(Problem.EMPTY);
+            }
+            int expectedLength = expectedDataLen;
+            expectedDataLen = -1;
+            if (expectedLength >= 0) {
+                if (flag != Tap2bas.FLAG_DATA) {
+                    problems.add(Problem.FLAG);
+                }
+                else if (complete && len != expectedLength) {
+                    problems.add(Problem.DATA_LENGTH);
+                }
+            }
+            if (flag == Tap2bas.FLAG_HEADER) {
+                if (len != Tap2bas.DEFAULT_HEADER_SIZE) {
+                    problems.add(Problem.HEADER_LENGTH);
+                }
+                else if (complete) {
+                    if (TapBlockType.getByNum(data.get(start + 1) & 0xFF) == null) {
+                        problems.add(Problem.HEADER_TYPE);
+                    }
+                    // délka dat + flag a parita
+                    int p = start + 2 + Tap2bas.NAME_IN_HEADER_LEN;
+                    expectedDataLen = ((data.get(p) & 0xFF)
+                            | (data.get(p + 1) & 0xFF) << 8) + 2;
+                }
+            }
+            if (! problems.isEmpty()) {
+                badBlocks.add(new BadBlock(blockNum, idx, len, flag, xor,
+                        expectedLength, problems));
+            }
+            blockNum++;
+            idx = start + len;
+        }
+        return new Report(size, blockNum, badBlocks);
+    }
+
+    /**
+     * XOR bytů v rozsahu; čte po 8 bytech a výsledek nakonec složí
+     * do jednoho bytu.
+     *
+     * @param data
+     * @param from  (včetně)
+     * @param to  (bez)
+     * @return  {@code 0 - 255}
+     */
+    public static int xor(ByteBuffer data, int from, int to) {
+        long acc = 0;
+        int i = from;
+        int wordsEnd = to - 7;
+        for (; i < wordsEnd; i += 8) {
+            acc ^= data.getLong(i);
+        }
+        // (pořadí bytů v long nehraje pro XOR roli)
+        acc ^= acc >>> 32;
+        acc ^= acc >>> 16;
+        acc ^= acc >>> 8;
+        int result = (int) acc;
+        for (; i < to; i++) {
+            result ^= data.get(i);
+        }
+        return result & 0xFF;
+    }
+
+}   // TapVerifier.java
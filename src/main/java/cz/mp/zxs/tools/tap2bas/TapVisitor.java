@@ -0,0 +1,275 @@
+/*
+ * TapVisitor.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.IOException;
+
+/**
+ * Události při procházení TAP, viz
+ * {@linkplain Tap2bas#visit(TapVisitor, boolean, boolean)}.
+ * Rozebrání TAP (hlavičky, řádky BASICu, tabulka proměnných) dělá
+ * {@code Tap2bas}, formát výstupu je jen na "návštěvníkovi";
+ * textový výstup programu je {@linkplain TextTapVisitor}.
+ * <p>
+ * Data se předávají jako {@linkplain TapByteArrayData} nastavený na začátek
+ * příslušných bytů (bez kopírování); jejich pozici v TAP vrací
+ * {@linkplain TapByteArrayData#getTapOffset()}. Z {@code data} lze číst jen v rámci
+ * volání; po návratu pokračuje {@code Tap2bas} za koncem těchto bytů,
+ * i když je návštěvník nepřečetl.
+ * <p>
+ * Celý TAP je mezi {@code tapStart} a {@code tapEnd},
+ * události jedné dvojice bloků "hlavička + data": <pre>
+ * header, (basicStart, basicLine (, embeddedNumber)*, ...,
+ *     (varsStart, proměnné ..., invalidVars)?, basicEnd | binaryBlock)
+ * </pre>
+ * Proměnná je jedna z událostí {@code stringVariable}, {@code numberVariable},
+ * {@code forLoopVariable}, nebo pole: <pre>
+ * numericArrayStart | stringArrayStart, arrayDimensions, arrayDimension*,
+ *     (arrayValues, numericArrayElement* | stringArrayItem*)?, arrayEnd
+ * </pre>
+ * Pokud pole nelze přečíst, {@code arrayEnd} nenásleduje
+ * (následuje {@code invalidVars}).
+ * V režimu obnovy ({@linkplain Tap2bas#setRecover(boolean)}) může kdykoliv
+ * přijít {@code skipped}; rozpracovaná dvojice bloků pak nepokračuje.
+ * Při deduplikaci ({@linkplain Tap2bas#setDedup(BlockDedupTable, String)})
+ * může místo bloku dat přijít {@code duplicateBlock}.
+ *
+ * @author Martin Pokorný
+ * @see TapVisitorAdapter
+ * @see TextTapVisitor
+ */
+public interface TapVisitor {
+
+    /**
+     * Začátek procházení TAP.
+     *
+     * @throws IOException
+     */
+    void tapStart() throws IOException;
+
+    /**
+     * Konec procházení TAP. Volá se i po chybě formátu TAP
+     * (před vyhozením {@linkplain InvalidTapException}), ne však po
+     * {@code IOException}.
+     *
+     * @throws IOException
+     */
+    void tapEnd() throws IOException;
+
+    /**
+     * Blok s hlavičkou má jinou velikost, než 19 B; zpracování TAP pak končí
+     * výjimkou {@linkplain InvalidTapException}.
+     *
+     * @param offset  pozice bloku v TAP
+     * @param blockLength
+     * @throws IOException
+     */
+    void invalidHeader(int offset, int blockLength) throws IOException;
+
+    /**
+     * (Jen pokud se nezpracovávají pouze BASIC programy.)
+     *
+     * @param offset  pozice bloku s hlavičkou v TAP (začátek jeho 2B délky)
+     * @param type
+     * @param name  jméno z hlavičky (bez mezer na konci)
+     * @param dataLength
+     * @param p1  parametr 1 (pro pole: LSB = 0, MSB = jméno proměnné)
+     * @param p2  parametr 2
+     * @throws IOException
+     */
+    void header(int offset, TapBlockType type, String name, 
+            int dataLength, int p1, int p2) throws IOException;
+
+    /**
+     *
+     * @param offset  pozice bloku dat v TAP (začátek jeho 2B délky)
+     * @param dataLength  délka dat programu (včetně tabulky proměnných)
+     * @throws IOException
+     */
+    void basicStart(int offset, int dataLength) throws IOException;
+
+    /**
+     * Jedna řádka programu v BASICu. (Před {@code data} jsou ještě
+     * 2B číslo řádky a 2B délka.)
+     *
+     * @param lineNum
+     * @param data  na začátku příkazů řádky (tokeny, text, čísla ...)
+     * @param length  počet bytů řádky (včetně {@code 0x0D} na konci)
+     * @throws IOException
+     * @throws InvalidTapException
+     * @see TapByteArrayData#readBlockAndReturnAsEscapedString(int)
+     */
+    void basicLine(int lineNum, TapByteArrayData data, int length)
+            throws IOException, InvalidTapException;
+
+    /**
+     * Vrací {@code true}, pokud se mají hlásit i čísla ve vnitřní
+     * reprezentaci uvnitř řádek ({@code 0x0E} + 5 B za textem čísla).
+     * Jinak se řádky kvůli nim neprocházejí.
+     *
+     * @return
+     */
+    boolean isEmbeddedNumbersWanted();
+
+    /**
+     * Číslo ve vnitřní reprezentaci v řádce BASICu
+     * (po {@linkplain #basicLine(int, TapByteArrayData, int)}).
+     *
+     * @param lineNum
+     * @param data  na začátku 5 B čísla
+     * @throws IOException
+     * @see TapByteArrayData#readBlockAndParseBasicNumber()
+     */
+    void embeddedNumber(int lineNum, TapByteArrayData data) throws IOException;
+
+    /**
+     * Začátek tabulky proměnných za programem.
+     *
+     * @param data  na začátku tabulky proměnných
+     * @param length
+     * @throws IOException
+     */
+    void varsStart(TapByteArrayData data, int length) throws IOException;
+
+    /**
+     *
+     * @param name
+     * @param data  na začátku textu
+     * @param length
+     * @throws IOException
+     * @throws InvalidTapException
+     */
+    void stringVariable(char name, TapByteArrayData data, int length)
+            throws IOException, InvalidTapException;
+
+    /**
+     *
+     * @param name  jméno z jednoho, nebo z více znaků
+     * @param data  na začátku 5 B čísla
+     * @throws IOException
+     */
+    void numberVariable(String name, TapByteArrayData data) throws IOException;
+
+    /**
+     * Řídící proměnná cyklu {@code FOR}.
+     *
+     * @param name
+     * @param data  na začátku tří 5 B čísel: hodnota, konečná hodnota, krok
+     * @param lineNumForNext  řádka, na kterou se cyklus vrací po {@code NEXT}
+     * @param cmdNumAfterNext  číslo příkazu na řádce
+     * @throws IOException
+     */
+    void forLoopVariable(char name, TapByteArrayData data,
+            int lineNumForNext, int cmdNumAfterNext) throws IOException;
+
+    void numericArrayStart(char name) throws IOException;
+
+    void stringArrayStart(char name) throws IOException;
+
+    /**
+     *
+     * @param count  počet rozměrů pole
+     * @throws IOException
+     */
+    void arrayDimensions(int count) throws IOException;
+
+    /**
+     *
+     * @param index  pořadí rozměru (od 0)
+     * @param size
+     * @throws IOException
+     */
+    void arrayDimension(int index, int size) throws IOException;
+
+    /**
+     * Za rozměry následují hodnoty (u číselného pole jen pokud nějaké má).
+     *
+     * @throws IOException
+     */
+    void arrayValues() throws IOException;
+
+    /**
+     * Prvky jsou po řádcích ("row-major"), tj. poslední rozměr se mění
+     * nejrychleji.
+     *
+     * @param index  pořadí prvku (od 0)
+     * @param data  na začátku 5 B čísla
+     * @throws IOException
+     */
+    void numericArrayElement(int index, TapByteArrayData data) throws IOException;
+
+    /**
+     *
+     * @param index
+     * @param data  na začátku textu
+     * @param length
+     * @throws IOException
+     * @throws InvalidTapException
+     */
+    void stringArrayItem(int index, TapByteArrayData data, int length)
+            throws IOException, InvalidTapException;
+
+    void arrayEnd() throws IOException;
+
+    /**
+     * Tabulku proměnných nelze dál číst (nejspíš obsahuje strojový kód);
+     * zbytek tabulky se přeskočí.
+     *
+     * @param offset  pozice chybného bytu v TAP
+     * @throws IOException
+     */
+    void invalidVars(int offset) throws IOException;
+
+    /**
+     * Poškozený úsek TAP byl přeskočen, analýza pokračuje další hlavičkou.
+     * (Jen pokud se nezpracovávají pouze BASIC programy.)
+     *
+     * @param offset  začátek dvojice bloků, ve které nastala chyba
+     * @param length  počet přeskočených bytů
+     * @param reason  popis chyby
+     * @throws IOException
+     * @see Tap2bas#setRecover(boolean)
+     */
+    void skipped(int offset, int length, String reason) throws IOException;
+
+    /**
+     * Blok dat je stejný jako dříve zpracovaný blok; nedekóduje se.
+     * (I pokud se zpracovávají pouze BASIC programy, pak jen pro BASIC.)
+     *
+     * @param offset  pozice bloku dat v TAP (začátek jeho 2B délky)
+     * @param type  typ z hlavičky
+     * @param length  počet bytů dat (bez flagu a parity)
+     * @param source  TAP s prvním výskytem bloku
+     * @param sourceOffset  pozice prvního výskytu v {@code source}
+     * @throws IOException
+     * @see BlockDedupTable
+     */
+    void duplicateBlock(int offset, TapBlockType type, int length,
+            String source, int sourceOffset) throws IOException;
+
+    /**
+     * Konec programu v BASICu (i s případnou tabulkou proměnných).
+     *
+     * @throws IOException
+     */
+    void basicEnd() throws IOException;
+
+    /**
+     * Blok dat jiného typu než program v BASICu (např. kód, {@code SCREEN$}).
+     * (Jen pokud se nezpracovávají pouze BASIC programy.)
+     *
+     * @param offset  pozice bloku dat v TAP (začátek jeho 2B délky)
+     * @param type
+     * @param data  na začátku dat (za flagem)
+     * @param length  počet bytů dat (bez flagu a parity)
+     * @throws IOException
+     */
+    void binaryBlock(int offset, TapBlockType type, TapByteArrayData data, 
+            int length) throws IOException;
+
+}   // TapVisitor.java
@@ -0,0 +1,129 @@
+/*
+ * TapVisitorAdapter.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.IOException;
+
+/**
+ * {@linkplain TapVisitor}, který nic nedělá; stačí přepsat jen potřebné
+ * události. Čísla uvnitř řádek BASICu se nehlásí
+ * (viz {@linkplain #isEmbeddedNumbersWanted()}).
+ *
+ * @author Martin Pokorný
+ */
+public abstract class TapVisitorAdapter implements TapVisitor {
+
+    @Override
+    public void tapStart() throws IOException {
+    }
+
+    @Override
+    public void tapEnd() throws IOException {
+    }
+
+    @Override
+    public void invalidHeader(int offset, int blockLength) throws IOException {
+    }
+
+    @Override
+    public void header(int offset, TapBlockType type, String name,
+            int dataLength, int p1, int p2) throws IOException {
+    }
+
+    @Override
+    public void basicStart(int offset, int dataLength) throws IOException {
+    }
+
+    @Override
+    public void basicLine(int lineNum, TapByteArrayData data, int length)
+            throws IOException, InvalidTapException {
+    }
+
+    @Override
+    public boolean isEmbeddedNumbersWanted() {
+        return false;
+    }
+
+    @Override
+    public void embeddedNumber(int lineNum, TapByteArrayData data) throws IOException {
+    }
+
+    @Override
+    public void varsStart(TapByteArrayData data, int length) throws IOException {
+    }
+
+    @Override
+    public void stringVariable(char name, TapByteArrayData data, int length)
+            throws IOException, InvalidTapException {
+    }
+
+    @Override
+    public void numberVariable(String name, TapByteArrayData data) throws IOException {
+    }
+
+    @Override
+    public void forLoopVariable(char name, TapByteArrayData data,
+            int lineNumForNext, int cmdNumAfterNext) throws IOException {
+    }
+
+    @Override
+    public void numericArrayStart(char name) throws IOException {
+    }
+
+    @Override
+    public void stringArrayStart(char name) throws IOException {
+    }
+
+    @Override
+    public void arrayDimensions(int count) throws IOException {
+    }
+
+    @Override
+    public void arrayDimension(int index, int size) throws IOException {
+    }
+
+    @Override
+    public void arrayValues() throws IOException {
+    }
+
+    @Override
+    public void numericArrayElement(int index, TapByteArrayData data) throws IOException {
+    }
+
+    @Override
+    public void stringArrayItem(int index, TapByteArrayData data, int length)
+            throws IOException, InvalidTapException {
+    }
+
+    @Override
+    public void arrayEnd() throws IOException {
+    }
+
+    @Override
+    public void invalidVars(int offset) throws IOException {
+    }
+
+    @Override
+    public void skipped(int offset, int length, String reason) throws IOException {
+    }
+
+    @Override
+    public void duplicateBlock(int offset, TapBlockType type, int length,
+            String source, int sourceOffset) throws IOException {
+    }
+
+    @Override
+    public void basicEnd() throws IOException {
+    }
+
+    @Override
+    public void binaryBlock(int offset, TapBlockType type, TapByteArrayData data,
+            int length) throws IOException {
+    }
+
+}   // TapVisitorAdapter.java
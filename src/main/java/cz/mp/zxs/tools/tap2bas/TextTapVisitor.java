@@ -0,0 +1,294 @@
+/*
+ * TextTapVisitor.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.IOException;
+
+/**
+ * Textový výstup programu: výpis BASIC programů, hlavičky, analýza
+ * tabulky proměnných, {@code hexdump} a {@code 'decadic' dump} ostatních
+ * bloků.
+ * <p>
+ * Např.: <pre><tt>
+ * === BASIC program  name="myprog"  dataLength=17808  p1=9005  p2=15931
+ * 10 PRINT "Hello"
+ * </tt></pre>
+ *
+ * @author Martin Pokorný
+ * @see Tap2bas#analyzeAll()
+ */
+public class TextTapVisitor implements TapVisitor {
+
+    private final AsciiOutput out;
+
+    /** Aktuální pole je číselné (jinak řetězcové). */
+    private boolean numericArray;
+    private int[] dimSizes = new int[0];
+    private int[] limits = new int[0];
+
+    /**
+     *
+     * @param out
+     */
+    public TextTapVisitor(AsciiOutput out) {
+        if (out == null) {
+            throw new IllegalArgumentException("out=null");
+        }
+        this.out = out;
+    }
+
+    @Override
+    public void tapStart() throws IOException {
+    }
+
+    @Override
+    public void tapEnd() throws IOException {
+    }
+
+    @Override
+    public void invalidHeader(int offset, int blockLength) throws IOException {
+        out.write("\nERROR: Invalid header size. " + blockLength
+                + "; index = " + offset + " (0x" + Integer.toHexString(offset) + ")");
+    }
+
+    @Override
+    public void header(int offset, TapBlockType type, String name,
+            int dataLength, int p1, int p2) throws IOException {
+        out.write("\n=== ");
+        out.write(type.getDescription());
+        out.write("  name=\"");
+        out.write(name);
+        out.write("\"");
+        out.write("  dataLength=");
+        out.writeInt(dataLength);
+        out.write("  p1=");
+        if (type == TapBlockType.NUMBERS || type == TapBlockType.TEXTS) {
+            // pole čísel | pole znaků:   parameter 1 =  "0 , jméno_proměnné"
+            writeByteAndChar(p1 & 0xFF);
+            out.write(' ');
+            writeByteAndChar(p1 >> 8);
+        }
+        else {
+            out.writeInt(p1);
+        }
+        out.write("  p2=");
+        out.writeInt(p2);
+        out.write("\n");
+    }
+
+    private void writeByteAndChar(int b) throws IOException {
+        out.writeInt(b);
+        if (TapByteArrayData.isPrintableChar(b)) {
+            out.write('(');
+            out.write((char) b);
+            out.write(')');
+        }
+    }
+
+    @Override
+    public void basicStart(int offset, int dataLength) throws IOException {
+    }
+
+    @Override
+    public void basicLine(int lineNum, TapByteArrayData data, int length)
+            throws IOException, InvalidTapException {
+        out.writeInt(lineNum);
+        out.write(' ');
+        out.write(data.readBlockAndReturnAsEscapedString(length));
+        out.write('\n');
+    }
+
+    @Override
+    public boolean isEmbeddedNumbersWanted() {
+        return false;   // (jsou i jako text)
+    }
+
+    @Override
+    public void embeddedNumber(int lineNum, TapByteArrayData data) throws IOException {
+    }
+
+    @Override
+    public void varsStart(TapByteArrayData data, int length) throws IOException {
+        // 1. VARS jen jako hexdump;
+        out.write("--- table of variables (VARS) -- hexdump: \n");
+        out.write("    length = ");
+        out.writeInt(length);
+        out.write("\n");
+        data.writeBlockAsHexDump(length, out);
+        // 2. VARS znovu, ale tentokrát jako analýza
+        out.write("--- table of variables (VARS) -- analyzed: \n");
+    }
+
+    @Override
+    public void stringVariable(char name, TapByteArrayData data, int length)
+            throws IOException, InvalidTapException {
+        out.write(name);
+        out.write(" = ");
+        String text = data.readBlockAndReturnAsEscapedString(length);
+        out.write("\"");
+        out.write(text);
+        out.write("\"");
+        out.write("   -- string\n");
+    }
+
+    @Override
+    public void numberVariable(String name, TapByteArrayData data) throws IOException {
+        out.write(name);
+        out.write(" = ");
+        data.readBlockAndWriteBasicNumber(out);
+        if (name.length() == 1) {
+            out.write("   -- numeric (one character name)\n");
+        }
+        else {
+            out.write("   -- numeric (multi character name)\n");
+        }
+    }
+
+    @Override
+    public void forLoopVariable(char name, TapByteArrayData data,
+            int lineNumForNext, int cmdNumAfterNext) throws IOException {
+        out.write(name);
+        out.write(" = ");
+        data.readBlockAndWriteBasicNumber(out);
+        out.write("  to = ");
+        data.readBlockAndWriteBasicNumber(out);
+        out.write("  step = ");
+        data.readBlockAndWriteBasicNumber(out);
+        out.write("  lineNumForNext = ");
+        out.writeInt(lineNumForNext);
+        out.write("  cmdNumAfterNext = ");
+        out.writeInt(cmdNumAfterNext);
+        out.write("   -- variable for loop\n");
+    }
+
+    @Override
+    public void numericArrayStart(char name) throws IOException {
+        numericArray = true;
+        out.write(name);
+        out.write(":  ");
+    }
+
+    @Override
+    public void stringArrayStart(char name) throws IOException {
+        numericArray = false;
+        out.write(name);
+        out.write(" = ");
+    }
+
+    @Override
+    public void arrayDimensions(int count) throws IOException {
+        out.write("dimensions = ");
+        out.writeInt(count);
+        out.write("\n");
+        if (dimSizes.length != count) {
+            dimSizes = new int[count];
+        }
+    }
+
+    @Override
+    public void arrayDimension(int index, int size) throws IOException {
+        out.write("    dim ");
+        out.writeInt(index + 1);
+        out.write(":  size = ");
+        out.writeInt(size);
+        out.write("\n");
+        dimSizes[index] = size;
+    }
+
+    @Override
+    public void arrayValues() throws IOException {
+        out.write("    values = \n");
+        if (numericArray) {
+            out.write("      ");
+            // nový řádek výpisu po každém "řádku" pole
+            if (limits.length != dimSizes.length) {
+                limits = new int[dimSizes.length];
+            }
+            limits[0] = 1;
+            for (int k=1; k<limits.length; k++) {
+                limits[k] = limits[k-1] * dimSizes[k-1];
+            }
+        }
+    }
+
+    @Override
+    public void numericArrayElement(int index, TapByteArrayData data) throws IOException {
+        if (index > 0) {
+            for (int j=1; j<limits.length; j++) {
+                if (index % limits[j] == 0) {
+                    out.write("\n      ");
+                }
+            }
+        }
+        data.readBlockAndWriteBasicNumber(out);
+        out.write(", ");
+    }
+
+    @Override
+    public void stringArrayItem(int index, TapByteArrayData data, int length)
+            throws IOException, InvalidTapException {
+        String text = data.readBlockAndReturnAsEscapedString(length);
+        out.write("      \"");
+        out.write(text);
+        out.write("\", ");
+        if (index != dimSizes.length - 1) {
+            out.write("\n      ");
+        }
+    }
+
+    @Override
+    public void arrayEnd() throws IOException {
+        if (numericArray) {
+            out.write("\n    -- numeric array\n");
+        }
+        else {
+            out.write("\n    -- string array\n");
+        }
+    }
+
+    @Override
+    public void invalidVars(int offset) throws IOException {
+        out.write("Invalid data. Table of variables probably contains a machine code. ");
+        out.write("Byte at: 0x" + Integer.toHexString(offset) + "\n");
+        out.write("ERROR: Invalid table of variables");
+    }
+
+    @Override
+    public void skipped(int offset, int length, String reason) throws IOException {
+        out.write("\n--- skipped damaged data: index = " + offset 
+                + " (0x" + Integer.toHexString(offset) + ")"
+                + ", length = " + length + "; " + reason + "\n");
+        out.endOfBlock();
+    }
+
+    @Override
+    public void duplicateBlock(int offset, TapBlockType type, int length,
+            String source, int sourceOffset) throws IOException {
+        out.write("--- duplicate data block (" + length + " B): same as " 
+                + source + ", index = " + sourceOffset 
+                + " (0x" + Integer.toHexString(sourceOffset) + ")\n");
+        out.endOfBlock();
+    }
+
+    @Override
+    public void basicEnd() throws IOException {
+        out.endOfBlock();
+    }
+
+    @Override
+    public void binaryBlock(int offset, TapBlockType type, TapByteArrayData data,
+            int length) throws IOException {
+        data.writeBlockAsHexDump(length, out);
+        out.write("--- same data -- \"decimal\" dump: \n");
+        data.back(length);
+        data.writeBlockAsDecadicDump(length, out);
+        out.write("\n");
+        out.endOfBlock();
+    }
+
+}   // TextTapVisitor.java
@@ -0,0 +1,577 @@
+/*
+ * EndToEndBenchmark.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_ERR_GENERAL;
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_ERR_OPTS;
+import static cz.mp.zxs.tools.tap2bas.Tap2basCli.RESULT_OK;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Makrobenchmark: celá cesta z příkazové řádky
+ * ({@code Tap2basCli.executeWithArgs} → {@code Tap2bas}, včetně čtení
+ * souboru, zápisu výstupu a logování) nad korpusem tisíců
+ * syntetických TAP souborů.
+ * <p>
+ * Pro každý režim ({@code onlyBasic}, {@code withoutVars}, {@code all})
+ * změří dobu (nejlepšího) průchodu korpusem, soubory/s, MB/s (vstupu) a GC
+ * (počet, celkový čas, nejdelší pauza); za celý běh pak maximální
+ * RSS procesu. Výsledek zapíše jako JSON.
+ * <p>
+ * Se zadaným {@code --baseline} porovná propustnost (MB/s) s uloženým
+ * výsledkem a skončí s chybou {@linkplain #RESULT_REGRESSION}, pokud
+ * je v některém režimu pomalejší o více než {@code --threshold} procent.
+ * Absolutní propustnost platí jen pro stroj, na kterém se měřila; pokud
+ * byl uložený výsledek změřen na jiném stroji (jiné {@code "host"}, viz
+ * {@linkplain #getHostId()}), zpomalení se jen vypíše jako varování.
+ * <p>
+ * Spouští se profilem {@code perf}:
+ * <pre>
+ *   mvn -Pperf verify
+ * </pre>
+ *
+ * @author Martin Pokorný
+ * @see TapGenerator
+ */
+public class EndToEndBenchmark {
+
+    /** propustnost je horší než v uloženém výsledku */
+    public static final int RESULT_REGRESSION = 4;
+
+    private static final String[] MODES = { "onlyBasic", "withoutVars", "all" };
+
+    private static final Pattern RESULT_LINE = Pattern.compile(
+            "\"mode\": \"(\\w+)\".*\"mbPerSec\": ([0-9.]+)");
+    private static final Pattern CORPUS_BYTES = Pattern.compile(
+            "\"corpus\": \\{.*\"bytes\": (\\d+)");
+    private static final Pattern HOST = Pattern.compile(
+            "\"host\": \"([^\"]*)\"");
+
+    private File corpusDir = new File("target/perf/corpus");
+    private File outDir = new File("target/perf/out");
+    private File resultFile = new File("target/perf/result.json");
+    private File baselineFile = null;
+    private boolean updateBaseline = false;
+    private int fileCount = 2000;
+    private long seed = 1;
+    private int warmupIterations = 1;
+    private int iterations = 5;
+    private double thresholdPercent = 15;
+
+    private File[] corpus;
+    private long corpusBytes;
+
+    private final GcPauses gcPauses = new GcPauses();
+
+    /**
+     * Výsledek jednoho režimu.
+     */
+    private static class ModeResult {
+        String mode;
+        long[] iterationsMs;
+        long wallTimeMs;
+        double filesPerSec;
+        double mbPerSec;
+        long gcCount;
+        long gcTimeMs;
+        long gcMaxPauseMs;
+    }
+
+    // -------------------------------------------------------------------------
+    public static void main(String[] args) {
+        EndToEndBenchmark benchmark = new EndToEndBenchmark();
+        int result;
+        try {
+            benchmark.parseArgs(args);
+            result = benchmark.execute();
+        } catch (IllegalArgumentException iaex) {
+            System.err.println("Error: " + iaex.getMessage());
+            result = RESULT_ERR_OPTS;
+        } catch (IOException ioex) {
+            System.err.println("Error: " + ioex);
+            result = RESULT_ERR_GENERAL;
+        }
+        System.exit(result);
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i=0; i<args.length; i++) {
+            String arg = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("missing value of " + arg);
+            }
+            String value = args[++i];
+            try {
+                switch (arg) {
+                    case "--corpus":
+                        corpusDir = new File(value);
+                        break;
+                    case "--outDir":
+                        outDir = new File(value);
+                        break;
+                    case "--result":
+                        resultFile = new File(value);
+                        break;
+                    case "--baseline":
+                        baselineFile = value.isEmpty() ? null : new File(value);
+                        break;
+                    case "--updateBaseline":
+                        updateBaseline = Boolean.parseBoolean(value);
+                        break;
+                    case "--files":
+                        fileCount = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--warmup":
+                        warmupIterations = Integer.parseInt(value);
+                        break;
+                    case "--iterations":
+                        iterations = Integer.parseInt(value);
+                        break;
+                    case "--threshold":
+                        thresholdPercent = Double.parseDouble(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option: " + arg);
+                }
+            } catch (NumberFormatException nfex) {
+                throw new IllegalArgumentException("invalid " + arg + ": " + value);
+            }
+        }
+        if (fileCount <= 0 || iterations <= 0 || warmupIterations < 0) {
+            throw new IllegalArgumentException("invalid --files, --iterations or --warmup");
+        }
+    }
+
+    /**
+     *
+     * @return  výsledek pro {@code System.exit}
+     * @throws IOException
+     */
+    private int execute() throws IOException {
+        prepareCorpus();
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IOException("cannot create: " + outDir);
+        }
+        gcPauses.register();
+
+        List<ModeResult> results = new ArrayList<>();
+        for (String mode : MODES) {
+            ModeResult result = measureMode(mode);
+            results.add(result);
+            System.out.println(String.format(Locale.ROOT,
+                    "%-12s %8d ms %10.1f files/s %8.2f MB/s   GC: %d, %d ms (max pause %d ms)",
+                    mode, result.wallTimeMs, result.filesPerSec, result.mbPerSec,
+                    result.gcCount, result.gcTimeMs, result.gcMaxPauseMs));
+        }
+        long peakRssKb = readPeakRssKb();
+        System.out.println("peak RSS: " + peakRssKb + " kB");
+
+        String json = toJson(results, peakRssKb);
+        writeText(resultFile, json);
+        System.out.println("result: " + resultFile.getPath());
+
+        if (baselineFile == null) {
+            return RESULT_OK;
+        }
+        if (updateBaseline || !baselineFile.exists()) {
+            writeText(baselineFile, json);
+            System.out.println("baseline updated: " + baselineFile.getPath());
+            return RESULT_OK;
+        }
+        return compareWithBaseline(results);
+    }
+
+    /**
+     * Vytvoří korpus, pokud ještě neexistuje (nebo má jiný počet souborů).
+     * Soubory mají několik "tvarů" střídajících se dokola, aby se korpus
+     * podobal skutečné sbírce pásek.
+     *
+     * @throws IOException
+     */
+    private void prepareCorpus() throws IOException {
+        File dir = new File(corpusDir, "seed" + seed + "_n" + fileCount);
+        File[] files = dir.listFiles();
+        if (files == null || files.length != fileCount) {
+            System.out.println("generating corpus: " + dir.getPath());
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("cannot create: " + dir);
+            }
+            for (int i=0; i<fileCount; i++) {
+                TapGenerator generator = createGenerator(i);
+                File file = new File(dir, TapGeneratorCli.getFileName(i));
+                try (OutputStream out = new BufferedOutputStream(
+                        new FileOutputStream(file), 64 * 1024)) {
+                    generator.generate(out);
+                }
+            }
+            files = dir.listFiles();
+        }
+        Arrays.sort(files);
+        corpus = files;
+        corpusBytes = 0;
+        for (File file : files) {
+            corpusBytes += file.length();
+        }
+        System.out.println(String.format(Locale.ROOT, "corpus: %d files, %.2f MB",
+                corpus.length, corpusBytes / 1e6));
+    }
+
+    /**
+     *
+     * @param index
+     * @return  generátor pro soubor {@code index} korpusu
+     */
+    private TapGenerator createGenerator(int index) {
+        TapGenerator generator = new TapGenerator(seed + index);
+        switch (index % 4) {
+            case 0:     // jen krátký program
+                generator.setProgramLength(2048);
+                break;
+            case 1:     // program s proměnnými
+                generator.setProgramLength(8192);
+                generator.setNumericArrays(1, 500);
+                generator.setStringArrays(1, 64);
+                generator.setForLoops(2);
+                break;
+            case 2:     // hra: zavaděč, obrázek, kód
+                generator.setProgramLength(1024);
+                generator.setCodeLength(16384);
+                generator.setScreens(1);
+                break;
+            default:    // velká tabulka proměnných
+                generator.setProgramLength(16384);
+                generator.setNumericArrays(2, 3000);
+                break;
+        }
+        return generator;
+    }
+
+    /**
+     *
+     * @param mode
+     * @return
+     */
+    private ModeResult measureMode(String mode) {
+        for (int i=0; i<warmupIterations; i++) {
+            runCorpus(mode);
+        }
+        System.gc();
+
+        ModeResult result = new ModeResult();
+        result.mode = mode;
+        result.iterationsMs = new long[iterations];
+        long gcCount0 = getGcCount();
+        long gcTime0 = getGcTimeMs();
+        gcPauses.reset();
+        for (int i=0; i<iterations; i++) {
+            long startNs = System.nanoTime();
+            runCorpus(mode);
+            result.iterationsMs[i] = (System.nanoTime() - startNs) / 1000000;
+        }
+        result.gcCount = getGcCount() - gcCount0;
+        result.gcTimeMs = getGcTimeMs() - gcTime0;
+        result.gcMaxPauseMs = gcPauses.getMaxPauseMs();
+
+        // (nejlepší průchod; zpomalení jinými procesy na sdíleném stroji
+        //  se projeví jen v horších průchodech, ne v nejlepším)
+        long best = Long.MAX_VALUE;
+        for (long ms : result.iterationsMs) {
+            best = Math.min(best, ms);
+        }
+        result.wallTimeMs = Math.max(1, best);
+        double seconds = result.wallTimeMs / 1000.0;
+        result.filesPerSec = corpus.length / seconds;
+        result.mbPerSec = corpusBytes / 1e6 / seconds;
+        return result;
+    }
+
+    /**
+     * Jeden průchod korpusem; každý soubor stejně jako z příkazové řádky.
+     *
+     * @param mode
+     */
+    private void runCorpus(String mode) {
+        String ext = mode.equals("onlyBasic") ? ".bas" : ".txt";
+        for (File file : corpus) {
+            String name = file.getName();
+            File outFile = new File(outDir, name.substring(0, name.length() - 4) + ext);
+            String[] args;
+            switch (mode) {
+                case "onlyBasic":
+                    args = new String[] { "-i", file.getPath(), "-o", outFile.getPath(), "--onlyBasic" };
+                    break;
+                case "all":
+                    args = new String[] { "-i", file.getPath(), "-o", outFile.getPath(), "--analyzeVars" };
+                    break;
+                default:
+                    args = new String[] { "-i", file.getPath(), "-o", outFile.getPath() };
+                    break;
+            }
+            new Tap2basCli().executeWithArgs(args);
+        }
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long getGcTimeMs() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * Nejdelší pauza GC (z notifikací {@code GarbageCollectorMXBean}).
+     */
+    private static class GcPauses implements NotificationListener {
+        private long maxPauseMs = 0;
+
+        void register() {
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (gc instanceof NotificationEmitter) {
+                    ((NotificationEmitter) gc).addNotificationListener(this, null, null);
+                }
+            }
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+                    .equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+                    .from((CompositeData) notification.getUserData());
+            // (souběžné fáze GC aplikaci nezastavují)
+            if (info.getGcAction().contains("concurrent")) {
+                return;
+            }
+            update(info.getGcInfo().getDuration());
+        }
+
+        private synchronized void update(long durationMs) {
+            maxPauseMs = Math.max(maxPauseMs, durationMs);
+        }
+
+        synchronized void reset() {
+            maxPauseMs = 0;
+        }
+
+        synchronized long getMaxPauseMs() {
+            return maxPauseMs;
+        }
+    }
+
+    /**
+     *
+     * @return  maximální RSS procesu v kB ({@code VmHWM}),
+     *      nebo {@code -1}, pokud není k dispozici (jen Linux)
+     */
+    private static long readPeakRssKb() {
+        File status = new File("/proc/self/status");
+        if (!status.canRead()) {
+            return -1;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(status), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException ex) {
+            System.err.println("Warning: cannot read peak RSS: " + ex);
+        }
+        return -1;
+    }
+
+    /**
+     * Každý režim je na samostatném řádku,
+     * viz {@linkplain #compareWithBaseline(java.util.List)}.
+     *
+     * @param results
+     * @param peakRssKb
+     * @return
+     */
+    private String toJson(List<ModeResult> results, long peakRssKb) {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\n");
+        sb.append("  \"benchmark\": \"").append(EndToEndBenchmark.class.getSimpleName()).append("\",\n");
+        sb.append("  \"version\": \"").append(Version.VERSION).append("\",\n");
+        sb.append("  \"timestamp\": \"").append(
+                new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.ROOT).format(new Date())).append("\",\n");
+        sb.append("  \"java\": \"").append(System.getProperty("java.version")).append("\",\n");
+        sb.append("  \"os\": \"").append(System.getProperty("os.name")).append(' ')
+                .append(System.getProperty("os.arch")).append("\",\n");
+        sb.append("  \"cpus\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        sb.append("  \"host\": \"").append(getHostId()).append("\",\n");
+        sb.append("  \"maxHeapMb\": ").append(Runtime.getRuntime().maxMemory() / (1024 * 1024)).append(",\n");
+        sb.append("  \"corpus\": {\"files\": ").append(corpus.length)
+                .append(", \"bytes\": ").append(corpusBytes)
+                .append(", \"seed\": ").append(seed).append("},\n");
+        sb.append("  \"warmupIterations\": ").append(warmupIterations).append(",\n");
+        sb.append("  \"iterations\": ").append(iterations).append(",\n");
+        sb.append("  \"peakRssKb\": ").append(peakRssKb).append(",\n");
+        sb.append("  \"results\": [\n");
+        for (int i=0; i<results.size(); i++) {
+            ModeResult r = results.get(i);
+            sb.append(String.format(Locale.ROOT, "    {\"mode\": \"%s\", \"wallTimeMs\": %d, "
+                    + "\"filesPerSec\": %.1f, \"mbPerSec\": %.3f, "
+                    + "\"gcCount\": %d, \"gcTimeMs\": %d, \"gcMaxPauseMs\": %d, "
+                    + "\"iterationsMs\": %s}",
+                    r.mode, r.wallTimeMs, r.filesPerSec, r.mbPerSec,
+                    r.gcCount, r.gcTimeMs, r.gcMaxPauseMs,
+                    Arrays.toString(r.iterationsMs)));
+            sb.append(i + 1 < results.size() ? ",\n" : "\n");
+        }
+        sb.append("  ]\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     *
+     * @return  identifikace stroje pro porovnání s uloženým výsledkem:
+     *      jméno počítače, OS, architektura a počet CPU
+     */
+    static String getHostId() {
+        String name = null;
+        try {
+            name = InetAddress.getLocalHost().getHostName();
+        } catch (IOException ioex) {
+            name = System.getenv("HOSTNAME");
+            if (name == null) {
+                name = System.getenv("COMPUTERNAME");   // (Windows)
+            }
+        }
+        return (name != null ? name : "unknown") + "/" + System.getProperty("os.name")
+                + "/" + System.getProperty("os.arch")
+                + "/" + Runtime.getRuntime().availableProcessors() + "cpu";
+    }
+
+    /**
+     * Porovná propustnost s uloženým výsledkem
+     * (ve formátu {@linkplain #toJson(java.util.List, long)}).
+     *
+     * @param results
+     * @return  {@linkplain #RESULT_REGRESSION}, pokud je některý
+     *      režim pomalejší o více než {@code thresholdPercent} a uložený
+     *      výsledek je ze stejného stroje
+     * @throws IOException
+     */
+    private int compareWithBaseline(List<ModeResult> results) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        long baselineCorpusBytes = -1;
+        String baselineHost = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(baselineFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher m = RESULT_LINE.matcher(line);
+                if (m.find()) {
+                    baseline.put(m.group(1), Double.parseDouble(m.group(2)));
+                }
+                Matcher cm = CORPUS_BYTES.matcher(line);
+                if (cm.find()) {
+                    baselineCorpusBytes = Long.parseLong(cm.group(1));
+                }
+                Matcher hm = HOST.matcher(line);
+                if (hm.find()) {
+                    baselineHost = hm.group(1);
+                }
+            }
+        }
+        String host = getHostId();
+        boolean sameHost = host.equals(baselineHost);
+        if (! sameHost) {
+            System.out.println("Warning: the baseline was measured on another host ("
+                    + (baselineHost != null ? baselineHost : "unknown") + ", this is "
+                    + host + "); a regression is only reported. Record a baseline "
+                    + "on this host with --updateBaseline true.");
+        }
+        if (baselineCorpusBytes != corpusBytes) {
+            System.out.println("Warning: the baseline was measured on a different corpus ("
+                    + baselineCorpusBytes + " bytes)");
+        }
+
+        int resultCode = RESULT_OK;
+        for (ModeResult r : results) {
+            Double expected = baseline.get(r.mode);
+            if (expected == null) {
+                System.out.println("Warning: no baseline for: " + r.mode);
+                continue;
+            }
+            double changePercent = (r.mbPerSec - expected) / expected * 100;
+            boolean regression = changePercent < -thresholdPercent;
+            System.out.println(String.format(Locale.ROOT,
+                    "%-12s %8.2f MB/s  baseline %8.2f MB/s  %+6.1f %%  %s",
+                    r.mode, r.mbPerSec, expected, changePercent,
+                    regression ? "REGRESSION" : "ok"));
+            if (regression && sameHost) {
+                resultCode = RESULT_REGRESSION;
+            }
+        }
+        if (resultCode != RESULT_OK) {
+            System.out.flush();
+            System.err.println("Error: throughput regression of more than "
+                    + thresholdPercent + " % against " + baselineFile.getPath());
+        }
+        return resultCode;
+    }
+
+    private static void writeText(File file, String text) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create: " + dir);
+        }
+        try (Writer writer = new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(text);
+        }
+    }
+
+}   // EndToEndBenchmark.java
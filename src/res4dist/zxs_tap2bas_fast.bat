@@ -0,0 +1,32 @@
+@echo off
+setlocal
+rem  Spuštění s rychlejším startem, viz zxs_tap2bas_fast.sh
+rem  (archiv tříd se vytvoří znovu, pokud je zxs_tap2bas.jar novější)
+set T2B_JAR=%~dp0zxs_tap2bas.jar
+set T2B_JSA=%~dp0zxs_tap2bas.jsa
+set T2B_JAVA_OPTS=-XX:TieredStopAtLevel=1 -XX:+UseSerialGC -Xshare:auto -Xlog:disable -Xlog:all=error:stderr
+set T2B_LOGGING_OPT=-Djava.util.logging.config.file="%~dp0logging_fast.properties"
+
+if not exist "%T2B_JSA%" goto create_jsa
+rem  dir /o:d řadí od nejstaršího, poslední je nejnovější
+set T2B_NEWEST=
+for /f "delims=" %%f in ('dir /b /o:d "%T2B_JAR%" "%T2B_JSA%"') do set T2B_NEWEST=%%f
+if /i "%T2B_NEWEST%"=="zxs_tap2bas.jar" goto create_jsa
+java %T2B_JAVA_OPTS% -XX:SharedArchiveFile="%T2B_JSA%" %T2B_LOGGING_OPT% -jar "%T2B_JAR%" %*
+exit /b %ERRORLEVEL%
+
+:create_jsa
+rem  archiv se zapíše při ukončení JVM; do dočasného souboru, pak se přejmenuje
+set T2B_JSA_TMP=%T2B_JSA%.%RANDOM%.tmp
+type nul > "%T2B_JSA_TMP%" 2> nul
+if not exist "%T2B_JSA_TMP%" goto without_jsa
+del "%T2B_JSA_TMP%"
+java %T2B_JAVA_OPTS% -XX:ArchiveClassesAtExit="%T2B_JSA_TMP%" %T2B_LOGGING_OPT% -jar "%T2B_JAR%" %*
+set T2B_RESULT=%ERRORLEVEL%
+if exist "%T2B_JSA_TMP%" move /y "%T2B_JSA_TMP%" "%T2B_JSA%" > nul
+exit /b %T2B_RESULT%
+
+:without_jsa
+rem  (adresář není zapisovatelný)
+java %T2B_JAVA_OPTS% %T2B_LOGGING_OPT% -jar "%T2B_JAR%" %*
+exit /b %ERRORLEVEL%
@@ -0,0 +1,34 @@
+#!/bin/sh
+
+# Spuštění s rychlejším startem; pro převody jednotlivých (malých) souborů.
+#  - archiv tříd (AppCDS) zxs_tap2bas.jsa; vytvoří se při prvním spuštění 
+#    a znovu po změně zxs_tap2bas.jar (po změně JDK jej smazat)
+#  - jen JIT C1, SerialGC
+#  - do logu jen varování a chyby (logging_fast.properties)
+# Pro dlouhé dávky (mnoho souborů, --threads) použít zxs_tap2bas.sh (JIT C2).
+
+cd "$(dirname $0)"
+script_dir="$(pwd)"
+cd - > /dev/null
+
+jar="$script_dir/zxs_tap2bas.jar"
+jsa="$script_dir/zxs_tap2bas.jsa"
+java_opts="-XX:TieredStopAtLevel=1 -XX:+UseSerialGC -Xshare:auto -Xlog:disable -Xlog:all=error:stderr"
+logging_opt="-Djava.util.logging.config.file=$script_dir/logging_fast.properties"
+
+if [ -f "$jsa" ] && [ ! "$jar" -nt "$jsa" ]; then
+  exec java $java_opts -XX:SharedArchiveFile="$jsa" "$logging_opt" -jar "$jar" "$@"
+fi
+
+if [ ! -w "$script_dir" ]; then
+  exec java $java_opts "$logging_opt" -jar "$jar" "$@"
+fi
+
+# archiv se zapíše při ukončení JVM; do dočasného souboru, pak se přejmenuje
+jsa_tmp="$jsa.$$.tmp"
+java $java_opts -XX:ArchiveClassesAtExit="$jsa_tmp" "$logging_opt" -jar "$jar" "$@"
+result=$?
+if [ -f "$jsa_tmp" ]; then
+  mv -f "$jsa_tmp" "$jsa"
+fi
+exit $result
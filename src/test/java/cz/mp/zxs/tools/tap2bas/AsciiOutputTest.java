@@ -0,0 +1,77 @@
+/*
+ * AsciiOutputTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class AsciiOutputTest {
+
+    @Test
+    public void testWriteAsAscii() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        AsciiOutput out = new AsciiOutput(4);   // (malý buffer => častější odeslání)
+        out.setTarget(bout, true);
+        out.write("Ahoj ");
+        out.write('£');     // (není v ASCII)
+        out.write(" 😀 ");     // (dvojice "surrogate" = jeden znak)
+        out.writeInt(0);
+        out.write(' ');
+        out.writeInt(-1234567);
+        out.write(' ');
+        out.writeInt(Integer.MAX_VALUE);
+        out.write(new char[] {' ', 'x'});
+        out.close();
+        assertEquals("Ahoj ? ? 0 -1234567 2147483647 x", new String(bout.toByteArray(), "US-ASCII"));
+    }
+
+    @Test
+    public void testFlushPolicy() throws IOException {
+        StringWriter sw = new StringWriter();
+        AsciiOutput out = new AsciiOutput();
+        out.setTarget(sw, true);
+
+        out.setFlushPolicy(FlushPolicy.FILE);
+        out.write("abc");
+        out.endOfBlock();
+        assertEquals("", sw.toString());
+
+        out.setFlushPolicy(FlushPolicy.BLOCK);
+        out.endOfBlock();
+        assertEquals("abc", sw.toString());
+
+        out.setFlushPolicy(FlushPolicy.SIZE);
+        out.setFlushSize(3);
+        out.write("de");
+        assertEquals("abc", sw.toString());
+        out.write('f');
+        assertEquals("abcdef", sw.toString());
+
+        out.setFlushPolicy(FlushPolicy.FILE);
+        out.write("gh");
+        out.close();
+        assertEquals("abcdefgh", sw.toString());
+        assertFalse(out.hasTarget());
+    }
+
+    @Test
+    public void testGetByName() {
+        assertEquals(FlushPolicy.BLOCK, FlushPolicy.getByName("block"));
+        assertEquals(FlushPolicy.SIZE, FlushPolicy.getByName("SIZE"));
+        assertNull(FlushPolicy.getByName("line"));
+    }
+
+}   // AsciiOutputTest.java
@@ -0,0 +1,400 @@
+/*
+ * BlockDedupTableTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.readTap;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class BlockDedupTableTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static byte[] twice(byte[] tap) {
+        byte[] result = new byte[tap.length * 2];
+        System.arraycopy(tap, 0, result, 0, tap.length);
+        System.arraycopy(tap, 0, result, tap.length, tap.length);
+        return result;
+    }
+
+    private static BlockDedupTable.Key key(byte[] block, TapBlockType type,
+            boolean analyzeVars) {
+        return new BlockDedupTable.Key(ByteBuffer.wrap(block), type, false, analyzeVars);
+    }
+
+    private static ByteBuffer block(byte[] tap, BlockDedupTable.Block block) {
+        return ByteBuffer.wrap(tap, block.getOffset() + 2, block.getKey().getLength()).slice();
+    }
+
+    private static List<BlockDedupTable.Block> findBlocks(byte[] tap) {
+        return BlockDedupTable.findBlocks(ByteBuffer.wrap(tap), false, true);
+    }
+
+    /**
+     *
+     * @param name
+     * @param tap
+     * @return  jméno pro tabulku
+     */
+    private String writeTap(String name, byte[] tap) throws IOException {
+        File file = new File(tmp.getRoot(), name);
+        Files.write(file.toPath(), tap);
+        return BlockDedupTable.getSourceName(file);
+    }
+
+    /**
+     *
+     * @return  dvojice bloků s BASIC programem, jehož první řádka je
+     *      delší než celý TAP
+     */
+    private static byte[] brokenBasic() {
+        byte[] data = {0x00, 0x0A, (byte) 0xFF, (byte) 0xFF, (byte) 0xEA, 0x0D};
+        byte[] pair = new byte[2 + 19 + 2 + data.length + 2];
+        pair[0] = 19;
+        pair[3] = (byte) TapBlockType.BASIC.getNum();
+        for (int i=0; i<10; i++) {
+            pair[4 + i] = (byte) "BROKEN    ".charAt(i);
+        }
+        pair[14] = (byte) data.length;
+        pair[17] = (byte) 0x80;
+        pair[18] = (byte) data.length;
+        pair[21] = (byte) (data.length + 2);
+        pair[23] = (byte) Tap2bas.FLAG_DATA;
+        System.arraycopy(data, 0, pair, 24, data.length);
+        return pair;
+    }
+
+    @Test
+    public void testFindAndAdd() throws IOException {
+        byte[] tap = twice(readTap("Zlatokop.tap"));
+        String a = writeTap("a.tap", tap);
+        List<BlockDedupTable.Block> blocks = findBlocks(tap);
+        BlockDedupTable.Block first = blocks.get(0);
+        BlockDedupTable.Block second = blocks.get(2);
+        BlockDedupTable.Key key = first.getKey();
+        int length = key.getLength();
+        ByteBuffer content = ByteBuffer.wrap(tap);
+
+        BlockDedupTable table = new BlockDedupTable();
+        BlockDedupTable.Session sessionA = table.newSession(a);
+        assertNull(sessionA.find(key, block(tap, first), first.getOffset(), content));
+        sessionA.add(key, first.getOffset());
+        // (stejný blok znovu zpracovaného TAP není duplicitní)
+        assertNull(sessionA.find(key, block(tap, first), first.getOffset(), content));
+        // dřívější, už dekódovaný blok stejného TAP
+        assertEquals(first.getOffset(), sessionA.find(second.getKey(),
+                block(tap, second), second.getOffset(), content).getOffset());
+
+        // jiný TAP jen na potvrzený první výskyt (výstup je zapsaný)
+        assertNull(table.newSession("b.tap").find(key, block(tap, first), 21, null));
+        sessionA.confirm();
+        BlockDedupTable.Session sessionB = table.newSession("b.tap");
+        BlockDedupTable.Entry entry = sessionB.find(key, block(tap, first), 21, null);
+        assertEquals(a, entry.getSource());
+        assertEquals(first.getOffset(), entry.getOffset());
+        // jiný typ, režim, obsah
+        assertNull(sessionB.find(new BlockDedupTable.Key(block(tap, first),
+                TapBlockType.BINARY_DATA, false, true), block(tap, first), 21, null));
+        assertNull(sessionB.find(new BlockDedupTable.Key(block(tap, first),
+                TapBlockType.BASIC, false, false), block(tap, first), 21, null));
+        assertNull(sessionB.find(blocks.get(1).getKey(), block(tap, blocks.get(1)), 21, null));
+
+        // (do statistiky jen potvrzené převody)
+        assertEquals(3, table.getBlocks());
+        assertEquals(1, table.getDuplicateBlocks());
+        assertEquals(length, table.getDuplicateBytes());
+        sessionB.confirm();
+        assertEquals(7, table.getBlocks());
+        assertEquals(2, table.getDuplicateBlocks());
+    }
+
+    // shoda jen klíče (hashe), ne obsahu: blok se dekóduje
+    @Test
+    public void testHashCollision() throws IOException {
+        byte[] tap = readTap("Zlatokop.tap");
+        String a = writeTap("a.tap", tap);
+        BlockDedupTable.Block first = findBlocks(tap).get(0);
+        BlockDedupTable table = new BlockDedupTable();
+        table.addAll(Arrays.asList(first), a);
+        table.setFixedOwners(true);
+
+        byte[] other = new byte[first.getKey().getLength()];
+        block(tap, first).get(other);
+        other[10] ^= 1;
+        BlockDedupTable.Session session = table.newSession("b.tap");
+        assertNull(session.find(first.getKey(), ByteBuffer.wrap(other), 21, null));
+        assertNotNull(session.find(first.getKey(), block(tap, first), 21, null));
+
+        // (první výskyt nelze přečíst)
+        assertTrue(new File(a).delete());
+        assertNull(table.newSession("c.tap").find(first.getKey(), block(tap, first), 21, null));
+    }
+
+    @Test
+    public void testFixedOwners() throws IOException {
+        byte[] tap = readTap("Zlatokop.tap");
+        String a = writeTap("a.tap", tap);
+        String b = writeTap("b.tap", tap);
+        List<BlockDedupTable.Block> blocks = findBlocks(tap);
+        BlockDedupTable.Block first = blocks.get(0);
+        BlockDedupTable table = new BlockDedupTable();
+        table.addAll(Arrays.asList(first), a);
+        table.setFixedOwners(true);
+        // (předem určený první výskyt platí ještě před potvrzením)
+        BlockDedupTable.Session sessionB = table.newSession(b);
+        assertEquals(a, sessionB.find(first.getKey(), block(tap, first), 21, null).getSource());
+
+        // (blok, který nebyl určen předem, se nepřidá)
+        BlockDedupTable.Block other = blocks.get(1);
+        sessionB.add(other.getKey(), other.getOffset());
+        sessionB.confirm();
+        assertNull(table.newSession("c.tap").find(other.getKey(), block(tap, other), 21, null));
+
+        // první výskyt se nepotvrdil (převod a.tap skončil chybou)
+        assertFalse(sessionB.hasValidReferences());
+        assertEquals(1, table.removeUnconfirmed());
+        assertEquals(0, table.size());
+
+        table.setFixedOwners(false);
+        sessionB = table.newSession(b);
+        sessionB.add(other.getKey(), other.getOffset());
+        sessionB.confirm();
+        assertEquals(b, table.newSession("c.tap").find(other.getKey(),
+                block(tap, other), 21, null).getSource());
+    }
+
+    // stejné bloky, jaké porovnává analýza
+    @Test
+    public void testFindBlocks() throws IOException, InvalidTapException {
+        byte[] tap = twice(readTap("Zlatokop.tap"));
+        List<BlockDedupTable.Block> blocks = findBlocks(tap);
+        assertEquals(4, blocks.size());
+        BlockDedupTable table = new BlockDedupTable();
+        table.addAll(blocks, "a.tap");
+        table.setFixedOwners(true);
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setTapContent(ByteBuffer.wrap(tap));
+        tap2bas.setDedup(table, "a.tap");
+        tap2bas.setOutWriter(new StringWriter());
+        tap2bas.analyzeAll();
+        tap2bas.closeOutWriter();
+        tap2bas.confirmDedup();
+        assertEquals(4, table.getBlocks());
+        assertEquals(2, table.getDuplicateBlocks());
+
+        assertEquals(2, BlockDedupTable.findBlocks(ByteBuffer.wrap(tap), true, false).size());
+        // (useknutý TAP: jen celé bloky)
+        assertEquals(3, BlockDedupTable.findBlocks(
+                ByteBuffer.wrap(tap, 0, tap.length - 1), false, true).size());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        byte[] tap = readTap("Zlatokop.tap");
+        String source = writeTap("gold.tap", tap);
+        List<BlockDedupTable.Block> blocks = findBlocks(tap);
+        BlockDedupTable.Block first = blocks.get(0);
+        BlockDedupTable table = new BlockDedupTable();
+        BlockDedupTable.Session session = table.newSession(source);
+        session.add(first.getKey(), first.getOffset());
+        // (zdroj, který není soubor, se neuloží)
+        BlockDedupTable.Session stdin = table.newSession("stdin");
+        stdin.add(blocks.get(1).getKey(), blocks.get(1).getOffset());
+        stdin.confirm();
+        File file = new File(tmp.getRoot(), "tapes.dedup");
+        // (nepotvrzený se neuloží)
+        table.save(file);
+        assertEquals(0, BlockDedupTable.load(file).size());
+        session.confirm();
+        table.save(file);
+
+        BlockDedupTable loaded = BlockDedupTable.load(file);
+        assertEquals(1, loaded.size());
+        assertEquals(0, loaded.getBlocks());
+        BlockDedupTable.Entry entry = loaded.newSession("other.tap").find(
+                first.getKey(), block(tap, first), 21, null);
+        assertEquals(source, entry.getSource());
+        assertEquals(first.getOffset(), entry.getOffset());
+
+        Files.write(file.toPath(), new byte[] {1, 2, 3});
+        assertEquals(0, BlockDedupTable.load(file).size());
+        assertEquals(0, BlockDedupTable.load(new File(tmp.getRoot(), "none")).size());
+    }
+
+    // stejný soubor zadaný jinou cestou není "jiný výskyt"
+    @Test
+    public void testCanonicalSource() throws IOException {
+        File dir = tmp.newFolder("tapes");
+        File gold = new File(dir, "gold.tap");
+        assertEquals(BlockDedupTable.getSourceName(gold), BlockDedupTable.getSourceName(
+                new File(new File(dir, "../tapes"), "./gold.tap")));
+        assertEquals(gold.getCanonicalPath(), BlockDedupTable.getSourceName(gold));
+    }
+
+    // změněný nebo smazaný TAP: záznam z uložené tabulky neplatí
+    @Test
+    public void testStaleEntry() throws IOException {
+        byte[] tap = readTap("Zlatokop.tap");
+        String source = writeTap("gold.tap", tap);
+        String other = writeTap("other.tap", tap);
+        BlockDedupTable.Block first = findBlocks(tap).get(0);
+        BlockDedupTable table = new BlockDedupTable();
+        BlockDedupTable.Session session = table.newSession(source);
+        session.add(first.getKey(), first.getOffset());
+        session.confirm();
+        File file = new File(tmp.getRoot(), "tapes.dedup");
+        table.save(file);
+
+        writeTap("gold.tap", readTap("Poklad.tap"));
+        BlockDedupTable loaded = BlockDedupTable.load(file);
+        session = loaded.newSession(other);
+        assertNull(session.find(first.getKey(), block(tap, first), first.getOffset(), null));
+        session.add(first.getKey(), first.getOffset());
+        session.confirm();
+        assertEquals(other, loaded.newSession("third.tap").find(
+                first.getKey(), block(tap, first), 21, null).getSource());
+
+        assertTrue(new File(source).delete());
+        assertNull(BlockDedupTable.load(file).newSession("third.tap").find(
+                first.getKey(), block(tap, first), 21, null));
+    }
+
+    @Test
+    public void testDuplicateInTap() throws IOException, InvalidTapException {
+        byte[] zlatokop = readTap("Zlatokop.tap");
+        BlockDedupTable table = new BlockDedupTable();
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setTapContent(twice(zlatokop));
+        tap2bas.setDedup(table, "twice.tap");
+        StringWriter sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        tap2bas.analyzeAll();
+        tap2bas.closeOutWriter();
+
+        String out = sw.toString();
+        int second = out.indexOf("name=\"GOLDMINER\"", out.indexOf("name=\"GOLDMINER\"") + 1);
+        assertTrue(second > 0);
+        assertTrue(out.substring(second).contains(
+                "--- duplicate data block (" + (((zlatokop[21] & 0xFF) | (zlatokop[22] & 0xFF) << 8) - 2)
+                + " B): same as twice.tap, index = 21 (0x15)"));
+        tap2bas.confirmDedup();
+        assertEquals(2, table.getDuplicateBlocks());
+
+        // bez deduplikace
+        tap2bas.setDedup(null, null);
+        sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        tap2bas.analyzeAll();
+        tap2bas.closeOutWriter();
+        assertFalse(sw.toString().contains("duplicate"));
+    }
+
+    @Test
+    public void testBatch() throws IOException, InterruptedException {
+        File dir = tmp.newFolder("tapes");
+        byte[] zlatokop = readTap("Zlatokop.tap");
+        Files.write(new File(dir, "a.tap").toPath(), zlatokop);
+        Files.write(new File(dir, "b.tap").toPath(), zlatokop);
+
+        BlockDedupTable table = new BlockDedupTable();
+        Tap2basBatch batch = new Tap2basBatch(1);
+        batch.setOutDir(new File(tmp.getRoot(), "out"));
+        batch.setDedup(table);
+        batch.addInput(dir.getPath());
+        List<Tap2basBatch.Result> results = batch.run();
+        assertTrue(results.get(1).isOk());
+        assertEquals(0.5, table.getDedupRatio(), 0.0001);
+        String out = new String(Files.readAllBytes(results.get(1).getOutFile().toPath()), "US-ASCII");
+        assertTrue(out.contains("same as " + new File(dir, "a.tap").getCanonicalPath()));
+    }
+
+    // první výskyt je vždy v prvním souboru, nezávisle na vláknech
+    @Test
+    public void testBatchDeterministic() throws IOException, InterruptedException {
+        File dir = tmp.newFolder("tapes");
+        byte[] zlatokop = readTap("Zlatokop.tap");
+        String[] names = {"a.tap", "b.tap", "c.tap", "d.tap"};
+        for (String name : names) {
+            Files.write(new File(dir, name).toPath(), zlatokop);
+        }
+        String expectedRef = "same as " + new File(dir, "a.tap").getCanonicalPath() + ",";
+        for (int run=0; run<5; run++) {
+            BlockDedupTable table = new BlockDedupTable();
+            Tap2basBatch batch = new Tap2basBatch(4);
+            batch.setOutDir(new File(tmp.getRoot(), "out" + run));
+            batch.setDedup(table);
+            batch.addInput(dir.getPath());
+            List<Tap2basBatch.Result> results = batch.run();
+            assertEquals(0.75, table.getDedupRatio(), 0.0001);
+            for (int i=0; i<names.length; i++) {
+                assertTrue(results.get(i).isOk());
+                String out = new String(Files.readAllBytes(
+                        results.get(i).getOutFile().toPath()), "US-ASCII");
+                assertEquals(names[i], i > 0, out.contains(expectedRef));
+                assertEquals(names[i], i > 0, out.contains("duplicate"));
+            }
+            // (po běhu se do tabulky zase přidává)
+            BlockDedupTable.Key key = key(new byte[200], TapBlockType.BINARY_DATA, false);
+            BlockDedupTable.Session session = table.newSession(writeTap("x.tap", new byte[202]));
+            session.add(key, 0);
+            session.confirm();
+            assertNotNull(table.newSession("y.tap").find(key, ByteBuffer.wrap(new byte[200]), 0, null));
+        }
+    }
+
+    // první soubor s blokem skončí chybou dřív, než blok dekóduje:
+    // ostatní soubory nesmí odkazovat na výpis, který nevznikl
+    @Test
+    public void testBatchFailedOwner() throws IOException, InterruptedException {
+        File dir = tmp.newFolder("tapes");
+        byte[] zlatokop = readTap("Zlatokop.tap");
+        byte[] broken = brokenBasic();
+        byte[] a = new byte[broken.length + zlatokop.length];
+        System.arraycopy(broken, 0, a, 0, broken.length);
+        System.arraycopy(zlatokop, 0, a, broken.length, zlatokop.length);
+        Files.write(new File(dir, "a.tap").toPath(), a);
+        Files.write(new File(dir, "b.tap").toPath(), zlatokop);
+        Files.write(new File(dir, "c.tap").toPath(), zlatokop);
+
+        BlockDedupTable table = new BlockDedupTable();
+        Tap2basBatch batch = new Tap2basBatch(2);
+        batch.setOutDir(new File(tmp.getRoot(), "out"));
+        batch.setDedup(table);
+        batch.addInput(dir.getPath());
+        List<Tap2basBatch.Result> results = batch.run();
+        assertFalse(results.get(0).isOk());
+        assertTrue(results.get(1).isOk());
+        assertTrue(results.get(2).isOk());
+        String outB = new String(Files.readAllBytes(results.get(1).getOutFile().toPath()), "US-ASCII");
+        assertFalse(outB.contains("duplicate"));
+        assertTrue(outB.contains("name=\"GOLDMINER\""));
+        String outC = new String(Files.readAllBytes(results.get(2).getOutFile().toPath()), "US-ASCII");
+        assertTrue(outC.contains("same as " + new File(dir, "b.tap").getCanonicalPath() + ","));
+        assertEquals(0.5, table.getDedupRatio(), 0.0001);
+
+        File file = new File(tmp.getRoot(), "tapes.dedup");
+        table.save(file);
+        assertEquals(2, BlockDedupTable.load(file).size());
+    }
+
+}   // BlockDedupTableTest.java
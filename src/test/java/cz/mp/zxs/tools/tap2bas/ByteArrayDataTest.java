@@ -7,6 +7,7 @@
 
 package cz.mp.zxs.tools.tap2bas;
 
+import java.nio.ByteBuffer;
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -83,6 +84,36 @@ public class ByteArrayDataTest {
         baData.read();  // --> IndexOutOfBoundsException
     }
     
+    // (useknutý TAP: chyba musí říct, kde se četlo)
+    @Test
+    public void testRead03ErrMessage() {
+        byte[] rawData = new byte[] {(byte) 0x00, (byte) 0x41, (byte) 0x68, (byte) 0x6F, (byte) 0x6A, (byte) 0x00 };
+        for (ByteArrayData baData : new ByteArrayData[] {
+                new ByteArrayData(rawData, 1, 4), 
+                new ByteArrayData(ByteBuffer.wrap(rawData, 1, 4))}) {
+            baData.skip(4);
+            try {
+                baData.read();
+                fail();
+            } catch (IndexOutOfBoundsException expected) {
+                assertEquals("Index 4 out of bounds for length 4", expected.getMessage());
+            }
+            baData.setIdx(2);
+            try {
+                baData.readBlock(3);
+                fail();
+            } catch (IndexOutOfBoundsException expected) {
+                assertEquals("Range [2, 2 + 3) out of bounds for length 4", expected.getMessage());
+            }
+            try {
+                baData.getSlice(3, 2);
+                fail();
+            } catch (IndexOutOfBoundsException expected) {
+                assertEquals("Range [3, 3 + 2) out of bounds for length 4", expected.getMessage());
+            }
+        }
+    }
+
     @Test
     public void testReadAndReturnAsHex01() {
         byte[] rawData = new byte[] {(byte) 0x41, (byte) 0x68, (byte) 0x6F, (byte) 0x6A}; // Ahoj
@@ -171,5 +202,36 @@ public class ByteArrayDataTest {
         int[] expected = new int[] {0x41, 0x68, 0x6F, 0x6A};
         assertArrayEquals(expected, tapContent.readBlockAndReturnAsInts(rawData.length));
     }
+
+    @Test
+    public void testByteBufferNoCopy01() {
+        byte[] rawData = new byte[] {(byte) 0x00, (byte) 0x41, (byte) 0x68, (byte) 0x6F, (byte) 0x6A, (byte) 0x00 }; // Ahoj
+        ByteBuffer buffer = ByteBuffer.wrap(rawData, 1, 4);
+        ByteArrayData baData = new ByteArrayData(buffer);
+        assertEquals(4, baData.length());
+        assertEquals(1, buffer.position());     // (pozice v bufferu se nemění)
+        
+        rawData[1] = (byte) 0x61;   // (data se nekopírují)
+        assertEquals(0x61, baData.read());
+        assertEquals("hoj", baData.readBlockAndReturnAsString(3));
+        assertTrue(baData.lastWasReaded());
+    }
+    
+    @Test
+    public void testReadSlice01() {
+        byte[] rawData = new byte[] {(byte) 0x41, (byte) 0x68, (byte) 0x6F, (byte) 0x6A }; // Ahoj
+        ByteArrayData baData = new ByteArrayData(rawData);
+        baData.skip(1);
+        ByteBuffer slice = baData.readSlice(2);
+        assertEquals(3, baData.getIdx());
+        assertTrue(slice.isReadOnly());
+        assertEquals(2, slice.remaining());
+        assertEquals(0x68, slice.get(0));
+        assertEquals(0x6F, slice.get(1));
+        
+        slice = baData.getSlice(3, 1);
+        assertEquals(3, baData.getIdx());
+        assertEquals(0x6A, slice.get(0));
+    }
     
 }   // ByteArrayDataTest
\ No newline at end of file
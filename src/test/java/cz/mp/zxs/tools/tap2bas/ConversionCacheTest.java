@@ -0,0 +1,136 @@
+/*
+ * ConversionCacheTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.TAP_DIR;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class ConversionCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File writeFile(String name, int length) throws IOException {
+        File file = new File(tmp.getRoot(), name);
+        Files.write(file.toPath(), new byte[length]);
+        return file;
+    }
+
+    @Test
+    public void testKey() {
+        ByteBuffer tap = ByteBuffer.wrap(new byte[] {1, 2, 3});
+        String key = ConversionCache.key(tap, false, true, OutputFormat.JSON, false);
+        assertTrue(key, key.endsWith("_3_vars.json"));
+        assertEquals(key, ConversionCache.key(tap, false, true, OutputFormat.JSON, false));
+        assertFalse(key.equals(ConversionCache.key(tap, false, false, OutputFormat.JSON, false)));
+        assertFalse(key.equals(ConversionCache.key(tap, false, true, OutputFormat.TEXT, false)));
+        assertFalse(key.equals(ConversionCache.key(tap, false, true, OutputFormat.JSON, true)));
+        assertFalse(key.equals(ConversionCache.key(ByteBuffer.wrap(new byte[] {1, 2, 4}),
+                false, true, OutputFormat.JSON, false)));
+    }
+
+    @Test
+    public void testPutAndCopy() throws IOException {
+        ConversionCache cache = new ConversionCache(tmp.newFolder("cache"), 1000);
+        File out = new File(tmp.getRoot(), "copy.txt");
+        assertFalse(cache.copyTo("k1", out));
+        assertFalse(out.exists());
+
+        File result = tmp.newFile("result.txt");
+        Files.write(result.toPath(), "10 PRINT 1\n".getBytes("US-ASCII"));
+        cache.put("k1", result);
+        assertEquals(result.length(), cache.getSize());
+        assertTrue(cache.copyTo("k1", out));
+        assertEquals("10 PRINT 1\n", new String(Files.readAllBytes(out.toPath()), "US-ASCII"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        // (žádné dočasné soubory)
+        assertEquals(1, cache.getDir().list().length);
+
+        // velikost se načte z adresáře
+        assertEquals(result.length(), new ConversionCache(cache.getDir(), 1000).getSize());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws IOException {
+        File dir = tmp.newFolder("cache");
+        ConversionCache cache = new ConversionCache(dir, 1000);
+        cache.put("a", writeFile("a.txt", 400));
+        cache.put("b", writeFile("b.txt", 400));
+        long now = System.currentTimeMillis();
+        new File(dir, "a.out").setLastModified(now - 20000);
+        new File(dir, "b.out").setLastModified(now - 10000);
+        // "a" je použit naposledy
+        assertTrue(cache.copyTo("a", new File(tmp.getRoot(), "copy.txt")));
+
+        cache.put("c", writeFile("c.txt", 400));
+        assertTrue(cache.getSize() <= 900);
+        assertTrue(new File(dir, "a.out").exists());
+        assertFalse(new File(dir, "b.out").exists());
+        assertTrue(new File(dir, "c.out").exists());
+
+        // příliš velký výstup se neukládá
+        cache.put("d", writeFile("d.txt", 2000));
+        assertFalse(new File(dir, "d.out").exists());
+    }
+
+    @Test
+    public void testBatch() throws IOException, InterruptedException {
+        File dir = tmp.newFolder("tapes");
+        for (String name : new String[] {"usr_char.tap", "Zlatokop.tap"}) {
+            Files.copy(new File(TAP_DIR, name).toPath(), new File(dir, name).toPath());
+        }
+        File outDir = new File(tmp.getRoot(), "out");
+        ConversionCache cache = new ConversionCache(tmp.newFolder("cache"), 
+                ConversionCache.DEFAULT_MAX_SIZE);
+
+        List<Tap2basBatch.Result> first = runBatch(dir, outDir, cache);
+        assertNull(first.get(0).getMessage());
+        byte[] output = Files.readAllBytes(first.get(1).getOutFile().toPath());
+        assertTrue(first.get(1).getOutFile().delete());
+
+        List<Tap2basBatch.Result> second = runBatch(dir, outDir, cache);
+        for (Tap2basBatch.Result result : second) {
+            assertTrue(result.isOk());
+            assertEquals("cached", result.getMessage());
+        }
+        assertArrayEquals(output, Files.readAllBytes(second.get(1).getOutFile().toPath()));
+        assertEquals(2, cache.getHits());
+
+        // jiný režim = jiný záznam
+        Tap2basBatch batch = new Tap2basBatch(1);
+        batch.setMode(true, false);
+        batch.setOutDir(outDir);
+        batch.setCache(cache);
+        batch.addInput(dir.getPath());
+        assertNull(batch.run().get(0).getMessage());
+    }
+
+    private static List<Tap2basBatch.Result> runBatch(File dir, File outDir,
+            ConversionCache cache) throws IOException, InterruptedException {
+        Tap2basBatch batch = new Tap2basBatch(2);
+        batch.setOutDir(outDir);
+        batch.setCache(cache);
+        batch.addInput(dir.getPath());
+        return batch.run();
+    }
+
+}   // ConversionCacheTest.java
@@ -0,0 +1,189 @@
+/*
+ * Java7CompatibilityTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.TAP_DIR;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+
+/**
+ * Kontrola, že přeložené třídy poběží i na starší Javě, než na které se
+ * překládá. Bez {@code --release} se např. {@code ByteBuffer.flip()}
+ * přeloží na metodu z Javy 9+ ({@code flip()Ljava/nio/ByteBuffer;}),
+ * kterou Java 7/8 nemá ({@code NoSuchMethodError}); proto se volá přes
+ * {@code ((Buffer) buf).flip()}.
+ * <p>
+ * Pokud je nastavena proměnná prostředí {@value #JAVA8_HOME}, převede se
+ * i testovací TAP skutečně na Javě 8.
+ *
+ * @author Martin Pokorný
+ */
+public class Java7CompatibilityTest {
+
+    static final String JAVA8_HOME = "JAVA8_HOME";
+
+    /** Java 7 */
+    private static final int MAX_CLASS_MAJOR_VERSION = 51;
+
+    /** metody {@code java.nio.Buffer}, které mají od Javy 9 kovariantní návratový typ */
+    private static final Set<String> COVARIANT_METHODS = new HashSet<>(Arrays.asList(
+            "position", "limit", "flip", "clear", "mark", "reset", "rewind"));
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static File getClassesDir() throws Exception {
+        return new File(Tap2bas.class.getProtectionDomain()
+                .getCodeSource().getLocation().toURI());
+    }
+
+    private static void collectClassFiles(File dir, List<File> result) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectClassFiles(file, result);
+            }
+            else if (file.getName().endsWith(".class")) {
+                result.add(file);
+            }
+        }
+    }
+
+    /**
+     * Projde "constant pool" třídy.
+     *
+     * @param classFile
+     * @param problems  sem se přidají nalezené problémy
+     * @throws IOException
+     */
+    private static void checkClassFile(File classFile, List<String> problems)
+            throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(classFile))) {
+            assertEquals(0xCAFEBABE, in.readInt());
+            in.readUnsignedShort();     // minor
+            int major = in.readUnsignedShort();
+            if (major > MAX_CLASS_MAJOR_VERSION) {
+                problems.add(classFile.getName() + ": class file version " + major);
+            }
+            int count = in.readUnsignedShort();
+            int[] tags = new int[count];
+            int[] refs1 = new int[count];
+            int[] refs2 = new int[count];
+            String[] utf8 = new String[count];
+            for (int i=1; i<count; i++) {
+                int tag = in.readUnsignedByte();
+                tags[i] = tag;
+                switch (tag) {
+                    case CONSTANT_UTF8:
+                        utf8[i] = in.readUTF();
+                        break;
+                    case CONSTANT_CLASS:
+                    case 8:     // String
+                    case 16:    // MethodType
+                    case 19:    // Module
+                    case 20:    // Package
+                        refs1[i] = in.readUnsignedShort();
+                        break;
+                    case 15:    // MethodHandle
+                        in.readUnsignedByte();
+                        in.readUnsignedShort();
+                        break;
+                    case CONSTANT_LONG:
+                    case CONSTANT_DOUBLE:
+                        in.readLong();
+                        i++;
+                        break;
+                    case 3:     // Integer
+                    case 4:     // Float
+                        in.readInt();
+                        break;
+                    default:    // *ref, NameAndType, (Invoke)Dynamic
+                        refs1[i] = in.readUnsignedShort();
+                        refs2[i] = in.readUnsignedShort();
+                }
+            }
+            for (int i=1; i<count; i++) {
+                if (tags[i] != CONSTANT_METHODREF) {
+                    continue;
+                }
+                String owner = utf8[refs1[refs1[i]]];
+                int nameAndType = refs2[i];
+                assertEquals(CONSTANT_NAME_AND_TYPE, tags[nameAndType]);
+                String name = utf8[refs1[nameAndType]];
+                String descriptor = utf8[refs2[nameAndType]];
+                if (owner.startsWith("java/nio/") && owner.endsWith("Buffer")
+                        && !owner.equals("java/nio/Buffer")
+                        && COVARIANT_METHODS.contains(name)
+                        && descriptor.endsWith(")L" + owner + ";")) {
+                    problems.add(classFile.getName() + ": " + owner + "."
+                            + name + descriptor);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNoJava9BufferMethods() throws Exception {
+        List<File> classFiles = new ArrayList<>();
+        collectClassFiles(getClassesDir(), classFiles);
+        assertTrue(classFiles.size() > 10);
+        List<String> problems = new ArrayList<>();
+        for (File classFile : classFiles) {
+            checkClassFile(classFile, problems);
+        }
+        assertTrue(problems.toString(), problems.isEmpty());
+    }
+
+    @Test
+    public void testRunOnJava8() throws Exception {
+        String java8Home = System.getenv(JAVA8_HOME);
+        assumeTrue(java8Home != null && !java8Home.isEmpty());
+
+        File outFile = new File(tmp.getRoot(), "Zlatokop.txt");
+        ProcessBuilder pb = new ProcessBuilder(
+                new File(java8Home, "bin/java").getPath(),
+                "-cp", System.getProperty("java.class.path"),
+                Main.class.getName(),
+                "-i", new File(TAP_DIR, "Zlatokop.tap").getPath(),
+                "-o", outFile.getPath());
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(tmp.newFile("java8.log"));
+        Process process = pb.start();
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        String log = new String(Files.readAllBytes(
+                new File(tmp.getRoot(), "java8.log").toPath()));
+        assertEquals(log, 0, process.exitValue());
+        assertTrue(log, outFile.length() > 0);
+    }
+
+}   // Java7CompatibilityTest.java
@@ -0,0 +1,119 @@
+/*
+ * JfrTapEventsTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.readTap;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class JfrTapEventsTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private TapEvents events;
+
+    @Before
+    public void setUp() {
+        events = TapEvents.load();
+        assumeNotNull(events);  // (JVM bez JFR)
+    }
+
+    /**
+     * Převede TAP se zapnutými událostmi a vrátí zaznamenané události.
+     */
+    private List<RecordedEvent> record(byte[] tap) throws Exception {
+        Path file = tmp.newFile().toPath();
+        try (Recording recording = new Recording()) {
+            recording.enable(JfrTapEvents.FILE_EVENT);
+            recording.enable(JfrTapEvents.BLOCK_EVENT);
+            recording.enable(JfrTapEvents.VARS_EVENT);
+            recording.start();
+            Tap2bas tap2bas = new Tap2bas();
+            tap2bas.setEvents(events);
+            tap2bas.setTapContent(tap);
+            tap2bas.setSourceName("test.tap");
+            tap2bas.setOutWriter(new StringWriter());
+            tap2bas.analyzeAll();
+            tap2bas.closeOutWriter();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static List<RecordedEvent> filter(List<RecordedEvent> recorded, String name) {
+        List<RecordedEvent> result = new ArrayList<>();
+        for (RecordedEvent event : recorded) {
+            if (event.getEventType().getName().equals(name)) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+        byte[] tap = readTap("Zlatokop.tap");
+        List<RecordedEvent> recorded = record(tap);
+
+        List<RecordedEvent> files = filter(recorded, JfrTapEvents.FILE_EVENT);
+        assertEquals(1, files.size());
+        RecordedEvent fileEvent = files.get(0);
+        assertEquals("test.tap", fileEvent.getString("source"));
+        assertEquals(tap.length, fileEvent.getLong("bytes"));
+        assertEquals(2, fileEvent.getInt("blocks"));
+        assertTrue(fileEvent.getBoolean("ok"));
+
+        List<RecordedEvent> blocks = filter(recorded, JfrTapEvents.BLOCK_EVENT);
+        assertEquals(2, blocks.size());
+        assertEquals(0, blocks.get(0).getInt("offset"));
+        assertEquals("BASIC", blocks.get(0).getString("type"));
+        assertFalse(blocks.get(0).getBoolean("duplicate"));
+
+        List<RecordedEvent> vars = filter(recorded, JfrTapEvents.VARS_EVENT);
+        assertEquals(1, vars.size());
+        assertTrue(vars.get(0).getBoolean("valid"));
+        assertTrue(vars.get(0).getInt("variables") > 0);
+    }
+
+    @Test
+    public void testInvalidVars() throws Exception {
+        byte[] tap = readTap("Zlatokop.tap");
+        RecordedEvent vars = filter(record(tap), JfrTapEvents.VARS_EVENT).get(0);
+        // neplatná identifikace první proměnné = "strojový kód"
+        // (ale > 9999, jinak by šlo o další řádek programu)
+        tap[vars.getInt("offset")] = (byte) 0xFF;
+        vars = filter(record(tap), JfrTapEvents.VARS_EVENT).get(0);
+        assertFalse(vars.getBoolean("valid"));
+        assertEquals(0, vars.getInt("variables"));
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        assertNull(System.getProperty(TapEvents.PROPERTY));
+        assertNull(TapEvents.create());
+    }
+
+}   // JfrTapEventsTest.java
@@ -0,0 +1,144 @@
+/*
+ * JsonTapVisitorTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.TAP_DIR;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class JsonTapVisitorTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static String convert(String tapName, OutputFormat format,
+            boolean onlyBasic) throws IOException, InvalidTapException {
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setInFile(new File(TAP_DIR, tapName));
+        tap2bas.setOutputFormat(format);
+        StringWriter sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        try {
+            if (onlyBasic) {
+                tap2bas.analyzeAndExtractOnlyBasic();
+            }
+            else {
+                tap2bas.analyzeAll();
+            }
+        } finally {
+            tap2bas.closeOutWriter();
+        }
+        return sw.toString();
+    }
+
+    @Test
+    public void testNdjsonUsrChar() throws IOException, InvalidTapException {
+        String out = convert("usr_char.tap", OutputFormat.NDJSON, false);
+        String[] records = out.split("\n");
+        // hlavička, data, 10 řádek
+        assertEquals(12, records.length);
+        assertEquals("{\"type\":\"header\",\"offset\":0,\"blockType\":\"BASIC\","
+                + "\"name\":\"\",\"dataLength\":224,\"p1\":32768,\"p2\":224}",
+                records[0]);
+        assertEquals("{\"type\":\"data\",\"offset\":21,\"blockType\":\"BASIC\","
+                + "\"length\":224}", records[1]);
+        assertEquals("{\"type\":\"line\",\"offset\":24,\"line\":11,"
+                + "\"text\":\"DATA BIN 00011000\",\"numbers\":[24]}", records[2]);
+        for (String record : records) {
+            assertTrue(record, record.startsWith("{\"type\":\""));
+            assertTrue(record, record.endsWith("}"));
+        }
+    }
+
+    @Test
+    public void testJsonArray() throws IOException, InvalidTapException {
+        String out = convert("Zlatokop.tap", OutputFormat.JSON, false);
+        assertTrue(out.startsWith("[\n{\"type\":\"header\""));
+        assertTrue(out.endsWith("}\n]\n"));
+        assertTrue(out.contains("{\"type\":\"var\",\"kind\":\"for\""));
+        assertTrue(out.contains("\"kind\":\"number\""));
+        assertTrue(out.contains(",\"name\":\"beep\",\"value\":7}"));
+        assertFalse(out.contains(",\n]"));
+    }
+
+    /** I po chybě formátu TAP je pole JSON uzavřené. */
+    @Test
+    public void testJsonArrayClosedOnError() throws IOException {
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setInFile(new File(TAP_DIR, "PacMan.tap"));
+        tap2bas.setOutputFormat(OutputFormat.JSON);
+        StringWriter sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        try {
+            tap2bas.analyzeAll();
+            fail("InvalidTapException expected");
+        } catch (InvalidTapException ex) {
+            // ok
+        } finally {
+            tap2bas.closeOutWriter();
+        }
+        String out = sw.toString();
+        assertTrue(out.startsWith("[\n"));
+        assertTrue(out.contains("{\"type\":\"error\""));
+        assertTrue(out.endsWith("}\n]\n"));
+    }
+
+    @Test
+    public void testEscaping() throws IOException, InvalidTapException {
+        TapGenerator generator = new TapGenerator(7);
+        generator.setLineCount(50);
+        generator.setStringArrays(2, 10);
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setTapContent(generator.generate());
+        tap2bas.setOutputFormat(OutputFormat.NDJSON);
+        StringWriter sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        tap2bas.analyzeAll();
+        tap2bas.closeOutWriter();
+        for (String record : sw.toString().split("\n")) {
+            for (int i=0; i<record.length(); i++) {
+                char ch = record.charAt(i);
+                assertTrue(record, ch >= 0x20 && ch < 0x7F);
+            }
+        }
+    }
+
+    @Test
+    public void testBatchExtension() throws IOException, InterruptedException {
+        File outDir = tmp.newFolder("out");
+        Tap2basBatch batch = new Tap2basBatch(1);
+        batch.setMode(true, false);
+        batch.setOutDir(outDir);
+        batch.setOutputFormat(OutputFormat.NDJSON);
+        batch.addInput(new File(TAP_DIR, "usr_char.tap").getPath());
+        List<Tap2basBatch.Result> results = batch.run();
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).isOk());
+        assertEquals(new File(outDir, "usr_char.ndjson"), results.get(0).getOutFile());
+    }
+
+    @Test
+    public void testOutputFormatByName() {
+        assertEquals(OutputFormat.JSON, OutputFormat.getByName("json"));
+        assertEquals(OutputFormat.NDJSON, OutputFormat.getByName("NDJSON"));
+        assertEquals(OutputFormat.TEXT, OutputFormat.getByName("text"));
+        assertNull(OutputFormat.getByName("xml"));
+    }
+
+}   // JsonTapVisitorTest.java
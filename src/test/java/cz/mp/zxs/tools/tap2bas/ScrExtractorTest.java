@@ -0,0 +1,134 @@
+/*
+ * ScrExtractorTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.TAP_DIR;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.readTap;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class ScrExtractorTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static byte[] screen(long seed) {
+        byte[] screen = new byte[Tap2bas.SCREEN_LENGTH];
+        new Random(seed).nextBytes(screen);
+        return screen;
+    }
+
+    /** usr_char.tap + obrázky + blok kódu s délkou obrázku, ale jinou adresou */
+    private File createTap(byte[]... screens) throws IOException {
+        ByteArrayOutputStream tap = new ByteArrayOutputStream();
+        tap.write(readTap("usr_char.tap"));
+        for (int i=0; i<screens.length; i++) {
+            TapGenerator.appendBlockPair(tap, TapBlockType.BINARY_DATA,
+                    "scr" + i, screens[i], Tap2bas.SCREEN_ADDRESS, 32768);
+        }
+        TapGenerator.appendBlockPair(tap, TapBlockType.BINARY_DATA,
+                "code", screen(99), 32768, 32768);
+        File file = tmp.newFile();
+        Files.write(file.toPath(), tap.toByteArray());
+        return file;
+    }
+
+    @Test
+    public void testNoScreen() throws IOException {
+        File out = new File(tmp.getRoot(), "out/usr_char.scr");
+        List<File> written = ScrExtractor.extract(
+                new File(TAP_DIR, "usr_char.tap"), out);
+        assertTrue(written.isEmpty());
+        assertFalse(out.getParentFile().exists());
+    }
+
+    @Test
+    public void testOneScreen() throws IOException {
+        byte[] screen = screen(1);
+        File out = new File(tmp.getRoot(), "out/gold.scr");
+        List<File> written = ScrExtractor.extract(createTap(screen), out);
+        assertEquals(Arrays.asList(out), written);
+        assertArrayEquals(screen, Files.readAllBytes(out.toPath()));
+    }
+
+    @Test
+    public void testMoreScreens() throws IOException {
+        byte[] screen1 = screen(1);
+        byte[] screen2 = screen(2);
+        File out = new File(tmp.getRoot(), "gold.scr");
+        List<File> written = ScrExtractor.extract(createTap(screen1, screen2), out);
+        assertEquals(2, written.size());
+        assertEquals("gold_1.scr", written.get(0).getName());
+        assertEquals("gold_2.scr", written.get(1).getName());
+        assertArrayEquals(screen1, Files.readAllBytes(written.get(0).toPath()));
+        assertArrayEquals(screen2, Files.readAllBytes(written.get(1).toPath()));
+        assertFalse(out.exists());
+    }
+
+    @Test
+    public void testMoreScreensFromMemory() throws IOException {
+        byte[] screen1 = screen(1);
+        byte[] screen2 = screen(2);
+        byte[] tap = Files.readAllBytes(createTap(screen1, screen2).toPath());
+        // (obsah nezačíná na začátku pole, jako ve sdíleném bufferu)
+        byte[] shifted = new byte[tap.length + 10];
+        System.arraycopy(tap, 0, shifted, 5, tap.length);
+        ByteBuffer content = ByteBuffer.wrap(shifted, 5, tap.length);
+        File out = new File(tmp.getRoot(), "gold.scr");
+        List<File> written = ScrExtractor.extract(content, out);
+        assertEquals(2, written.size());
+        assertArrayEquals(screen1, Files.readAllBytes(written.get(0).toPath()));
+        assertArrayEquals(screen2, Files.readAllBytes(written.get(1).toPath()));
+        assertEquals(5, content.position());
+    }
+
+    @Test
+    public void testGetNumberedFile() {
+        assertEquals(new File("dir", "gold_3.scr"),
+                ScrExtractor.getNumberedFile(new File("dir", "gold.scr"), 3));
+        assertEquals(new File("gold_1"),
+                ScrExtractor.getNumberedFile(new File("gold"), 1));
+    }
+
+    @Test
+    public void testBatchExtract() throws IOException, InterruptedException {
+        File dir = tmp.newFolder("tapes");
+        Files.copy(createTap(screen(1)).toPath(), new File(dir, "a.tap").toPath());
+        Files.copy(new File(TAP_DIR, "usr_char.tap").toPath(), new File(dir, "b.tap").toPath());
+        File outDir = new File(tmp.getRoot(), "out");
+
+        Tap2basBatch batch = new Tap2basBatch(2);
+        batch.setExtractScrs(true);
+        batch.setOutDir(outDir);
+        batch.addInput(dir.getPath());
+        List<Tap2basBatch.Result> results = batch.run();
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).isOk());
+        assertEquals(new File(outDir, "a.scr"), results.get(0).getOutFile());
+        assertEquals("screens: 1", results.get(0).getMessage());
+        assertTrue(results.get(1).isOk());
+        assertNull(results.get(1).getOutFile());
+        assertEquals("screens: 0", results.get(1).getMessage());
+    }
+
+}   // ScrExtractorTest.java
@@ -0,0 +1,139 @@
+/*
+ * Tap2basBatchTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.TAP_DIR;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.readTap;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class Tap2basBatchTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testIsGlob() {
+        assertTrue(Tap2basBatch.isGlob("*.tap"));
+        assertTrue(Tap2basBatch.isGlob("tapes/**/a?.tap"));
+        assertTrue(Tap2basBatch.isGlob("tapes/[ab]*.tap"));
+        assertFalse(Tap2basBatch.isGlob("tapes/gold.tap"));
+    }
+
+    @Test
+    public void testRunDirectoryOnlyBasic() throws IOException, InterruptedException {
+        File outDir = tmp.newFolder("out");
+        Tap2basBatch batch = new Tap2basBatch(2);
+        batch.setMode(true, false);
+        batch.setOutDir(outDir);
+        int count = batch.addInput(TAP_DIR);
+        assertTrue(count > 1);
+
+        List<Tap2basBatch.Result> results = batch.run();
+        assertEquals(count, results.size());
+
+        boolean usrCharFound = false;
+        for (Tap2basBatch.Result result : results) {
+            String name = result.getInFile().getName();
+            if (name.equals("PacMan.tap")) {
+                // (PacMan.tap má chybnou délku bloku)
+                assertEquals(Tap2basCli.RESULT_ERR_TAP_FORMAT, result.getResultCode());
+                assertNotNull(result.getMessage());
+            }
+            else {
+                assertTrue(name, result.isOk());
+            }
+            if (name.equals("usr_char.tap")) {
+                usrCharFound = true;
+                assertEquals(new File(outDir, "usr_char.bas"), result.getOutFile());
+                String out = new String(Files.readAllBytes(
+                        result.getOutFile().toPath())).replaceAll("  ", " ");
+                String expected = new String(Files.readAllBytes(
+                        new File(TAP_DIR, "usr_char.bas_").toPath())).replaceAll("  ", " ");
+                assertEquals(expected, out);
+            }
+        }
+        assertTrue(usrCharFound);
+    }
+
+    @Test
+    public void testAddInputGlob() throws IOException {
+        Tap2basBatch batch = new Tap2basBatch(1);
+        assertEquals(2, batch.addInput(TAP_DIR + "/[PZ][lo]*.tap"));   // Poklad, Zlatokop
+        assertEquals(0, batch.addInput(TAP_DIR + "/*.nothing"));
+        assertEquals(2, batch.getInputCount());
+    }
+
+    @Test
+    public void testGlobMatcher() {
+        PathMatcher matcher = Tap2basBatch.getGlobMatcher("**/*.tap");
+        assertTrue(matcher.matches(Paths.get("top.tap")));
+        assertTrue(matcher.matches(Paths.get("a/b/deep.tap")));
+        assertFalse(matcher.matches(Paths.get("a/b/deep.txt")));
+        matcher = Tap2basBatch.getGlobMatcher("a/**/b/**/*.tap");
+        assertTrue(matcher.matches(Paths.get("a/b/x.tap")));
+        assertTrue(matcher.matches(Paths.get("a/1/b/2/3/x.tap")));
+        assertFalse(matcher.matches(Paths.get("b/x.tap")));
+        matcher = Tap2basBatch.getGlobMatcher("x**/*.tap");
+        assertFalse(matcher.matches(Paths.get("x.tap")));
+    }
+
+    @Test
+    public void testAddInputRecursiveGlob() throws IOException {
+        File tapes = tmp.newFolder("tapes");
+        assertTrue(new File(tapes, "a/b").mkdirs());
+        byte[] tap = readTap("Zlatokop.tap");
+        Files.write(new File(tapes, "top.tap").toPath(), tap);
+        Files.write(new File(tapes, "a/mid.tap").toPath(), tap);
+        Files.write(new File(tapes, "a/b/deep.tap").toPath(), tap);
+        Tap2basBatch batch = new Tap2basBatch(1);
+        assertEquals(3, batch.addInput(tapes.getPath() + "/**/*.tap"));
+    }
+
+    @Test
+    public void testDuplicateOutNames() throws IOException, InterruptedException {
+        File dirA = tmp.newFolder("a");
+        File dirB = tmp.newFolder("b");
+        Files.copy(new File(TAP_DIR, "Zlatokop.tap").toPath(), new File(dirA, "x.tap").toPath());
+        Files.copy(new File(TAP_DIR, "Poklad.tap").toPath(), new File(dirB, "x.tap").toPath());
+        // (x_2.tap by jinak dostal stejné jméno jako přejmenovaný výstup)
+        Files.copy(new File(TAP_DIR, "usr_char.tap").toPath(), new File(dirB, "x_2.tap").toPath());
+        File outDir = tmp.newFolder("out");
+        Tap2basBatch batch = new Tap2basBatch(3);
+        batch.setMode(true, false);
+        batch.setOutDir(outDir);
+        batch.addInput(new File(dirA, "x.tap").getPath());
+        batch.addInput(new File(dirB, "x.tap").getPath());
+        batch.addInput(new File(dirB, "x_2.tap").getPath());
+
+        List<Tap2basBatch.Result> results = batch.run();
+        assertEquals(new File(outDir, "x.bas"), results.get(0).getOutFile());
+        assertEquals(new File(outDir, "x_3.bas"), results.get(1).getOutFile());
+        assertEquals(new File(outDir, "x_2.bas"), results.get(2).getOutFile());
+        for (Tap2basBatch.Result result : results) {
+            assertTrue(result.isOk());
+            assertTrue(result.getOutFile().length() > 0);
+        }
+        assertFalse(Files.readAllBytes(results.get(0).getOutFile().toPath()).length
+                == Files.readAllBytes(results.get(1).getOutFile().toPath()).length);
+    }
+
+}   // Tap2basBatchTest.java
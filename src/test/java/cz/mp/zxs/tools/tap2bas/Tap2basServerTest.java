@@ -0,0 +1,205 @@
+/*
+ * Tap2basServerTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.TAP_DIR;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class Tap2basServerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Tap2basServer server;
+    private Thread serverThread;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new Tap2basServer(0, 2);
+        server.setTokenFile(new File(tmp.getRoot(), "token"));
+        server.start();
+        serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    server.run();
+                } catch (IOException ioex) {
+                    throw new RuntimeException(ioex);
+                }
+            }
+        });
+        serverThread.start();
+    }
+
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        server.stop();
+        serverThread.join(5000);
+    }
+
+    private Tap2basClient newClient() {
+        Tap2basClient client = new Tap2basClient(server.getPort());
+        client.setToken(server.getToken());
+        return client;
+    }
+
+    private byte[] convertLocally(File tapFile, OutputFormat format)
+            throws IOException, InvalidTapException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setOutputFormat(format);
+        tap2bas.setInFile(tapFile);
+        tap2bas.setOutStream(out);
+        tap2bas.analyzeAll();
+        tap2bas.closeOutWriter();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testConvertPath() throws Exception {
+        File tapFile = new File(TAP_DIR, "Zlatokop.tap");
+        Tap2basClient client = newClient();
+        client.setMode(false, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Tap2basClient.Response response = client.convert(tapFile, out);
+        assertTrue(response.getMessage(), response.isOk());
+        assertTrue(response.getWarnings().isEmpty());
+        assertArrayEquals(convertLocally(tapFile, OutputFormat.TEXT), out.toByteArray());
+    }
+
+    @Test
+    public void testConvertContent() throws Exception {
+        File tapFile = new File(TAP_DIR, "Zlatokop.tap");
+        Tap2basClient client = newClient();
+        client.setMode(false, true);
+        client.setFormat("json");
+        client.setSendContent(true);
+        // (opakovaně: vlákna serveru používají stejné instance Tap2bas)
+        byte[] expected = convertLocally(tapFile, OutputFormat.JSON);
+        for (int i=0; i<3; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Tap2basClient.Response response = client.convert(tapFile, out);
+            assertTrue(response.getMessage(), response.isOk());
+            assertArrayEquals(expected, out.toByteArray());
+        }
+    }
+
+    // nečinná spojení nesmí natrvalo obsadit (pevný počet) vlákna serveru
+    @Test(timeout = 20000)
+    public void testIdleConnections() throws Exception {
+        server.setReadTimeout(200);
+        Socket[] idle = new Socket[3];     // (víc než vláken serveru)
+        for (int i=0; i<idle.length; i++) {
+            idle[i] = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        }
+        try {
+            for (Socket socket : idle) {
+                socket.setSoTimeout(10000);
+                assertEquals(-1, socket.getInputStream().read());   // (server zavřel)
+            }
+            File tapFile = new File(TAP_DIR, "Zlatokop.tap");
+            Tap2basClient client = newClient();
+            Tap2basClient.Response response = client.convert(tapFile, new ByteArrayOutputStream());
+            assertTrue(response.getMessage(), response.isOk());
+        } finally {
+            for (Socket socket : idle) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidTap() throws Exception {
+        File tapFile = tmp.newFile("bad.tap");
+        byte[] content = new byte[48];
+        content[0] = 5;     // (hlavička musí mít 19 B)
+        Files.write(tapFile.toPath(), content);
+        Tap2basClient client = newClient();
+        Tap2basClient.Response response = client.convert(tapFile, new ByteArrayOutputStream());
+        assertEquals(Tap2basCli.RESULT_ERR_TAP_FORMAT, response.getResultCode());
+        assertFalse(response.getMessage().isEmpty());
+    }
+
+    @Test
+    public void testUnknownFormat() throws Exception {
+        File tapFile = new File(TAP_DIR, "Zlatokop.tap");
+        Tap2basClient client = newClient();
+        client.setFormat("xml");
+        Tap2basClient.Response response = client.convert(tapFile, new ByteArrayOutputStream());
+        assertEquals(Tap2basCli.RESULT_ERR_GENERAL, response.getResultCode());
+    }
+
+    // bez klíče server požadavek nepřijme (čte soubory s právy svého uživatele)
+    @Test
+    public void testInvalidToken() throws Exception {
+        File tapFile = new File(TAP_DIR, "Zlatokop.tap");
+        Tap2basClient client = newClient();
+        client.setToken("0123456789abcdef0123456789abcdef");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Tap2basClient.Response response = client.convert(tapFile, out);
+        assertEquals(Tap2basCli.RESULT_ERR_GENERAL, response.getResultCode());
+        assertTrue(response.getMessage().contains("invalid token"));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void testTokenFile() throws Exception {
+        File tokenFile = server.getTokenFile();
+        assertEquals(server.getToken(), new String(
+                Files.readAllBytes(tokenFile.toPath()), "US-ASCII"));
+        assertEquals(32, server.getToken().length());
+        try {
+            assertEquals("rw-------", PosixFilePermissions.toString(
+                    Files.getPosixFilePermissions(tokenFile.toPath())));
+        } catch (UnsupportedOperationException uoex) {
+            // (Windows)
+        }
+        server.stop();
+        assertFalse(tokenFile.exists());
+    }
+
+    // ohlášená délka obsahu nad limitem: spojení se uzavře bez alokace
+    @Test(timeout = 20000)
+    public void testContentTooLong() throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+            request.writeInt(Tap2basServer.MAGIC);
+            request.writeShort(Tap2basServer.VERSION);
+            request.writeUTF(server.getToken());
+            request.writeByte(0);
+            request.writeUTF("text");
+            request.writeByte(Tap2basServer.INPUT_CONTENT);
+            request.writeInt(Tap2basServer.MAX_CONTENT_LENGTH + 1);
+            request.flush();
+            socket.setSoTimeout(10000);
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        Tap2basClient.Response response = newClient().convert(
+                new File(TAP_DIR, "Zlatokop.tap"), new ByteArrayOutputStream());
+        assertTrue(response.getMessage(), response.isOk());
+    }
+
+}   // Tap2basServerTest.java
@@ -7,6 +7,7 @@
 
 package cz.mp.zxs.tools.tap2bas;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringWriter;
@@ -61,6 +62,69 @@ public class Tap2basTest {
             Assert.fail(ex.getMessage());
         }        
     }
+
+    private static final String[] TAP_FILES = new String[] {
+        "Didaktik.tap", "Poklad.tap", "XmasEve.tap", "Zlatokop.tap", 
+        "merged.tap", "real_num.tap", "usr_char.tap", "PacMan.tap"
+    };
+
+    /**
+     * Provede úplnou analýzu a vrátí výstup. 
+     * Případná chyba ({@code InvalidTapException}) se připojí na konec výstupu.
+     */
+    private static String analyzeAll(Tap2bas tap2bas) throws IOException {
+        StringWriter sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        try {
+            tap2bas.analyzeAll();
+        } catch (InvalidTapException ex) {
+            sw.write("\n#" + ex.getMessage());
+        }
+        return sw.toString();
+    }
+    
+    // čtení z proudu musí dát stejný výsledek jako čtení celého souboru
+    @Test
+    public void testSetInStreamSameAsSetInFile() throws IOException {
+        for (String fileName : TAP_FILES) {
+            File inFile = new File("src/test/resources/tap_files/" + fileName);
+
+            Tap2bas tap2bas = new Tap2bas();
+            tap2bas.setInFile(inFile);
+            String expected = analyzeAll(tap2bas);
+            
+            tap2bas = new Tap2bas();
+            tap2bas.setInStream(new ByteArrayInputStream(
+                    Files.readAllBytes(inFile.toPath())));
+            String result = analyzeAll(tap2bas);
+
+            Assert.assertEquals(fileName, expected, result);
+        }
+    }
+
+    // roura (-i -) vrací při čtení jen to, co je zrovna k dispozici
+    @Test
+    public void testSetInStreamShortReads() throws IOException {
+        for (String fileName : TAP_FILES) {
+            File inFile = new File("src/test/resources/tap_files/" + fileName);
+
+            Tap2bas tap2bas = new Tap2bas();
+            tap2bas.setInFile(inFile);
+            String expected = analyzeAll(tap2bas);
+
+            tap2bas = new Tap2bas();
+            tap2bas.setInStream(new ByteArrayInputStream(
+                    Files.readAllBytes(inFile.toPath())) {
+                @Override
+                public synchronized int read(byte[] b, int off, int len) {
+                    return super.read(b, off, Math.min(len, 7));
+                }
+            });
+            String result = analyzeAll(tap2bas);
+
+            Assert.assertEquals(fileName, expected, result);
+        }
+    }
             
 }   // Tap2basTest.java
  
\ No newline at end of file
@@ -0,0 +1,187 @@
+/*
+ * TapArchiveTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.TAP_DIR;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.readTap;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class TapArchiveTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.duplicate().get(result);
+        return result;
+    }
+
+    /**
+     * {@code games.zip}: {@code gold/Zlatokop.tap}, {@code Poklad.tap}
+     * a položky, které se mají přeskočit.
+     */
+    private File createZip(File dir) throws IOException {
+        File zip = new File(dir, "games.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("gold/"));
+            out.putNextEntry(new ZipEntry("gold/Zlatokop.tap"));
+            out.write(readTap("Zlatokop.tap"));
+            out.putNextEntry(new ZipEntry("readme.txt"));
+            out.write("hello".getBytes());
+            out.putNextEntry(new ZipEntry("../evil.tap"));
+            out.write(readTap("Poklad.tap"));
+            out.putNextEntry(new ZipEntry("Poklad.tap"));
+            out.write(readTap("Poklad.tap"));
+        }
+        return zip;
+    }
+
+    private File createGzip(File dir, String tapName) throws IOException {
+        File gz = new File(dir, tapName + TapArchive.GZIP_EXT);
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gz))) {
+            out.write(readTap(tapName));
+        }
+        return gz;
+    }
+
+    @Test
+    public void testZip() throws IOException {
+        File zip = createZip(tmp.getRoot());
+        TapArchive.Buffer buffer = new TapArchive.Buffer();
+        try (TapArchive archive = new TapArchive(zip)) {
+            assertEquals(Arrays.asList("gold/Zlatokop.tap", "Poklad.tap"),
+                    archive.getTapEntryNames());
+
+            ByteBuffer content = archive.read("gold/Zlatokop.tap", buffer);
+            assertArrayEquals(readTap("Zlatokop.tap"), toArray(content));
+            int capacity = buffer.capacity();
+            // (menší položka se rozbalí do stejného bufferu)
+            content = archive.read("Poklad.tap", buffer);
+            assertArrayEquals(readTap("Poklad.tap"), toArray(content));
+            assertEquals(capacity, buffer.capacity());
+
+            try {
+                archive.read("nothing.tap", buffer);
+                fail();
+            } catch (IOException expected) {
+                assertTrue(expected.getMessage().endsWith("games.zip!/nothing.tap"));
+            }
+        }
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        File gz = createGzip(tmp.getRoot(), "Didaktik.tap");
+        ByteBuffer content = TapArchive.readGzip(gz, new TapArchive.Buffer());
+        assertArrayEquals(readTap("Didaktik.tap"), toArray(content));
+    }
+
+    @Test
+    public void testNames() {
+        assertTrue(TapArchive.isZip(new File("a/GAMES.ZIP")));
+        assertTrue(TapArchive.isGzip(new File("gold.tap.gz")));
+        assertFalse(TapArchive.isArchive(new File("gold.tap")));
+        assertEquals("gold.tap", TapArchive.stripArchiveExt("gold.tap.gz"));
+        assertEquals("games", TapArchive.stripArchiveExt("games.zip"));
+        assertTrue(TapArchive.isSafeEntryName("a/b..c/gold.tap"));
+        assertFalse(TapArchive.isSafeEntryName("a/../../gold.tap"));
+        assertFalse(TapArchive.isSafeEntryName("..\\gold.tap"));
+        assertFalse(TapArchive.isSafeEntryName("/tmp/gold.tap"));
+        assertFalse(TapArchive.isSafeEntryName("C:/gold.tap"));
+    }
+
+    @Test
+    public void testBatch() throws IOException, InterruptedException, InvalidTapException {
+        File inDir = tmp.newFolder("in");
+        createZip(inDir);
+        createGzip(inDir, "Didaktik.tap");
+        File outDir = tmp.newFolder("out");
+
+        Tap2basBatch batch = new Tap2basBatch(2);
+        batch.setMode(true, false);
+        batch.setOutDir(outDir);
+        assertEquals(3, batch.addInput(inDir.getPath()));
+        List<Tap2basBatch.Result> results = batch.run();
+        assertEquals(3, results.size());
+
+        Tap2basBatch.Result didaktik = results.get(0);
+        assertTrue(didaktik.getMessage(), didaktik.isOk());
+        assertEquals(new File(outDir, "Didaktik.bas"), didaktik.getOutFile());
+
+        Tap2basBatch.Result zlatokop = results.get(2);
+        assertTrue(zlatokop.getMessage(), zlatokop.isOk());
+        assertEquals(new File(inDir, "games.zip"), zlatokop.getInFile());
+        assertEquals(TapArchive.getSourceName(new File(inDir, "games.zip"),
+                "gold/Zlatokop.tap"), zlatokop.getInName());
+        assertEquals(new File(outDir, "games/gold/Zlatokop.bas"), zlatokop.getOutFile());
+
+        // (stejný výstup jako z rozbaleného souboru)
+        Tap2bas tap2bas = new Tap2bas();
+        File expected = tmp.newFile();
+        tap2bas.setInFile(new File(TAP_DIR, "Zlatokop.tap"));
+        tap2bas.setOutFile(expected);
+        tap2bas.analyzeAndExtractOnlyBasic();
+        tap2bas.closeOutWriter();
+        assertArrayEquals(Files.readAllBytes(expected.toPath()),
+                Files.readAllBytes(zlatokop.getOutFile().toPath()));
+    }
+
+    @Test
+    public void testBatchWithoutOutDir() throws IOException, InterruptedException {
+        File zip = createZip(tmp.getRoot());
+        Tap2basBatch batch = new Tap2basBatch(1);
+        assertEquals(2, batch.addInput(zip.getPath()));
+        List<Tap2basBatch.Result> results = batch.run();
+        // (výstup vedle archivu, v adresáři podle jména archivu)
+        assertEquals(new File(tmp.getRoot(), "games/gold/Zlatokop.txt"),
+                results.get(0).getOutFile());
+        assertTrue(results.get(0).getOutFile().isFile());
+        assertEquals(new File(tmp.getRoot(), "games/Poklad.txt"),
+                results.get(1).getOutFile());
+    }
+
+    @Test
+    public void testBatchZipBesideDir() throws IOException, InterruptedException {
+        File inDir = tmp.newFolder("in");
+        createZip(inDir);
+        File gamesDir = new File(inDir, "games");
+        assertTrue(gamesDir.mkdir());
+        Files.write(new File(gamesDir, "Poklad.tap").toPath(), readTap("Poklad.tap"));
+        File outDir = tmp.newFolder("out");
+        Tap2basBatch batch = new Tap2basBatch(2);
+        batch.setOutDir(outDir);
+        assertEquals(3, batch.addInput(inDir.getPath()));
+        List<Tap2basBatch.Result> results = batch.run();
+        // games.zip!/Poklad.tap (položka) a games/Poklad.tap (soubor)
+        assertTrue(results.get(0).getInName().endsWith("!/Poklad.tap"));
+        assertEquals(new File(outDir, "games/Poklad.txt"), results.get(0).getOutFile());
+        assertEquals(new File(gamesDir, "Poklad.tap"), results.get(1).getInFile());
+        assertEquals(new File(outDir, "games/Poklad_2.txt"), results.get(1).getOutFile());
+    }
+
+}   // TapArchiveTest.java
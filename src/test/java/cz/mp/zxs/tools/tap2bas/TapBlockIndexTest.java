@@ -0,0 +1,187 @@
+/*
+ * TapBlockIndexTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class TapBlockIndexTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testBuild() throws IOException, InvalidTapException {
+        File inFile = new File("src/test/resources/tap_files/Zlatokop.tap");
+        TapBlockIndex index = TapBlockIndex.build(
+                Tap2bas.readTapFile(inFile), inFile.lastModified());
+
+        assertEquals(4, index.size());
+        assertEquals(inFile.length(), index.getFileSize());
+
+        TapBlockIndex.Entry basic = index.get(0);
+        assertTrue(basic.isHeader());
+        assertEquals(0, basic.getOffset());
+        assertEquals(Tap2bas.FLAG_HEADER, basic.getFlag());
+        assertEquals(TapBlockType.BASIC, basic.getType());
+        assertEquals("GOLDMINER", basic.getName());
+        assertEquals(17808, basic.getDataLength());
+        assertEquals(9005, basic.getP1());
+        assertEquals(15931, basic.getP2());
+
+        TapBlockIndex.Entry data = index.get(1);
+        assertFalse(data.isHeader());
+        assertNull(data.getType());
+        assertEquals(0x15, data.getOffset());
+        assertEquals(17810, data.getLength());
+        assertEquals(Tap2bas.FLAG_DATA, data.getFlag());
+
+        for (TapBlockIndex.Entry entry : index.getEntries()) {
+            assertTrue(entry.isParityOk());
+        }
+        assertSame(basic, index.getHeaderOf(1));
+        assertEquals("Gold", index.getHeaderOf(3).getName());
+        List<TapBlockIndex.Entry> found = index.findHeadersByName("Gold");
+        assertEquals(1, found.size());
+        assertEquals(0x45a9, found.get(0).getOffset());
+        assertTrue(index.findHeadersByName("xyz").isEmpty());
+    }
+
+    @Test
+    public void testParityAndTruncated() throws InvalidTapException {
+        TapGenerator generator = new TapGenerator(5);
+        generator.setLineCount(20);
+        generator.setCodeLength(100);
+        byte[] tap = generator.generate();
+        byte[] broken = tap.clone();
+        broken[broken.length - 10] ^= 0x01;    // (data bloku s kódem)
+
+        TapBlockIndex index = TapBlockIndex.build(ByteBuffer.wrap(broken), 0);
+        assertEquals(4, index.size());
+        assertTrue(index.get(0).isParityOk());
+        assertTrue(index.get(2).isParityOk());
+        assertFalse(index.get(3).isParityOk());
+        assertNotEquals(TapBlockIndex.build(ByteBuffer.wrap(tap), 0).getHash(),
+                index.getHash());
+
+        try {
+            TapBlockIndex.build(ByteBuffer.wrap(Arrays.copyOf(tap, tap.length - 1)), 0);
+            fail("truncated TAP");
+        } catch (InvalidTapException expected) {
+        }
+    }
+
+    @Test
+    public void testSidecar() throws IOException, InvalidTapException {
+        File tapFile = tmp.newFile("test.tap");
+        TapGenerator generator = new TapGenerator(9);
+        generator.setLineCount(30);
+        generator.setScreens(2);
+        Files.write(tapFile.toPath(), generator.generate());
+        File sidecar = TapBlockIndex.getSidecarFile(tapFile);
+
+        ByteBuffer content = Tap2bas.readTapFile(tapFile);
+        TapBlockIndex index = TapBlockIndex.forFile(tapFile, content, true);
+        assertTrue(sidecar.isFile());
+
+        TapBlockIndex loaded = TapBlockIndex.load(sidecar);
+        assertNotNull(loaded);
+        assertTrue(loaded.isValidFor(content, tapFile.lastModified()));
+        assertEquals(index.size(), loaded.size());
+        assertEquals(index.getHash(), loaded.getHash());
+        for (int i=0; i<index.size(); i++) {
+            TapBlockIndex.Entry expected = index.get(i);
+            TapBlockIndex.Entry actual = loaded.get(i);
+            assertEquals(expected.getOffset(), actual.getOffset());
+            assertEquals(expected.getLength(), actual.getLength());
+            assertEquals(expected.getFlag(), actual.getFlag());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getType(), actual.getType());
+            assertEquals(expected.getP1(), actual.getP1());
+            assertEquals(expected.getP2(), actual.getP2());
+        }
+
+        // jiný obsah (stejná velikost i čas) => index neplatí
+        byte[] changed = generator.generate();
+        changed[changed.length - 2] ^= 0x55;
+        assertFalse(loaded.isValidFor(ByteBuffer.wrap(changed), tapFile.lastModified()));
+        // jiný čas
+        assertFalse(loaded.isValidFor(content, tapFile.lastModified() + 1000));
+
+        // poškozený index => vytvoří se znovu
+        Files.write(sidecar.toPath(), new byte[] { 1, 2, 3 });
+        assertNull(TapBlockIndex.load(sidecar));
+        TapBlockIndex.forFile(tapFile, content, true);
+        assertNotNull(TapBlockIndex.load(sidecar));
+    }
+
+    @Test
+    public void testSelectedOffsets() throws IOException, InvalidTapException {
+        File inFile = new File("src/test/resources/tap_files/Zlatokop.tap");
+        ByteBuffer content = Tap2bas.readTapFile(inFile);
+        TapBlockIndex index = TapBlockIndex.build(content, 0);
+
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setTapContent(content);
+        tap2bas.setSelectedOffsets(new int[] { index.getHeaderOf(3).getOffset() });
+        StringWriter sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        tap2bas.analyzeWithoutVars();
+        tap2bas.closeOutWriter();
+        String selected = sw.toString();
+
+        tap2bas.setSelectedOffsets(null);
+        sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        tap2bas.analyzeWithoutVars();
+        tap2bas.closeOutWriter();
+        String all = sw.toString();
+
+        assertTrue(selected.startsWith("\n=== Data: binary data   name=\"Gold\""));
+        assertFalse(selected.contains("GOLDMINER"));
+        assertTrue(all.endsWith(selected));
+    }
+
+    @Test
+    public void testHash64() {
+        byte[] data = new byte[100];
+        for (int i=0; i<data.length; i++) {
+            data[i] = (byte) i;
+        }
+        long hash = TapBlockIndex.hash64(ByteBuffer.wrap(data));
+        // (nezávisí na pozici ani na pořadí bytů bufferu)
+        ByteBuffer shifted = ByteBuffer.allocate(103);
+        shifted.position(3);
+        shifted.put(data);
+        shifted.position(3);
+        assertEquals(hash, TapBlockIndex.hash64(shifted));
+        assertEquals(3, shifted.position());
+        // (změna kteréhokoliv bytu, i ve zbytku za celými 8B)
+        for (int i=0; i<data.length; i++) {
+            byte[] changed = data.clone();
+            changed[i] ^= 0x10;
+            assertNotEquals(hash, TapBlockIndex.hash64(ByteBuffer.wrap(changed)));
+        }
+        assertNotEquals(hash, TapBlockIndex.hash64(ByteBuffer.wrap(data, 0, 99)));
+    }
+
+}   // TapBlockIndexTest.java
@@ -0,0 +1,170 @@
+/*
+ * TapBlockTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class TapBlockTest {
+
+    private static Tap2bas createTap2bas(byte[] tap) {
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setTapContent(tap);
+        return tap2bas;
+    }
+
+    private static List<TapBlock> toList(Iterable<TapBlock> blocks) {
+        List<TapBlock> result = new ArrayList<>();
+        for (TapBlock block : blocks) {
+            result.add(block);
+        }
+        return result;
+    }
+
+    @Test
+    public void testCatalog() throws IOException {
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setInFile(new File("src/test/resources/tap_files/Zlatokop.tap"));
+        List<TapBlock> blocks = toList(tap2bas.blocks());
+
+        assertEquals(2, blocks.size());
+        TapBlock basic = blocks.get(0);
+        assertEquals(0, basic.getNumber());
+        assertTrue(basic.isBasic());
+        assertEquals("GOLDMINER", basic.getName());
+        assertEquals(17808, basic.getHeaderDataLength());
+        assertEquals(17808, basic.getDataLength());
+        assertEquals(9005, basic.getP1());
+        assertEquals(15931, basic.getP2());
+        assertEquals(0x15, basic.getDataOffset());
+        assertEquals(Tap2bas.FLAG_DATA, basic.getDataFlag());
+        assertTrue(basic.isParityOk());
+        assertTrue(basic.hasVars());
+
+        TapBlock code = blocks.get(1);
+        assertEquals(TapBlockType.BINARY_DATA, code.getType());
+        assertEquals("Gold", code.getName());
+        assertEquals(2200, code.getData().remaining());
+        assertFalse(code.isBasic());
+        assertFalse(code.hasVars());
+    }
+
+    /** Text všech bloků = výstup celého souboru. */
+    @Test
+    public void testTextSameAsWholeFile() throws IOException, InvalidTapException {
+        String[] files = { "Didaktik.tap", "Poklad.tap", "XmasEve.tap",
+            "Zlatokop.tap", "merged.tap", "real_num.tap", "usr_char.tap" };
+        for (String file : files) {
+            Tap2bas tap2bas = new Tap2bas();
+            tap2bas.setInFile(new File("src/test/resources/tap_files/" + file));
+            StringWriter sw = new StringWriter();
+            tap2bas.setOutWriter(sw);
+            tap2bas.analyzeAll();
+            tap2bas.closeOutWriter();
+
+            StringBuilder sb = new StringBuilder();
+            for (TapBlock block : tap2bas.blocks()) {
+                sb.append(block.getText(true));
+            }
+            assertEquals(file, sw.toString(), sb.toString());
+        }
+    }
+
+    @Test
+    public void testListingAndVars() throws IOException, InvalidTapException {
+        TapGenerator generator = new TapGenerator(11);
+        generator.setLineCount(50);
+        generator.setNumericArrays(1, 20);
+        generator.setForLoops(1);
+        generator.setCodeLength(300);
+        generator.setRepeat(3);
+        byte[] tap = generator.generate();
+
+        Tap2bas tap2bas = createTap2bas(tap);
+        StringWriter sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        tap2bas.analyzeAndExtractOnlyBasic();
+        tap2bas.closeOutWriter();
+
+        StringBuilder listings = new StringBuilder();
+        int basicCount = 0;
+        for (TapBlock block : createTap2bas(tap).blocks()) {
+            if (block.isBasic()) {
+                basicCount++;
+                listings.append(block.getBasicListing());
+                String vars = block.getVarsAnalysis();
+                assertNotNull(vars);
+                assertTrue(vars.contains("-- numeric array"));
+                assertTrue(vars.contains("-- variable for loop"));
+                assertFalse(vars.contains("ERROR"));
+            }
+            else {
+                assertNull(block.getVarsAnalysis());
+                assertTrue(block.getHexDump().startsWith("0000: "));
+                assertFalse(block.getDecadicDump().isEmpty());
+                try {
+                    block.getBasicListing();
+                    fail("not BASIC");
+                } catch (IllegalStateException expected) {
+                }
+            }
+        }
+        assertEquals(3, basicCount);
+        assertEquals(sw.toString(), listings.toString());
+    }
+
+    @Test
+    public void testBrokenAndTruncated() {
+        TapGenerator generator = new TapGenerator(3);
+        generator.setLineCount(10);
+        generator.setCodeLength(100);
+        byte[] tap = generator.generate();
+        byte[] broken = tap.clone();
+        broken[broken.length - 5] ^= 0x01;
+
+        List<TapBlock> blocks = toList(createTap2bas(broken).blocks());
+        assertEquals(2, blocks.size());
+        assertTrue(blocks.get(0).isParityOk());
+        assertFalse(blocks.get(1).isParityOk());
+
+        byte[] truncated = Arrays.copyOf(tap, tap.length - 1);
+        Iterator<TapBlock> it = createTap2bas(truncated).blocks().iterator();
+        assertTrue(it.hasNext());
+        it.next();
+        assertTrue(it.hasNext());
+        try {
+            it.next();
+            fail("truncated TAP");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getCause() instanceof InvalidTapException);
+        }
+        assertFalse(it.hasNext());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStreamNotSupported() {
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setInChannel(Channels.newChannel(new ByteArrayInputStream(new byte[0])));
+        tap2bas.blocks();
+    }
+
+}   // TapBlockTest.java
@@ -8,7 +8,12 @@
 package cz.mp.zxs.tools.tap2bas;
 
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Random;
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -61,6 +66,81 @@ public class TapByteArrayDataTest {
         }         
     }
 
+    /**
+     * Referenční převod jednoho znaku (původní řetězec podmínek), 
+     * pro porovnání s tabulkou v {@code TapByteArrayData}.
+     * 
+     * @return  počet bytů parametrů, které znak spotřebuje
+     */
+    private static int escapeReference(int dataItem, int[] params, StringBuilder sb) {
+        if (TapByteArrayData.isBeginOfNumberRepresentation(dataItem)) {
+            return TapByteArrayData.NUMBER_REPRESENTATION_LEN;
+        }
+        else if (TapByteArrayData.isPoundChar(dataItem)) {
+            sb.append("{pound}");
+        }
+        else if (TapByteArrayData.isCopyrightChar(dataItem)) {
+            sb.append("{(C)}");
+        }
+        else if (TapByteArrayData.isPrintableChar(dataItem) 
+                || TapByteArrayData.isEolChar(dataItem)) {
+            sb.append((char)dataItem);
+        }
+        else if (TapByteArrayData.isControlCharToSetTextAttribute(dataItem)) {
+            sb.append("{").append(TapByteArrayData.getControlAsCharText(dataItem))
+                    .append(" ").append(params[0]);
+            if (dataItem == 0x16) {
+                sb.append(" ").append(params[1]).append("}");
+                return 2;
+            }
+            sb.append("}");
+            return 1;
+        }
+        else if (TapByteArrayData.isControlChar(dataItem)) {
+        }
+        else if (TapByteArrayData.isKeyword(dataItem)) {
+            sb.append(TapByteArrayData.getKeyword(dataItem));
+        }
+        else if (dataItem == 0x80) {
+            sb.append("{-8}");
+        }
+        else if (dataItem == 0x8F) {
+            sb.append("{+8}");
+        }
+        else if (dataItem >= 0x81 && dataItem <= 0x87) {
+            sb.append("{-").append((char)('1'+dataItem-0x81)).append("}");
+        }
+        else if (dataItem >= 0x88 && dataItem <= 0x8E) {
+            sb.append("{+").append((char)(0x8E-dataItem+'1')).append("}");
+        }
+        else if (TapByteArrayData.isUdgChar(dataItem)) {
+            sb.append("{").append((char)('A'+dataItem-0x90)).append("}");
+        }
+        else {
+            fail("unknown data " + dataItem);
+        }
+        return 0;
+    }
+    
+    // všechny hodnoty bytu, každá následovaná textem "123456"
+    @Test
+    public void testReadBlockAndReturnAsEscapedStringAllBytes() throws InvalidTapException {
+        int[] params = new int[] {0x31, 0x32};
+        for (int dataItem = 0; dataItem <= 0xFF; dataItem++) {
+            byte[] rawData = new byte[] {(byte)dataItem, 
+                    (byte)0x31, (byte)0x32, (byte)0x33, (byte)0x34, (byte)0x35, (byte)0x36};
+            
+            StringBuilder expected = new StringBuilder();
+            int skipped = escapeReference(dataItem, params, expected);
+            expected.append("123456".substring(skipped));
+            
+            TapByteArrayData tData = new TapByteArrayData(rawData);
+            String text = tData.readBlockAndReturnAsEscapedString(rawData.length);
+            assertEquals("0x" + Integer.toHexString(dataItem), expected.toString(), text);
+            assertEquals(rawData.length, tData.getIdx());
+        }
+    }
+
     @Test
     public void testReadAndParseBasicNumber01Integer() {
         byte[] rawData;
@@ -115,6 +195,96 @@ public class TapByteArrayDataTest {
 //        assertTrue(new BigDecimal("0.499999999883584678173380").compareTo(number) == 0);        
     }
     
+
+    /**
+     * Původní implementace {@code parseBasicNumber} (vše v {@code BigDecimal}),
+     * pro porovnání. Jen pro čísla s plovoucí čárkou.
+     */
+    private static BigDecimal parseBasicFloatReference(int[] rawValue) {
+        int exp = rawValue[0] - 128;
+        int sign = rawValue[1] >> 7;
+        BigDecimal mantisa = new BigDecimal("0.5");
+        mantisa = mantisa.add(new BigDecimal(rawValue[1] & 0x7F).divide(new BigDecimal("256"), MathContext.DECIMAL64));
+        mantisa = mantisa.add(new BigDecimal(rawValue[2]).divide(new BigDecimal("65536"), MathContext.DECIMAL64));
+        mantisa = mantisa.add(new BigDecimal(rawValue[3]).divide(new BigDecimal("16777216"), MathContext.DECIMAL64));
+        mantisa = mantisa.add(new BigDecimal(rawValue[4]).divide(new BigDecimal("4294967296"), MathContext.DECIMAL64));
+        BigDecimal result = mantisa.multiply(new BigDecimal("2").pow(exp, MathContext.DECIMAL64));
+        if (sign != 0) {
+            result = result.negate();
+        }
+        return result;
+    }
+
+    private static void assertSameAsReference(int[] raw, BigDecimal expected) 
+            throws IOException {
+        String info = Arrays.toString(raw);
+        BigDecimal number = TapByteArrayData.parseBasicNumber(raw);
+        // (stejná hodnota i "scale")
+        assertEquals(info, expected, number);
+
+        byte[] rawData = new byte[raw.length];
+        for (int i=0; i<raw.length; i++) {
+            rawData[i] = (byte) raw[i];
+        }
+        StringWriter sw = new StringWriter();
+        AsciiOutput out = new AsciiOutput(64);
+        out.setTarget(sw, true);
+        new TapByteArrayData(rawData).readBlockAndWriteBasicNumber(out);
+        out.close();
+        assertEquals(info, expected.toPlainString(), sw.toString());
+    }
+
+    @Test
+    public void testParseBasicNumberIntegerAll() throws IOException {
+        for (int sign : new int[] {0, 0xFF}) {
+            for (int value=0; value<=0xFFFF; value++) {
+                int[] raw = {0, sign, value & 0xFF, value >> 8, 0};
+                assertSameAsReference(raw, new BigDecimal(sign == 0 ? value : -value));
+            }
+        }
+    }
+
+    @Test
+    public void testParseBasicNumberFloatSameAsReference() throws IOException {
+        // všechny exponenty a všechny hodnoty 2.B (znaménko + 7 bitů mantisy)
+        Random random = new Random(5);
+        for (int b0=1; b0<=254; b0++) {
+            for (int b1=0; b1<=0xFF; b1++) {
+                int[] raw = {b0, b1, random.nextInt(256), 0, 0};
+                assertSameAsReference(raw, parseBasicFloatReference(raw));
+                raw[2] = 0;
+                assertSameAsReference(raw, parseBasicFloatReference(raw));
+                raw[3] = random.nextInt(256);
+                raw[4] = random.nextInt(256);
+                assertSameAsReference(raw, parseBasicFloatReference(raw));
+            }
+        }
+        // celá 32b mantisa (4. a 5.B), všechny exponenty
+        for (int b0=1; b0<=254; b0++) {
+            for (int b=0; b<=0xFF; b++) {
+                int[] raw = {b0, random.nextInt(256), random.nextInt(256), b, 0};
+                assertSameAsReference(raw, parseBasicFloatReference(raw));
+                raw[3] = 0;
+                raw[4] = b;
+                assertSameAsReference(raw, parseBasicFloatReference(raw));
+            }
+        }
+        // náhodné hodnoty
+        for (int i=0; i<20000; i++) {
+            int[] raw = {1 + random.nextInt(254), random.nextInt(256), 
+                    random.nextInt(256), random.nextInt(256), random.nextInt(256)};
+            if (random.nextBoolean()) {
+                raw[3] = 0;
+                raw[4] = 0;
+            }
+            assertSameAsReference(raw, parseBasicFloatReference(raw));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseBasicNumberInvalidFloat() {
+        TapByteArrayData.parseBasicNumber(new int[] {0xFF, 0, 0, 0, 0});
+    }
     
     // -- static:
 
@@ -214,4 +384,30 @@ public class TapByteArrayDataTest {
         assertNull(TapByteArrayData.getControlAsCharText(0x9));
     }
 
+    @Test
+    public void testReadBlockReturnAsHexDump() {
+        TapByteArrayData data = new TapByteArrayData(
+                "ABCDEFGHIJKLMNOPQRS".getBytes());
+        String expected =
+                "0000: 41 42 43 44 45 46 47 48  49 4a 4b 4c 4d 4e 4f 50  ABCDEFGHIJKLMNOP\n"
+              + "0010: 51 52 53                                          QRS\n";
+        assertEquals(expected, data.readBlockReturnAsHexDump(19));
+        assertEquals(19, data.getIdx());
+
+        data = new TapByteArrayData(new byte[] {0x00, 0x7F, 0x20});
+        assertEquals("0000: 00 7f 20                                          .. \n",
+                data.readBlockReturnAsHexDump(3));
+    }
+
+    @Test
+    public void testReadBlockReturnAsDecadicDump() {
+        TapByteArrayData data = new TapByteArrayData(
+                new byte[] {0, 10, (byte) 255});
+        assertEquals("0000:   0, 10,255,\n  ", data.readBlockReturnAsDecadicDump(3));
+
+        data = new TapByteArrayData(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        assertEquals("0000:   1,  2,  3,  4,  5,  6,  7,  8,\n0008: ",
+                data.readBlockReturnAsDecadicDump(8));
+    }
+
 }   // TapByteArrayDataTest.java
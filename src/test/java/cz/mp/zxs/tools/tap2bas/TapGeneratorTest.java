@@ -0,0 +1,93 @@
+/*
+ * TapGeneratorTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class TapGeneratorTest {
+
+    private static TapGenerator createGenerator(long seed) {
+        TapGenerator generator = new TapGenerator(seed);
+        generator.setLineCount(200);
+        generator.setNumericArrays(2, 3000);
+        generator.setStringArrays(1, 100);
+        generator.setForLoops(3);
+        generator.setCodeLength(1000);
+        generator.setScreens(1);
+        generator.setRepeat(2);
+        return generator;
+    }
+
+    @Test
+    public void testSameSeedSameTap() {
+        byte[] tap1 = createGenerator(7).generate();
+        byte[] tap2 = createGenerator(7).generate();
+        byte[] tap3 = createGenerator(8).generate();
+        assertTrue(Arrays.equals(tap1, tap2));
+        assertFalse(Arrays.equals(tap1, tap3));
+    }
+
+    @Test
+    public void testBlocksAndParity() {
+        byte[] tap = createGenerator(1).generate();
+        int blocks = 0;
+        int idx = 0;
+        while (idx < tap.length) {
+            int len = (tap[idx] & 0xFF) | (tap[idx + 1] & 0xFF) << 8;
+            idx += 2;
+            int parity = 0;
+            for (int i=0; i<len; i++) {
+                parity ^= tap[idx + i];
+            }
+            assertEquals("block " + blocks, 0, parity);
+            idx += len;
+            blocks++;
+        }
+        assertEquals(tap.length, idx);
+        // 2 x (BASIC, CODE, SCREEN$) -- hlavička + data
+        assertEquals(2 * 3 * 2, blocks);
+    }
+
+    @Test
+    public void testAnalyzeAll() throws IOException, InvalidTapException {
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setTapContent(createGenerator(3).generate());
+        StringWriter sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        tap2bas.analyzeAll();
+        tap2bas.closeOutWriter();
+        String result = sw.toString();
+
+        assertFalse(result.contains("ERROR"));
+        assertFalse(result.contains("Invalid"));
+        // 200 řádek: 10, 20, ... 2000
+        assertTrue(result.contains("\n2000 "));
+        assertFalse(result.contains("\n2010 "));
+        assertTrue(result.contains("dim 1:  size = 3000"));
+        assertTrue(result.contains("-- variable for loop"));
+        assertTrue(result.contains("-- string array"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBasicBlockTooBig() {
+        TapGenerator generator = new TapGenerator(1);
+        generator.setProgramLength(30000);
+        generator.setNumericArrays(2, 5000);
+        generator.generate();
+    }
+
+}   // TapGeneratorTest.java
@@ -0,0 +1,178 @@
+/*
+ * TapResyncScannerTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.readTap;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class TapResyncScannerTest {
+
+    /** TAP + "smetí" + TAP */
+    private static byte[] damagedTap(byte[] first, int garbageLen, byte[] second) {
+        byte[] garbage = new byte[garbageLen];
+        new Random(16).nextBytes(garbage);
+        byte[] tap = new byte[first.length + garbageLen + second.length];
+        System.arraycopy(first, 0, tap, 0, first.length);
+        System.arraycopy(garbage, 0, tap, first.length, garbageLen);
+        System.arraycopy(second, 0, tap, first.length + garbageLen, second.length);
+        return tap;
+    }
+
+    @Test
+    public void testFindNextHeader() throws IOException {
+        byte[] tap = readTap("Zlatokop.tap");
+        ByteBuffer data = ByteBuffer.wrap(tap);
+        assertEquals(0, TapResyncScanner.findNextHeader(data, 0));
+        int second = TapResyncScanner.findNextHeader(data, 1);
+        assertTrue(second > 0);
+        // (druhá hlavička: za první hlavičkou a jejím blokem dat)
+        int firstDataLen = (tap[21] & 0xFF) | (tap[22] & 0xFF) << 8;
+        assertEquals(21 + 2 + firstDataLen, second);
+        assertEquals(-1, TapResyncScanner.findNextHeader(data, second + 1));
+
+        // špatná parita hlavičky
+        tap[second + 5] ^= 1;
+        assertEquals(-1, TapResyncScanner.findNextHeader(data, 1));
+    }
+
+    @Test
+    public void testGarbage() throws IOException {
+        byte[] usrChar = readTap("usr_char.tap");
+        byte[] tap = damagedTap(usrChar, 1024 * 1024, readTap("Zlatokop.tap"));
+        int next = TapResyncScanner.findNextHeader(ByteBuffer.wrap(tap), usrChar.length);
+        assertEquals(usrChar.length + 1024 * 1024, next);
+    }
+
+    @Test(expected = InvalidTapException.class)
+    public void testWithoutRecover() throws IOException, InvalidTapException {
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setTapContent(damagedTap(readTap("usr_char.tap"), 5000,
+                readTap("Zlatokop.tap")));
+        tap2bas.setOutWriter(new StringWriter());
+        tap2bas.analyzeAndExtractOnlyBasic();
+    }
+
+    @Test
+    public void testRecover() throws IOException, InvalidTapException {
+        byte[] usrChar = readTap("usr_char.tap");
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setTapContent(damagedTap(usrChar, 5000, readTap("Zlatokop.tap")));
+        tap2bas.setRecover(true);
+        StringWriter sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        tap2bas.analyzeAll();
+        tap2bas.closeOutWriter();
+
+        List<TapResyncScanner.SkippedRange> skipped = tap2bas.getSkippedRanges();
+        assertEquals(1, skipped.size());
+        assertEquals(usrChar.length, skipped.get(0).getOffset());
+        assertEquals(5000, skipped.get(0).getLength());
+        String out = sw.toString();
+        assertTrue(out.contains("--- skipped damaged data: index = " + usrChar.length));
+        assertTrue(out.contains("name=\"GOLDMINER\""));
+    }
+
+    /**
+     * Blok s platnou hlavičkou, ale s chybnou délkou řádky, která sahá
+     * za konec bloku dat (do další dvojice bloků).
+     */
+    private static byte[] damagedLineTap(byte[] second) throws IOException {
+        byte[] basic = new byte[] {
+            0, 10, 2, 0, (byte) 0xEA, 0x0D,             // 10 REM
+            0, 20, 0, 4, (byte) 0xEA, 'x', 0x0D         // 20 REM x  (délka 1024)
+        };
+        ByteArrayOutputStream tap = new ByteArrayOutputStream();
+        TapGenerator.appendBlockPair(tap, TapBlockType.BASIC, "damaged",
+                basic, 32768, basic.length);
+        tap.write(second);
+        return tap.toByteArray();
+    }
+
+    @Test
+    public void testRecoverLineOverrun() throws IOException, InvalidTapException {
+        byte[] zlatokop = readTap("Zlatokop.tap");
+        byte[] tap = damagedLineTap(zlatokop);
+        int secondIdx = tap.length - zlatokop.length;
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setTapContent(tap);
+        tap2bas.setRecover(true);
+        StringWriter sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        tap2bas.analyzeAll();
+        tap2bas.closeOutWriter();
+
+        // (přeskočí se jen poškozená dvojice bloků, další hlavička zůstane)
+        List<TapResyncScanner.SkippedRange> skipped = tap2bas.getSkippedRanges();
+        assertEquals(skipped.toString(), 1, skipped.size());
+        assertEquals(0, skipped.get(0).getOffset());
+        assertEquals(secondIdx, skipped.get(0).getLength());
+        String out = sw.toString();
+        assertTrue(out.contains("name=\"GOLDMINER\""));
+        assertTrue(out.contains("10 REM"));
+    }
+
+    @Test
+    public void testRecoverVarsOverrun() throws IOException, InvalidTapException {
+        byte[] zlatokop = readTap("Zlatokop.tap");
+        byte[] basic = new byte[] {
+            0, 10, 2, 0, (byte) 0xEA, 0x0D,             // 10 REM
+            'A' , 0, 4, 'a', 'b'                        // a$ (délka 1024)
+        };
+        ByteArrayOutputStream tap = new ByteArrayOutputStream();
+        TapGenerator.appendBlockPair(tap, TapBlockType.BASIC, "vars",
+                basic, 32768, 6);
+        tap.write(zlatokop);
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setTapContent(tap.toByteArray());
+        tap2bas.setRecover(true);
+        StringWriter sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        tap2bas.analyzeAll();
+        tap2bas.closeOutWriter();
+
+        // (neplatná tabulka proměnných není chyba TAP; blok skončí na své délce)
+        assertTrue(tap2bas.getSkippedRanges().isEmpty());
+        String out = sw.toString();
+        assertTrue(out.contains("name=\"GOLDMINER\""));
+        assertTrue(out.indexOf("GOLDMINER") > out.indexOf("10 REM"));
+    }
+
+    @Test
+    public void testRecoverJson() throws IOException, InvalidTapException {
+        byte[] usrChar = readTap("usr_char.tap");
+        Tap2bas tap2bas = new Tap2bas();
+        // (useknutý blok dat na konci)
+        byte[] tap = damagedTap(readTap("Zlatokop.tap"), 0, usrChar);
+        tap2bas.setTapContent(Arrays.copyOf(tap, tap.length - 100));
+        tap2bas.setRecover(true);
+        tap2bas.setOutputFormat(OutputFormat.JSON);
+        StringWriter sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        tap2bas.analyzeAll();
+        tap2bas.closeOutWriter();
+
+        assertEquals(1, tap2bas.getSkippedRanges().size());
+        String out = sw.toString();
+        assertTrue(out.contains("{\"type\":\"skipped\",\"offset\":" + (tap.length - usrChar.length)));
+        assertTrue(out.endsWith("}\n]\n"));
+    }
+
+}   // TapResyncScannerTest.java
@@ -0,0 +1,148 @@
+/*
+ * TapStatsTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.TAP_DIR;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class TapStatsTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static long sumOfPhases(TapStats stats) {
+        long sum = 0;
+        for (TapStats.Phase phase : TapStats.Phase.values()) {
+            sum += stats.getPhaseNanos(phase);
+        }
+        return sum;
+    }
+
+    private TapStats convert(String tapName) throws IOException, InvalidTapException {
+        File inFile = new File(TAP_DIR, tapName);
+        File outFile = tmp.newFile();
+        TapStats stats = new TapStats();
+        stats.start();
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setStats(stats);
+        tap2bas.setInFile(inFile);
+        tap2bas.setOutFile(outFile);
+        tap2bas.analyzeAll();
+        tap2bas.closeOutWriter();
+        stats.stop();
+
+        assertEquals(inFile.length(), stats.getBytes());
+        assertEquals(outFile.length(), stats.getOutputBytes());
+        return stats;
+    }
+
+    @Test
+    public void testConvert() throws IOException, InvalidTapException {
+        TapStats stats = convert("Zlatokop.tap");
+        assertEquals(1, stats.getBlocks(TapBlockType.BASIC));
+        assertEquals(1, stats.getBlocks(TapBlockType.BINARY_DATA));
+        assertEquals(0, stats.getBlocks(TapBlockType.TEXTS));
+        assertTrue(stats.getBasicLines() > 100);
+        assertTrue(stats.getVariables() > 0);
+        assertTrue(stats.getPhaseNanos(TapStats.Phase.BASIC) > 0);
+        assertTrue(stats.getPhaseNanos(TapStats.Phase.VARS) > 0);
+        // (fáze se nepřekrývají)
+        assertEquals(stats.getElapsedNanos(), sumOfPhases(stats));
+    }
+
+    @Test
+    public void testPhases() throws InterruptedException {
+        TapStats stats = new TapStats();
+        // před startem se čas nepočítá
+        TapStats.Phase previous = stats.enter(TapStats.Phase.DUMP);
+        assertEquals(TapStats.Phase.OTHER, previous);
+        stats.exit(previous);
+        assertEquals(0, sumOfPhases(stats));
+
+        stats.start();
+        previous = stats.enter(TapStats.Phase.DUMP);
+        Thread.sleep(5);
+        TapStats.Phase nested = stats.enter(TapStats.Phase.OUTPUT);
+        assertEquals(TapStats.Phase.DUMP, nested);
+        Thread.sleep(5);
+        stats.exit(nested);
+        stats.exit(previous);
+        stats.stop();
+        stats.stop();   // (nic nedělá)
+
+        assertTrue(stats.getPhaseNanos(TapStats.Phase.DUMP) >= 5000000);
+        assertTrue(stats.getPhaseNanos(TapStats.Phase.OUTPUT) >= 5000000);
+        assertEquals(0, stats.getPhaseNanos(TapStats.Phase.READ));
+        assertEquals(stats.getElapsedNanos(), sumOfPhases(stats));
+    }
+
+    @Test
+    public void testTotal() throws IOException, InvalidTapException {
+        TapStats zlatokop = convert("Zlatokop.tap");
+        TapStats poklad = convert("Poklad.tap");
+        TapStatsTotal total = new TapStatsTotal();
+        total.add(zlatokop, "Zlatokop.tap");
+        total.add(poklad, "Poklad.tap");
+
+        assertEquals(2, total.getFiles());
+        assertEquals(zlatokop.getBytes() + poklad.getBytes(), total.getBytes());
+        assertEquals(zlatokop.getBasicLines() + poklad.getBasicLines(),
+                total.getBasicLines());
+        Map<String, Long> blocks = total.getBlocks();
+        assertEquals(Long.valueOf(zlatokop.getBlocks(TapBlockType.BASIC)
+                + poklad.getBlocks(TapBlockType.BASIC)), blocks.get("BASIC"));
+        assertTrue(total.getPhaseTimesMs().containsKey("vars"));
+        assertEquals(zlatokop.getElapsedNanos() > poklad.getElapsedNanos()
+                ? "Zlatokop.tap" : "Poklad.tap", total.getSlowestFile());
+
+        String json = total.toJson();
+        assertTrue(json, json.startsWith("{\"files\":2,\"bytes\":" + total.getBytes() + ","));
+        assertTrue(json, json.contains("\"phasesMs\":{\"read\":"));
+        assertTrue(json, json.endsWith("}"));
+        assertTrue(total.toText().startsWith("files: 2, stats: "));
+
+        total.reset();
+        assertEquals(0, total.getFiles());
+        assertEquals(0, total.getBytes());
+        assertEquals("", total.getSlowestFile());
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        TapStatsTotal total = new TapStatsTotal();
+        total.add(convert("Poklad.tap"), "Poklad.tap");
+        total.register();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(TapStatsTotal.OBJECT_NAME);
+            assertEquals(1L, server.getAttribute(name, "Files"));
+            assertEquals(total.getBytes(), server.getAttribute(name, "Bytes"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "Files"));
+        } finally {
+            total.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(
+                new ObjectName(TapStatsTotal.OBJECT_NAME)));
+    }
+
+}   // TapStatsTest.java
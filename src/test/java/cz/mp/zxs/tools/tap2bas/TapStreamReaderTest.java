@@ -0,0 +1,66 @@
+/*
+ * TapStreamReaderTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import org.junit.Test;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.readTap;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class TapStreamReaderTest {
+
+    private static int readAll(TapStreamReader reader) throws IOException {
+        int count = 0;
+        while (reader.readNext()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testOffsets() throws IOException {
+        byte[] tap = readTap("Zlatokop.tap");
+        TapStreamReader reader = new TapStreamReader(new ByteArrayInputStream(tap));
+        int expectedOffset = 0;
+        while (reader.readNext()) {
+            assertEquals(expectedOffset, reader.getOffset());
+            expectedOffset += reader.getLength();
+        }
+        assertEquals(tap.length, expectedOffset);
+        assertEquals(tap.length, reader.getOffset());
+    }
+
+    // pozice jsou int; delší proud se musí odmítnout, ne přetéct
+    @Test
+    public void testMaxStreamSize() throws IOException {
+        byte[] tap = readTap("Zlatokop.tap");
+        assertTrue(readAll(new TapStreamReader(
+                new ByteArrayInputStream(tap), tap.length)) > 0);
+
+        try {
+            readAll(new TapStreamReader(
+                    new ByteArrayInputStream(tap), tap.length - 1));
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("too big"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxStreamSizeOverInt() {
+        new TapStreamReader(new ByteArrayInputStream(new byte[0]),
+                TapStreamReader.MAX_STREAM_SIZE + 1);
+    }
+
+}   // TapStreamReaderTest.java
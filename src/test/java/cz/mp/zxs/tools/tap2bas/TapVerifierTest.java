@@ -0,0 +1,129 @@
+/*
+ * TapVerifierTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static cz.mp.zxs.tools.tap2bas.TestTapFiles.readTap;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class TapVerifierTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testXor() {
+        Random random = new Random(15);
+        byte[] bytes = new byte[300];
+        random.nextBytes(bytes);
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        for (int from=0; from<20; from++) {
+            for (int to=from; to<bytes.length; to+=7) {
+                int expected = 0;
+                for (int i=from; i<to; i++) {
+                    expected ^= bytes[i];
+                }
+                assertEquals(from + ".." + to, expected & 0xFF,
+                        TapVerifier.xor(data, from, to));
+            }
+        }
+    }
+
+    @Test
+    public void testValidTapes() throws IOException {
+        for (String name : new String[] {"usr_char.tap", "Zlatokop.tap", "Didaktik.tap"}) {
+            TapVerifier.Report report = TapVerifier.verify(ByteBuffer.wrap(readTap(name)));
+            assertTrue(name, report.isOk());
+        }
+        TapVerifier.Report report = TapVerifier.verify(ByteBuffer.wrap(readTap("Zlatokop.tap")));
+        assertEquals(4, report.getBlockCount());
+    }
+
+    @Test
+    public void testParity() throws IOException {
+        byte[] tap = readTap("usr_char.tap");
+        tap[30] ^= 0x21;    // (v bloku dat)
+        TapVerifier.Report report = TapVerifier.verify(ByteBuffer.wrap(tap));
+        assertFalse(report.isOk());
+        assertEquals(1, report.getBadBlocks().size());
+        TapVerifier.BadBlock block = report.getBadBlocks().get(0);
+        assertEquals(1, block.getBlockNum());
+        assertEquals(21, block.getOffset());
+        assertEquals(0x21, block.getXor());
+        assertTrue(block.hasProblem(TapVerifier.Problem.PARITY));
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        byte[] tap = readTap("usr_char.tap");
+        tap = Arrays.copyOf(tap, tap.length - 10);
+        TapVerifier.Report report = TapVerifier.verify(ByteBuffer.wrap(tap));
+        assertEquals(2, report.getBlockCount());
+        assertEquals(1, report.getBadBlocks().size());
+        TapVerifier.BadBlock block = report.getBadBlocks().get(0);
+        assertTrue(block.hasProblem(TapVerifier.Problem.TRUNCATED));
+        assertFalse(block.hasProblem(TapVerifier.Problem.PARITY));
+
+        // useknutá 2B délka dalšího bloku
+        tap = Arrays.copyOf(readTap("usr_char.tap"), 22);
+        report = TapVerifier.verify(ByteBuffer.wrap(tap));
+        block = report.getBadBlocks().get(0);
+        assertEquals(-1, block.getLength());
+        assertTrue(block.hasProblem(TapVerifier.Problem.TRUNCATED));
+    }
+
+    @Test
+    public void testHeaderAndDataLength() throws IOException {
+        byte[] tap = readTap("usr_char.tap");
+        tap[3] = 7;     // typ v hlavičce (byl 0)
+        tap[14] = 10;   // délka dat v hlavičce (byla 224)
+        tap[20] ^= 7 ^ 10 ^ 224;    // (parita hlavičky zůstane správná)
+        TapVerifier.Report report = TapVerifier.verify(ByteBuffer.wrap(tap));
+        List<TapVerifier.BadBlock> badBlocks = report.getBadBlocks();
+        assertEquals(2, badBlocks.size());
+        assertEquals(TapVerifier.Problem.HEADER_TYPE,
+                badBlocks.get(0).getProblems().iterator().next());
+        assertTrue(badBlocks.get(1).hasProblem(TapVerifier.Problem.DATA_LENGTH));
+    }
+
+    @Test
+    public void testBatchVerify() throws IOException, InterruptedException {
+        File dir = tmp.newFolder("tapes");
+        byte[] tap = readTap("usr_char.tap");
+        Files.write(new File(dir, "a.tap").toPath(), tap);
+        tap[40] ^= 1;
+        Files.write(new File(dir, "b.tap").toPath(), tap);
+
+        Tap2basBatch batch = new Tap2basBatch(2);
+        batch.setVerifyOnly(true);
+        batch.addInput(dir.getPath());
+        List<Tap2basBatch.Result> results = batch.run();
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).isOk());
+        assertNull(results.get(0).getOutFile());
+        assertEquals(Tap2basCli.RESULT_ERR_TAP_FORMAT, results.get(1).getResultCode());
+        assertEquals(1, results.get(1).getVerifyReport().getBadBlocks().size());
+        // (výstupní soubory se nevytváří)
+        assertEquals(2, dir.list().length);
+    }
+
+}   // TapVerifierTest.java
@@ -0,0 +1,146 @@
+/*
+ * TapVisitorTest.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ *
+ * @author Martin Pokorný
+ */
+public class TapVisitorTest {
+
+    /** Sbírá události jako text, čísla jako {@code BigDecimal}. */
+    private static class CollectingVisitor extends TapVisitorAdapter {
+        private final List<String> headers = new ArrayList<>();
+        private final List<Integer> lineNums = new ArrayList<>();
+        private final List<BigDecimal> numbers = new ArrayList<>();
+        private final List<String> vars = new ArrayList<>();
+        private int arrayElements = 0;
+        private int binaryBytes = 0;
+        private int basicEnds = 0;
+
+        @Override
+        public void header(int offset, TapBlockType type, String name,
+                int dataLength, int p1, int p2) {
+            headers.add(type + " " + name);
+        }
+
+        @Override
+        public void basicLine(int lineNum, TapByteArrayData data, int length) {
+            lineNums.add(lineNum);
+        }
+
+        @Override
+        public boolean isEmbeddedNumbersWanted() {
+            return true;
+        }
+
+        @Override
+        public void embeddedNumber(int lineNum, TapByteArrayData data) {
+            numbers.add(data.readBlockAndParseBasicNumber());
+        }
+
+        @Override
+        public void numberVariable(String name, TapByteArrayData data) {
+            vars.add(name + "=" + data.readBlockAndParseBasicNumber());
+        }
+
+        @Override
+        public void forLoopVariable(char name, TapByteArrayData data,
+                int lineNumForNext, int cmdNumAfterNext) {
+            vars.add("for " + name + " " + lineNumForNext + ":" + cmdNumAfterNext);
+        }
+
+        @Override
+        public void numericArrayElement(int index, TapByteArrayData data) {
+            arrayElements++;
+        }
+
+        @Override
+        public void basicEnd() {
+            basicEnds++;
+        }
+
+        @Override
+        public void binaryBlock(int offset, TapBlockType type, TapByteArrayData data,
+                int length) {
+            binaryBytes += length;
+        }
+    }
+
+    @Test
+    public void testUsrChar() throws IOException, InvalidTapException {
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setInFile(new File("src/test/resources/tap_files/usr_char.tap"));
+        CollectingVisitor visitor = new CollectingVisitor();
+        tap2bas.visit(visitor, true, false);
+
+        assertTrue(visitor.headers.isEmpty());
+        assertEquals(1, visitor.basicEnds);
+        assertEquals(10, visitor.lineNums.size());
+        assertEquals(Integer.valueOf(11), visitor.lineNums.get(0));
+        assertEquals(Integer.valueOf(20), visitor.lineNums.get(9));
+        // DATA BIN 00011000 ... ; FOR I=0 TO 7 ; CHR$ 144
+        assertEquals(8 + 2 + 1, visitor.numbers.size());
+        assertEquals(new BigDecimal(24), visitor.numbers.get(0));
+        assertEquals(new BigDecimal(144), visitor.numbers.get(10));
+    }
+
+    @Test
+    public void testVarsAndBinary() throws IOException, InvalidTapException {
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setInFile(new File("src/test/resources/tap_files/Zlatokop.tap"));
+        CollectingVisitor visitor = new CollectingVisitor();
+        tap2bas.visit(visitor, false, true);
+
+        assertEquals(2, visitor.headers.size());
+        assertEquals("BASIC GOLDMINER", visitor.headers.get(0));
+        assertEquals(2200, visitor.binaryBytes);
+        assertEquals("for l 900:3", visitor.vars.get(0));
+        assertEquals("beep=7", visitor.vars.get(1));
+    }
+
+    /** Visitor nezapisuje na výstup; textový výstup se nemění. */
+    @Test
+    public void testTextOutputUnchanged() throws IOException, InvalidTapException {
+        TapGenerator generator = new TapGenerator(21);
+        generator.setLineCount(40);
+        generator.setNumericArrays(2, 30);
+        generator.setStringArrays(1, 8);
+        generator.setForLoops(2);
+        generator.setCodeLength(200);
+        Tap2bas tap2bas = new Tap2bas();
+        tap2bas.setTapContent(generator.generate());
+
+        StringWriter before = new StringWriter();
+        tap2bas.setOutWriter(before);
+        tap2bas.analyzeAll();
+        tap2bas.closeOutWriter();
+
+        StringWriter sw = new StringWriter();
+        tap2bas.setOutWriter(sw);
+        CollectingVisitor visitor = new CollectingVisitor();
+        tap2bas.visit(visitor, false, true);
+        assertEquals(40, visitor.lineNums.size());
+        assertEquals(60, visitor.arrayElements);
+        assertEquals(200, visitor.binaryBytes);
+        tap2bas.analyzeAll();
+        tap2bas.closeOutWriter();
+        assertEquals(before.toString(), sw.toString());
+    }
+
+}   // TapVisitorTest.java
@@ -0,0 +1,37 @@
+/*
+ * TestTapFiles.java
+ *
+ *  created: 18.10.2026
+ *  charset: UTF-8
+ */
+
+package cz.mp.zxs.tools.tap2bas;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Ukázkové TAP pro testy ({@code src/test/resources/tap_files}).
+ *
+ * @author Martin Pokorný
+ */
+final class TestTapFiles {
+
+    /** Adresář s ukázkovými TAP (relativně k adresáři projektu). */
+    static final String TAP_DIR = "src/test/resources/tap_files";
+
+    private TestTapFiles() {
+    }
+
+    /**
+     *
+     * @param name  jméno souboru v {@linkplain #TAP_DIR}, např. {@code Zlatokop.tap}
+     * @return  obsah souboru
+     * @throws IOException
+     */
+    static byte[] readTap(String name) throws IOException {
+        return Files.readAllBytes(new File(TAP_DIR, name).toPath());
+    }
+
+}   // TestTapFiles.java